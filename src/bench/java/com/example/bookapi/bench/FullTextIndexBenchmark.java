@@ -0,0 +1,66 @@
+
+package com.example.bookapi.bench;
+
+import com.example.bookapi.index.FullTextIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of the BM25 book index over a synthetic catalogue whose term
+ * frequencies follow a rough Zipf distribution.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class FullTextIndexBenchmark {
+
+    @Param({"1000000"})
+    private int books;
+
+    private FullTextIndex index;
+    private String[] vocabulary;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        vocabulary = new String[20000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = "w" + Integer.toString(i, 36);
+        }
+
+        index = new FullTextIndex(2.0f, 1.0f);
+        for (int id = 0; id < books; id++) {
+            index.index(id, text(random, 4), text(random, 20));
+        }
+    }
+
+    private String text(SplittableRandom random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            // squaring a uniform value skews picks towards the low (frequent) terms
+            double u = random.nextDouble();
+            text.append(vocabulary[(int) (u * u * vocabulary.length)]).append(' ');
+        }
+        return text.toString();
+    }
+
+    @Benchmark
+    public FullTextIndex.SearchResult rareTerms() {
+        return index.search(vocabulary[15000] + " " + vocabulary[18000], 10);
+    }
+
+    @Benchmark
+    public FullTextIndex.SearchResult mixedTerms() {
+        return index.search(vocabulary[50] + " " + vocabulary[5000], 10);
+    }
+
+    @Benchmark
+    public FullTextIndex.SearchResult phrase() {
+        return index.search("\"" + vocabulary[10] + " " + vocabulary[20] + "\"", 10);
+    }
+}
@@ -0,0 +1,58 @@
+
+package com.example.bookapi.bench;
+
+import com.example.bookapi.id.BlockIdGenerator;
+import com.example.bookapi.id.IdGenerator;
+import com.example.bookapi.id.SequenceIdGenerator;
+import com.example.bookapi.id.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ids per microsecond from each generator: the single-node sequence (one
+ * shared {@code AtomicLong}, as the stores had before), Snowflake-style ids
+ * and leased blocks, the last writing its lease file as it goes. Run it at
+ * several thread counts to see how each scales, e.g.
+ * {@code -Dbench.args="IdGeneratorBenchmark -t 4"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+    @Param({"sequence", "snowflake", "block"})
+    public String mode;
+
+    private IdGenerator generator;
+    private Path leaseDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        leaseDir = Files.createTempDirectory("id-leases");
+        generator = switch (mode) {
+            case "sequence" -> new SequenceIdGenerator();
+            case "snowflake" -> new SnowflakeIdGenerator(40, 8, 1, Duration.ofSeconds(1));
+            case "block" -> new BlockIdGenerator(8, 1, 1 << 20, leaseDir.resolve("bench.lease"));
+            default -> throw new IllegalArgumentException(mode);
+        };
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(leaseDir.resolve("bench.lease"));
+        Files.deleteIfExists(leaseDir);
+    }
+
+    @Benchmark
+    public long nextId() {
+        return generator.nextId();
+    }
+}
@@ -0,0 +1,51 @@
+
+package com.example.bookapi.bench;
+
+import com.example.bookapi.service.SecretGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.unit.DataSize;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of producing one device's enrollment material (a TOTP secret
+ * and ten backup codes): the previous way, with one {@link SecureRandom}
+ * shared by every thread, {@code String.format} per code and a Base64
+ * secret, against {@link SecretGenerator}. Run it at several thread counts
+ * to see how each scales, e.g. {@code -Dbench.args="MfaEnrollmentBenchmark -t 4"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MfaEnrollmentBenchmark {
+
+    private final SecureRandom shared = new SecureRandom();
+    private final SecretGenerator generator = new SecretGenerator(DataSize.ofMegabytes(1), Duration.ofMinutes(10));
+
+    @Benchmark
+    public void sharedSecureRandom(Blackhole blackhole) {
+        byte[] buffer = new byte[20];
+        shared.nextBytes(buffer);
+        blackhole.consume(Base64.getEncoder().encodeToString(buffer));
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            codes.add(String.format("%08d", shared.nextInt(100000000)));
+        }
+        blackhole.consume(String.join(",", codes));
+    }
+
+    @Benchmark
+    public void perThreadDrbg(Blackhole blackhole) {
+        blackhole.consume(generator.newTotpSecret());
+        blackhole.consume(generator.newBackupCodes(10));
+    }
+}
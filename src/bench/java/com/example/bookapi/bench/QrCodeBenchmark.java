@@ -0,0 +1,56 @@
+
+package com.example.bookapi.bench;
+
+import com.example.bookapi.qr.QrCode;
+import com.example.bookapi.qr.QrImages;
+import com.example.bookapi.service.QrCodeService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the provisioning QR code for a typical {@code otpauth} URI:
+ * encoding the symbol alone, encoding and rendering it as PNG or SVG, and
+ * serving it from {@link QrCodeService}'s cache. Sampled, so the report has
+ * percentiles; single-thread throughput is the inverse of the mean.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrCodeBenchmark {
+
+    private static final String URI =
+        "otpauth://totp/BookAPI:jane.doe@example.com?secret=2KQ4KFNNDW5RPODICLUEL2YAI4GTBMXH&issuer=BookAPI";
+
+    private final QrCodeService cache = new QrCodeService(Duration.ofHours(1), DataSize.ofMegabytes(4), 6);
+
+    @Setup
+    public void warmCache() {
+        cache.render(1, URI, QrImages.Format.PNG);
+    }
+
+    @Benchmark
+    public QrCode encode() {
+        return QrCode.encodeText(URI, QrCode.Ecc.M);
+    }
+
+    @Benchmark
+    public byte[] encodeAndRenderPng() {
+        return QrImages.png(QrCode.encodeText(URI, QrCode.Ecc.M), 6, 4);
+    }
+
+    @Benchmark
+    public byte[] encodeAndRenderSvg() {
+        return QrImages.svg(QrCode.encodeText(URI, QrCode.Ecc.M), 4);
+    }
+
+    @Benchmark
+    public byte[] cachedPng() {
+        return cache.render(1, URI, QrImages.Format.PNG);
+    }
+}
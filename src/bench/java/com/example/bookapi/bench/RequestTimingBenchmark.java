@@ -0,0 +1,51 @@
+
+package com.example.bookapi.bench;
+
+import com.example.bookapi.web.RequestTiming;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of timing one request the way the valve, interceptor, body advice
+ * and service proxy do it: the phase marks alone, and with the
+ * {@code Server-Timing} header rendered.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestTimingBenchmark {
+
+    @Benchmark
+    public long phases() {
+        RequestTiming timing = RequestTiming.begin(System.nanoTime() - 50_000);
+        timing.markEnd(RequestTiming.Phase.DISPATCH);
+        timing.mark();
+        timing.markEnd(RequestTiming.Phase.READ);
+        boolean outermost = timing.enterService();
+        long started = System.nanoTime();
+        timing.exitService(outermost, System.nanoTime() - started);
+        timing.beginSerialization();
+        timing.endSerialization();
+        long total = timing.totalNanos();
+        timing.end();
+        return total;
+    }
+
+    @Benchmark
+    public void phasesAndHeaders(Blackhole blackhole) {
+        RequestTiming timing = RequestTiming.begin(System.nanoTime() - 50_000);
+        timing.markEnd(RequestTiming.Phase.DISPATCH);
+        boolean outermost = timing.enterService();
+        long started = System.nanoTime();
+        timing.exitService(outermost, System.nanoTime() - started);
+        timing.beginSerialization();
+        timing.endSerialization();
+        blackhole.consume(timing.headerValue());
+        timing.end();
+    }
+}
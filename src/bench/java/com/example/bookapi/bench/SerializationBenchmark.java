@@ -0,0 +1,116 @@
+
+package com.example.bookapi.bench;
+
+import com.example.bookapi.dto.ApiResponse;
+import com.example.bookapi.model.Book;
+import com.example.bookapi.web.CompressingOutputStream;
+import com.example.bookapi.web.DeflaterPool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CPU per response and bytes on the wire for an {@code ApiResponse<List<Book>>}
+ * in each supported encoding. Encoded sizes are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"100", "1000"})
+    private int books;
+
+    private ApiResponse<List<Book>> payload;
+    private ObjectMapper indentedJson;
+    private ObjectMapper json;
+    private ObjectMapper cbor;
+    private ObjectMapper smile;
+    private DeflaterPool pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Book> list = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            Book book = new Book("Title " + i, "Author " + (i % 97), "978-0-" + i, 1900 + i % 120,
+                    "Genre " + (i % 13), "A description of book number " + i + " with a few more words in it");
+            book.setId((long) i);
+            list.add(book);
+        }
+        payload = ApiResponse.success("Books retrieved successfully", list);
+
+        indentedJson = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).indentOutput(true).build();
+        json = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        cbor = Jackson2ObjectMapperBuilder.json().factory(new CBORFactory())
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        smile = Jackson2ObjectMapperBuilder.json().factory(new SmileFactory())
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+        pool = new DeflaterPool(6, 16);
+
+        System.out.printf("%n[%d books] bytes on the wire: indented json=%d, json=%d, json+gzip=%d, cbor=%d, cbor+gzip=%d, smile=%d%n",
+                books, indentedJson().length, json().length, jsonGzipPooled().length,
+                cbor().length, cborGzipPooled().length, smile().length);
+    }
+
+    @Benchmark
+    public byte[] indentedJson() throws IOException {
+        return indentedJson.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] json() throws IOException {
+        return json.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] cbor() throws IOException {
+        return cbor.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] smile() throws IOException {
+        return smile.writeValueAsBytes(payload);
+    }
+
+    @Benchmark
+    public byte[] jsonGzipPooled() throws IOException {
+        return compressPooled(json);
+    }
+
+    @Benchmark
+    public byte[] cborGzipPooled() throws IOException {
+        return compressPooled(cbor);
+    }
+
+    @Benchmark
+    public byte[] jsonGzipUnpooled() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes, 8192)) {
+            json.writeValue(gzip, payload);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] compressPooled(ObjectMapper mapper) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompressingOutputStream gzip = new CompressingOutputStream(bytes, pool, true);
+        mapper.writeValue(gzip, payload);
+        gzip.finish();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,117 @@
+
+package com.example.bookapi.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from launching {@code BookApiApplication} to its first successful
+ * request, for the default fat jar and for the production build with each
+ * optimization added in turn. Needs the artifacts of {@code mvn -Pprod clean package}
+ * in {@code target/} (or the directory named by {@code -Dstartup.dir}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final long STARTUP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * fatJar: repackaged jar, nested-jar class loading; thinJar: plain classpath;
+     * aot: plus Spring AOT initializers; aotCds: plus the AppCDS archive.
+     */
+    @Param({"fatJar", "thinJar", "aot", "aotCds"})
+    private String variant;
+
+    private Path directory;
+    private HttpClient client;
+    private Process process;
+    private int port;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        directory = Path.of(System.getProperty("startup.dir", "target")).toAbsolutePath();
+        for (String artifact : List.of("book-api-1.0.0.jar", "book-api-1.0.0-exec.jar", "book-api.jsa")) {
+            if (!Files.exists(directory.resolve(artifact))) {
+                throw new IllegalStateException(artifact + " not found in " + directory + "; run mvn -Pprod clean package first");
+            }
+        }
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+    }
+
+    @Setup(Level.Invocation)
+    public void choosePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+    }
+
+    @Benchmark
+    public int timeToFirstRequest() throws Exception {
+        process = new ProcessBuilder(command())
+                .directory(directory.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/books/stats")).build();
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT_NANOS;
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException(variant + " exited with status " + process.exitValue());
+            }
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return response.statusCode();
+                }
+            } catch (ConnectException e) {
+                // not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException(variant + " did not answer within 60s");
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+            process = null;
+        }
+    }
+
+    private List<String> command() {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        switch (variant) {
+            case "fatJar" -> command.addAll(List.of("-jar", "book-api-1.0.0-exec.jar"));
+            case "thinJar" -> command.addAll(List.of("-jar", "book-api-1.0.0.jar"));
+            case "aot" -> command.addAll(List.of("-Dspring.aot.enabled=true", "-jar", "book-api-1.0.0.jar"));
+            case "aotCds" -> command.addAll(List.of("-XX:SharedArchiveFile=book-api.jsa", "-Xlog:cds=off",
+                    "-Dspring.aot.enabled=true", "-jar", "book-api-1.0.0.jar"));
+            default -> throw new IllegalArgumentException("Unknown variant: " + variant);
+        }
+        command.add("--server.port=" + port);
+        return command;
+    }
+}
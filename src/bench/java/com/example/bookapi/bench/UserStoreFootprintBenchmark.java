@@ -0,0 +1,94 @@
+
+package com.example.bookapi.bench;
+
+import com.example.bookapi.id.IdGenerators;
+import com.example.bookapi.model.User;
+import com.example.bookapi.replication.ReplicationLog;
+import com.example.bookapi.service.UserService;
+import jakarta.validation.Validation;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap held by a large user base and the full collection pause it causes,
+ * for the previous layout (one {@link User} per entry of a map, plus two
+ * maps of boxed ids for the unique keys) and for {@link UserService}'s
+ * column store with its strings on and off the heap. The retained heap is
+ * printed once the users are loaded; the benchmark itself times
+ * {@code System.gc()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g", "-XX:MaxDirectMemorySize=2g"})
+public class UserStoreFootprintBenchmark {
+
+    @Param({"1000000"})
+    private int users;
+
+    /** objects: the map layout; columns: the column store; columnsOffHeap: with strings in direct buffers */
+    @Param({"objects", "columns", "columnsOffHeap"})
+    private String layout;
+
+    private Object store;
+
+    @Setup(Level.Trial)
+    public void load() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+
+        if (layout.equals("objects")) {
+            Map<Long, User> byId = new ConcurrentHashMap<>();
+            Map<String, Long> byEmail = new ConcurrentHashMap<>();
+            Map<String, Long> byUsername = new ConcurrentHashMap<>();
+            for (long id = 1; id <= users; id++) {
+                User user = user(id);
+                user.setId(id);
+                user.setVersion(1);
+                byId.put(id, user);
+                byEmail.put(user.getEmail(), id);
+                byUsername.put(user.getUsername(), id);
+            }
+            store = new Object[] {byId, byEmail, byUsername};
+        } else {
+            UserService service = new UserService(Validation.buildDefaultValidatorFactory().getValidator(),
+                users + 1, DataSize.ofMegabytes(1), layout.equals("columnsOffHeap"), new ReplicationLog(false, "", 0, 2, 0),
+                IdGenerators.sequential());
+            for (long id = 1; id <= users; id++) {
+                service.createUser(user(id));
+            }
+            store = service;
+        }
+
+        System.gc();
+        long retained = memory.getHeapMemoryUsage().getUsed() - before;
+        System.out.printf("%n%s: %d users retain %.1f MB of heap (%.0f bytes per user)%n",
+            layout, users, retained / 1e6, (double) retained / users);
+    }
+
+    @Benchmark
+    public Object fullGc() {
+        System.gc();
+        return store;
+    }
+
+    private static User user(long id) {
+        User user = new User("user" + id, "user" + id + "@example.com", "password-" + Long.toHexString(id * 31));
+        user.setFirstName("First" + id);
+        user.setLastName("Last" + id);
+        user.setPhoneNumber("+1555" + (1000000 + id));
+        user.setEmailVerified(id % 2 == 0);
+        user.setLastLoginAt(LocalDateTime.now());
+        return user;
+    }
+}
@@ -0,0 +1,73 @@
+
+package com.example.bookapi.load;
+
+import com.example.bookapi.service.SecretEncoding;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * New-account flow: register, set up a TOTP device, confirm it with a code
+ * and log in with username, password and a second code.
+ */
+final class AuthScenario implements Scenario {
+
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+
+    @Override
+    public String name() {
+        return "auth";
+    }
+
+    @Override
+    public CompletableFuture<?> run(Session session, long iteration) {
+        LoadDriver driver = session.driver();
+        String username = "load" + run + "x" + iteration;
+        String password = username + "-password";
+
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("username", username);
+        user.put("email", username + "@load.invalid");
+        user.put("password", password);
+        user.put("firstName", "Load");
+        user.put("lastName", "Test");
+
+        return session.send("register", driver.post("/api/auth/register", user))
+            .thenCompose(created -> session.send("setup-totp",
+                driver.post("/api/mfa/setup/totp?userId=" + created.path("id").asLong())))
+            .thenCompose(setup -> {
+                String secret = setup.path("secret").asText();
+                return session.send("verify-totp", driver.post("/api/mfa/verify?deviceId="
+                        + setup.path("deviceId").asText() + "&code=" + totp(secret)))
+                    .thenApply(verified -> secret);
+            })
+            .thenCompose(secret -> {
+                Map<String, Object> login = new LinkedHashMap<>();
+                login.put("usernameOrEmail", username);
+                login.put("password", password);
+                login.put("mfaCode", totp(secret));
+                return session.send("login", driver.post("/api/auth/login", login));
+            });
+    }
+
+    /** RFC 6238 code for the current 30 second step; the server hands out Base32 secrets. */
+    static String totp(String secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(SecretEncoding.decodeBase32(secret), "HmacSHA1"));
+            long counter = System.currentTimeMillis() / 30_000;
+            byte[] hash = mac.doFinal(ByteBuffer.allocate(8).putLong(counter).array());
+            int offset = hash[hash.length - 1] & 0x0f;
+            int binary = ((hash[offset] & 0x7f) << 24) | ((hash[offset + 1] & 0xff) << 16)
+                | ((hash[offset + 2] & 0xff) << 8) | (hash[offset + 3] & 0xff);
+            return String.format("%06d", binary % 1_000_000);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+
+package com.example.bookapi.load;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Read-only traffic: listing pages, filters, full-text queries, facets and lookups by id. */
+final class BrowseScenario implements Scenario {
+
+    static final String[] AUTHORS = {"Ada Marsh", "Ben Okafor", "Chen Li", "Dora Vance", "Emil Stroud", "Farah Nadim"};
+    static final String[] GENRES = {"Fiction", "History", "Science", "Fantasy", "Biography", "Poetry"};
+    static final String[] WORDS = {"river", "empire", "machine", "garden", "winter", "signal", "harbor", "atlas",
+        "lantern", "orchard", "glacier", "compass"};
+
+    private final int seedBooks;
+    private final List<Long> bookIds = new ArrayList<>();
+
+    BrowseScenario(int seedBooks) {
+        this.seedBooks = seedBooks;
+    }
+
+    @Override
+    public String name() {
+        return "browse";
+    }
+
+    @Override
+    public void prepare(LoadDriver driver) throws Exception {
+        for (int i = 0; i < seedBooks; i++) {
+            bookIds.add(driver.call(driver.post("/api/books", book("browse-" + i, i))).path("id").asLong());
+        }
+    }
+
+    @Override
+    public CompletableFuture<?> run(Session session, long iteration) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadDriver driver = session.driver();
+        int year = 1900 + random.nextInt(120);
+        return switch ((int) (iteration % 6)) {
+            case 0 -> session.send("list", driver.get("/api/books?sort=-createdAt&limit=20&offset="
+                + 20 * random.nextInt(5)));
+            case 1 -> session.send("filter", driver.get("/api/books?author="
+                + AUTHORS[random.nextInt(AUTHORS.length)].split(" ")[1]
+                + "&genre=" + GENRES[random.nextInt(GENRES.length)] + "&limit=50"));
+            case 2 -> session.send("year-range", driver.get("/api/books?yearFrom=" + year + "&yearTo=" + (year + 10)
+                + "&sort=publicationYear&limit=50"));
+            case 3 -> session.send("text", driver.get("/api/books/search?q="
+                + WORDS[random.nextInt(WORDS.length)] + "+" + WORDS[random.nextInt(WORDS.length)]));
+            case 4 -> session.send("facets", driver.get("/api/books?facets=true&decade=" + year + "&limit=20"));
+            default -> session.send("get", driver.get("/api/books/" + bookIds.get(random.nextInt(bookIds.size()))));
+        };
+    }
+
+    /** A synthetic book with a unique ISBN and a varied author, genre, year and text. */
+    static Map<String, Object> book(String isbn, long i) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> book = new LinkedHashMap<>();
+        book.put("title", "The " + WORDS[(int) (i % WORDS.length)] + " of " + WORDS[random.nextInt(WORDS.length)]);
+        book.put("author", AUTHORS[random.nextInt(AUTHORS.length)]);
+        book.put("isbn", isbn);
+        book.put("publicationYear", 1900 + random.nextInt(120));
+        book.put("genre", GENRES[random.nextInt(GENRES.length)]);
+        book.put("description", "A story of the " + WORDS[random.nextInt(WORDS.length)] + " and the "
+            + WORDS[random.nextInt(WORDS.length)] + ", told over " + (2 + random.nextInt(30)) + " chapters.");
+        return book;
+    }
+}
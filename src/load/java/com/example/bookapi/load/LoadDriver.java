@@ -0,0 +1,100 @@
+
+package com.example.bookapi.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/** HTTP access to the server under test, shared by every session of a run. */
+final class LoadDriver {
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    LoadDriver(HttpClient client, int port) {
+        this.client = client;
+        this.baseUrl = "http://localhost:" + port;
+    }
+
+    HttpRequest.Builder get(String path) {
+        return request(path).GET();
+    }
+
+    HttpRequest.Builder post(String path) {
+        return request(path).POST(HttpRequest.BodyPublishers.noBody());
+    }
+
+    HttpRequest.Builder post(String path, Object body) {
+        return json(path, "POST", body);
+    }
+
+    HttpRequest.Builder put(String path, Object body) {
+        return json(path, "PUT", body);
+    }
+
+    HttpRequest.Builder patch(String path, Object body) {
+        return json(path, "PATCH", body);
+    }
+
+    /** Sends outside any measurement, for seeding data; fails on a non-2xx status. */
+    JsonNode call(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        return dataOf(response);
+    }
+
+    /**
+     * Sends one step of a session. Latency is recorded from {@code dueNanos},
+     * when the request should have gone out, as well as from the actual send.
+     */
+    CompletableFuture<JsonNode> send(Recorder recorder, String step, HttpRequest.Builder request, long dueNanos) {
+        long sent = System.nanoTime();
+        return client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+            .handle((response, failure) -> {
+                long done = System.nanoTime();
+                boolean ok = failure == null && response.statusCode() / 100 == 2;
+                if (recorder != null) {
+                    recorder.record(step, dueNanos, sent, done, ok);
+                }
+                if (failure != null) {
+                    throw new CompletionException(failure);
+                }
+                try {
+                    return dataOf(response);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    private JsonNode dataOf(HttpResponse<byte[]> response) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(response.request().method() + " " + response.request().uri().getPath()
+                + " returned " + response.statusCode());
+        }
+        return mapper.readTree(response.body()).path("data");
+    }
+
+    private HttpRequest.Builder json(String path, String method, Object body) {
+        try {
+            return request(path)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30));
+    }
+}
@@ -0,0 +1,154 @@
+
+package com.example.bookapi.load;
+
+import com.example.bookapi.BookApiApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test. Starts {@code BookApiApplication} in this JVM on a
+ * random port and drives each requested scenario with an open workload:
+ * sessions arrive at a fixed rate whether or not earlier ones have finished,
+ * so a stall shows up as queueing in the latencies instead of a pause in
+ * the load. Sessions scheduled during the warm-up period are not recorded.
+ *
+ * <pre>
+ * mvn -Pload compile exec:exec -Dload.args="browse write auth --rate=200 --duration=30 --warmup=10"
+ * </pre>
+ */
+public final class LoadTest {
+
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> names = new ArrayList<>();
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("rate", "200");
+        options.put("duration", "30");
+        options.put("warmup", "10");
+        options.put("seed-books", "1000");
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                String key = arg.substring(2, arg.indexOf('='));
+                if (!options.containsKey(key)) {
+                    throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+                options.put(key, arg.substring(arg.indexOf('=') + 1));
+            } else {
+                names.add(arg);
+            }
+        }
+        if (names.isEmpty()) {
+            names = List.of("browse", "write", "auth");
+        }
+        double rate = Double.parseDouble(options.get("rate"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.get("warmup")));
+        int seedBooks = Integer.parseInt(options.get("seed-books"));
+
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String name : names) {
+            scenarios.add(switch (name) {
+                case "browse" -> new BrowseScenario(seedBooks);
+                case "write" -> new WriteScenario(seedBooks);
+                case "auth" -> new AuthScenario();
+                default -> throw new IllegalArgumentException("Unknown scenario: " + name + " (browse, write, auth)");
+            });
+        }
+
+        ConfigurableApplicationContext context = SpringApplication.run(BookApiApplication.class,
+            "--server.port=0", "--logging.level.root=WARN", "--logging.level.com.example.bookapi=WARN",
+            "--logging.level.org.springframework.web=WARN");
+        ExecutorService responses = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(responses)
+                .build();
+            LoadDriver driver = new LoadDriver(client, port);
+            for (Scenario scenario : scenarios) {
+                scenario.prepare(driver);
+                run(scenario, driver, rate, warmup, duration, System.out);
+            }
+        } finally {
+            responses.shutdownNow();
+            context.close();
+        }
+    }
+
+    static void run(Scenario scenario, LoadDriver driver, double rate, Duration warmup, Duration duration,
+                    PrintStream out) {
+        Recorder recorder = new Recorder();
+        AtomicInteger inFlight = new AtomicInteger();
+        LongAccumulator maxInFlight = new LongAccumulator(Math::max, 0);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        long maxLagNanos = 0;
+
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * intervalNanos;
+            if (scheduled >= end) {
+                break;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else if (scheduled >= measureFrom) {
+                maxLagNanos = Math.max(maxLagNanos, -wait);
+            }
+            boolean measured = scheduled >= measureFrom;
+            Session session = new Session(driver, measured ? recorder : null, scheduled);
+            maxInFlight.accumulate(inFlight.incrementAndGet());
+            CompletableFuture<?> done;
+            try {
+                done = scenario.run(session, i);
+            } catch (RuntimeException e) {
+                done = CompletableFuture.failedFuture(e);
+            }
+            done.whenComplete((result, failure) -> {
+                if (measured) {
+                    long now = System.nanoTime();
+                    recorder.record(Recorder.SESSION, scheduled, scheduled, now, failure == null);
+                }
+                inFlight.decrementAndGet();
+            });
+        }
+
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        double seconds = (System.nanoTime() - measureFrom) / 1e9;
+
+        out.printf("%nScenario %s: target %.1f sessions/s for %ds after %ds warm-up%n",
+            scenario.name(), rate, duration.toSeconds(), warmup.toSeconds());
+        out.printf("Achieved %.1f sessions/s, %.1f requests/s; %d failed sessions, %d still in flight;"
+                + " max %d in flight, scheduler lag up to %.2f ms%n",
+            recorder.count(Recorder.SESSION) / seconds, recorder.requests() / seconds,
+            recorder.errors(Recorder.SESSION), inFlight.get(), maxInFlight.get(), maxLagNanos / 1e6);
+        recorder.print(out);
+    }
+}
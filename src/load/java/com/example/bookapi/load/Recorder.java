@@ -0,0 +1,83 @@
+
+package com.example.bookapi.load;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies per scenario step. Each step keeps two histograms: the
+ * corrected one measures from when the request was due to be sent, which
+ * charges queueing behind a slow server to the response that was delayed
+ * (coordinated omission); the uncorrected one measures from when it was
+ * actually sent, i.e. the service time a closed-loop tool would report.
+ */
+final class Recorder {
+
+    static final String SESSION = "session";
+
+    private final Map<String, Step> steps = new ConcurrentHashMap<>();
+    private final List<String> order = new CopyOnWriteArrayList<>();
+
+    void record(String name, long dueNanos, long sentNanos, long doneNanos, boolean ok) {
+        Step step = steps.get(name);
+        if (step == null) {
+            step = steps.computeIfAbsent(name, key -> {
+                order.add(key);
+                return new Step();
+            });
+        }
+        step.corrected.recordNanos(doneNanos - dueNanos);
+        step.uncorrected.recordNanos(doneNanos - sentNanos);
+        if (!ok) {
+            step.errors.increment();
+        }
+    }
+
+    long count(String name) {
+        Step step = steps.get(name);
+        return step == null ? 0 : step.corrected.count();
+    }
+
+    long errors(String name) {
+        Step step = steps.get(name);
+        return step == null ? 0 : step.errors.sum();
+    }
+
+    long requests() {
+        long total = 0;
+        for (String name : order) {
+            if (!SESSION.equals(name)) {
+                total += steps.get(name).corrected.count();
+            }
+        }
+        return total;
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-16s %9s %7s %9s %9s %9s %9s %9s | %12s%n",
+            "step", "count", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "p99 svc ms");
+        for (String name : order) {
+            Step step = steps.get(name);
+            LatencyHistogram h = step.corrected;
+            out.printf("%-16s %9d %7d %9.2f %9.2f %9.2f %9.2f %9.2f | %12.2f%n",
+                name, h.count(), step.errors.sum(),
+                millis(h.percentileMicros(50)), millis(h.percentileMicros(90)),
+                millis(h.percentileMicros(99)), millis(h.percentileMicros(99.9)), millis(h.maxMicros()),
+                millis(step.uncorrected.percentileMicros(99)));
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class Step {
+        final LatencyHistogram corrected = new LatencyHistogram();
+        final LatencyHistogram uncorrected = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+    }
+}
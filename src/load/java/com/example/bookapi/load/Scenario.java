@@ -0,0 +1,17 @@
+
+package com.example.bookapi.load;
+
+import java.util.concurrent.CompletableFuture;
+
+/** A scripted client session, started once per arrival. */
+interface Scenario {
+
+    String name();
+
+    /** Runs once before the load starts, e.g. to seed data. */
+    default void prepare(LoadDriver driver) throws Exception {
+    }
+
+    /** Starts session number {@code iteration}; the future completes when its last request has. */
+    CompletableFuture<?> run(Session session, long iteration);
+}
@@ -0,0 +1,40 @@
+
+package com.example.bookapi.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.http.HttpRequest;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One scheduled arrival. The first request is due at the scheduled time;
+ * each later request is due as soon as the previous one has completed,
+ * the way a client would send it.
+ */
+final class Session {
+
+    private final LoadDriver driver;
+    private final Recorder recorder;
+    private final long scheduledNanos;
+    private volatile long dueNanos;
+
+    Session(LoadDriver driver, Recorder recorder, long scheduledNanos) {
+        this.driver = driver;
+        this.recorder = recorder;
+        this.scheduledNanos = scheduledNanos;
+        this.dueNanos = scheduledNanos;
+    }
+
+    LoadDriver driver() {
+        return driver;
+    }
+
+    long scheduledNanos() {
+        return scheduledNanos;
+    }
+
+    CompletableFuture<JsonNode> send(String step, HttpRequest.Builder request) {
+        return driver.send(recorder, step, request, dueNanos)
+            .whenComplete((data, failure) -> dueNanos = System.nanoTime());
+    }
+}
@@ -0,0 +1,49 @@
+
+package com.example.bookapi.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Write-heavy traffic: creates, partial updates and full replacements of books. */
+final class WriteScenario implements Scenario {
+
+    private final int seedBooks;
+    private final List<Long> bookIds = new ArrayList<>();
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+
+    WriteScenario(int seedBooks) {
+        this.seedBooks = seedBooks;
+    }
+
+    @Override
+    public String name() {
+        return "write";
+    }
+
+    @Override
+    public void prepare(LoadDriver driver) throws Exception {
+        for (int i = 0; i < seedBooks; i++) {
+            bookIds.add(driver.call(driver.post("/api/books", BrowseScenario.book("write-" + run + "-seed-" + i, i)))
+                .path("id").asLong());
+        }
+    }
+
+    @Override
+    public CompletableFuture<?> run(Session session, long iteration) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadDriver driver = session.driver();
+        int seed = random.nextInt(bookIds.size());
+        long id = bookIds.get(seed);
+        return switch ((int) (iteration % 10)) {
+            case 0, 1, 2 -> session.send("create",
+                driver.post("/api/books", BrowseScenario.book("write-" + run + "-" + iteration, iteration)));
+            case 3, 4 -> session.send("replace",
+                driver.put("/api/books/" + id, BrowseScenario.book("write-" + run + "-seed-" + seed, iteration)));
+            default -> session.send("patch", driver.patch("/api/books/" + id,
+                Map.of("description", "Revised edition " + iteration + ", " + random.nextInt(1000) + " pages.")));
+        };
+    }
+}
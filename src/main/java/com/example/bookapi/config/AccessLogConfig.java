@@ -0,0 +1,41 @@
+
+package com.example.bookapi.config;
+
+import com.example.bookapi.web.AccessLog;
+import com.example.bookapi.web.SampledAccessLogValve;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.Set;
+
+/** Structured, sampled access log written off the request path. */
+@Configuration
+@ConditionalOnProperty(name = "api.access-log.enabled", havingValue = "true", matchIfMissing = true)
+public class AccessLogConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public AccessLog accessLog(
+            @Value("${api.access-log.file:logs/access.log}") String file,
+            @Value("${api.access-log.buffer-size:8192}") int bufferSize,
+            @Value("${api.access-log.max-file-size:50MB}") DataSize maxFileSize,
+            @Value("${api.access-log.max-history:5}") int maxHistory,
+            @Value("${api.access-log.redacted-parameters:token,code,mfaCode,password,newPassword,secret}")
+            Set<String> redactedParameters) {
+        return new AccessLog(bufferSize, Path.of(file), maxFileSize.toBytes(), maxHistory, redactedParameters);
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> accessLogValve(
+            AccessLog accessLog,
+            @Value("${api.access-log.success-sample-rate:0.05}") double successSampleRate,
+            @Value("${api.access-log.slow-threshold-ms:500}") long slowThresholdMillis) {
+        return factory -> factory.addEngineValves(
+            new SampledAccessLogValve(accessLog, successSampleRate, slowThresholdMillis));
+    }
+}
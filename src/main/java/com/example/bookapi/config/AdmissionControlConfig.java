@@ -0,0 +1,36 @@
+
+package com.example.bookapi.config;
+
+import com.example.bookapi.web.AdmissionControlFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/** Adaptive concurrency limits and prioritized load shedding for the API. */
+@Configuration
+@ConditionalOnProperty(name = "api.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlConfig {
+
+    // Outermost application filter, so shed requests cost as little as possible
+    @Bean
+    public FilterRegistrationBean<AdmissionControlFilter> admissionControlFilter(
+            ObjectMapper objectMapper,
+            @Value("${api.admission.initial-limit:20}") int initialLimit,
+            @Value("${api.admission.min-limit:4}") int minLimit,
+            @Value("${api.admission.max-limit:60}") int maxLimit,
+            @Value("${api.admission.window-samples:50}") int windowSamples,
+            @Value("${api.admission.shed-window-ms:1000}") long shedWindowMillis,
+            @Value("${api.admission.retry-after-seconds:1}") int retryAfterSeconds) {
+        FilterRegistrationBean<AdmissionControlFilter> registration = new FilterRegistrationBean<>(
+            new AdmissionControlFilter(initialLimit, minLimit, maxLimit, windowSamples,
+                shedWindowMillis, retryAfterSeconds, objectMapper)
+        );
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 200);
+        return registration;
+    }
+}
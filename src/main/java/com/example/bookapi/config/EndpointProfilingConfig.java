@@ -0,0 +1,40 @@
+
+package com.example.bookapi.config;
+
+import com.example.bookapi.controller.AuthController;
+import com.example.bookapi.controller.BookController;
+import com.example.bookapi.controller.MfaController;
+import com.example.bookapi.controller.UserController;
+import com.example.bookapi.web.EndpointProfiler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Set;
+
+/** Per-route allocation and CPU accounting for the API controllers. */
+@Configuration
+@ConditionalOnProperty(name = "api.profiling.enabled", havingValue = "true", matchIfMissing = true)
+public class EndpointProfilingConfig implements WebMvcConfigurer {
+
+    private final EndpointProfiler profiler;
+
+    public EndpointProfilingConfig(@Value("${api.profiling.sample-every:1}") int sampleEvery) {
+        this.profiler = new EndpointProfiler(
+            Set.of(BookController.class, UserController.class, AuthController.class, MfaController.class),
+            sampleEvery);
+    }
+
+    @Bean
+    public EndpointProfiler endpointProfiler() {
+        return profiler;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(profiler).addPathPatterns("/api/**");
+    }
+}
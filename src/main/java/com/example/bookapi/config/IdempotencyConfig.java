@@ -0,0 +1,40 @@
+
+package com.example.bookapi.config;
+
+import com.example.bookapi.web.IdempotencyFilter;
+import com.example.bookapi.web.IdempotencyStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/** {@code Idempotency-Key} support for the create endpoints. */
+@Configuration
+@ConditionalOnProperty(name = "api.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyConfig {
+
+    @Bean
+    public IdempotencyStore idempotencyStore(
+            @Value("${api.idempotency.ttl:24h}") Duration ttl,
+            @Value("${api.idempotency.max-entries:10000}") int maxEntries) {
+        return new IdempotencyStore(ttl.toNanos(), maxEntries);
+    }
+
+    // Innermost filter, so stored bodies are never compressed for another client's Accept-Encoding
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyStore store, ObjectMapper objectMapper,
+            @Value("${api.idempotency.wait-timeout-ms:10000}") long waitTimeoutMillis) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+            new IdempotencyFilter(store, objectMapper, waitTimeoutMillis)
+        );
+        registration.addUrlPatterns("/api/books", "/api/auth/register");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+        return registration;
+    }
+}
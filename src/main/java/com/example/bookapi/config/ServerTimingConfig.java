@@ -0,0 +1,57 @@
+
+package com.example.bookapi.config;
+
+import com.example.bookapi.web.ServerTimingInterceptor;
+import com.example.bookapi.web.ServerTimingValve;
+import com.example.bookapi.web.ServiceTimingPostProcessor;
+import com.example.bookapi.web.TimedValidator;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Per-request phase timing, reported in a {@code Server-Timing} header and in
+ * slow request logs. {@code ServerTimingAdvice} is picked up by component
+ * scanning and does nothing while no request is being timed.
+ */
+@Configuration
+@ConditionalOnProperty(name = "api.timing.enabled", havingValue = "true", matchIfMissing = true)
+public class ServerTimingConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<Validator> validator;
+
+    public ServerTimingConfig(ObjectProvider<Validator> validator) {
+        this.validator = validator;
+    }
+
+    // Static so the post processor does not pull this configuration into early initialization
+    @Bean
+    public static ServiceTimingPostProcessor serviceTimingPostProcessor() {
+        return new ServiceTimingPostProcessor();
+    }
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> serverTimingValve(
+            @Value("${api.timing.slow-threshold-ms:500}") long slowThresholdMillis,
+            @Value("${api.timing.slow-sample-rate:0.1}") double slowSampleRate) {
+        return factory -> factory.addEngineValves(new ServerTimingValve(slowThresholdMillis, slowSampleRate));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ServerTimingInterceptor());
+    }
+
+    @Override
+    public org.springframework.validation.Validator getValidator() {
+        return new TimedValidator(new SpringValidatorAdapter(validator.getObject()));
+    }
+}
@@ -0,0 +1,313 @@
+
+package com.example.bookapi.config;
+
+import com.example.bookapi.id.IdGenerators;
+import com.example.bookapi.model.Book;
+import com.example.bookapi.model.User;
+import com.example.bookapi.query.BookQuery;
+import com.example.bookapi.replication.ReplicationLog;
+import com.example.bookapi.service.BookService;
+import com.example.bookapi.service.UserService;
+import com.example.bookapi.web.EndpointProfiler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the hot request paths through the local server before the instance
+ * reports ready, so the first real requests do not run in the interpreter.
+ * Application runners execute after the context has started and before
+ * Spring Boot publishes {@code ReadinessState.ACCEPTING_TRAFFIC}.
+ *
+ * <p>Nothing the warm-up does may be seen afterwards: not in the change log
+ * or its tombstones, not as a consumed id or an issued token, not on a
+ * replication peer. So the requests it sends over loopback HTTP, which
+ * exercise Tomcat, the filters, the message converters and the controllers,
+ * only read what the node already holds, or are rejected by validation
+ * before reaching a service. The write paths and the query engine are
+ * exercised in-process on throwaway book and user services filled with
+ * synthetic data, with their own ids and change log and replication turned
+ * off; the compiled code is the same whichever instance ran it. Rounds of
+ * both run until the JIT compiler goes quiet or the time budget runs out,
+ * and the endpoint profile is then reset so it describes real traffic only.
+ *
+ * <p>The switch is read at runtime rather than through a bean condition so
+ * the AOT-processed production build can turn warm-up on per deployment.
+ */
+@Component
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+
+    private static final String[] AUTHORS = {"Ada Marsh", "Ben Okafor", "Chen Li", "Dora Vance", "Emil Stroud"};
+    private static final String[] GENRES = {"Fiction", "History", "Science", "Fantasy", "Biography"};
+    private static final String[] WORDS = {"river", "empire", "machine", "garden", "winter", "signal", "harbor", "atlas"};
+
+    /** Iterations of the request mix each worker runs per round. */
+    private static final int ITERATIONS_PER_ROUND = 25;
+
+    /** A round is quiet when compilation took less than this share of its wall time. */
+    private static final double QUIET_COMPILATION_SHARE = 0.02;
+
+    @Value("${api.warmup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${api.warmup.time-budget-ms:30000}")
+    private long timeBudgetMs;
+
+    @Value("${api.warmup.books:200}")
+    private int bookCount;
+
+    @Value("${api.warmup.threads:2}")
+    private int threads;
+
+    @Value("${api.warmup.quiet-rounds:3}")
+    private int quietRounds;
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectProvider<EndpointProfiler> endpointProfiler;
+
+    private HttpClient client;
+    private String baseUrl;
+    private final AtomicLong requests = new AtomicLong();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            warmUp();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // A failed warm-up only costs latency; it must not keep the instance from starting
+            log.warn("Warm-up aborted", e);
+        }
+    }
+
+    private void warmUp() throws Exception {
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+        client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+        baseUrl = "http://localhost:" + context.getWebServer().getPort();
+
+        CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+        boolean canWatchCompiler = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+        long compilationAtStart = canWatchCompiler ? compiler.getTotalCompilationTime() : 0;
+
+        // Replication off, so the throwaway services write nothing any other component or node can see
+        ReplicationLog noReplication = new ReplicationLog(false, "", 0, 2, 0);
+        BookService books = new BookService(4096, 1000, validator, noReplication, IdGenerators.sequential());
+        UserService users = new UserService(validator, 16, DataSize.ofKilobytes(64), false, noReplication,
+            IdGenerators.sequential());
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i < bookCount && System.nanoTime() < deadline; i++) {
+            bookIds.add(books.createBook(syntheticBook(i)).getId());
+        }
+        Warmup warmup = new Warmup(books, users, bookIds, users.createUser(syntheticUser()).getId(), servedBookIds());
+
+        int rounds = 0;
+        boolean settled = false;
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            int quiet = 0;
+            while (!bookIds.isEmpty() && System.nanoTime() < deadline) {
+                long roundStart = System.nanoTime();
+                long compilationBefore = canWatchCompiler ? compiler.getTotalCompilationTime() : 0;
+                runRound(workers, warmup);
+                rounds++;
+                if (canWatchCompiler) {
+                    long roundMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - roundStart);
+                    long compilationMillis = compiler.getTotalCompilationTime() - compilationBefore;
+                    quiet = compilationMillis <= roundMillis * QUIET_COMPILATION_SHARE ? quiet + 1 : 0;
+                    if (quiet >= quietRounds) {
+                        settled = true;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+            endpointProfiler.ifAvailable(EndpointProfiler::reset);
+            long compilationMillis = canWatchCompiler ? compiler.getTotalCompilationTime() - compilationAtStart : -1;
+            log.info("Warm-up finished in {} ms: {} requests in {} rounds, {} ms of JIT compilation, {}",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), requests.get(), rounds,
+                compilationMillis, settled ? "compilation settled" : "time budget reached");
+        }
+    }
+
+    /** The throwaway services and the ids they hold, plus the ids of books this node serves. */
+    private record Warmup(BookService books, UserService users, List<Long> bookIds, long userId,
+                          List<Long> servedBookIds) {}
+
+    private void runRound(ExecutorService workers, Warmup warmup) throws Exception {
+        List<Future<?>> pending = new ArrayList<>();
+        for (int t = 0; t < Math.max(1, threads); t++) {
+            pending.add(workers.submit(() -> {
+                for (int i = 0; i < ITERATIONS_PER_ROUND; i++) {
+                    runRequests(warmup.servedBookIds());
+                    runServices(warmup);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : pending) {
+            future.get();
+        }
+    }
+
+    /** One pass over the listing, search, lookup and login endpoints, none of which changes anything. */
+    private void runRequests(List<Long> servedBookIds) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String author = encode(AUTHORS[random.nextInt(AUTHORS.length)].split(" ")[1]);
+        String genre = encode(GENRES[random.nextInt(GENRES.length)]);
+        String word = WORDS[random.nextInt(WORDS.length)];
+        int year = 1900 + random.nextInt(120);
+
+        get("/api/books", true);
+        get("/api/books?sort=-publicationYear&limit=20", false);
+        get("/api/books?author=" + author + "&genre=" + genre, false);
+        get("/api/books?yearFrom=" + year + "&yearTo=" + (year + 15) + "&sort=publicationYear&limit=50", false);
+        get("/api/books?q=" + word + "&limit=10&fields=id,title,author", false);
+        get("/api/books?decade=" + year + "&facets=true&limit=20", false);
+        get("/api/books/search?q=" + word + "+" + WORDS[random.nextInt(WORDS.length)], false);
+        if (!servedBookIds.isEmpty()) {
+            get("/api/books/" + servedBookIds.get(random.nextInt(servedBookIds.size())), false);
+        }
+
+        // Bound and validated like a real one, then rejected for its missing fields before any service runs
+        send(json("/api/books", Map.of("description", "warm-up")));
+        Map<String, Object> login = new LinkedHashMap<>();
+        login.put("usernameOrEmail", "warmup@warmup.invalid");
+        login.put("password", "warmup-password");
+        send(json("/api/auth/login", login));
+    }
+
+    /** The same queries plus the write paths, run on the throwaway services. */
+    private void runServices(Warmup warmup) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        BookService books = warmup.books();
+        String author = AUTHORS[random.nextInt(AUTHORS.length)].split(" ")[1];
+        String genre = GENRES[random.nextInt(GENRES.length)];
+        String word = WORDS[random.nextInt(WORDS.length)];
+        int year = 1900 + random.nextInt(120);
+
+        books.queryBooks(BookQuery.parse(null, null, null, null, null, null, "-publicationYear", 0, 20));
+        books.queryBooks(BookQuery.parse(author, genre, null, null, null, null, null, 0, null));
+        books.queryBooks(BookQuery.parse(null, null, null, year, year + 15, null, "publicationYear", 0, 50));
+        books.queryBooks(BookQuery.parse(null, null, null, null, null, word, null, 0, 10));
+        books.browseBooks(BookQuery.parse(null, null, year, null, null, null, null, 0, 20), true, 10);
+        books.searchBooks(word + " " + WORDS[random.nextInt(WORDS.length)], 10);
+        long id = warmup.bookIds().get(random.nextInt(warmup.bookIds().size()));
+        books.getBookById(id);
+        books.patchBook(id, null, Map.of("description", "A " + word + " story."));
+        books.getChangesSince(Math.max(0, books.getCurrentSequence() - 50), 100);
+
+        UserService users = warmup.users();
+        users.getUserByUsernameOrEmail("warmup");
+        users.patchUser(warmup.userId(), null, Map.of("firstName", word));
+    }
+
+    private Book syntheticBook(int i) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new Book(
+            "The " + WORDS[i % WORDS.length] + " of " + WORDS[(i / WORDS.length) % WORDS.length],
+            AUTHORS[i % AUTHORS.length],
+            "warmup-" + i,
+            1900 + random.nextInt(120),
+            GENRES[random.nextInt(GENRES.length)],
+            "A " + WORDS[random.nextInt(WORDS.length)] + " story about the "
+                + WORDS[random.nextInt(WORDS.length)] + " and the " + WORDS[random.nextInt(WORDS.length)] + ".");
+    }
+
+    private static User syntheticUser() {
+        User user = new User("warmup", "warmup@warmup.invalid", "warmup-password");
+        user.setFirstName("Warm");
+        user.setLastName("Up");
+        return user;
+    }
+
+    // Lookups by id go to books this node actually holds; the list is fetched once, before the rounds
+    private List<Long> servedBookIds() throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = send(request("/api/books?limit=100&fields=id").GET().build());
+        List<Long> ids = new ArrayList<>();
+        if (response.statusCode() == 200) {
+            for (JsonNode book : objectMapper.readTree(response.body()).path("data")) {
+                ids.add(book.path("id").asLong());
+            }
+        }
+        return ids;
+    }
+
+    private void get(String path, boolean compressed) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = request(path).GET();
+        if (compressed) {
+            builder.header("Accept-Encoding", "gzip");
+        }
+        send(builder.build());
+    }
+
+    private HttpRequest json(String path, Object body) throws IOException {
+        return request(path)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+            .build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(10));
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        requests.incrementAndGet();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
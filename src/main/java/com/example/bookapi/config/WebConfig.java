@@ -0,0 +1,74 @@
+
+package com.example.bookapi.config;
+
+import com.example.bookapi.id.IdGenerators;
+import com.example.bookapi.model.Book;
+import com.example.bookapi.web.CompressionFilter;
+import com.example.bookapi.web.DeflaterPool;
+import com.example.bookapi.web.IdsAsStringsModule;
+import com.example.bookapi.web.SparseFieldsetModule;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.util.Set;
+
+@Configuration
+public class WebConfig {
+
+    // Picked up by every Jackson mapper the application builds (JSON, CBOR, Smile)
+    @Bean
+    public Module sparseFieldsetModule() {
+        return new SparseFieldsetModule(Book.class.getPackageName());
+    }
+
+    // Decided at runtime rather than by a bean condition, which AOT would fix at build time
+    @Bean
+    public Module idsAsStringsModule(IdGenerators idGenerators) {
+        return idGenerators.getMode() == IdGenerators.Mode.SNOWFLAKE
+            ? new IdsAsStringsModule()
+            : new SimpleModule("IdsAsNumbers");
+    }
+
+    // Binary encodings share the application's Jackson settings (dates, modules, ...)
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(
+            builder.factory(new CBORFactory()).indentOutput(false).build()
+        );
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(
+            builder.factory(new SmileFactory()).indentOutput(false).build()
+        );
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "api.compression.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<CompressionFilter> compressionFilter(
+            @Value("${api.compression.level:6}") int level,
+            @Value("${api.compression.pool-size:64}") int poolSize,
+            @Value("${api.compression.min-response-size:2048}") int minResponseSize,
+            @Value("${api.compression.mime-types:application/json,application/x-ndjson,application/cbor,application/x-jackson-smile,text/plain}")
+                Set<String> mimeTypes) {
+        FilterRegistrationBean<CompressionFilter> registration = new FilterRegistrationBean<>(
+            new CompressionFilter(new DeflaterPool(level, poolSize), mimeTypes, minResponseSize)
+        );
+        registration.addUrlPatterns("/api/*");
+        // Outside the other application filters, which then see uncompressed responses
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 100);
+        return registration;
+    }
+}
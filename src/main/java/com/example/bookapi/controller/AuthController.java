@@ -3,11 +3,16 @@ package com.example.bookapi.controller;
 
 import com.example.bookapi.dto.ApiResponse;
 import com.example.bookapi.dto.AuthRequest;
+import com.example.bookapi.dto.PasswordResetRequest;
 import com.example.bookapi.model.User;
 import com.example.bookapi.service.MfaService;
+import com.example.bookapi.service.TokenStore;
 import com.example.bookapi.service.UserService;
 import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -21,12 +26,21 @@ import java.util.Optional;
 @CrossOrigin(origins = "*")
 public class AuthController {
     
+    private static final Logger log = LoggerFactory.getLogger(AuthController.class);
+    
     @Autowired
     private UserService userService;
     
     @Autowired
     private MfaService mfaService;
     
+    @Autowired
+    private TokenStore tokenStore;
+    
+    // Live tokens are credentials; they reach the log only on a development machine that asks for them
+    @Value("${api.tokens.log-issued:false}")
+    private boolean logIssuedTokens;
+    
     @PostMapping("/register")
     public ResponseEntity<ApiResponse<User>> register(@Valid @RequestBody User user) {
         // Check if username or email already exists
@@ -42,10 +56,11 @@ public class AuthController {
             );
         }
         
+        // The password is write-only in JSON, so it never appears in the response
         User createdUser = userService.createUser(user);
-        
-        // Don't return password in response
-        createdUser.setPassword(null);
+        String token = tokenStore.issue(TokenStore.Purpose.EMAIL_VERIFICATION, createdUser.getId());
+        // In real implementation, email the verification link instead
+        logIssued("Email verification", createdUser.getId(), token);
         
         return ResponseEntity.status(HttpStatus.CREATED).body(
             ApiResponse.success("User registered successfully", createdUser)
@@ -74,7 +89,6 @@ public class AuthController {
         }
         
         User user = userOpt.get();
-        user.setPassword(null); // Don't return password
         
         Map<String, Object> response = new HashMap<>();
         response.put("user", user);
@@ -96,11 +110,8 @@ public class AuthController {
             );
         }
         
-        // Simple verification (in real implementation, validate actual token)
-        if ("verify123".equals(token)) {
-            User user = userOpt.get();
-            user.setEmailVerified(true);
-            userService.updateUser(userId, user);
+        if (tokenStore.consume(token, TokenStore.Purpose.EMAIL_VERIFICATION, userId)) {
+            userService.verifyEmail(userId);
             
             return ResponseEntity.ok(
                 ApiResponse.success("Email verified successfully", "Email verification completed")
@@ -108,7 +119,7 @@ public class AuthController {
         }
         
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
-            ApiResponse.error("Invalid verification token")
+            ApiResponse.error("Invalid or expired verification token")
         );
     }
     
@@ -122,12 +133,30 @@ public class AuthController {
             );
         }
         
+        String token = tokenStore.issue(TokenStore.Purpose.PASSWORD_RESET, userOpt.get().getId());
         // In real implementation, send password reset email
+        logIssued("Password reset", userOpt.get().getId(), token);
         return ResponseEntity.ok(
             ApiResponse.success("Password reset email sent", "Check your email for reset instructions")
         );
     }
     
+    // The token and password come in the body, which unlike the query string is never logged
+    @PostMapping("/reset-password/confirm")
+    public ResponseEntity<ApiResponse<String>> confirmPasswordReset(@Valid @RequestBody PasswordResetRequest request) {
+        Optional<Long> userId = tokenStore.consume(request.getToken(), TokenStore.Purpose.PASSWORD_RESET);
+        if (userId.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                ApiResponse.error("Invalid or expired reset token")
+            );
+        }
+        
+        userService.changePassword(userId.get(), request.getNewPassword());
+        return ResponseEntity.ok(
+            ApiResponse.success("Password changed successfully", "Log in with the new password")
+        );
+    }
+    
     @GetMapping("/me")
     public ResponseEntity<ApiResponse<User>> getCurrentUser(@RequestParam Long userId) {
         Optional<User> userOpt = userService.getUserById(userId);
@@ -138,11 +167,16 @@ public class AuthController {
             );
         }
         
-        User user = userOpt.get();
-        user.setPassword(null); // Don't return password
-        
         return ResponseEntity.ok(
-            ApiResponse.success("User profile retrieved", user)
+            ApiResponse.success("User profile retrieved", userOpt.get())
         );
     }
+    
+    private void logIssued(String purpose, Long userId, String token) {
+        if (logIssuedTokens) {
+            log.debug("{} token for user {}: {}", purpose, userId, token);
+        } else {
+            log.info("{} token issued for user {}", purpose, userId);
+        }
+    }
 }
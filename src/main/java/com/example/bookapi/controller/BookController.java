@@ -2,42 +2,191 @@
 package com.example.bookapi.controller;
 
 import com.example.bookapi.dto.ApiResponse;
+import com.example.bookapi.dto.BatchGetResult;
+import com.example.bookapi.dto.BookBrowseResult;
+import com.example.bookapi.dto.BookDelta;
+import com.example.bookapi.dto.BookSearchHit;
+import com.example.bookapi.dto.BookQueryPlan;
 import com.example.bookapi.model.Book;
+import com.example.bookapi.query.BookQuery;
+import com.example.bookapi.service.BookChangeFeed;
 import com.example.bookapi.service.BookService;
+import com.example.bookapi.web.BatchIds;
+import com.example.bookapi.web.ETags;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/books")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = {"X-Books-Sequence", HttpHeaders.ETAG})
 public class BookController {
     
     @Autowired
     private BookService bookService;
     
+    @Autowired
+    private BookChangeFeed bookChangeFeed;
+    
+    @Value("${api.batch.max-ids:100}")
+    private int maxBatchIds;
+    
+    // Each selects its own handler below, which excludes the others; a request naming two of them lands in the listing.
+    // Only explain=true asks for a plan, so explain=false is an ordinary listing.
+    private static final List<String> MODE_PARAMETERS = List.of("ids", "explain", "facets", "sinceSequence");
+    
     @GetMapping
     public ResponseEntity<ApiResponse<List<Book>>> getAllBooks(
+            @RequestParam Map<String, String> parameters,
             @RequestParam(required = false) String author,
-            @RequestParam(required = false) String genre) {
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) Integer decade,
+            @RequestParam(required = false) Integer yearFrom,
+            @RequestParam(required = false) Integer yearTo,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit) {
         
-        List<Book> books;
+        List<String> modes = MODE_PARAMETERS.stream()
+            .filter(name -> name.equals("explain") ? "true".equals(parameters.get(name)) : parameters.containsKey(name))
+            .toList();
+        if (!modes.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                ApiResponse.error("Use only one of ids, explain, facets and sinceSequence, got " + String.join(", ", modes))
+            );
+        }
         
-        if (author != null && !author.trim().isEmpty()) {
-            books = bookService.getBooksByAuthor(author);
-        } else if (genre != null && !genre.trim().isEmpty()) {
-            books = bookService.getBooksByGenre(genre);
-        } else {
-            books = bookService.getAllBooks();
+        // The change-log position of this listing, to start delta sync from; unrelated to the per-book ETag version
+        long sequence = bookService.getCurrentSequence();
+        BookQuery query;
+        try {
+            query = BookQuery.parse(author, genre, decade, yearFrom, yearTo, q, sort, offset, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        }
+        List<Book> books = bookService.queryBooks(query);
+        
+        return ResponseEntity.ok()
+            .header("X-Books-Sequence", Long.toString(sequence))
+            .body(ApiResponse.success("Books retrieved successfully", books));
+    }
+    
+    @GetMapping(params = {"ids", "explain!=true", "!facets", "!sinceSequence"})
+    public ResponseEntity<ApiResponse<BatchGetResult<Book>>> getBooksByIds(@RequestParam String ids) {
+        List<Long> idList;
+        try {
+            idList = BatchIds.parse(ids, maxBatchIds);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        }
+        
+        return ResponseEntity.ok(
+            ApiResponse.success("Books retrieved successfully",
+                BatchGetResult.of(idList, bookService.getBooksByIds(idList)))
+        );
+    }
+    
+    @GetMapping(params = {"explain=true", "!ids", "!facets", "!sinceSequence"})
+    public ResponseEntity<ApiResponse<BookQueryPlan>> explainBooks(
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) Integer decade,
+            @RequestParam(required = false) Integer yearFrom,
+            @RequestParam(required = false) Integer yearTo,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String sort,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit) {
+        
+        BookQuery query;
+        try {
+            query = BookQuery.parse(author, genre, decade, yearFrom, yearTo, q, sort, offset, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        }
+        return ResponseEntity.ok(
+            ApiResponse.success("Query plan", bookService.explainBooks(query))
+        );
+    }
+    
+    @GetMapping(params = {"facets", "!ids", "explain!=true", "!sinceSequence"})
+    public ResponseEntity<ApiResponse<BookBrowseResult>> browseBooks(
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) Integer decade,
+            @RequestParam(required = false) Integer yearFrom,
+            @RequestParam(required = false) Integer yearTo,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String sort,
+            @RequestParam boolean facets,
+            @RequestParam(defaultValue = "10") int facetLimit,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "50") int limit) {
+        
+        if (facetLimit < 1 || offset < 0 || limit < 0 || limit > 1000) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                ApiResponse.error("facetLimit must be >= 1, offset >= 0 and limit between 0 and 1000")
+            );
         }
         
+        BookQuery query;
+        try {
+            query = BookQuery.parse(author, genre, decade, yearFrom, yearTo, q, sort, offset, null);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        }
+        // A limit of 0 asks for the facets alone, which the listing parser does not allow
+        BookBrowseResult result = bookService.browseBooks(
+            new BookQuery(query.getPredicate(), query.getSort(), offset, limit), facets, facetLimit);
         return ResponseEntity.ok(
-            ApiResponse.success("Books retrieved successfully", books)
+            ApiResponse.success("Books retrieved successfully", result)
+        );
+    }
+    
+    @GetMapping(params = {"sinceSequence", "!ids", "explain!=true", "!facets"})
+    public ResponseEntity<ApiResponse<BookDelta>> getBookChangesSince(
+            @RequestParam long sinceSequence,
+            @RequestParam(defaultValue = "1000") int limit) {
+        
+        if (sinceSequence < 0 || limit < 1 || limit > 10000) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                ApiResponse.error("sinceSequence must be >= 0 and limit between 1 and 10000")
+            );
+        }
+        
+        BookDelta delta = bookService.getChangesSince(sinceSequence, limit);
+        String message = delta.isFullResyncRequired()
+            ? "Sequence no longer available, reload the full list"
+            : "Book changes retrieved successfully";
+        
+        return ResponseEntity.ok(ApiResponse.success(message, delta));
+    }
+    
+    @GetMapping("/search")
+    public ResponseEntity<ApiResponse<List<BookSearchHit>>> searchBooks(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+        
+        if (q.trim().isEmpty() || limit < 1 || limit > 100) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                ApiResponse.error("q must not be empty and limit must be between 1 and 100")
+            );
+        }
+        
+        List<BookSearchHit> hits = bookService.searchBooks(q, limit);
+        return ResponseEntity.ok(
+            ApiResponse.success("Search completed", hits)
         );
     }
     
@@ -46,9 +195,9 @@ public class BookController {
         Optional<Book> book = bookService.getBookById(id);
         
         if (book.isPresent()) {
-            return ResponseEntity.ok(
-                ApiResponse.success("Book found", book.get())
-            );
+            return ResponseEntity.ok()
+                .eTag(ETags.of(book.get().getVersion()))
+                .body(ApiResponse.success("Book found", book.get()));
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
                 ApiResponse.error("Book not found with id: " + id)
@@ -73,15 +222,40 @@ public class BookController {
     
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<Book>> updateBook(
-            @PathVariable Long id, 
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody Book book) {
         
-        Optional<Book> updatedBook = bookService.updateBook(id, book);
+        Optional<Book> updatedBook = bookService.updateBook(id, ETags.expectedVersion(ifMatch), book);
         
         if (updatedBook.isPresent()) {
-            return ResponseEntity.ok(
-                ApiResponse.success("Book updated successfully", updatedBook.get())
+            return ResponseEntity.ok()
+                .eTag(ETags.of(updatedBook.get().getVersion()))
+                .body(ApiResponse.success("Book updated successfully", updatedBook.get()));
+        } else {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                ApiResponse.error("Book not found with id: " + id)
             );
+        }
+    }
+    
+    @PatchMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
+    public ResponseEntity<ApiResponse<Book>> patchBook(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Map<String, Object> changes) {
+        
+        Optional<Book> patchedBook;
+        try {
+            patchedBook = bookService.patchBook(id, ETags.expectedVersion(ifMatch), changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        }
+        
+        if (patchedBook.isPresent()) {
+            return ResponseEntity.ok()
+                .eTag(ETags.of(patchedBook.get().getVersion()))
+                .body(ApiResponse.success("Book updated successfully", patchedBook.get()));
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
                 ApiResponse.error("Book not found with id: " + id)
@@ -90,8 +264,10 @@ public class BookController {
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<ApiResponse<Void>> deleteBook(@PathVariable Long id) {
-        boolean deleted = bookService.deleteBook(id);
+    public ResponseEntity<ApiResponse<Void>> deleteBook(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        boolean deleted = bookService.deleteBook(id, ETags.expectedVersion(ifMatch));
         
         if (deleted) {
             return ResponseEntity.ok(
@@ -111,4 +287,17 @@ public class BookController {
             ApiResponse.success("Total books count", totalBooks)
         );
     }
+    
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = bookChangeFeed.subscribe(lastEventId);
+        
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
 }
@@ -0,0 +1,63 @@
+package com.example.bookapi.controller;
+
+import com.example.bookapi.dto.ApiResponse;
+import com.example.bookapi.dto.EndpointProfile;
+import com.example.bookapi.web.EndpointProfiler;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+/** Allocation and CPU per request by route; only answers requests from the local host. */
+@RestController
+@RequestMapping("/api/internal/endpoints")
+@ConditionalOnProperty(name = "api.profiling.enabled", havingValue = "true", matchIfMissing = true)
+public class EndpointProfileController {
+    
+    @Autowired
+    private EndpointProfiler endpointProfiler;
+    
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<EndpointProfile>>> getProfiles(HttpServletRequest request) {
+        if (!isLocal(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(
+                ApiResponse.error("Endpoint profiles are only available from localhost")
+            );
+        }
+        
+        String message = "Per-request allocation (bytes) and CPU time (microseconds) by route";
+        if (!endpointProfiler.isMeasuringAllocation()) {
+            message += "; thread allocation measurement is not available in this JVM";
+        }
+        if (!endpointProfiler.isMeasuringCpu()) {
+            message += "; thread CPU time measurement is not available in this JVM";
+        }
+        return ResponseEntity.ok(ApiResponse.success(message, endpointProfiler.snapshot()));
+    }
+    
+    @DeleteMapping
+    public ResponseEntity<ApiResponse<Void>> resetProfiles(HttpServletRequest request) {
+        if (!isLocal(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(
+                ApiResponse.error("Endpoint profiles are only available from localhost")
+            );
+        }
+        
+        endpointProfiler.reset();
+        return ResponseEntity.ok(ApiResponse.success("Endpoint profiles reset", null));
+    }
+    
+    private static boolean isLocal(HttpServletRequest request) {
+        try {
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -2,18 +2,31 @@
 package com.example.bookapi.controller;
 
 import com.example.bookapi.dto.ApiResponse;
+import com.example.bookapi.dto.MfaProvisionRequest;
 import com.example.bookapi.dto.MfaSetupResponse;
 import com.example.bookapi.model.MfaDevice;
 import com.example.bookapi.model.User;
+import com.example.bookapi.qr.QrImages;
+import com.example.bookapi.service.MfaProvisioner;
 import com.example.bookapi.service.MfaService;
+import com.example.bookapi.service.QrCodeService;
 import com.example.bookapi.service.UserService;
+import com.example.bookapi.web.BatchIds;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -27,6 +40,15 @@ public class MfaController {
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private MfaProvisioner mfaProvisioner;
+    
+    @Autowired
+    private QrCodeService qrCodeService;
+    
+    @Value("${api.mfa.provision.max-users:100000}")
+    private int maxProvisionUsers;
+    
     @PostMapping("/setup/totp")
     public ResponseEntity<ApiResponse<MfaSetupResponse>> setupTotp(
             @RequestParam Long userId,
@@ -62,6 +84,74 @@ public class MfaController {
         );
     }
     
+    /**
+     * The provisioning QR code of a device as a PNG or SVG image. It holds the
+     * secret, so it is only served until the device is verified and is never
+     * cached by clients.
+     */
+    @GetMapping("/devices/{deviceId}/qr")
+    public ResponseEntity<?> getQrCode(
+            @PathVariable Long deviceId,
+            @RequestParam Long userId,
+            @RequestParam(defaultValue = "png") String format) {
+        
+        QrImages.Format imageFormat;
+        try {
+            imageFormat = QrImages.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(
+                ApiResponse.error("Unsupported format: " + format + " (use png or svg)")
+            );
+        }
+        
+        Optional<MfaDevice> deviceOpt = mfaService.getDevice(deviceId);
+        Optional<User> userOpt = userService.getUserById(userId);
+        if (deviceOpt.isEmpty() || userOpt.isEmpty() || !deviceOpt.get().getUserId().equals(userId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                ApiResponse.error("Device not found or unauthorized")
+            );
+        }
+        
+        MfaDevice device = deviceOpt.get();
+        if (device.isVerified() || device.getSecret() == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(
+                ApiResponse.error("QR code is only available while the device is being set up")
+            );
+        }
+        
+        String qrCodeUrl = mfaService.generateQrCodeUrl(device.getSecret(), userOpt.get().getEmail(), "BookAPI");
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(imageFormat.getMediaType()))
+            .cacheControl(CacheControl.noStore())
+            .body(qrCodeService.render(deviceId, qrCodeUrl, imageFormat));
+    }
+    
+    /**
+     * Sets up a TOTP device for each user in the request and streams one
+     * NDJSON line per user back as the batches complete. The lines are
+     * written on this thread rather than from an async body so that the
+     * response filters see the stream end.
+     */
+    @PostMapping("/provision")
+    public ResponseEntity<ApiResponse<Void>> provisionTotp(
+            @Valid @RequestBody MfaProvisionRequest request,
+            HttpServletResponse response) throws IOException {
+        
+        List<Long> userIds;
+        try {
+            userIds = BatchIds.distinct(request.getUserIds(), maxProvisionUsers);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        }
+        String deviceName = request.getDeviceName() != null && !request.getDeviceName().isBlank()
+            ? request.getDeviceName() : "Authenticator App";
+        
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        mfaProvisioner.provision(userIds, deviceName, response.getOutputStream());
+        return null;
+    }
+    
     @PostMapping("/verify")
     public ResponseEntity<ApiResponse<String>> verifyMfaSetup(
             @RequestParam Long deviceId,
@@ -153,9 +243,7 @@ public class MfaController {
             );
         }
         
-        List<String> newBackupCodes = mfaService.generateBackupCodes(10);
-        MfaDevice device = deviceOpt.get();
-        device.setBackupCodes(String.join(",", newBackupCodes));
+        List<String> newBackupCodes = mfaService.regenerateBackupCodes(deviceOpt.get(), 10);
         
         return ResponseEntity.ok(
             ApiResponse.success("Backup codes regenerated", newBackupCodes)
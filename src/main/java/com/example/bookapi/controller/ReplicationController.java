@@ -0,0 +1,45 @@
+
+package com.example.bookapi.controller;
+
+import com.example.bookapi.dto.ApiResponse;
+import com.example.bookapi.dto.ReplicationStatus;
+import com.example.bookapi.replication.ReplicationService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/** Replication log position, peer lag and applied sequences; only answers requests from the local host. */
+@RestController
+@RequestMapping("/api/internal/replication")
+@ConditionalOnProperty(name = "api.replication.enabled", havingValue = "true")
+public class ReplicationController {
+    
+    @Autowired
+    private ReplicationService replicationService;
+    
+    @GetMapping
+    public ResponseEntity<ApiResponse<ReplicationStatus>> getStatus(HttpServletRequest request) {
+        if (!isLocal(request)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(
+                ApiResponse.error("Replication status is only available from localhost")
+            );
+        }
+        return ResponseEntity.ok(ApiResponse.success("Replication status", replicationService.getStatus()));
+    }
+    
+    private static boolean isLocal(HttpServletRequest request) {
+        try {
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
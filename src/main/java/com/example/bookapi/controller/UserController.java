@@ -2,48 +2,69 @@
 package com.example.bookapi.controller;
 
 import com.example.bookapi.dto.ApiResponse;
+import com.example.bookapi.dto.BatchGetRequest;
+import com.example.bookapi.dto.BatchGetResult;
 import com.example.bookapi.model.User;
 import com.example.bookapi.service.UserService;
+import com.example.bookapi.web.BatchIds;
+import com.example.bookapi.web.ETags;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/users")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ETAG)
 public class UserController {
     
     @Autowired
     private UserService userService;
     
+    @Value("${api.batch.max-ids:100}")
+    private int maxBatchIds;
+    
+    // Passwords are write-only in JSON, so users can be returned as stored
     @GetMapping
     public ResponseEntity<ApiResponse<List<User>>> getAllUsers() {
         List<User> users = userService.getAllUsers();
         
-        // Don't return passwords
-        users.forEach(user -> user.setPassword(null));
-        
         return ResponseEntity.ok(
             ApiResponse.success("Users retrieved successfully", users)
         );
     }
     
+    @PostMapping("/batch-get")
+    public ResponseEntity<ApiResponse<BatchGetResult<User>>> getUsersByIds(@Valid @RequestBody BatchGetRequest request) {
+        List<Long> ids;
+        try {
+            ids = BatchIds.distinct(request.getIds(), maxBatchIds);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        }
+        
+        return ResponseEntity.ok(
+            ApiResponse.success("Users retrieved successfully",
+                BatchGetResult.of(ids, userService.getUsersByIds(ids)))
+        );
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<ApiResponse<User>> getUserById(@PathVariable Long id) {
         Optional<User> user = userService.getUserById(id);
         
         if (user.isPresent()) {
-            User userData = user.get();
-            userData.setPassword(null); // Don't return password
-            
-            return ResponseEntity.ok(
-                ApiResponse.success("User found", userData)
-            );
+            return ResponseEntity.ok()
+                .eTag(ETags.of(user.get().getVersion()))
+                .body(ApiResponse.success("User found", user.get()));
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
                 ApiResponse.error("User not found with id: " + id)
@@ -53,18 +74,40 @@ public class UserController {
     
     @PutMapping("/{id}")
     public ResponseEntity<ApiResponse<User>> updateUser(
-            @PathVariable Long id, 
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody User user) {
         
-        Optional<User> updatedUser = userService.updateUser(id, user);
+        Optional<User> updatedUser = userService.updateUser(id, ETags.expectedVersion(ifMatch), user);
         
         if (updatedUser.isPresent()) {
-            User userData = updatedUser.get();
-            userData.setPassword(null); // Don't return password
-            
-            return ResponseEntity.ok(
-                ApiResponse.success("User updated successfully", userData)
+            return ResponseEntity.ok()
+                .eTag(ETags.of(updatedUser.get().getVersion()))
+                .body(ApiResponse.success("User updated successfully", updatedUser.get()));
+        } else {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
+                ApiResponse.error("User not found with id: " + id)
             );
+        }
+    }
+    
+    @PatchMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
+    public ResponseEntity<ApiResponse<User>> patchUser(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody Map<String, Object> changes) {
+        
+        Optional<User> patchedUser;
+        try {
+            patchedUser = userService.patchUser(id, ETags.expectedVersion(ifMatch), changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        }
+        
+        if (patchedUser.isPresent()) {
+            return ResponseEntity.ok()
+                .eTag(ETags.of(patchedUser.get().getVersion()))
+                .body(ApiResponse.success("User updated successfully", patchedUser.get()));
         } else {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(
                 ApiResponse.error("User not found with id: " + id)
@@ -73,8 +116,10 @@ public class UserController {
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<ApiResponse<Void>> deleteUser(@PathVariable Long id) {
-        boolean deleted = userService.deleteUser(id);
+    public ResponseEntity<ApiResponse<Void>> deleteUser(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        boolean deleted = userService.deleteUser(id, ETags.expectedVersion(ifMatch));
         
         if (deleted) {
             return ResponseEntity.ok(
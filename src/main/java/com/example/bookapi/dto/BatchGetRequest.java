@@ -0,0 +1,20 @@
+package com.example.bookapi.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import java.util.List;
+
+public class BatchGetRequest {
+    @NotEmpty(message = "At least one id is required")
+    private List<@NotNull(message = "Ids must not be null") Long> ids;
+
+    public BatchGetRequest() {}
+
+    public BatchGetRequest(List<Long> ids) {
+        this.ids = ids;
+    }
+
+    // Getters and Setters
+    public List<Long> getIds() { return ids; }
+    public void setIds(List<Long> ids) { this.ids = ids; }
+}
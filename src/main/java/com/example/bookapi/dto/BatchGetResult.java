@@ -0,0 +1,71 @@
+package com.example.bookapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The records for a list of ids, one item per distinct id in the order
+ * asked for; ids without a record get an item with {@code found: false}.
+ */
+public class BatchGetResult<T> {
+    private int requested;
+    private int found;
+    private List<Item<T>> items;
+
+    public BatchGetResult() {}
+
+    public BatchGetResult(int requested, int found, List<Item<T>> items) {
+        this.requested = requested;
+        this.found = found;
+        this.items = items;
+    }
+
+    /** @param values the record for each id, {@code null} where there is none */
+    public static <T> BatchGetResult<T> of(List<Long> ids, List<T> values) {
+        List<Item<T>> items = new ArrayList<>(ids.size());
+        int found = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            T value = values.get(i);
+            items.add(new Item<>(ids.get(i), value != null, value));
+            if (value != null) {
+                found++;
+            }
+        }
+        return new BatchGetResult<>(ids.size(), found, items);
+    }
+
+    // Getters and Setters
+    public int getRequested() { return requested; }
+    public void setRequested(int requested) { this.requested = requested; }
+
+    public int getFound() { return found; }
+    public void setFound(int found) { this.found = found; }
+
+    public List<Item<T>> getItems() { return items; }
+    public void setItems(List<Item<T>> items) { this.items = items; }
+
+    public static class Item<T> {
+        private Long id;
+        private boolean found;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private T data;
+
+        public Item() {}
+
+        public Item(Long id, boolean found, T data) {
+            this.id = id;
+            this.found = found;
+            this.data = data;
+        }
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+
+        public boolean isFound() { return found; }
+        public void setFound(boolean found) { this.found = found; }
+
+        public T getData() { return data; }
+        public void setData(T data) { this.data = data; }
+    }
+}
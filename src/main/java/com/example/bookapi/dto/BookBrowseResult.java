@@ -0,0 +1,30 @@
+
+package com.example.bookapi.dto;
+
+import com.example.bookapi.model.Book;
+import java.util.List;
+import java.util.Map;
+
+public class BookBrowseResult {
+    private List<Book> books;
+    private int total;
+    private Map<String, Map<String, Integer>> facets;
+
+    public BookBrowseResult() {}
+
+    public BookBrowseResult(List<Book> books, int total, Map<String, Map<String, Integer>> facets) {
+        this.books = books;
+        this.total = total;
+        this.facets = facets;
+    }
+
+    // Getters and Setters
+    public List<Book> getBooks() { return books; }
+    public void setBooks(List<Book> books) { this.books = books; }
+
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+
+    public Map<String, Map<String, Integer>> getFacets() { return facets; }
+    public void setFacets(Map<String, Map<String, Integer>> facets) { this.facets = facets; }
+}
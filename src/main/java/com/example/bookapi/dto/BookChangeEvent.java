@@ -0,0 +1,44 @@
+
+package com.example.bookapi.dto;
+
+import com.example.bookapi.model.Book;
+import java.time.LocalDateTime;
+
+public class BookChangeEvent {
+
+    public enum Type { CREATED, UPDATED, DELETED }
+
+    private long sequence;
+    private Type type;
+    private Long bookId;
+    private Book book; // null for DELETED
+    private LocalDateTime timestamp;
+
+    public BookChangeEvent() {
+        this.timestamp = LocalDateTime.now();
+    }
+
+    public BookChangeEvent(long sequence, Type type, Long bookId, Book book) {
+        this();
+        this.sequence = sequence;
+        this.type = type;
+        this.bookId = bookId;
+        this.book = book;
+    }
+
+    // Getters and Setters
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+
+    public Type getType() { return type; }
+    public void setType(Type type) { this.type = type; }
+
+    public Long getBookId() { return bookId; }
+    public void setBookId(Long bookId) { this.bookId = bookId; }
+
+    public Book getBook() { return book; }
+    public void setBook(Book book) { this.book = book; }
+
+    public LocalDateTime getTimestamp() { return timestamp; }
+    public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+}
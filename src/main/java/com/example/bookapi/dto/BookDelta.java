@@ -0,0 +1,72 @@
+
+package com.example.bookapi.dto;
+
+import com.example.bookapi.model.Book;
+import java.util.List;
+
+/**
+ * Book changes between two change-log sequences. These are positions in the
+ * change log shared by the whole store, the same as the ids of the SSE feed,
+ * and are unrelated to the per-book {@code version} used in ETags.
+ */
+public class BookDelta {
+    private long sinceSequence;
+    private long sequence;
+    private boolean hasMore;
+    private boolean fullResyncRequired;
+    private List<Book> books;
+    private List<Tombstone> deleted;
+
+    public BookDelta() {}
+
+    public BookDelta(long sinceSequence, long sequence, boolean hasMore, boolean fullResyncRequired,
+                     List<Book> books, List<Tombstone> deleted) {
+        this.sinceSequence = sinceSequence;
+        this.sequence = sequence;
+        this.hasMore = hasMore;
+        this.fullResyncRequired = fullResyncRequired;
+        this.books = books;
+        this.deleted = deleted;
+    }
+
+    public static BookDelta resyncRequired(long sinceSequence, long sequence) {
+        return new BookDelta(sinceSequence, sequence, false, true, List.of(), List.of());
+    }
+
+    // Getters and Setters
+    public long getSinceSequence() { return sinceSequence; }
+    public void setSinceSequence(long sinceSequence) { this.sinceSequence = sinceSequence; }
+
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+
+    public boolean isFullResyncRequired() { return fullResyncRequired; }
+    public void setFullResyncRequired(boolean fullResyncRequired) { this.fullResyncRequired = fullResyncRequired; }
+
+    public List<Book> getBooks() { return books; }
+    public void setBooks(List<Book> books) { this.books = books; }
+
+    public List<Tombstone> getDeleted() { return deleted; }
+    public void setDeleted(List<Tombstone> deleted) { this.deleted = deleted; }
+
+    public static class Tombstone {
+        private Long id;
+        private long sequence;
+
+        public Tombstone() {}
+
+        public Tombstone(Long id, long sequence) {
+            this.id = id;
+            this.sequence = sequence;
+        }
+
+        public Long getId() { return id; }
+        public void setId(Long id) { this.id = id; }
+
+        public long getSequence() { return sequence; }
+        public void setSequence(long sequence) { this.sequence = sequence; }
+    }
+}
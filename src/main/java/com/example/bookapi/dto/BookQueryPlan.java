@@ -0,0 +1,88 @@
+
+package com.example.bookapi.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/** How a book listing query was executed, with the planner's estimates next to the actual counts. */
+public class BookQueryPlan {
+    private String filter;
+    private Map<String, Integer> predicateEstimates;
+    private String access;
+    private List<String> residual;
+    private String order;
+    private long estimatedDriverRows;
+    private long actualDriverRows;
+    private long estimatedRows;
+    private long actualRows;
+    private double estimatedCost;
+    private boolean stoppedEarly;
+    private long executionMicros;
+    private List<Candidate> candidates;
+
+    public BookQueryPlan() {}
+
+    // Getters and Setters
+    public String getFilter() { return filter; }
+    public void setFilter(String filter) { this.filter = filter; }
+
+    public Map<String, Integer> getPredicateEstimates() { return predicateEstimates; }
+    public void setPredicateEstimates(Map<String, Integer> predicateEstimates) { this.predicateEstimates = predicateEstimates; }
+
+    public String getAccess() { return access; }
+    public void setAccess(String access) { this.access = access; }
+
+    public List<String> getResidual() { return residual; }
+    public void setResidual(List<String> residual) { this.residual = residual; }
+
+    public String getOrder() { return order; }
+    public void setOrder(String order) { this.order = order; }
+
+    public long getEstimatedDriverRows() { return estimatedDriverRows; }
+    public void setEstimatedDriverRows(long estimatedDriverRows) { this.estimatedDriverRows = estimatedDriverRows; }
+
+    public long getActualDriverRows() { return actualDriverRows; }
+    public void setActualDriverRows(long actualDriverRows) { this.actualDriverRows = actualDriverRows; }
+
+    public long getEstimatedRows() { return estimatedRows; }
+    public void setEstimatedRows(long estimatedRows) { this.estimatedRows = estimatedRows; }
+
+    public long getActualRows() { return actualRows; }
+    public void setActualRows(long actualRows) { this.actualRows = actualRows; }
+
+    public double getEstimatedCost() { return estimatedCost; }
+    public void setEstimatedCost(double estimatedCost) { this.estimatedCost = estimatedCost; }
+
+    public boolean isStoppedEarly() { return stoppedEarly; }
+    public void setStoppedEarly(boolean stoppedEarly) { this.stoppedEarly = stoppedEarly; }
+
+    public long getExecutionMicros() { return executionMicros; }
+    public void setExecutionMicros(long executionMicros) { this.executionMicros = executionMicros; }
+
+    public List<Candidate> getCandidates() { return candidates; }
+    public void setCandidates(List<Candidate> candidates) { this.candidates = candidates; }
+
+    /** An access path the planner costed. */
+    public static class Candidate {
+        private String access;
+        private long estimatedDriverRows;
+        private double estimatedCost;
+
+        public Candidate() {}
+
+        public Candidate(String access, long estimatedDriverRows, double estimatedCost) {
+            this.access = access;
+            this.estimatedDriverRows = estimatedDriverRows;
+            this.estimatedCost = estimatedCost;
+        }
+
+        public String getAccess() { return access; }
+        public void setAccess(String access) { this.access = access; }
+
+        public long getEstimatedDriverRows() { return estimatedDriverRows; }
+        public void setEstimatedDriverRows(long estimatedDriverRows) { this.estimatedDriverRows = estimatedDriverRows; }
+
+        public double getEstimatedCost() { return estimatedCost; }
+        public void setEstimatedCost(double estimatedCost) { this.estimatedCost = estimatedCost; }
+    }
+}
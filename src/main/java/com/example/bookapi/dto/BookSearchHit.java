@@ -0,0 +1,23 @@
+
+package com.example.bookapi.dto;
+
+import com.example.bookapi.model.Book;
+
+public class BookSearchHit {
+    private Book book;
+    private float score;
+
+    public BookSearchHit() {}
+
+    public BookSearchHit(Book book, float score) {
+        this.book = book;
+        this.score = score;
+    }
+
+    // Getters and Setters
+    public Book getBook() { return book; }
+    public void setBook(Book book) { this.book = book; }
+
+    public float getScore() { return score; }
+    public void setScore(float score) { this.score = score; }
+}
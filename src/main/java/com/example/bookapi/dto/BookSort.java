@@ -0,0 +1,37 @@
+
+package com.example.bookapi.dto;
+
+import java.util.Optional;
+
+/** Server-side sort orders, each backed by an ordered index in BookService. */
+public enum BookSort {
+    PUBLICATION_YEAR_ASC("publicationYear"),
+    PUBLICATION_YEAR_DESC("-publicationYear"),
+    CREATED_AT_ASC("createdAt"),
+    CREATED_AT_DESC("-createdAt");
+
+    private final String parameter;
+
+    BookSort(String parameter) {
+        this.parameter = parameter;
+    }
+
+    public String getParameter() { return parameter; }
+
+    public boolean isDescending() {
+        return parameter.startsWith("-");
+    }
+
+    public boolean isByPublicationYear() {
+        return this == PUBLICATION_YEAR_ASC || this == PUBLICATION_YEAR_DESC;
+    }
+
+    public static Optional<BookSort> fromParameter(String value) {
+        for (BookSort sort : values()) {
+            if (sort.parameter.equals(value)) {
+                return Optional.of(sort);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,65 @@
+
+package com.example.bookapi.dto;
+
+/** Allocation and CPU time per request for one route, from the requests sampled so far. */
+public class EndpointProfile {
+    private String route;
+    private long samples;
+    private Distribution allocatedBytes;
+    private Distribution cpuMicros;
+
+    public EndpointProfile() {}
+
+    public EndpointProfile(String route, long samples, Distribution allocatedBytes, Distribution cpuMicros) {
+        this.route = route;
+        this.samples = samples;
+        this.allocatedBytes = allocatedBytes;
+        this.cpuMicros = cpuMicros;
+    }
+
+    // Getters and Setters
+    public String getRoute() { return route; }
+    public void setRoute(String route) { this.route = route; }
+
+    public long getSamples() { return samples; }
+    public void setSamples(long samples) { this.samples = samples; }
+
+    public Distribution getAllocatedBytes() { return allocatedBytes; }
+    public void setAllocatedBytes(Distribution allocatedBytes) { this.allocatedBytes = allocatedBytes; }
+
+    public Distribution getCpuMicros() { return cpuMicros; }
+    public void setCpuMicros(Distribution cpuMicros) { this.cpuMicros = cpuMicros; }
+
+    public static class Distribution {
+        private double mean;
+        private long p50;
+        private long p90;
+        private long p99;
+        private long max;
+
+        public Distribution() {}
+
+        public Distribution(double mean, long p50, long p90, long p99, long max) {
+            this.mean = mean;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public double getMean() { return mean; }
+        public void setMean(double mean) { this.mean = mean; }
+
+        public long getP50() { return p50; }
+        public void setP50(long p50) { this.p50 = p50; }
+
+        public long getP90() { return p90; }
+        public void setP90(long p90) { this.p90 = p90; }
+
+        public long getP99() { return p99; }
+        public void setP99(long p99) { this.p99 = p99; }
+
+        public long getMax() { return max; }
+        public void setMax(long max) { this.max = max; }
+    }
+}
@@ -0,0 +1,27 @@
+
+package com.example.bookapi.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import java.util.List;
+
+public class MfaProvisionRequest {
+    @NotEmpty(message = "At least one user id is required")
+    private List<@NotNull(message = "User ids must not be null") Long> userIds;
+
+    private String deviceName = "Authenticator App";
+
+    public MfaProvisionRequest() {}
+
+    public MfaProvisionRequest(List<Long> userIds, String deviceName) {
+        this.userIds = userIds;
+        this.deviceName = deviceName;
+    }
+
+    // Getters and Setters
+    public List<Long> getUserIds() { return userIds; }
+    public void setUserIds(List<Long> userIds) { this.userIds = userIds; }
+
+    public String getDeviceName() { return deviceName; }
+    public void setDeviceName(String deviceName) { this.deviceName = deviceName; }
+}
@@ -0,0 +1,46 @@
+
+package com.example.bookapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a bulk provisioning stream: the new device's setup for a
+ * user, or the reason none was created.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MfaProvisionResult {
+    private Long userId;
+    private boolean provisioned;
+    private String error;
+    private MfaSetupResponse setup;
+
+    public MfaProvisionResult() {}
+
+    public MfaProvisionResult(Long userId, boolean provisioned, String error, MfaSetupResponse setup) {
+        this.userId = userId;
+        this.provisioned = provisioned;
+        this.error = error;
+        this.setup = setup;
+    }
+
+    public static MfaProvisionResult provisioned(Long userId, MfaSetupResponse setup) {
+        return new MfaProvisionResult(userId, true, null, setup);
+    }
+
+    public static MfaProvisionResult failed(Long userId, String error) {
+        return new MfaProvisionResult(userId, false, error, null);
+    }
+
+    // Getters and Setters
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+
+    public boolean isProvisioned() { return provisioned; }
+    public void setProvisioned(boolean provisioned) { this.provisioned = provisioned; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public MfaSetupResponse getSetup() { return setup; }
+    public void setSetup(MfaSetupResponse setup) { this.setup = setup; }
+}
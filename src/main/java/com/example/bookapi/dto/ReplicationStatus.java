@@ -0,0 +1,118 @@
+
+package com.example.bookapi.dto;
+
+import java.util.List;
+
+/** This node's replication log, the peers it ships to and the nodes it receives from. */
+public class ReplicationStatus {
+    private String nodeId;
+    private long epoch;
+    private String ackMode;
+    private long lastSequence;
+    private long oldestSequence;
+    private long conflicts;
+    private List<Peer> peers;
+    private List<Origin> origins;
+
+    public ReplicationStatus() {}
+
+    public ReplicationStatus(String nodeId, long epoch, String ackMode, long lastSequence, long oldestSequence,
+                             long conflicts, List<Peer> peers, List<Origin> origins) {
+        this.nodeId = nodeId;
+        this.epoch = epoch;
+        this.ackMode = ackMode;
+        this.lastSequence = lastSequence;
+        this.oldestSequence = oldestSequence;
+        this.conflicts = conflicts;
+        this.peers = peers;
+        this.origins = origins;
+    }
+
+    // Getters and Setters
+    public String getNodeId() { return nodeId; }
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+
+    public long getEpoch() { return epoch; }
+    public void setEpoch(long epoch) { this.epoch = epoch; }
+
+    public String getAckMode() { return ackMode; }
+    public void setAckMode(String ackMode) { this.ackMode = ackMode; }
+
+    public long getLastSequence() { return lastSequence; }
+    public void setLastSequence(long lastSequence) { this.lastSequence = lastSequence; }
+
+    public long getOldestSequence() { return oldestSequence; }
+    public void setOldestSequence(long oldestSequence) { this.oldestSequence = oldestSequence; }
+
+    public long getConflicts() { return conflicts; }
+    public void setConflicts(long conflicts) { this.conflicts = conflicts; }
+
+    public List<Peer> getPeers() { return peers; }
+    public void setPeers(List<Peer> peers) { this.peers = peers; }
+
+    public List<Origin> getOrigins() { return origins; }
+    public void setOrigins(List<Origin> origins) { this.origins = origins; }
+
+    /** A node this one ships its mutations to. */
+    public static class Peer {
+        private String address;
+        private boolean connected;
+        private long ackedSequence;
+        private long lag;
+        private String lastError;
+
+        public Peer() {}
+
+        public Peer(String address, boolean connected, long ackedSequence, long lag, String lastError) {
+            this.address = address;
+            this.connected = connected;
+            this.ackedSequence = ackedSequence;
+            this.lag = lag;
+            this.lastError = lastError;
+        }
+
+        public String getAddress() { return address; }
+        public void setAddress(String address) { this.address = address; }
+
+        public boolean isConnected() { return connected; }
+        public void setConnected(boolean connected) { this.connected = connected; }
+
+        public long getAckedSequence() { return ackedSequence; }
+        public void setAckedSequence(long ackedSequence) { this.ackedSequence = ackedSequence; }
+
+        public long getLag() { return lag; }
+        public void setLag(long lag) { this.lag = lag; }
+
+        public String getLastError() { return lastError; }
+        public void setLastError(String lastError) { this.lastError = lastError; }
+    }
+
+    /** A node this one applies mutations from. */
+    public static class Origin {
+        private String nodeId;
+        private long epoch;
+        private long appliedSequence;
+        private boolean connected;
+
+        public Origin() {}
+
+        public Origin(String nodeId, long epoch, long appliedSequence, boolean connected) {
+            this.nodeId = nodeId;
+            this.epoch = epoch;
+            this.appliedSequence = appliedSequence;
+            this.connected = connected;
+        }
+
+        public String getNodeId() { return nodeId; }
+        public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+
+        public long getEpoch() { return epoch; }
+        public void setEpoch(long epoch) { this.epoch = epoch; }
+
+        public long getAppliedSequence() { return appliedSequence; }
+        public void setAppliedSequence(long appliedSequence) { this.appliedSequence = appliedSequence; }
+
+        public boolean isConnected() { return connected; }
+        public void setConnected(boolean connected) { this.connected = connected; }
+    }
+}
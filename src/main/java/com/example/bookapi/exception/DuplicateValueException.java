@@ -0,0 +1,10 @@
+
+package com.example.bookapi.exception;
+
+/** A write would give a unique field a value another record already holds. */
+public class DuplicateValueException extends RuntimeException {
+
+    public DuplicateValueException(String message) {
+        super(message);
+    }
+}
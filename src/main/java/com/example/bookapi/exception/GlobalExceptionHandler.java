@@ -2,6 +2,7 @@
 package com.example.bookapi.exception;
 
 import com.example.bookapi.dto.ApiResponse;
+import com.example.bookapi.web.ETags;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -31,6 +32,20 @@ public class GlobalExceptionHandler {
         );
     }
     
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<ApiResponse<Void>> handleVersionConflict(VersionConflictException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+            .eTag(ETags.of(ex.getCurrentVersion()))
+            .body(ApiResponse.error(ex.getMessage()));
+    }
+    
+    @ExceptionHandler(DuplicateValueException.class)
+    public ResponseEntity<ApiResponse<Void>> handleDuplicateValue(DuplicateValueException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(
+            ApiResponse.error(ex.getMessage())
+        );
+    }
+    
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiResponse<Void>> handleGenericException(Exception ex) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(
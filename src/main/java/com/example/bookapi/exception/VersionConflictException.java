@@ -0,0 +1,17 @@
+
+package com.example.bookapi.exception;
+
+/** A conditional write named a version that is no longer the stored one. */
+public class VersionConflictException extends RuntimeException {
+
+    private final long currentVersion;
+
+    public VersionConflictException(long currentVersion) {
+        super("Resource was modified; current version is " + currentVersion);
+        this.currentVersion = currentVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,115 @@
+
+package com.example.bookapi.id;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ids {@code counter << nodeBits | nodeId} from a per-node counter, so every
+ * node draws from its own residue class and ids stay dense and small. The
+ * node leases the counter in blocks of {@code leaseSize}: before any value
+ * of a block is used, the end of the block is written to the lease file,
+ * and a restarted node continues after it. Threads take 256 values of the
+ * counter at a time and hand them out without further synchronization, so
+ * only a lease, once per block, ever waits on the disk.
+ *
+ * <p>Without a lease file the counter starts over on every restart, which
+ * is only safe for a node whose ids do not outlive it.
+ */
+public final class BlockIdGenerator implements IdGenerator {
+
+    private static final int LEASE = 256;
+
+    private final int nodeBits;
+    private final long nodeId;
+    private final long leaseSize;
+    private final Path leaseFile;
+
+    private final AtomicLong counter;
+    private volatile long leasedUpTo;
+    private final ThreadLocal<long[]> leases = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * @param leaseFile where the end of the current block is kept, or {@code null} to keep it in memory only
+     * @throws IllegalArgumentException when the node id does not fit in {@code nodeBits}
+     * @throws UncheckedIOException when the lease file cannot be read
+     */
+    public BlockIdGenerator(int nodeBits, long nodeId, long leaseSize, Path leaseFile) {
+        if (nodeBits < 0 || nodeBits > 16 || nodeId < 0 || nodeId >= 1L << nodeBits) {
+            throw new IllegalArgumentException("Node id " + nodeId + " does not fit in " + nodeBits + " bits");
+        }
+        this.nodeBits = nodeBits;
+        this.nodeId = nodeId;
+        this.leaseSize = Math.max(LEASE, leaseSize);
+        this.leaseFile = leaseFile;
+        long start = readLease();
+        this.counter = new AtomicLong(start);
+        this.leasedUpTo = start;
+    }
+
+    @Override
+    public long nextId() {
+        long[] lease = leases.get();
+        long value = lease[0];
+        if (value == lease[1]) {
+            value = counter.getAndAdd(LEASE);
+            if (value + LEASE > leasedUpTo) {
+                extendLease(value + LEASE);
+            }
+            lease[1] = value + LEASE;
+        }
+        lease[0] = value + 1;
+        return value << nodeBits | nodeId;
+    }
+
+    private synchronized void extendLease(long needed) {
+        if (needed <= leasedUpTo) {
+            return;
+        }
+        long upTo = needed + leaseSize;
+        writeLease(upTo);
+        leasedUpTo = upTo;
+    }
+
+    // Counter values start at 1, so no id is below 1 << nodeBits
+    private long readLease() {
+        if (leaseFile == null || !Files.exists(leaseFile)) {
+            return 1;
+        }
+        try {
+            return Math.max(1, Long.parseLong(Files.readString(leaseFile, StandardCharsets.US_ASCII).trim()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read id lease " + leaseFile, e);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Id lease " + leaseFile + " is corrupt", e);
+        }
+    }
+
+    // Written to a temporary file that is forced to disk and then moved over the lease, so a crash leaves either lease
+    private void writeLease(long upTo) {
+        if (leaseFile == null) {
+            return;
+        }
+        try {
+            Path parent = leaseFile.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temporary = parent.resolve(leaseFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap((upTo + "\n").getBytes(StandardCharsets.US_ASCII)));
+                channel.force(true);
+            }
+            Files.move(temporary, leaseFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write id lease " + leaseFile, e);
+        }
+    }
+}
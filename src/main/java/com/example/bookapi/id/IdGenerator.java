@@ -0,0 +1,20 @@
+
+package com.example.bookapi.id;
+
+/**
+ * Source of the ids of one store. Ids are positive and never issued twice;
+ * whether they are also unique across nodes depends on the implementation
+ * {@link IdGenerators} picks for {@code api.ids.mode}.
+ */
+public interface IdGenerator {
+
+    long nextId();
+
+    /**
+     * Tells the generator about an id that was assigned elsewhere, such as
+     * fixed sample data or a record replicated from another node, so that
+     * it does not issue it again. Only generators whose ids can collide
+     * with those need to act on it.
+     */
+    default void advancePast(long id) {}
+}
@@ -0,0 +1,83 @@
+
+package com.example.bookapi.id;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Creates the id generator of each store as {@code api.ids.mode} says:
+ * <ul>
+ *   <li>{@code sequence}: 1, 2, 3, ... per store, for a single node;</li>
+ *   <li>{@code snowflake}: time-ordered ids carrying {@code api.ids.node-id},
+ *       see {@link SnowflakeIdGenerator};</li>
+ *   <li>{@code block}: dense ids from blocks of a per-node counter leased in
+ *       a file under {@code api.ids.block.lease-dir}, see {@link BlockIdGenerator}.</li>
+ * </ul>
+ * The last two give every node its own ids without asking any other node,
+ * as long as each node has a different node id.
+ */
+@Component
+public class IdGenerators {
+
+    public enum Mode { SEQUENCE, SNOWFLAKE, BLOCK }
+
+    private final Mode mode;
+    private final int nodeId;
+    private final int nodeBits;
+    private final int timestampBits;
+    private final Duration maxLead;
+    private final long leaseSize;
+    private final String leaseDir;
+
+    /** @throws IllegalArgumentException when the mode is unknown or the node id does not fit in {@code nodeBits} */
+    public IdGenerators(@Value("${api.ids.mode:sequence}") String mode,
+                        @Value("${api.ids.node-id:0}") int nodeId,
+                        @Value("${api.ids.node-bits:8}") int nodeBits,
+                        @Value("${api.ids.snowflake.timestamp-bits:40}") int timestampBits,
+                        @Value("${api.ids.snowflake.max-lead:1s}") Duration maxLead,
+                        @Value("${api.ids.block.lease-size:1048576}") long leaseSize,
+                        @Value("${api.ids.block.lease-dir:ids}") String leaseDir) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        if (this.mode != Mode.SEQUENCE && (nodeId < 0 || nodeId >= 1L << nodeBits)) {
+            throw new IllegalArgumentException("api.ids.node-id " + nodeId + " does not fit in " + nodeBits + " bits");
+        }
+        this.nodeId = nodeId;
+        this.nodeBits = nodeBits;
+        this.timestampBits = timestampBits;
+        this.maxLead = maxLead;
+        this.leaseSize = leaseSize;
+        this.leaseDir = leaseDir;
+    }
+
+    /** Single-node sequences, for stores built outside the application context. */
+    public static IdGenerators sequential() {
+        return new IdGenerators("sequence", 0, 8, 40, Duration.ofSeconds(1), 1 << 20, "");
+    }
+
+    /** A new generator for the store called {@code store}, which also names its lease file in block mode. */
+    public IdGenerator create(String store) {
+        return switch (mode) {
+            case SEQUENCE -> new SequenceIdGenerator();
+            case SNOWFLAKE -> new SnowflakeIdGenerator(timestampBits, nodeBits, nodeId, maxLead);
+            case BLOCK -> new BlockIdGenerator(nodeBits, nodeId, leaseSize,
+                leaseDir.isBlank() ? null : Path.of(leaseDir, store + "-node-" + nodeId + ".lease"));
+        };
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    /** Whether ids from different nodes with different node ids can never collide. */
+    public boolean isNodeScoped() {
+        return mode != Mode.SEQUENCE;
+    }
+}
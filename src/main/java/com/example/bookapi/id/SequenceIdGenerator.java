@@ -0,0 +1,22 @@
+
+package com.example.bookapi.id;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Ids 1, 2, 3, ... from a single counter, unique on one node only. */
+public final class SequenceIdGenerator implements IdGenerator {
+
+    private final AtomicLong next = new AtomicLong(1);
+
+    @Override
+    public long nextId() {
+        return next.getAndIncrement();
+    }
+
+    @Override
+    public void advancePast(long id) {
+        if (next.get() <= id) {
+            next.accumulateAndGet(id + 1, Math::max);
+        }
+    }
+}
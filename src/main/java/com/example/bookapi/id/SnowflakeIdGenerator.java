@@ -0,0 +1,117 @@
+
+package com.example.bookapi.id;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Snowflake-style ids: from the top, milliseconds since {@link #EPOCH_MILLIS},
+ * the node id, then a sequence within the millisecond. With the default
+ * 40/8/15 split that is 35 years of timestamps, 256 nodes and 32,768 ids
+ * per millisecond on each node.
+ *
+ * <p>The timestamp and sequence together form one counter, which a single
+ * {@link AtomicLong} holds for the node. Threads take 256 values of it at a
+ * time and hand them out without further synchronization, so ids rise
+ * strictly within a thread and are ordered to within one such lease across
+ * threads. The counter never falls behind the clock, and a sequence that
+ * runs out simply carries into the next millisecond; a burst may therefore
+ * run ahead of the clock, but only by {@code maxLead}, after which leases
+ * wait for the clock to catch up.
+ *
+ * <p>Time is read from {@link System#nanoTime()}, anchored to the wall
+ * clock when the generator is created. A wall clock that is stepped back
+ * while the node runs thus cannot move ids back, and the counter only ever
+ * increases besides. Across a restart the node relies on its wall clock
+ * not going back further than the restart took.
+ */
+public final class SnowflakeIdGenerator implements IdGenerator {
+
+    /** 2024-01-01T00:00:00Z */
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L;
+
+    private static final int LEASE = 256;
+    private static final long WAIT_NANOS = 100_000;
+
+    private final int nodeBits;
+    private final long sequenceMask;
+    private final int sequenceBits;
+    private final long nodeField;
+    private final long lastTick;
+    private final long maxLeadTicks;
+    private final long originTick;
+    private final long originNanos;
+
+    // The next value of timestamp << sequenceBits | sequence that no thread holds
+    private final AtomicLong counter = new AtomicLong();
+    private final ThreadLocal<long[]> leases = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * @throws IllegalArgumentException when the fields do not fit in 63 bits or the node id not in its field
+     * @throws IllegalStateException when the clock is outside the range the timestamp field covers
+     */
+    public SnowflakeIdGenerator(int timestampBits, int nodeBits, long nodeId, Duration maxLead) {
+        int sequenceBits = 63 - timestampBits - nodeBits;
+        if (timestampBits < 32 || nodeBits < 0 || sequenceBits < 8) {
+            throw new IllegalArgumentException("A " + timestampBits + "-bit timestamp and " + nodeBits
+                + "-bit node id leave no room for a sequence of at least 8 bits");
+        }
+        if (nodeId < 0 || nodeId >= 1L << nodeBits) {
+            throw new IllegalArgumentException("Node id " + nodeId + " does not fit in " + nodeBits + " bits");
+        }
+        this.nodeBits = nodeBits;
+        this.sequenceBits = sequenceBits;
+        this.sequenceMask = (1L << sequenceBits) - 1;
+        this.nodeField = nodeId << sequenceBits;
+        this.lastTick = (1L << timestampBits) - 1;
+        this.maxLeadTicks = Math.max(1, maxLead.toMillis());
+
+        this.originNanos = System.nanoTime();
+        this.originTick = System.currentTimeMillis() - EPOCH_MILLIS;
+        if (originTick < 0 || originTick > lastTick) {
+            throw new IllegalStateException("The clock is outside the " + timestampBits + "-bit id timestamp range");
+        }
+    }
+
+    @Override
+    public long nextId() {
+        long[] lease = leases.get();
+        long value = lease[0];
+        if (value == lease[1]) {
+            value = lease();
+            lease[1] = value + LEASE;
+        }
+        lease[0] = value + 1;
+        return (value & ~sequenceMask) << nodeBits | nodeField | (value & sequenceMask);
+    }
+
+    private long lease() {
+        while (true) {
+            long now = currentTick();
+            long current = counter.get();
+            long start = Math.max(current, now << sequenceBits);
+            long end = start + LEASE;
+            long endTick = (end - 1) >>> sequenceBits;
+            if (endTick > lastTick) {
+                throw new IllegalStateException("The id timestamp field is exhausted");
+            }
+            if (endTick > now + maxLeadTicks) {
+                LockSupport.parkNanos(WAIT_NANOS);
+                continue;
+            }
+            if (counter.compareAndSet(current, end)) {
+                return start;
+            }
+        }
+    }
+
+    private long currentTick() {
+        return originTick + (System.nanoTime() - originNanos) / 1_000_000;
+    }
+
+    /** Milliseconds since the Unix epoch at which {@code id} was issued, give or take the lead. */
+    public long timestampOf(long id) {
+        return (id >>> (nodeBits + sequenceBits)) + EPOCH_MILLIS;
+    }
+}
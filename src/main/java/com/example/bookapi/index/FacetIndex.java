@@ -0,0 +1,270 @@
+
+package com.example.bookapi.index;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+
+/**
+ * Bitmap postings for a fixed set of categorical dimensions. Every record
+ * gets a small reusable slot number, and each distinct (case-folded) value of
+ * a dimension keeps a {@link RoaringBitmap} of the slots that carry it, so
+ * multi-dimension filters become bitmap AND/OR operations and facet counts
+ * become intersection cardinalities.
+ */
+public class FacetIndex {
+
+    private final List<String> dimensions;
+    private final List<Map<String, Value>> values = new ArrayList<>();
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+    private long[] idsBySlot = new long[64];
+    private Value[][] valuesBySlot;
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private int nextSlot;
+    private final RoaringBitmap live = new RoaringBitmap();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FacetIndex(String... dimensions) {
+        this.dimensions = List.of(dimensions);
+        this.valuesBySlot = new Value[dimensions.length][64];
+        for (int i = 0; i < dimensions.length; i++) {
+            values.add(new HashMap<>());
+        }
+    }
+
+    public List<String> getDimensions() {
+        return dimensions;
+    }
+
+    /** Adds or replaces the record for {@code id}; one value (or null) per dimension. */
+    public void put(long id, String... dimensionValues) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            int slot = freeSlots.isEmpty() ? nextSlot++ : freeSlots.pop();
+            if (slot == idsBySlot.length) {
+                idsBySlot = Arrays.copyOf(idsBySlot, slot * 2);
+                for (int d = 0; d < dimensions.size(); d++) {
+                    valuesBySlot[d] = Arrays.copyOf(valuesBySlot[d], slot * 2);
+                }
+            }
+            idsBySlot[slot] = id;
+            slotsById.put(id, slot);
+            live.add(slot);
+            for (int d = 0; d < dimensions.size(); d++) {
+                String raw = d < dimensionValues.length ? dimensionValues[d] : null;
+                if (raw == null || raw.isBlank()) {
+                    continue;
+                }
+                Value value = values.get(d).computeIfAbsent(normalize(raw), key -> new Value(key, raw.trim()));
+                value.slots.add(slot);
+                valuesBySlot[d][slot] = value;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Slots of all live records. */
+    public RoaringBitmap all() {
+        lock.readLock().lock();
+        try {
+            return live.copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** OR of the postings of every value of {@code dimension} whose case-folded form matches. */
+    public RoaringBitmap matching(String dimension, Predicate<String> normalizedValueMatcher) {
+        int d = dimensionIndex(dimension);
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = new RoaringBitmap();
+            for (Map.Entry<String, Value> entry : values.get(d).entrySet()) {
+                if (normalizedValueMatcher.test(entry.getKey())) {
+                    result = result.or(entry.getValue().slots);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public RoaringBitmap containing(String dimension, String substring) {
+        String needle = normalize(substring);
+        return matching(dimension, value -> value.contains(needle));
+    }
+
+    public RoaringBitmap equalTo(String dimension, String value) {
+        int d = dimensionIndex(dimension);
+        lock.readLock().lock();
+        try {
+            Value match = values.get(d).get(normalize(value));
+            return match != null ? match.slots.copy() : new RoaringBitmap();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Upper bound on the size of {@link #containing}: the summed posting sizes
+     * of the matching values, without materialising their union.
+     */
+    public int estimateContaining(String dimension, String substring) {
+        int d = dimensionIndex(dimension);
+        String needle = normalize(substring);
+        lock.readLock().lock();
+        try {
+            int estimate = 0;
+            for (Map.Entry<String, Value> entry : values.get(d).entrySet()) {
+                if (entry.getKey().contains(needle)) {
+                    estimate += entry.getValue().slots.cardinality();
+                }
+            }
+            return estimate;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int countEqualTo(String dimension, String value) {
+        int d = dimensionIndex(dimension);
+        lock.readLock().lock();
+        try {
+            Value match = values.get(d).get(normalize(value));
+            return match != null ? match.slots.cardinality() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Number of distinct values of a dimension. */
+    public int distinctValues(String dimension) {
+        int d = dimensionIndex(dimension);
+        lock.readLock().lock();
+        try {
+            return values.get(d).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counts per value of {@code dimension} within {@code selection}, highest
+     * first and capped at {@code topN}. Small selections are counted by
+     * walking their slots, large ones by intersecting each value's bitmap.
+     */
+    public Map<String, Integer> counts(String dimension, RoaringBitmap selection, int topN) {
+        int d = dimensionIndex(dimension);
+        lock.readLock().lock();
+        try {
+            Map<Value, Integer> counts = new HashMap<>();
+            Map<String, Value> dimensionValues = values.get(d);
+            if (selection.cardinality() < dimensionValues.size()) {
+                Value[] slotValues = valuesBySlot[d];
+                selection.forEach(slot -> {
+                    if (slot < nextSlot && slotValues[slot] != null && live.contains(slot)) {
+                        counts.merge(slotValues[slot], 1, Integer::sum);
+                    }
+                });
+            } else {
+                for (Value value : dimensionValues.values()) {
+                    int count = value.slots.andCardinality(selection);
+                    if (count > 0) {
+                        counts.put(value, count);
+                    }
+                }
+            }
+
+            Map<String, Integer> top = new LinkedHashMap<>();
+            counts.entrySet().stream()
+                .sorted(Map.Entry.<Value, Integer>comparingByValue().reversed()
+                    .thenComparing(entry -> entry.getKey().label))
+                .limit(topN)
+                .forEach(entry -> top.put(entry.getKey().label, entry.getValue()));
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits the ids stored in {@code slots}, in slot order and skipping free
+     * slots, until the visitor returns {@code false}. The whole walk holds
+     * one read lock, so the visitor should not write to this index.
+     */
+    public void forEachId(RoaringBitmap slots, LongPredicate visitor) {
+        lock.readLock().lock();
+        try {
+            slots.visit(slot -> slot >= nextSlot || !live.contains(slot) || visitor.test(idsBySlot[slot]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Slot of {@code id}, or -1 when it is not indexed. */
+    public int slotOf(long id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsById.get(id);
+            return slot != null ? slot : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeInternal(long id) {
+        Integer slot = slotsById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        live.remove(slot);
+        for (int d = 0; d < dimensions.size(); d++) {
+            Value value = valuesBySlot[d][slot];
+            if (value != null) {
+                value.slots.remove(slot);
+                if (value.slots.isEmpty()) {
+                    values.get(d).remove(value.key);
+                }
+                valuesBySlot[d][slot] = null;
+            }
+        }
+        freeSlots.push(slot);
+    }
+
+    private int dimensionIndex(String dimension) {
+        int d = dimensions.indexOf(dimension);
+        if (d < 0) {
+            throw new IllegalArgumentException("Unknown dimension: " + dimension);
+        }
+        return d;
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Value {
+        final String key;
+        final String label;
+        final RoaringBitmap slots = new RoaringBitmap();
+
+        Value(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+}
@@ -0,0 +1,507 @@
+
+package com.example.bookapi.index;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * In-memory inverted index over a fixed set of weighted text fields, ranked
+ * with BM25. Documents get dense internal ids in insertion order, so postings
+ * stay append-only: an update deletes the old document and appends a new
+ * one, and deleted documents are dropped by periodic compaction.
+ *
+ * <p>Queries are OR-ed terms; quoted phrases are additionally required to
+ * occur with consecutive positions within a single field.
+ */
+public class FullTextIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MIN_DELETED_FOR_COMPACTION = 1024;
+
+    private final float[] boosts;
+    private final List<Map<String, PostingList>> postings = new ArrayList<>();
+    private final long[] totalLengths;
+    private int[][] lengths;
+    private long[] idsByDoc = new long[64];
+    private int docCount;
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private final Map<Long, Integer> docsById = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FullTextIndex(float... fieldBoosts) {
+        this.boosts = fieldBoosts.clone();
+        this.totalLengths = new long[fieldBoosts.length];
+        this.lengths = new int[fieldBoosts.length][64];
+        for (int i = 0; i < fieldBoosts.length; i++) {
+            postings.add(new HashMap<>());
+        }
+    }
+
+    /** Adds or replaces the document for {@code id}; one text per field, in constructor order. */
+    public void index(long id, String... fieldTexts) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            int doc = docCount++;
+            if (doc == idsByDoc.length) {
+                grow();
+            }
+            idsByDoc[doc] = id;
+            docsById.put(id, doc);
+
+            for (int field = 0; field < boosts.length; field++) {
+                List<String> tokens = Tokenizer.tokenize(field < fieldTexts.length ? fieldTexts[field] : null);
+                Map<String, List<Integer>> positions = new HashMap<>();
+                for (int position = 0; position < tokens.size(); position++) {
+                    positions.computeIfAbsent(tokens.get(position), t -> new ArrayList<>()).add(position);
+                }
+                for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+                    int[] values = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+                    postings.get(field).computeIfAbsent(entry.getKey(), t -> new PostingList())
+                            .add(doc, values, values.length);
+                }
+                lengths[field][doc] = tokens.size();
+                totalLengths[field] += tokens.size();
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(id);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns the {@code limit} best matches for {@code query}, best first. */
+    public SearchResult search(String query, int limit) {
+        TopK topK = new TopK(limit);
+        int[] totalHits = {0};
+        lock.readLock().lock();
+        try {
+            match(query, (doc, cursors) -> {
+                float score = 0;
+                for (TermCursor cursor : cursors) {
+                    if (cursor.postings.doc() == doc) {
+                        score += cursor.score(lengths[cursor.field][doc]);
+                    }
+                }
+                totalHits[0]++;
+                topK.offer(doc, score);
+                return true;
+            });
+            return new SearchResult(topK.drain(idsByDoc), totalHits[0]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits the ids of every document matching {@code query}, unscored and
+     * in index order, until the visitor returns {@code false}.
+     */
+    public void forEachMatch(String query, LongPredicate visitor) {
+        lock.readLock().lock();
+        try {
+            match(query, (doc, cursors) -> visitor.test(idsByDoc[doc]));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Upper bound on the number of documents matching {@code query}: the
+     * summed document frequencies of its terms, capped at the live documents
+     * and, for each phrase, at the frequency of its rarest term.
+     */
+    public int estimateMatches(String query) {
+        List<String> terms = new ArrayList<>();
+        List<List<String>> phrases = new ArrayList<>();
+        parseQuery(query, terms, phrases);
+        lock.readLock().lock();
+        try {
+            Map<String, Long> frequencies = new HashMap<>();
+            for (Map<String, PostingList> fieldPostings : postings) {
+                for (String term : terms) {
+                    PostingList list = fieldPostings.get(term);
+                    frequencies.merge(term, list != null ? (long) list.docFrequency() : 0L, Long::sum);
+                }
+            }
+            long estimate = docCount - deletedCount;
+            estimate = Math.min(estimate, frequencies.values().stream().mapToLong(Long::longValue).sum());
+            for (List<String> phrase : phrases) {
+                for (String term : phrase) {
+                    estimate = Math.min(estimate, frequencies.get(term));
+                }
+            }
+            return (int) estimate;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether texts laid out like the indexed fields would match {@code query},
+     * with the same term and phrase rules as {@link #search}.
+     */
+    public static boolean matches(String query, String... fieldTexts) {
+        List<String> terms = new ArrayList<>();
+        List<List<String>> phrases = new ArrayList<>();
+        parseQuery(query, terms, phrases);
+        List<List<String>> fields = new ArrayList<>(fieldTexts.length);
+        boolean anyTerm = false;
+        for (String text : fieldTexts) {
+            List<String> tokens = Tokenizer.tokenize(text);
+            fields.add(tokens);
+            for (int i = 0; i < terms.size() && !anyTerm; i++) {
+                anyTerm = tokens.contains(terms.get(i));
+            }
+        }
+        if (!anyTerm) {
+            return false;
+        }
+        for (List<String> phrase : phrases) {
+            boolean found = false;
+            for (int field = 0; field < fields.size() && !found; field++) {
+                found = Collections.indexOfSubList(fields.get(field), phrase) >= 0;
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Document-at-a-time walk over the union of the query terms' postings; caller holds the read lock
+    private void match(String query, MatchVisitor visitor) {
+        List<String> terms = new ArrayList<>();
+        List<List<String>> phrases = new ArrayList<>();
+        parseQuery(query, terms, phrases);
+        if (terms.isEmpty()) {
+            return;
+        }
+
+        int liveDocs = docCount - deletedCount;
+        List<TermCursor> cursors = new ArrayList<>();
+        List<Map<String, TermCursor>> cursorsByField = new ArrayList<>();
+        for (int field = 0; field < boosts.length; field++) {
+            Map<String, TermCursor> fieldCursors = new HashMap<>();
+            float averageLength = liveDocs == 0 ? 1 : Math.max(1f, (float) totalLengths[field] / liveDocs);
+            for (String term : terms) {
+                PostingList list = postings.get(field).get(term);
+                if (list != null && !fieldCursors.containsKey(term)) {
+                    int frequency = liveDocFrequency(list);
+                    float idf = (float) Math.log(1 + (liveDocs - frequency + 0.5) / (frequency + 0.5));
+                    TermCursor cursor = new TermCursor(field, list.cursor(), boosts[field] * Math.max(idf, 0.01f), averageLength);
+                    cursor.postings.next();
+                    cursors.add(cursor);
+                    fieldCursors.put(term, cursor);
+                }
+            }
+            cursorsByField.add(fieldCursors);
+        }
+
+        while (true) {
+            int doc = Integer.MAX_VALUE;
+            for (TermCursor cursor : cursors) {
+                doc = Math.min(doc, cursor.postings.doc());
+            }
+            if (doc == Integer.MAX_VALUE) {
+                return;
+            }
+
+            if (!deleted.get(doc) && matchesPhrases(doc, phrases, cursorsByField)
+                    && !visitor.visit(doc, cursors)) {
+                return;
+            }
+
+            for (TermCursor cursor : cursors) {
+                if (cursor.postings.doc() == doc) {
+                    cursor.postings.next();
+                }
+            }
+        }
+    }
+
+    // Postings keep deleted documents until compaction, so while there are any they are counted out
+    private int liveDocFrequency(PostingList list) {
+        if (deletedCount == 0) {
+            return list.docFrequency();
+        }
+        int live = 0;
+        PostingList.Cursor cursor = list.cursor();
+        while (cursor.next()) {
+            if (!deleted.get(cursor.doc())) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    private boolean matchesPhrases(int doc, List<List<String>> phrases, List<Map<String, TermCursor>> cursorsByField) {
+        for (List<String> phrase : phrases) {
+            boolean found = false;
+            for (int field = 0; field < boosts.length && !found; field++) {
+                found = matchesPhrase(doc, phrase, cursorsByField.get(field));
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesPhrase(int doc, List<String> phrase, Map<String, TermCursor> cursors) {
+        int[][] positions = new int[phrase.size()][];
+        for (int i = 0; i < phrase.size(); i++) {
+            TermCursor cursor = cursors.get(phrase.get(i));
+            if (cursor == null || cursor.postings.doc() != doc) {
+                return false;
+            }
+            positions[i] = cursor.postings.positions(new int[cursor.postings.frequency()]);
+        }
+        for (int start : positions[0]) {
+            boolean match = true;
+            for (int i = 1; i < positions.length && match; i++) {
+                match = Arrays.binarySearch(positions[i], start + i) >= 0;
+            }
+            if (match) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void parseQuery(String query, List<String> terms, List<List<String>> phrases) {
+        if (query == null) {
+            return;
+        }
+        String[] parts = query.split("\"", -1);
+        for (int i = 0; i < parts.length; i++) {
+            List<String> tokens = Tokenizer.tokenize(parts[i]);
+            boolean quoted = i % 2 == 1 && i < parts.length - 1;
+            if (quoted && !tokens.isEmpty()) {
+                phrases.add(tokens);
+            }
+            for (String token : tokens) {
+                if (!terms.contains(token)) {
+                    terms.add(token);
+                }
+            }
+        }
+    }
+
+    private void removeInternal(long id) {
+        Integer doc = docsById.remove(id);
+        if (doc != null) {
+            deleted.set(doc);
+            deletedCount++;
+            for (int field = 0; field < boosts.length; field++) {
+                totalLengths[field] -= lengths[field][doc];
+            }
+        }
+    }
+
+    private void compactIfNeeded() {
+        if (deletedCount >= Math.max(MIN_DELETED_FOR_COMPACTION, docCount / 4)) {
+            compact();
+        }
+    }
+
+    private void grow() {
+        int capacity = idsByDoc.length * 2;
+        idsByDoc = Arrays.copyOf(idsByDoc, capacity);
+        for (int field = 0; field < boosts.length; field++) {
+            lengths[field] = Arrays.copyOf(lengths[field], capacity);
+        }
+    }
+
+    // Rewrites postings without deleted documents and renumbers the survivors densely
+    private void compact() {
+        int[] remap = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            remap[doc] = deleted.get(doc) ? -1 : live++;
+        }
+
+        long[] newIds = new long[Math.max(64, live * 2)];
+        int[][] newLengths = new int[boosts.length][newIds.length];
+        for (int doc = 0; doc < docCount; doc++) {
+            if (remap[doc] >= 0) {
+                newIds[remap[doc]] = idsByDoc[doc];
+                for (int field = 0; field < boosts.length; field++) {
+                    newLengths[field][remap[doc]] = lengths[field][doc];
+                }
+            }
+        }
+
+        int[] buffer = new int[16];
+        for (Map<String, PostingList> fieldPostings : postings) {
+            Iterator<Map.Entry<String, PostingList>> entries = fieldPostings.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, PostingList> entry = entries.next();
+                PostingList compacted = new PostingList();
+                PostingList.Cursor cursor = entry.getValue().cursor();
+                while (cursor.next()) {
+                    if (remap[cursor.doc()] >= 0) {
+                        if (buffer.length < cursor.frequency()) {
+                            buffer = new int[cursor.frequency() * 2];
+                        }
+                        compacted.add(remap[cursor.doc()], cursor.positions(buffer), cursor.frequency());
+                    }
+                }
+                if (compacted.docFrequency() == 0) {
+                    entries.remove();
+                } else {
+                    entry.setValue(compacted);
+                }
+            }
+        }
+
+        docsById.replaceAll((id, doc) -> remap[doc]);
+        idsByDoc = newIds;
+        lengths = newLengths;
+        docCount = live;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    private interface MatchVisitor {
+        boolean visit(int doc, List<TermCursor> cursors);
+    }
+
+    private static final class TermCursor {
+        final int field;
+        final PostingList.Cursor postings;
+        final float weight;
+        final float averageLength;
+
+        TermCursor(int field, PostingList.Cursor postings, float weight, float averageLength) {
+            this.field = field;
+            this.postings = postings;
+            this.weight = weight;
+            this.averageLength = averageLength;
+        }
+
+        float score(int length) {
+            int frequency = postings.frequency();
+            return weight * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+        }
+    }
+
+    /** Bounded min-heap keeping the highest scoring documents. */
+    private static final class TopK {
+        private final int[] docs;
+        private final float[] scores;
+        private int size;
+
+        TopK(int k) {
+            docs = new int[k];
+            scores = new float[k];
+        }
+
+        void offer(int doc, float score) {
+            if (size < docs.length) {
+                docs[size] = doc;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (docs.length > 0 && score > scores[0]) {
+                docs[0] = doc;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        List<Hit> drain(long[] idsByDoc) {
+            Hit[] hits = new Hit[size];
+            while (size > 0) {
+                hits[size - 1] = new Hit(idsByDoc[docs[0]], scores[0]);
+                size--;
+                docs[0] = docs[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return Arrays.asList(hits);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) smallest = left;
+                if (right < size && scores[right] < scores[smallest]) smallest = right;
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int doc = docs[a];
+            docs[a] = docs[b];
+            docs[b] = doc;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+
+    public static final class Hit {
+        private final long id;
+        private final float score;
+
+        Hit(long id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+
+        public long getId() { return id; }
+        public float getScore() { return score; }
+    }
+
+    public static final class SearchResult {
+        private final List<Hit> hits;
+        private final int totalHits;
+
+        SearchResult(List<Hit> hits, int totalHits) {
+            this.hits = hits;
+            this.totalHits = totalHits;
+        }
+
+        public List<Hit> getHits() { return hits; }
+        public int getTotalHits() { return totalHits; }
+    }
+}
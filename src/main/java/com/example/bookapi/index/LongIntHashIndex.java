@@ -0,0 +1,126 @@
+
+package com.example.bookapi.index;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Open-addressing multimap from {@code long} keys to non-negative
+ * {@code int} values in two flat arrays, with linear probing and
+ * backward-shift deletion, so it needs no boxing, no entry objects and no
+ * tombstones. A key may map to several values, which lets callers index
+ * strings by a 64-bit hash and tell colliding strings apart in
+ * {@link #find}.
+ *
+ * <p>Not thread safe.
+ */
+public final class LongIntHashIndex {
+
+    private static final int EMPTY = -1;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public LongIntHashIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public void put(long key, int value) {
+        if (size >= resizeAt) {
+            rehash(keys.length * 2);
+        }
+        int slot = slot(key);
+        while (values[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /** The first value under {@code key} that {@code accept} takes, or -1. */
+    public int find(long key, IntPredicate accept) {
+        for (int slot = slot(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key && accept.test(values[slot])) {
+                return values[slot];
+            }
+        }
+        return EMPTY;
+    }
+
+    /** The first value under {@code key}, or -1. */
+    public int get(long key) {
+        for (int slot = slot(key); values[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return EMPTY;
+    }
+
+    public boolean remove(long key, int value) {
+        int slot = slot(key);
+        while (values[slot] != EMPTY && (keys[slot] != key || values[slot] != value)) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == EMPTY) {
+            return false;
+        }
+        // Pull later entries of the probe run back into the gap, so lookups never stop short
+        int gap = slot;
+        for (int next = (gap + 1) & mask; values[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = EMPTY;
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Bytes held by the two arrays. */
+    public long sizeInBytes() {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    // Home slot of a key; package-private so tests can pick keys whose probe runs wrap around
+    int slot(long key) {
+        // Finalizer of SplitMix64: sequential ids and weak hashes spread over the whole table
+        long h = key;
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return (int) (h ^ (h >>> 31)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, EMPTY);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
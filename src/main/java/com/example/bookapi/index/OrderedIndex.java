@@ -0,0 +1,219 @@
+
+package com.example.bookapi.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * Ordered secondary index of {@code (key, id)} pairs stored in primitive
+ * arrays. Entries live in sorted blocks of bounded size, so inserts and
+ * removals move at most one block and a range scan costs a binary search
+ * plus the entries visited. Ties on the key are ordered by id.
+ */
+public class OrderedIndex {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final List<Block> blocks = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    public void add(long key, long id) {
+        lock.writeLock().lock();
+        try {
+            if (blocks.isEmpty()) {
+                blocks.add(new Block());
+            }
+            int blockIndex = blockFor(key, id);
+            Block block = blocks.get(blockIndex);
+            block.insert(key, id);
+            if (block.size == BLOCK_SIZE) {
+                blocks.add(blockIndex + 1, block.split());
+            }
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(long key, long id) {
+        lock.writeLock().lock();
+        try {
+            if (blocks.isEmpty()) {
+                return false;
+            }
+            int blockIndex = blockFor(key, id);
+            Block block = blocks.get(blockIndex);
+            if (!block.remove(key, id)) {
+                return false;
+            }
+            if (block.size == 0 && blocks.size() > 1) {
+                blocks.remove(blockIndex);
+            }
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of entries with {@code from <= key <= to}: two binary searches
+     * plus a walk over the block sizes in between, without touching entries.
+     */
+    public int count(long from, long to) {
+        if (from > to) {
+            return 0;
+        }
+        lock.readLock().lock();
+        try {
+            if (blocks.isEmpty()) {
+                return 0;
+            }
+            int first = blockFor(from, Long.MIN_VALUE);
+            int last = blockFor(to, Long.MAX_VALUE);
+            int startPosition = blocks.get(first).lowerBound(from, Long.MIN_VALUE);
+            int endPosition = blocks.get(last).lowerBound(to, Long.MAX_VALUE);
+            if (first == last) {
+                return Math.max(0, endPosition - startPosition);
+            }
+            int count = blocks.get(first).size - startPosition + endPosition;
+            for (int i = first + 1; i < last; i++) {
+                count += blocks.get(i).size;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visits the ids of entries with {@code from <= key <= to} in key order
+     * (reversed when {@code descending}) until the visitor returns {@code false}.
+     */
+    public void scan(long from, long to, boolean descending, LongPredicate visitor) {
+        if (from > to) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (blocks.isEmpty()) {
+                return;
+            }
+            if (!descending) {
+                int blockIndex = blockFor(from, Long.MIN_VALUE);
+                int position = blocks.get(blockIndex).lowerBound(from, Long.MIN_VALUE);
+                for (; blockIndex < blocks.size(); blockIndex++, position = 0) {
+                    Block block = blocks.get(blockIndex);
+                    for (; position < block.size; position++) {
+                        if (block.keys[position] > to || !visitor.test(block.ids[position])) {
+                            return;
+                        }
+                    }
+                }
+            } else {
+                int blockIndex = blockFor(to, Long.MAX_VALUE);
+                int position = blocks.get(blockIndex).lowerBound(to, Long.MAX_VALUE) - 1;
+                while (blockIndex >= 0) {
+                    Block block = blocks.get(blockIndex);
+                    for (; position >= 0; position--) {
+                        if (block.keys[position] < from || !visitor.test(block.ids[position])) {
+                            return;
+                        }
+                    }
+                    if (--blockIndex >= 0) {
+                        position = blocks.get(blockIndex).size - 1;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Last block whose first entry is <= (key, id), or the first block
+    private int blockFor(long key, long id) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            Block block = blocks.get(mid);
+            if (block.size > 0 && compare(block.keys[0], block.ids[0], key, id) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(long keyA, long idA, long keyB, long idB) {
+        int byKey = Long.compare(keyA, keyB);
+        return byKey != 0 ? byKey : Long.compare(idA, idB);
+    }
+
+    private static final class Block {
+        long[] keys = new long[BLOCK_SIZE];
+        long[] ids = new long[BLOCK_SIZE];
+        int size;
+
+        // First position whose entry is >= (key, id)
+        int lowerBound(long key, long id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(keys[mid], ids[mid], key, id) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        void insert(long key, long id) {
+            int position = lowerBound(key, id);
+            System.arraycopy(keys, position, keys, position + 1, size - position);
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            keys[position] = key;
+            ids[position] = id;
+            size++;
+        }
+
+        boolean remove(long key, long id) {
+            int position = lowerBound(key, id);
+            if (position == size || keys[position] != key || ids[position] != id) {
+                return false;
+            }
+            System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        Block split() {
+            Block upper = new Block();
+            int half = size / 2;
+            upper.size = size - half;
+            System.arraycopy(keys, half, upper.keys, 0, upper.size);
+            System.arraycopy(ids, half, upper.ids, 0, upper.size);
+            Arrays.fill(keys, half, size, 0);
+            size = half;
+            return upper;
+        }
+    }
+}
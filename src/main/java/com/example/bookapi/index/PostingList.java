@@ -0,0 +1,118 @@
+
+package com.example.bookapi.index;
+
+import java.util.Arrays;
+
+/**
+ * Append-only positional postings for one term, packed into a byte array as
+ * variable-length integers: for each document the delta to the previous
+ * document id, the term frequency, then the position deltas.
+ */
+final class PostingList {
+
+    private byte[] data = new byte[8];
+    private int size;
+    private int docFrequency;
+    private int lastDoc = -1;
+
+    void add(int doc, int[] positions, int count) {
+        if (doc <= lastDoc) {
+            throw new IllegalArgumentException("Documents must be added in increasing order");
+        }
+        writeVInt(doc - lastDoc);
+        writeVInt(count);
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVInt(positions[i] - previous);
+            previous = positions[i];
+        }
+        lastDoc = doc;
+        docFrequency++;
+    }
+
+    int docFrequency() {
+        return docFrequency;
+    }
+
+    int sizeInBytes() {
+        return size;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    private void writeVInt(int value) {
+        if (size + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + 5));
+        }
+        while ((value & ~0x7f) != 0) {
+            data[size++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data[size++] = (byte) value;
+    }
+
+    /** Forward-only iterator; positions of the current document are decoded on demand. */
+    final class Cursor {
+        private int offset;
+        private int doc = -1;
+        private int frequency;
+        private int positionsOffset;
+        private boolean positionsRead;
+        private final int end = size;
+
+        /** Advances to the next document, returning {@code false} when exhausted. */
+        boolean next() {
+            if (!positionsRead) {
+                for (int i = 0; i < frequency; i++) {
+                    readVInt();
+                }
+            }
+            if (offset >= end) {
+                doc = Integer.MAX_VALUE;
+                return false;
+            }
+            doc += readVInt();
+            frequency = readVInt();
+            positionsOffset = offset;
+            positionsRead = false;
+            return true;
+        }
+
+        int doc() {
+            return doc;
+        }
+
+        int frequency() {
+            return frequency;
+        }
+
+        /** Decodes the current document's positions into {@code buffer}, which must hold {@link #frequency()} values. */
+        int[] positions(int[] buffer) {
+            int saved = offset;
+            offset = positionsOffset;
+            int position = 0;
+            for (int i = 0; i < frequency; i++) {
+                position += readVInt();
+                buffer[i] = position;
+            }
+            if (!positionsRead) {
+                positionsRead = true;
+            } else {
+                offset = saved;
+            }
+            return buffer;
+        }
+
+        private int readVInt() {
+            byte b = data[offset++];
+            int value = b & 0x7f;
+            for (int shift = 7; b < 0; shift += 7) {
+                b = data[offset++];
+                value |= (b & 0x7f) << shift;
+            }
+            return value;
+        }
+    }
+}
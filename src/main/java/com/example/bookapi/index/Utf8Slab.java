@@ -0,0 +1,171 @@
+
+package com.example.bookapi.index;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only string storage. Strings are encoded as UTF-8 behind a
+ * variable-length size and packed into fixed-size chunks, on the heap or
+ * off it, and addressed by a {@code long} reference holding the chunk and
+ * the offset. Nothing is freed in place: callers {@link #release} strings
+ * they stop using, which only counts the bytes as waste, and copy the
+ * live strings into a fresh slab once the waste is worth reclaiming.
+ *
+ * <p>Adding and releasing strings is synchronized. Reading takes no lock:
+ * any thread may read a string whose reference it got from the thread
+ * that added it through a happens-before edge, such as a lock both hold.
+ */
+public final class Utf8Slab {
+
+    public static final long NULL = -1;
+
+    private final int chunkSize;
+    private final boolean direct;
+    // Replaced, never changed in place, when a chunk is added, so readers need no lock
+    private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+    private ByteBuffer current;
+    private int currentIndex;
+    private long usedBytes;
+    private long wastedBytes;
+
+    public Utf8Slab(int chunkSize, boolean direct) {
+        this.chunkSize = chunkSize;
+        this.direct = direct;
+    }
+
+    /** Stores {@code value}; returns its reference, or {@link #NULL} for {@code null}. */
+    public long add(String value) {
+        return value == null ? NULL : add(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public synchronized long add(byte[] utf8) {
+        int size = sizeOf(utf8.length) + utf8.length;
+        usedBytes += size;
+        if (size > chunkSize) {
+            // Strings larger than a chunk get a chunk of their own, and the current one keeps filling up
+            ByteBuffer own = allocate(size);
+            int index = addChunk(own);
+            writeSize(own, utf8.length);
+            own.put(utf8);
+            return (long) index << 32;
+        }
+        if (current == null || current.remaining() < size) {
+            current = allocate(chunkSize);
+            currentIndex = addChunk(current);
+        }
+        int offset = current.position();
+        writeSize(current, utf8.length);
+        current.put(utf8);
+        return (long) currentIndex << 32 | offset;
+    }
+
+    public String get(long ref) {
+        byte[] utf8 = getBytes(ref);
+        return utf8 != null ? new String(utf8, StandardCharsets.UTF_8) : null;
+    }
+
+    /** The UTF-8 bytes of the string at {@code ref}, or {@code null} for {@link #NULL}. */
+    public byte[] getBytes(long ref) {
+        if (ref == NULL) {
+            return null;
+        }
+        ByteBuffer chunk = chunks[(int) (ref >>> 32)];
+        int offset = (int) ref;
+        int length = readSize(chunk, offset);
+        byte[] utf8 = new byte[length];
+        chunk.get(offset + sizeOf(length), utf8);
+        return utf8;
+    }
+
+    /** Whether the string at {@code ref} is exactly the given UTF-8 bytes, without decoding it. */
+    public boolean equals(long ref, byte[] utf8) {
+        if (ref == NULL || utf8 == null) {
+            return ref == NULL && utf8 == null;
+        }
+        ByteBuffer chunk = chunks[(int) (ref >>> 32)];
+        int offset = (int) ref;
+        if (readSize(chunk, offset) != utf8.length) {
+            return false;
+        }
+        int start = offset + sizeOf(utf8.length);
+        for (int i = 0; i < utf8.length; i++) {
+            if (chunk.get(start + i) != utf8[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Copies the string at {@code ref} into {@code target} without decoding it; returns its new reference. */
+    public long copyTo(long ref, Utf8Slab target) {
+        return ref == NULL ? NULL : target.add(getBytes(ref));
+    }
+
+    /** Marks the string at {@code ref} as no longer used. */
+    public synchronized void release(long ref) {
+        if (ref != NULL) {
+            ByteBuffer chunk = chunks[(int) (ref >>> 32)];
+            int length = readSize(chunk, (int) ref);
+            wastedBytes += sizeOf(length) + length;
+        }
+    }
+
+    /** Bytes taken by strings, released ones included. */
+    public synchronized long usedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long wastedBytes() {
+        return wastedBytes;
+    }
+
+    /** Bytes reserved by the chunks. */
+    public long capacityBytes() {
+        long capacity = 0;
+        for (ByteBuffer chunk : chunks) {
+            capacity += chunk.capacity();
+        }
+        return capacity;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    // Readers see the grown array or the old one, never a partly filled one
+    private int addChunk(ByteBuffer chunk) {
+        ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+        grown[grown.length - 1] = chunk;
+        chunks = grown;
+        return grown.length - 1;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private static int sizeOf(int length) {
+        return length < 0x80 ? 1 : length < 0x4000 ? 2 : length < 0x200000 ? 3 : length < 0x10000000 ? 4 : 5;
+    }
+
+    private static void writeSize(ByteBuffer buffer, int length) {
+        while ((length & ~0x7F) != 0) {
+            buffer.put((byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        buffer.put((byte) length);
+    }
+
+    private static int readSize(ByteBuffer buffer, int offset) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(offset++);
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return length;
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 
 package com.example.bookapi.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -26,6 +27,9 @@ public class Book {
     private String description;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private long version;
+    // The node that wrote this version, as ReplicationLog#getOrigin; breaks ties between equal versions
+    private long origin;
     
     // Constructors
     public Book() {
@@ -43,6 +47,20 @@ public class Book {
         this.description = description;
     }
     
+    public Book(Book other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.author = other.author;
+        this.isbn = other.isbn;
+        this.publicationYear = other.publicationYear;
+        this.genre = other.genre;
+        this.description = other.description;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.version = other.version;
+        this.origin = other.origin;
+    }
+    
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -88,4 +106,11 @@ public class Book {
     
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    @JsonIgnore
+    public long getOrigin() { return origin; }
+    public void setOrigin(long origin) { this.origin = origin; }
 }
@@ -1,6 +1,8 @@
 
 package com.example.bookapi.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -17,6 +19,7 @@ public class User {
     @Email(message = "Email should be valid")
     private String email;
     
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @NotBlank(message = "Password is required")
     @Size(min = 8, message = "Password must be at least 8 characters")
     private String password;
@@ -32,6 +35,9 @@ public class User {
     private LocalDateTime updatedAt;
     private LocalDateTime lastLoginAt;
     private boolean active = true;
+    private long version;
+    // The node that wrote this version, as ReplicationLog#getOrigin; breaks ties between equal versions
+    private long origin;
 
     // Constructors
     public User() {
@@ -46,6 +52,26 @@ public class User {
         this.password = password;
     }
 
+    public User(User other) {
+        this.id = other.id;
+        this.username = other.username;
+        this.email = other.email;
+        this.password = other.password;
+        this.firstName = other.firstName;
+        this.lastName = other.lastName;
+        this.phoneNumber = other.phoneNumber;
+        this.emailVerified = other.emailVerified;
+        this.phoneVerified = other.phoneVerified;
+        this.mfaEnabled = other.mfaEnabled;
+        this.mfaSecret = other.mfaSecret;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.lastLoginAt = other.lastLoginAt;
+        this.active = other.active;
+        this.version = other.version;
+        this.origin = other.origin;
+    }
+
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -91,4 +117,11 @@ public class User {
 
     public boolean isActive() { return active; }
     public void setActive(boolean active) { this.active = active; }
+
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    @JsonIgnore
+    public long getOrigin() { return origin; }
+    public void setOrigin(long origin) { this.origin = origin; }
 }
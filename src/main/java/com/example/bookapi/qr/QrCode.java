@@ -0,0 +1,505 @@
+
+package com.example.bookapi.qr;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A QR code symbol (ISO/IEC 18004) encoding a byte string, as a square grid
+ * of dark and light modules. {@link #encode} picks the smallest version
+ * (1 to 40) that holds the data at the requested error correction level,
+ * raises the level while the data still fits that version, and keeps the
+ * one of the eight masks with the lowest penalty score.
+ */
+public final class QrCode {
+
+    /** Error correction level; each recovers about 7, 15, 25 or 30 percent of the codewords. */
+    public enum Ecc {
+        L(1), M(0), Q(3), H(2);
+
+        // Two-bit value in the format information, which does not follow the declaration order
+        final int formatBits;
+
+        Ecc(int formatBits) {
+            this.formatBits = formatBits;
+        }
+    }
+
+    public static final int MIN_VERSION = 1;
+    public static final int MAX_VERSION = 40;
+
+    // Indexed by Ecc ordinal, then version; index 0 is unused
+    private static final byte[][] ECC_CODEWORDS_PER_BLOCK = {
+        {-1, 7, 10, 15, 20, 26, 18, 20, 24, 30, 18, 20, 24, 26, 30, 22, 24, 28, 30, 28, 28, 28, 28, 30, 30, 26, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+        {-1, 10, 16, 26, 18, 24, 16, 18, 22, 22, 26, 30, 22, 22, 24, 24, 28, 28, 26, 26, 26, 26, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28, 28},
+        {-1, 13, 22, 18, 26, 18, 24, 18, 22, 20, 24, 28, 26, 24, 20, 30, 24, 28, 28, 26, 30, 28, 30, 30, 30, 30, 28, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+        {-1, 17, 28, 22, 16, 22, 28, 26, 26, 24, 28, 24, 28, 22, 24, 24, 30, 28, 28, 26, 28, 30, 24, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30, 30},
+    };
+
+    private static final byte[][] ERROR_CORRECTION_BLOCKS = {
+        {-1, 1, 1, 1, 1, 1, 2, 2, 2, 2, 4, 4, 4, 4, 4, 6, 6, 6, 6, 7, 8, 8, 9, 9, 10, 12, 12, 12, 13, 14, 15, 16, 17, 18, 19, 19, 20, 21, 22, 24, 25},
+        {-1, 1, 1, 1, 2, 2, 4, 4, 4, 5, 5, 5, 8, 9, 9, 10, 10, 11, 13, 14, 16, 17, 17, 18, 20, 21, 23, 25, 26, 28, 29, 31, 33, 35, 37, 38, 40, 43, 45, 47, 49},
+        {-1, 1, 1, 2, 2, 4, 4, 6, 6, 8, 8, 8, 10, 12, 16, 12, 17, 16, 18, 21, 20, 23, 23, 25, 27, 29, 34, 34, 35, 38, 40, 43, 45, 48, 51, 53, 56, 59, 62, 65, 68},
+        {-1, 1, 1, 2, 4, 4, 4, 5, 6, 8, 8, 11, 11, 16, 16, 18, 16, 19, 21, 25, 25, 25, 34, 30, 32, 35, 37, 40, 42, 45, 48, 51, 54, 57, 60, 63, 66, 70, 74, 77, 81},
+    };
+
+    // GF(2^8) with the QR polynomial x^8 + x^4 + x^3 + x^2 + 1; EXP is doubled so products skip a modulo
+    private static final int[] EXP = new int[512];
+    private static final int[] LOG = new int[256];
+
+    static {
+        int x = 1;
+        for (int i = 0; i < 255; i++) {
+            EXP[i] = x;
+            LOG[x] = i;
+            x <<= 1;
+            if (x >= 0x100) {
+                x ^= 0x11d;
+            }
+        }
+        for (int i = 255; i < EXP.length; i++) {
+            EXP[i] = EXP[i - 255];
+        }
+    }
+
+    private final int version;
+    private final int size;
+    private final Ecc ecc;
+    private final int mask;
+    private final boolean[][] modules;
+    // Finder, timing, alignment, format and version modules, which data and masks leave alone
+    private final boolean[][] function;
+
+    private QrCode(int version, Ecc ecc, byte[] codewords) {
+        this.version = version;
+        this.size = version * 4 + 17;
+        this.ecc = ecc;
+        this.modules = new boolean[size][size];
+        this.function = new boolean[size][size];
+
+        drawFunctionPatterns();
+        drawCodewords(interleaveWithEcc(codewords));
+
+        int best = 0;
+        int bestPenalty = Integer.MAX_VALUE;
+        for (int candidate = 0; candidate < 8; candidate++) {
+            applyMask(candidate);
+            drawFormatBits(candidate);
+            int penalty = penaltyScore();
+            if (penalty < bestPenalty) {
+                best = candidate;
+                bestPenalty = penalty;
+            }
+            applyMask(candidate); // XOR again to undo
+        }
+        this.mask = best;
+        applyMask(best);
+        drawFormatBits(best);
+    }
+
+    public static QrCode encodeText(String text, Ecc ecc) {
+        return encode(text.getBytes(StandardCharsets.UTF_8), ecc);
+    }
+
+    /**
+     * Encodes {@code data} in byte mode at {@code minEcc} or better.
+     *
+     * @throws IllegalArgumentException when the data does not fit a version 40 symbol
+     */
+    public static QrCode encode(byte[] data, Ecc minEcc) {
+        int version = MIN_VERSION;
+        while (dataBits(version, data.length) > dataCodewords(version, minEcc) * 8) {
+            if (++version > MAX_VERSION) {
+                throw new IllegalArgumentException("Data too long for a QR code: " + data.length + " bytes");
+            }
+        }
+        Ecc ecc = minEcc;
+        for (Ecc stronger : Ecc.values()) {
+            if (stronger.ordinal() > ecc.ordinal()
+                    && dataBits(version, data.length) <= dataCodewords(version, stronger) * 8) {
+                ecc = stronger;
+            }
+        }
+
+        int capacityBits = dataCodewords(version, ecc) * 8;
+        BitBuffer bits = new BitBuffer(capacityBits / 8);
+        bits.append(0b0100, 4); // byte mode
+        bits.append(data.length, version <= 9 ? 8 : 16);
+        for (byte b : data) {
+            bits.append(b & 0xff, 8);
+        }
+        bits.append(0, Math.min(4, capacityBits - bits.length));
+        bits.append(0, (8 - bits.length % 8) % 8);
+        for (int pad = 0xec; bits.length < capacityBits; pad ^= 0xec ^ 0x11) {
+            bits.append(pad, 8);
+        }
+        return new QrCode(version, ecc, bits.bytes);
+    }
+
+    public int getVersion() { return version; }
+
+    /** Modules per side, without the quiet zone. */
+    public int getSize() { return size; }
+
+    public Ecc getEcc() { return ecc; }
+
+    public int getMask() { return mask; }
+
+    /** Whether the module in column {@code x}, row {@code y} is dark; outside the symbol is light. */
+    public boolean isDark(int x, int y) {
+        return x >= 0 && x < size && y >= 0 && y < size && modules[y][x];
+    }
+
+    private static int dataBits(int version, int length) {
+        return 4 + (version <= 9 ? 8 : 16) + length * 8;
+    }
+
+    private static int rawDataModules(int version) {
+        int result = (16 * version + 128) * version + 64;
+        if (version >= 2) {
+            int alignments = version / 7 + 2;
+            result -= (25 * alignments - 10) * alignments - 55;
+            if (version >= 7) {
+                result -= 36;
+            }
+        }
+        return result;
+    }
+
+    private static int dataCodewords(int version, Ecc ecc) {
+        return rawDataModules(version) / 8
+            - ECC_CODEWORDS_PER_BLOCK[ecc.ordinal()][version] * ERROR_CORRECTION_BLOCKS[ecc.ordinal()][version];
+    }
+
+    // Splits the data into blocks, appends each block's Reed-Solomon codewords, and interleaves them
+    private byte[] interleaveWithEcc(byte[] data) {
+        int blocks = ERROR_CORRECTION_BLOCKS[ecc.ordinal()][version];
+        int eccLength = ECC_CODEWORDS_PER_BLOCK[ecc.ordinal()][version];
+        int rawCodewords = rawDataModules(version) / 8;
+        int shortBlocks = blocks - rawCodewords % blocks;
+        int shortBlockLength = rawCodewords / blocks;
+        int shortDataLength = shortBlockLength - eccLength;
+        byte[] divisor = reedSolomonDivisor(eccLength);
+
+        // Short blocks get a placeholder at shortDataLength so that all rows line up
+        byte[][] rows = new byte[blocks][];
+        for (int i = 0, offset = 0; i < blocks; i++) {
+            int dataLength = shortDataLength + (i < shortBlocks ? 0 : 1);
+            byte[] row = new byte[shortBlockLength + 1];
+            System.arraycopy(data, offset, row, 0, dataLength);
+            reedSolomonRemainder(data, offset, dataLength, divisor, row, shortBlockLength + 1 - eccLength);
+            rows[i] = row;
+            offset += dataLength;
+        }
+
+        byte[] result = new byte[rawCodewords];
+        int k = 0;
+        for (int column = 0; column <= shortBlockLength; column++) {
+            for (int i = 0; i < blocks; i++) {
+                if (column != shortDataLength || i >= shortBlocks) {
+                    result[k++] = rows[i][column];
+                }
+            }
+        }
+        return result;
+    }
+
+    private static byte[] reedSolomonDivisor(int degree) {
+        int[] coefficients = new int[degree];
+        coefficients[degree - 1] = 1;
+        int root = 1;
+        for (int i = 0; i < degree; i++) {
+            for (int j = 0; j < degree; j++) {
+                coefficients[j] = multiply(coefficients[j], root);
+                if (j + 1 < degree) {
+                    coefficients[j] ^= coefficients[j + 1];
+                }
+            }
+            root = multiply(root, 0x02);
+        }
+        byte[] result = new byte[degree];
+        for (int i = 0; i < degree; i++) {
+            result[i] = (byte) coefficients[i];
+        }
+        return result;
+    }
+
+    private static void reedSolomonRemainder(byte[] data, int offset, int length, byte[] divisor,
+                                             byte[] out, int outOffset) {
+        int degree = divisor.length;
+        int[] remainder = new int[degree];
+        for (int i = offset; i < offset + length; i++) {
+            int factor = (data[i] & 0xff) ^ remainder[0];
+            System.arraycopy(remainder, 1, remainder, 0, degree - 1);
+            remainder[degree - 1] = 0;
+            if (factor != 0) {
+                int logFactor = LOG[factor];
+                for (int j = 0; j < degree; j++) {
+                    int d = divisor[j] & 0xff;
+                    if (d != 0) {
+                        remainder[j] ^= EXP[LOG[d] + logFactor];
+                    }
+                }
+            }
+        }
+        for (int j = 0; j < degree; j++) {
+            out[outOffset + j] = (byte) remainder[j];
+        }
+    }
+
+    private static int multiply(int x, int y) {
+        return x == 0 || y == 0 ? 0 : EXP[LOG[x] + LOG[y]];
+    }
+
+    private void drawFunctionPatterns() {
+        for (int i = 0; i < size; i++) {
+            setFunction(6, i, i % 2 == 0);
+            setFunction(i, 6, i % 2 == 0);
+        }
+
+        drawFinder(3, 3);
+        drawFinder(size - 4, 3);
+        drawFinder(3, size - 4);
+
+        int[] positions = alignmentPositions();
+        int last = positions.length - 1;
+        for (int i = 0; i <= last; i++) {
+            for (int j = 0; j <= last; j++) {
+                boolean finderCorner = (i == 0 && j == 0) || (i == 0 && j == last) || (i == last && j == 0);
+                if (!finderCorner) {
+                    drawAlignment(positions[i], positions[j]);
+                }
+            }
+        }
+
+        drawFormatBits(0); // reserves the area; overwritten once the mask is chosen
+        drawVersion();
+    }
+
+    private void drawFinder(int x, int y) {
+        for (int dy = -4; dy <= 4; dy++) {
+            for (int dx = -4; dx <= 4; dx++) {
+                int distance = Math.max(Math.abs(dx), Math.abs(dy));
+                int xx = x + dx;
+                int yy = y + dy;
+                if (xx >= 0 && xx < size && yy >= 0 && yy < size) {
+                    setFunction(xx, yy, distance != 2 && distance != 4);
+                }
+            }
+        }
+    }
+
+    private void drawAlignment(int x, int y) {
+        for (int dy = -2; dy <= 2; dy++) {
+            for (int dx = -2; dx <= 2; dx++) {
+                setFunction(x + dx, y + dy, Math.max(Math.abs(dx), Math.abs(dy)) != 1);
+            }
+        }
+    }
+
+    private int[] alignmentPositions() {
+        if (version == 1) {
+            return new int[0];
+        }
+        int count = version / 7 + 2;
+        int step = version == 32 ? 26 : (version * 4 + count * 2 + 1) / (count * 2 - 2) * 2;
+        int[] positions = new int[count];
+        positions[0] = 6;
+        for (int i = count - 1, position = size - 7; i >= 1; i--, position -= step) {
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    private void drawFormatBits(int mask) {
+        int data = ecc.formatBits << 3 | mask;
+        int remainder = data;
+        for (int i = 0; i < 10; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 9) * 0x537);
+        }
+        int bits = (data << 10 | remainder) ^ 0x5412;
+
+        // Around the top left finder
+        for (int i = 0; i <= 5; i++) {
+            setFunction(8, i, bit(bits, i));
+        }
+        setFunction(8, 7, bit(bits, 6));
+        setFunction(8, 8, bit(bits, 7));
+        setFunction(7, 8, bit(bits, 8));
+        for (int i = 9; i < 15; i++) {
+            setFunction(14 - i, 8, bit(bits, i));
+        }
+
+        // Split between the other two finders
+        for (int i = 0; i < 8; i++) {
+            setFunction(size - 1 - i, 8, bit(bits, i));
+        }
+        for (int i = 8; i < 15; i++) {
+            setFunction(8, size - 15 + i, bit(bits, i));
+        }
+        setFunction(8, size - 8, true);
+    }
+
+    private void drawVersion() {
+        if (version < 7) {
+            return;
+        }
+        int remainder = version;
+        for (int i = 0; i < 12; i++) {
+            remainder = (remainder << 1) ^ ((remainder >>> 11) * 0x1f25);
+        }
+        int bits = version << 12 | remainder;
+        for (int i = 0; i < 18; i++) {
+            boolean dark = bit(bits, i);
+            int a = size - 11 + i % 3;
+            int b = i / 3;
+            setFunction(a, b, dark);
+            setFunction(b, a, dark);
+        }
+    }
+
+    // Places the codewords in two-module columns, zigzagging up and down from the bottom right
+    private void drawCodewords(byte[] codewords) {
+        int totalBits = codewords.length * 8;
+        int i = 0;
+        for (int right = size - 1; right >= 1; right -= 2) {
+            if (right == 6) {
+                right = 5; // skip the vertical timing pattern
+            }
+            boolean upward = ((right + 1) & 2) == 0;
+            for (int vertical = 0; vertical < size; vertical++) {
+                int y = upward ? size - 1 - vertical : vertical;
+                for (int j = 0; j < 2; j++) {
+                    int x = right - j;
+                    if (!function[y][x] && i < totalBits) {
+                        modules[y][x] = bit(codewords[i >>> 3], 7 - (i & 7));
+                        i++;
+                    }
+                }
+            }
+        }
+    }
+
+    private void applyMask(int mask) {
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (!function[y][x] && masked(mask, x, y)) {
+                    modules[y][x] = !modules[y][x];
+                }
+            }
+        }
+    }
+
+    private static boolean masked(int mask, int x, int y) {
+        switch (mask) {
+            case 0: return (x + y) % 2 == 0;
+            case 1: return y % 2 == 0;
+            case 2: return x % 3 == 0;
+            case 3: return (x + y) % 3 == 0;
+            case 4: return (x / 3 + y / 2) % 2 == 0;
+            case 5: return x * y % 2 + x * y % 3 == 0;
+            case 6: return (x * y % 2 + x * y % 3) % 2 == 0;
+            case 7: return ((x + y) % 2 + x * y % 3) % 2 == 0;
+            default: throw new IllegalArgumentException("Mask " + mask);
+        }
+    }
+
+    // The four penalty rules of the standard: long runs, 2x2 blocks, finder-like patterns, dark/light balance
+    private int penaltyScore() {
+        int penalty = 0;
+        boolean[] column = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            for (int y = 0; y < size; y++) {
+                column[y] = modules[y][i];
+            }
+            penalty += linePenalty(modules[i]) + linePenalty(column);
+        }
+
+        int dark = 0;
+        for (int y = 0; y < size; y++) {
+            boolean[] row = modules[y];
+            boolean[] below = y + 1 < size ? modules[y + 1] : null;
+            for (int x = 0; x < size; x++) {
+                boolean color = row[x];
+                if (color) {
+                    dark++;
+                }
+                if (below != null && x + 1 < size && color == row[x + 1]
+                        && color == below[x] && color == below[x + 1]) {
+                    penalty += 3;
+                }
+            }
+        }
+
+        int total = size * size;
+        // 10 points for every full 5% the dark share is away from 50%; total is odd, so k is never negative
+        int k = (Math.abs(dark * 20 - total * 10) + total - 1) / total - 1;
+        penalty += k * 10;
+        return penalty;
+    }
+
+    private static int linePenalty(boolean[] line) {
+        int penalty = 0;
+        int run = 0;
+        boolean runColor = false;
+        int window = 0;
+        for (int i = 0; i < line.length; i++) {
+            boolean color = line[i];
+            if (i > 0 && color == runColor) {
+                run++;
+                if (run == 5) {
+                    penalty += 3;
+                } else if (run > 5) {
+                    penalty++;
+                }
+            } else {
+                runColor = color;
+                run = 1;
+            }
+            // dark-light-dark-dark-dark-light-dark next to four light modules, either way round
+            window = ((window << 1) | (color ? 1 : 0)) & 0x7ff;
+            if (i >= 10 && (window == 0b10111010000 || window == 0b00001011101)) {
+                penalty += 40;
+            }
+        }
+        return penalty;
+    }
+
+    private void setFunction(int x, int y, boolean dark) {
+        modules[y][x] = dark;
+        function[y][x] = true;
+    }
+
+    private static boolean bit(int value, int index) {
+        return ((value >>> index) & 1) != 0;
+    }
+
+    private static final class BitBuffer {
+        final byte[] bytes;
+        int length;
+
+        BitBuffer(int capacityBytes) {
+            bytes = new byte[capacityBytes];
+        }
+
+        void append(int value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (((value >>> i) & 1) != 0) {
+                    bytes[length >>> 3] |= (byte) (0x80 >>> (length & 7));
+                }
+                length++;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder((size + 1) * size);
+        for (boolean[] row : modules) {
+            for (boolean dark : row) {
+                b.append(dark ? '#' : '.');
+            }
+            b.append('\n');
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,134 @@
+
+package com.example.bookapi.qr;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Renders a {@link QrCode} as a 1-bit grayscale PNG or as an SVG path,
+ * with a quiet zone of {@code border} light modules around the symbol.
+ * Both are written directly, without {@code java.awt} or ImageIO.
+ */
+public final class QrImages {
+
+    public enum Format {
+        PNG("image/png"), SVG("image/svg+xml");
+
+        private final String mediaType;
+
+        Format(String mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        public String getMediaType() { return mediaType; }
+    }
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private QrImages() {}
+
+    public static byte[] render(QrCode qr, Format format, int scale, int border) {
+        return format == Format.PNG ? png(qr, scale, border) : svg(qr, border);
+    }
+
+    /** A PNG of {@code scale} pixels per module, dark modules black. */
+    public static byte[] png(QrCode qr, int scale, int border) {
+        int modules = qr.getSize() + border * 2;
+        int width = modules * scale;
+        int stride = (width + 7) / 8 + 1; // leading filter byte, 0 (none) on every row
+
+        // Each module row becomes one scanline repeated scale times; 1 bits are white
+        byte[] raw = new byte[stride * width];
+        byte[] line = new byte[stride];
+        for (int row = 0; row < modules; row++) {
+            Arrays.fill(line, (byte) 0);
+            for (int column = 0; column < modules; column++) {
+                if (!qr.isDark(column - border, row - border)) {
+                    for (int px = column * scale, end = px + scale; px < end; px++) {
+                        line[1 + (px >>> 3)] |= (byte) (0x80 >>> (px & 7));
+                    }
+                }
+            }
+            for (int repeat = 0; repeat < scale; repeat++) {
+                System.arraycopy(line, 0, raw, (row * scale + repeat) * stride, stride);
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 16 + 128);
+        out.writeBytes(PNG_SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, width);
+        header[8] = 1; // bit depth; colour type, compression, filter and interlace stay 0
+        chunk(out, "IHDR", header, header.length);
+
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 8);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            chunk(out, "IDAT", compressed.toByteArray(), compressed.size());
+        } finally {
+            deflater.end();
+        }
+        chunk(out, "IEND", new byte[0], 0);
+        return out.toByteArray();
+    }
+
+    /** An SVG with one unit per module, to be scaled by whoever displays it. */
+    public static byte[] svg(QrCode qr, int border) {
+        int modules = qr.getSize() + border * 2;
+        StringBuilder b = new StringBuilder(qr.getSize() * qr.getSize() * 7 + 300);
+        b.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+            .append("<svg xmlns=\"http://www.w3.org/2000/svg\" version=\"1.1\" viewBox=\"0 0 ")
+            .append(modules).append(' ').append(modules).append("\" stroke=\"none\">\n")
+            .append("<rect width=\"100%\" height=\"100%\" fill=\"#FFFFFF\"/>\n")
+            .append("<path d=\"");
+        // Horizontal runs of dark modules become one rectangle each
+        for (int y = 0; y < qr.getSize(); y++) {
+            int x = 0;
+            while (x < qr.getSize()) {
+                if (!qr.isDark(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < qr.getSize() && qr.isDark(x, y)) {
+                    x++;
+                }
+                b.append('M').append(start + border).append(',').append(y + border)
+                    .append('h').append(x - start).append("v1h-").append(x - start).append('z');
+            }
+        }
+        b.append("\" fill=\"#000000\" shape-rendering=\"crispEdges\"/>\n</svg>\n");
+        return b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void chunk(ByteArrayOutputStream out, String type, byte[] data, int length) {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        byte[] word = new byte[4];
+        putInt(word, 0, length);
+        out.writeBytes(word);
+        out.writeBytes(typeBytes);
+        out.write(data, 0, length);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        putInt(word, 0, (int) crc.getValue());
+        out.writeBytes(word);
+    }
+
+    private static void putInt(byte[] b, int offset, int value) {
+        b[offset] = (byte) (value >>> 24);
+        b[offset + 1] = (byte) (value >>> 16);
+        b[offset + 2] = (byte) (value >>> 8);
+        b[offset + 3] = (byte) value;
+    }
+}
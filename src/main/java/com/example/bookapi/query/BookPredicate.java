@@ -0,0 +1,170 @@
+
+package com.example.bookapi.query;
+
+import com.example.bookapi.index.FullTextIndex;
+import com.example.bookapi.model.Book;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Node of a book filter tree. Leaves are the individual filters the API
+ * accepts; {@link And} combines them. Every node can be evaluated against a
+ * book, which is how residual predicates are applied once an index has
+ * produced the candidate rows.
+ */
+public interface BookPredicate {
+
+    boolean test(Book book);
+
+    /** Human readable form used in query plans. */
+    String describe();
+
+    final class And implements BookPredicate {
+        private final List<BookPredicate> children;
+
+        public And(List<BookPredicate> children) {
+            this.children = List.copyOf(children);
+        }
+
+        public List<BookPredicate> getChildren() { return children; }
+
+        @Override
+        public boolean test(Book book) {
+            for (BookPredicate child : children) {
+                if (!child.test(book)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String describe() {
+            return children.isEmpty() ? "true"
+                : children.stream().map(BookPredicate::describe).collect(Collectors.joining(" AND "));
+        }
+    }
+
+    /** Case-insensitive substring match on the author. */
+    final class AuthorContains implements BookPredicate {
+        private final String value;
+        private final String needle;
+
+        public AuthorContains(String value) {
+            this.value = value;
+            this.needle = value.toLowerCase(Locale.ROOT);
+        }
+
+        public String getValue() { return value; }
+
+        @Override
+        public boolean test(Book book) {
+            return book.getAuthor() != null && book.getAuthor().toLowerCase(Locale.ROOT).contains(needle);
+        }
+
+        @Override
+        public String describe() {
+            return "author contains '" + value + "'";
+        }
+    }
+
+    /** Case-insensitive substring match on the genre. */
+    final class GenreContains implements BookPredicate {
+        private final String value;
+        private final String needle;
+
+        public GenreContains(String value) {
+            this.value = value;
+            this.needle = value.toLowerCase(Locale.ROOT);
+        }
+
+        public String getValue() { return value; }
+
+        @Override
+        public boolean test(Book book) {
+            return book.getGenre() != null && book.getGenre().toLowerCase(Locale.ROOT).contains(needle);
+        }
+
+        @Override
+        public String describe() {
+            return "genre contains '" + value + "'";
+        }
+    }
+
+    /** Publication year within an inclusive range; either bound may be open. */
+    final class YearBetween implements BookPredicate {
+        private final long from;
+        private final long to;
+
+        public YearBetween(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public long getFrom() { return from; }
+        public long getTo() { return to; }
+
+        @Override
+        public boolean test(Book book) {
+            Integer year = book.getPublicationYear();
+            return year != null && year >= from && year <= to;
+        }
+
+        @Override
+        public String describe() {
+            return "publicationYear between "
+                + (from == Long.MIN_VALUE ? "*" : Long.toString(from)) + " and "
+                + (to == Long.MAX_VALUE ? "*" : Long.toString(to));
+        }
+    }
+
+    /** Publication year in the decade containing {@code year}, e.g. 1987 selects 1980..1989. */
+    final class DecadeEquals implements BookPredicate {
+        private final int decade;
+
+        public DecadeEquals(int year) {
+            this.decade = Math.floorDiv(year, 10) * 10;
+        }
+
+        public int getDecade() { return decade; }
+
+        /** The same condition expressed as a year range. */
+        public YearBetween asYearRange() {
+            return new YearBetween(decade, decade + 9L);
+        }
+
+        @Override
+        public boolean test(Book book) {
+            Integer year = book.getPublicationYear();
+            return year != null && Math.floorDiv(year, 10) * 10 == decade;
+        }
+
+        @Override
+        public String describe() {
+            return "decade = " + decade;
+        }
+    }
+
+    /** Full-text match on title and description, with the same rules as search. */
+    final class TextMatches implements BookPredicate {
+        private final String query;
+
+        public TextMatches(String query) {
+            this.query = query;
+        }
+
+        public String getQuery() { return query; }
+
+        @Override
+        public boolean test(Book book) {
+            return FullTextIndex.matches(query, book.getTitle(), book.getDescription());
+        }
+
+        @Override
+        public String describe() {
+            return "text matches '" + query + "'";
+        }
+    }
+}
@@ -0,0 +1,88 @@
+
+package com.example.bookapi.query;
+
+import com.example.bookapi.dto.BookSort;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A parsed book listing request: the filter tree plus ordering and paging.
+ * Year bounds and decade are kept as separate leaves so the planner can
+ * choose between the year index and the decade bitmap for each.
+ */
+public class BookQuery {
+
+    private final BookPredicate.And predicate;
+    private final BookSort sort;
+    private final int offset;
+    private final int limit;
+
+    public BookQuery(BookPredicate.And predicate, BookSort sort, int offset, int limit) {
+        this.predicate = predicate;
+        this.sort = sort;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Builds a query from the listing parameters; blank strings count as
+     * absent and a missing limit means unbounded.
+     *
+     * @throws IllegalArgumentException when sort, offset or limit are invalid
+     */
+    public static BookQuery parse(String author, String genre, Integer decade, Integer yearFrom, Integer yearTo,
+                                  String text, String sort, int offset, Integer limit) {
+        BookSort bookSort = null;
+        if (sort != null) {
+            bookSort = BookSort.fromParameter(sort).orElseThrow(() -> new IllegalArgumentException(
+                "sort must be one of publicationYear, -publicationYear, createdAt, -createdAt"));
+        }
+        if (offset < 0 || (limit != null && limit < 1)) {
+            throw new IllegalArgumentException("offset must be >= 0 and limit >= 1");
+        }
+
+        List<BookPredicate> filters = new ArrayList<>();
+        if (!isBlank(author)) {
+            filters.add(new BookPredicate.AuthorContains(author.trim()));
+        }
+        if (!isBlank(genre)) {
+            filters.add(new BookPredicate.GenreContains(genre.trim()));
+        }
+        if (decade != null) {
+            filters.add(new BookPredicate.DecadeEquals(decade));
+        }
+        if (yearFrom != null || yearTo != null) {
+            filters.add(new BookPredicate.YearBetween(
+                yearFrom != null ? yearFrom : Long.MIN_VALUE, yearTo != null ? yearTo : Long.MAX_VALUE));
+        }
+        if (!isBlank(text)) {
+            filters.add(new BookPredicate.TextMatches(text.trim()));
+        }
+        return new BookQuery(new BookPredicate.And(filters), bookSort, offset,
+            limit != null ? limit : Integer.MAX_VALUE);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    public BookPredicate.And getPredicate() { return predicate; }
+    public BookSort getSort() { return sort; }
+    public int getOffset() { return offset; }
+    public int getLimit() { return limit; }
+
+    public boolean isUnfiltered() {
+        return predicate.getChildren().isEmpty();
+    }
+
+    /** The first filter of the given type, or null. */
+    public <T extends BookPredicate> T find(Class<T> type) {
+        for (BookPredicate child : predicate.getChildren()) {
+            if (type.isInstance(child)) {
+                return type.cast(child);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+
+package com.example.bookapi.replication;
+
+/**
+ * One change to a replicated store: the whole new state of a record, or its
+ * deletion at a version. Records travel as Smile-encoded payloads, so a
+ * mutation stays valid however the stored object changes afterwards.
+ */
+public final class Mutation {
+
+    public enum Entity { BOOK, USER, MFA_DEVICE }
+
+    private final long sequence;
+    private final Entity entity;
+    private final long id;
+    private final long version;
+    private final byte[] payload;
+
+    /**
+     * @param sequence position in the origin's log, or 0 for a record sent as part of a snapshot
+     * @param version  the record's version, 0 for entities that do not carry one
+     * @param payload  the encoded record, or {@code null} for a deletion
+     */
+    public Mutation(long sequence, Entity entity, long id, long version, byte[] payload) {
+        this.sequence = sequence;
+        this.entity = entity;
+        this.id = id;
+        this.version = version;
+        this.payload = payload;
+    }
+
+    public long getSequence() { return sequence; }
+
+    public Entity getEntity() { return entity; }
+
+    public long getId() { return id; }
+
+    public long getVersion() { return version; }
+
+    public byte[] getPayload() { return payload; }
+
+    public boolean isDelete() { return payload == null; }
+}
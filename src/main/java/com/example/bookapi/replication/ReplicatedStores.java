@@ -0,0 +1,118 @@
+
+package com.example.bookapi.replication;
+
+import com.example.bookapi.exception.DuplicateValueException;
+import com.example.bookapi.model.Book;
+import com.example.bookapi.model.MfaDevice;
+import com.example.bookapi.model.User;
+import com.example.bookapi.service.BookService;
+import com.example.bookapi.service.MfaService;
+import com.example.bookapi.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The stores that are replicated: applies mutations from peers to them and
+ * lists their contents for snapshots. Applying is idempotent, so a mutation
+ * that arrives twice, or after a newer version of its record, changes
+ * nothing. Books and users only move forward by version, and two states of
+ * one version, written on two nodes at once, are settled the same way on
+ * every node by their origin; see {@link Resolution}. Devices carry no
+ * version and take the last state that arrives.
+ */
+@Component
+public class ReplicatedStores {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicatedStores.class);
+
+    @FunctionalInterface
+    public interface RecordSink {
+        void accept(Mutation mutation) throws IOException;
+    }
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MfaService mfaService;
+
+    @Autowired
+    private ReplicationLog replicationLog;
+
+    private final AtomicLong conflicts = new AtomicLong();
+
+    public void apply(Mutation mutation) {
+        Mutation.Entity entity = mutation.getEntity();
+        long id = mutation.getId();
+        if (mutation.isDelete()) {
+            replicationLog.noteDeleted(entity, id, mutation.getVersion());
+            switch (entity) {
+                case BOOK -> bookService.applyReplicatedDelete(id, mutation.getVersion());
+                case USER -> userService.applyReplicatedDelete(id, mutation.getVersion());
+                case MFA_DEVICE -> mfaService.applyReplicatedDelete(id);
+            }
+            return;
+        }
+        if (replicationLog.isDeleted(entity, id, mutation.getVersion())) {
+            return;
+        }
+        try {
+            Resolution resolution = switch (entity) {
+                case BOOK -> bookService.applyReplicated(replicationLog.decode(mutation.getPayload(), Book.class));
+                case USER -> userService.applyReplicated(replicationLog.decode(mutation.getPayload(), User.class));
+                case MFA_DEVICE -> {
+                    mfaService.applyReplicated(replicationLog.decode(mutation.getPayload(), MfaDevice.class));
+                    yield Resolution.APPLIED;
+                }
+            };
+            if (resolution.isConflict()) {
+                conflicts.incrementAndGet();
+                log.warn("Conflicting writes to {} {} at version {}; kept the {} state", entity, id,
+                    mutation.getVersion(), resolution == Resolution.CONFLICT_WON ? "arriving" : "held");
+            }
+        } catch (DuplicateValueException e) {
+            // Two nodes took the same username or email at once; the one that got here first keeps it
+            log.warn("Skipped replicated {} {} at version {}: {}", entity, id, mutation.getVersion(), e.getMessage());
+        }
+    }
+
+    /** Conflicting writes settled since startup, whichever state was kept. */
+    public long getConflicts() {
+        return conflicts.get();
+    }
+
+    /**
+     * Passes every record held here to {@code sink} as a mutation with
+     * sequence 0, after the deletions this node remembers; those remove
+     * records a receiver holds that have been deleted since, such as the
+     * sample data every node starts with.
+     */
+    public void forEachRecord(RecordSink sink) throws IOException {
+        for (Mutation deletion : replicationLog.getDeletions()) {
+            sink.accept(deletion);
+        }
+        for (Book book : bookService.getAllBooks()) {
+            sink.accept(new Mutation(0, Mutation.Entity.BOOK, book.getId(), book.getVersion(),
+                replicationLog.encode(book)));
+        }
+        for (User user : userService.getAllUsers()) {
+            sink.accept(new Mutation(0, Mutation.Entity.USER, user.getId(), user.getVersion(),
+                replicationLog.encode(user)));
+        }
+        for (MfaDevice device : mfaService.getAllDevices()) {
+            byte[] payload;
+            synchronized (device) {
+                payload = replicationLog.encode(device);
+            }
+            sink.accept(new Mutation(0, Mutation.Entity.MFA_DEVICE, device.getId(), 0, payload));
+        }
+    }
+}
@@ -0,0 +1,238 @@
+
+package com.example.bookapi.replication;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sequence-numbered log of the mutations this node made to its own stores,
+ * which {@link ReplicationService} ships to every peer. The services record
+ * a mutation once their store has taken it; mutations applied from peers
+ * are not recorded again, so each node ships only its own writes. Like
+ * {@code BookChangeLog} it is a bounded ring: a peer that falls further
+ * behind than the ring holds is sent a snapshot instead.
+ *
+ * <p>It also remembers recent deletions, local and replicated, so that an
+ * older version of a record that arrives after its deletion is not brought
+ * back. When replication is disabled nothing is recorded.
+ *
+ * <p>Every version a service writes is stamped with this node's
+ * {@linkplain #getOrigin() origin}, a number derived from its node id, so
+ * that versions of a record written concurrently on two nodes can be told
+ * apart and ordered the same way everywhere; see {@link Resolution}.
+ */
+@Component
+public class ReplicationLog {
+
+    private record Key(Mutation.Entity entity, long id) {}
+
+    private final boolean enabled;
+    private final String nodeId;
+    private final long origin;
+    private final AtomicReferenceArray<Mutation> ring;
+    private final int mask;
+    private volatile long lastSequence = 0;
+
+    // The last sequence the current request recorded, for acknowledgments it may have to wait for
+    private final ThreadLocal<long[]> recordedByThread = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final Map<Key, Long> deletions;
+
+    // Annotations are off so that write-only fields such as passwords are replicated too
+    private final ObjectMapper codec = SmileMapper.builder()
+        .disable(MapperFeature.USE_ANNOTATIONS)
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+        .addModule(new JavaTimeModule())
+        .build();
+
+    /** @param nodeId names this node to its peers; defaults to the host name and replication port */
+    public ReplicationLog(@Value("${api.replication.enabled:false}") boolean enabled,
+                          @Value("${api.replication.node-id:}") String nodeId,
+                          @Value("${api.replication.port:7070}") int port,
+                          @Value("${api.replication.log-capacity:65536}") int capacity,
+                          @Value("${api.replication.deletions-retained:100000}") int deletionsRetained) {
+        this.enabled = enabled;
+        this.nodeId = !nodeId.isBlank() || !enabled ? nodeId.trim() : localHostName() + ":" + port;
+        this.origin = enabled ? originOf(this.nodeId) : 0;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(enabled ? size : 2);
+        this.mask = ring.length() - 1;
+        this.deletions = new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+                return size() > deletionsRetained;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * The origin of the versions this node writes. Records every node
+     * starts with, such as the sample data, have origin 0 instead, so they
+     * are the same record everywhere.
+     */
+    public long getOrigin() {
+        return origin;
+    }
+
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            throw new UncheckedIOException("Set api.replication.node-id, as the host name is unknown", e);
+        }
+    }
+
+    // The first 8 bytes of the node id's SHA-256, the same on every node; never 0
+    private static long originOf(String nodeId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(nodeId.getBytes(StandardCharsets.UTF_8));
+            long origin = ByteBuffer.wrap(digest).getLong();
+            return origin != 0 ? origin : 1;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Records the state {@code record} was stored in. */
+    public void recordPut(Mutation.Entity entity, long id, long version, Object record) {
+        if (enabled) {
+            append(entity, id, version, encode(record));
+        }
+    }
+
+    /** Records that the record was deleted at {@code version}. */
+    public void recordDelete(Mutation.Entity entity, long id, long version) {
+        if (enabled) {
+            noteDeleted(entity, id, version);
+            append(entity, id, version, null);
+        }
+    }
+
+    private synchronized void append(Mutation.Entity entity, long id, long version, byte[] payload) {
+        long sequence = lastSequence + 1;
+        ring.set((int) (sequence & mask), new Mutation(sequence, entity, id, version, payload));
+        lastSequence = sequence;
+        recordedByThread.get()[0] = sequence;
+        notifyAll();
+    }
+
+    /** The last sequence recorded on this thread since the previous call, or 0 when there is none. */
+    public long takeRecordedSequence() {
+        long[] recorded = recordedByThread.get();
+        long sequence = recorded[0];
+        recorded[0] = 0;
+        return sequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getOldestSequence() {
+        return Math.max(1, lastSequence - mask);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns up to {@code max} mutations with a sequence greater than
+     * {@code afterSequence}, or {@code null} if some of them have already
+     * been overwritten.
+     */
+    public List<Mutation> readAfter(long afterSequence, int max) {
+        long last = lastSequence;
+        if (afterSequence >= last) {
+            return List.of();
+        }
+        if (afterSequence + 1 < getOldestSequence()) {
+            return null;
+        }
+        long end = Math.min(last, afterSequence + max);
+        List<Mutation> mutations = new ArrayList<>((int) (end - afterSequence));
+        for (long sequence = afterSequence + 1; sequence <= end; sequence++) {
+            Mutation mutation = ring.get((int) (sequence & mask));
+            if (mutation == null || mutation.getSequence() != sequence) {
+                return null; // overwritten while we were reading
+            }
+            mutations.add(mutation);
+        }
+        return mutations;
+    }
+
+    /** Waits up to {@code timeoutMillis} for a mutation after {@code sequence}; returns whether there is one. */
+    public synchronized boolean awaitAfter(long sequence, long timeoutMillis) throws InterruptedException {
+        if (lastSequence <= sequence) {
+            wait(timeoutMillis);
+        }
+        return lastSequence > sequence;
+    }
+
+    /** Remembers that the record was deleted at {@code version}, whichever node deleted it. */
+    public void noteDeleted(Mutation.Entity entity, long id, long version) {
+        synchronized (deletions) {
+            deletions.merge(new Key(entity, id), version, Math::max);
+        }
+    }
+
+    /** Whether the record is known to have been deleted at {@code version} or later. */
+    public boolean isDeleted(Mutation.Entity entity, long id, long version) {
+        synchronized (deletions) {
+            Long deletedAt = deletions.get(new Key(entity, id));
+            return deletedAt != null && deletedAt >= version;
+        }
+    }
+
+    /** The deletions remembered, as mutations with sequence 0, so a snapshot can carry them too. */
+    public List<Mutation> getDeletions() {
+        synchronized (deletions) {
+            List<Mutation> mutations = new ArrayList<>(deletions.size());
+            deletions.forEach((key, version) -> mutations.add(new Mutation(0, key.entity(), key.id(), version, null)));
+            return mutations;
+        }
+    }
+
+    public byte[] encode(Object record) {
+        try {
+            return codec.writeValueAsBytes(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public <T> T decode(byte[] payload, Class<T> type) {
+        try {
+            return codec.readValue(payload, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
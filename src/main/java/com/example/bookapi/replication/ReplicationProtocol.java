@@ -0,0 +1,179 @@
+
+package com.example.bookapi.replication;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Frames of the replication stream. The shipping node opens the connection
+ * and sends a hello with its name, its epoch (a random number drawn at
+ * startup), how it generates ids and a random nonce. The receiving node
+ * answers with a challenge: a nonce of its own and its proof that it knows
+ * the shared secret, an HMAC of the secret over both nonces and the hello.
+ * Only if that proof holds does the shipping node answer with its own
+ * proof, so neither side gives anything away to a node that does not know
+ * the secret, and the secret itself never travels. The receiving node then
+ * answers with the last sequence it applied from that node in that epoch,
+ * or rejects the connection, for instance when the proof is wrong or both
+ * nodes would issue the same ids. From then on
+ * the shipping node sends mutations, snapshots and heartbeats, and the
+ * receiving node answers with acknowledgments of the sequence it has
+ * applied. Every frame starts with a type byte; numbers are big-endian.
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x42524550; // "BREP"
+    static final int VERSION = 3;
+    static final int NONCE_BYTES = 32;
+
+    static final byte CHALLENGE = 'C';
+    static final byte PROOF = 'P';
+    static final byte RESUME = 'R';
+    static final byte REJECT = 'X';
+    static final byte MUTATION = 'M';
+    static final byte SNAPSHOT_BEGIN = 'S';
+    static final byte SNAPSHOT_END = 'E';
+    static final byte HEARTBEAT = 'H';
+    static final byte ACK = 'A';
+
+    private static final int MAX_PAYLOAD = 16 << 20;
+    private static final Mutation.Entity[] ENTITIES = Mutation.Entity.values();
+
+    private static final int PROOF_BYTES = 32;
+    private static final String HMAC = "HmacSHA256";
+
+    /** Which side a proof is from, so one side's proof can never be replayed as the other's. */
+    enum Role { SHIPPER, RECEIVER }
+
+    record Hello(String nodeId, long epoch, String idMode, int idNode, byte[] nonce) {}
+
+    private ReplicationProtocol() {}
+
+    static void writeHello(DataOutputStream out, Hello hello) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(hello.nodeId());
+        out.writeLong(hello.epoch());
+        out.writeUTF(hello.idMode());
+        out.writeInt(hello.idNode());
+        out.write(hello.nonce());
+    }
+
+    static Hello readHello(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replication stream");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replication protocol version " + version);
+        }
+        Hello hello = new Hello(in.readUTF(), in.readLong(), in.readUTF(), in.readInt(), new byte[NONCE_BYTES]);
+        in.readFully(hello.nonce());
+        return hello;
+    }
+
+    /** The receiving node's nonce and its proof of the secret. */
+    static void writeChallenge(DataOutputStream out, byte[] nonce, byte[] proof) throws IOException {
+        out.writeByte(CHALLENGE);
+        out.write(nonce);
+        out.write(proof);
+    }
+
+    static void writeProof(DataOutputStream out, byte[] proof) throws IOException {
+        out.writeByte(PROOF);
+        out.write(proof);
+    }
+
+    /** Reads the nonce that follows the type byte of a challenge. */
+    static byte[] readNonce(DataInputStream in) throws IOException {
+        byte[] nonce = new byte[NONCE_BYTES];
+        in.readFully(nonce);
+        return nonce;
+    }
+
+    static byte[] readProof(DataInputStream in) throws IOException {
+        byte[] proof = new byte[PROOF_BYTES];
+        in.readFully(proof);
+        return proof;
+    }
+
+    /**
+     * HMAC-SHA256 under {@code secret} of the role, the hello, including the
+     * shipping node's nonce, and the receiving node's nonce.
+     */
+    static byte[] proof(String secret, Role role, Hello hello, byte[] receiverNonce) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            // An empty key is not allowed; a blank secret is only accepted on loopback anyway
+            byte[] key = ("replication:" + secret).getBytes(StandardCharsets.UTF_8);
+            mac.init(new SecretKeySpec(key, HMAC));
+            mac.update(role.name().getBytes(StandardCharsets.US_ASCII));
+            mac.update((byte) 0);
+            mac.update(hello.nodeId().getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(Long.toString(hello.epoch()).getBytes(StandardCharsets.US_ASCII));
+            mac.update((byte) 0);
+            mac.update(hello.idMode().getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(Integer.toString(hello.idNode()).getBytes(StandardCharsets.US_ASCII));
+            mac.update((byte) 0);
+            mac.update(hello.nonce());
+            mac.update(receiverNonce);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Writes a frame that carries one sequence number: resume, snapshot bounds, heartbeat or ack. */
+    static void writeSequence(DataOutputStream out, byte type, long sequence) throws IOException {
+        out.writeByte(type);
+        out.writeLong(sequence);
+    }
+
+    static void writeReject(DataOutputStream out, String reason) throws IOException {
+        out.writeByte(REJECT);
+        out.writeUTF(reason);
+    }
+
+    static void writeMutation(DataOutputStream out, Mutation mutation) throws IOException {
+        out.writeByte(MUTATION);
+        out.writeLong(mutation.getSequence());
+        out.writeByte(mutation.getEntity().ordinal());
+        out.writeLong(mutation.getId());
+        out.writeLong(mutation.getVersion());
+        byte[] payload = mutation.getPayload();
+        if (payload == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+    }
+
+    /** Reads the body of a mutation frame whose type byte has been read. */
+    static Mutation readMutation(DataInputStream in) throws IOException {
+        long sequence = in.readLong();
+        int entity = in.readUnsignedByte();
+        if (entity >= ENTITIES.length) {
+            throw new IOException("Unknown entity " + entity);
+        }
+        long id = in.readLong();
+        long version = in.readLong();
+        int length = in.readInt();
+        if (length > MAX_PAYLOAD) {
+            throw new IOException("Mutation payload of " + length + " bytes");
+        }
+        byte[] payload = null;
+        if (length >= 0) {
+            payload = new byte[length];
+            in.readFully(payload);
+        }
+        return new Mutation(sequence, ENTITIES[entity], id, version, payload);
+    }
+}
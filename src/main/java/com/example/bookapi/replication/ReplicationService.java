@@ -0,0 +1,523 @@
+
+package com.example.bookapi.replication;
+
+import com.example.bookapi.dto.ReplicationStatus;
+import com.example.bookapi.id.IdGenerators;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replicates the in-memory stores between nodes by shipping each node's
+ * {@link ReplicationLog} to every peer over TCP. Every node listens on
+ * {@code api.replication.port} and opens one connection to each address in
+ * {@code api.replication.peers}, so a cluster is a full mesh in which each
+ * connection carries the writes of the node that opened it.
+ *
+ * <p>A receiving node remembers, per sending node and epoch, the last
+ * sequence it applied; a reconnecting sender resumes after it. A sender
+ * that no longer holds the mutations needed, or that meets a node for the
+ * first time, sends a snapshot of its stores first and streams the log on
+ * from where the snapshot was taken. Receivers acknowledge what they have
+ * applied, and with {@code api.replication.ack-mode} set to {@code one} or
+ * {@code all} a request that wrote waits for those acknowledgments before
+ * it is answered.
+ *
+ * <p>Both ends of a connection prove to each other that they know
+ * {@code api.replication.secret} before anything is shipped; see
+ * {@link ReplicationProtocol}. The stream itself is not encrypted, and
+ * snapshots carry passwords and MFA secrets, so nodes must replicate over
+ * a private network or a tunnel. Without a secret a node only binds to and
+ * replicates over loopback addresses.
+ */
+@Service
+@ConditionalOnProperty(name = "api.replication.enabled", havingValue = "true")
+public class ReplicationService {
+
+    public enum AckMode { ASYNC, ONE, ALL }
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationService.class);
+
+    private static final int BATCH_SIZE = 256;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+
+    @Autowired
+    private ReplicationLog replicationLog;
+
+    @Autowired
+    private ReplicatedStores stores;
+
+    @Autowired
+    private IdGenerators idGenerators;
+
+    @Value("${api.replication.bind-address:127.0.0.1}")
+    private String bindAddress;
+
+    @Value("${api.replication.port:7070}")
+    private int port;
+
+    /** host:port of every other node */
+    @Value("${api.replication.peers:}")
+    private List<String> peerAddresses;
+
+    /** Shared by all nodes; a connection that cannot prove it knows it is refused */
+    @Value("${api.replication.secret:}")
+    private String secret;
+
+    @Value("${api.replication.ack-mode:async}")
+    private String ackModeName;
+
+    @Value("${api.replication.ack-timeout:1s}")
+    private Duration ackTimeout;
+
+    @Value("${api.replication.reconnect-delay:1s}")
+    private Duration reconnectDelay;
+
+    // Drawn at startup, so peers can tell a restarted node, which has lost its log, from a reconnecting one
+    private final long epoch = ThreadLocalRandom.current().nextLong();
+    private final SecureRandom nonces = new SecureRandom();
+
+    private String nodeId;
+    private AckMode ackMode;
+    private ServerSocket serverSocket;
+    private final List<Peer> peers = new ArrayList<>();
+    private final Map<String, Origin> origins = new ConcurrentHashMap<>();
+    private final Set<Socket> receiving = ConcurrentHashMap.newKeySet();
+    private final Object acks = new Object();
+    private volatile boolean running;
+
+    @PostConstruct
+    void start() throws IOException {
+        ackMode = AckMode.valueOf(ackModeName.trim().toUpperCase(Locale.ROOT));
+        nodeId = replicationLog.getNodeId();
+        for (String address : peerAddresses) {
+            if (!address.isBlank()) {
+                peers.add(new Peer(address.trim()));
+            }
+        }
+        if (secret.isBlank() && !isLoopbackOnly()) {
+            throw new IllegalStateException("api.replication.secret must be set unless api.replication.bind-address"
+                + " and every peer in api.replication.peers are loopback addresses");
+        }
+
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        running = true;
+        startThread("replication-accept", this::acceptConnections);
+        for (Peer peer : peers) {
+            startThread("replication-out-" + peer.address, peer::run);
+        }
+        log.info("Replication node {} listening on {}:{}, shipping to {} with {} acknowledgment",
+            nodeId, bindAddress, port, peers.isEmpty() ? "no peers" : peerAddresses, ackMode.name().toLowerCase(Locale.ROOT));
+        if (!idGenerators.isNodeScoped() && !peers.isEmpty()) {
+            log.warn("api.ids.mode is sequence, so records created on different nodes at once can get the same id");
+        }
+    }
+
+    private boolean isLoopbackOnly() throws IOException {
+        if (!InetAddress.getByName(bindAddress).isLoopbackAddress()) {
+            return false;
+        }
+        for (Peer peer : peers) {
+            if (!InetAddress.getByName(peer.host).isLoopbackAddress()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] nonce() {
+        byte[] nonce = new byte[ReplicationProtocol.NONCE_BYTES];
+        nonces.nextBytes(nonce);
+        return nonce;
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        closeQuietly(serverSocket);
+        peers.forEach(peer -> closeQuietly(peer.socket));
+        receiving.forEach(ReplicationService::closeQuietly);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public AckMode getAckMode() {
+        return ackMode;
+    }
+
+    /**
+     * Waits up to {@code api.replication.ack-timeout} until as many peers as
+     * the ack mode asks for, one or all of them, have applied the mutation
+     * at {@code sequence}.
+     *
+     * @return whether they did in time; always {@code true} in async mode
+     */
+    public boolean awaitReplicated(long sequence) throws InterruptedException {
+        int required = switch (ackMode) {
+            case ASYNC -> 0;
+            case ONE -> Math.min(1, peers.size());
+            case ALL -> peers.size();
+        };
+        long deadline = System.nanoTime() + ackTimeout.toNanos();
+        synchronized (acks) {
+            while (countAcked(sequence) < required) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(acks, remaining);
+            }
+            return true;
+        }
+    }
+
+    private int countAcked(long sequence) {
+        int count = 0;
+        for (Peer peer : peers) {
+            if (peer.acked >= sequence) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public ReplicationStatus getStatus() {
+        long last = replicationLog.getLastSequence();
+        List<ReplicationStatus.Peer> peerStatus = new ArrayList<>(peers.size());
+        for (Peer peer : peers) {
+            peerStatus.add(new ReplicationStatus.Peer(peer.address, peer.connected, peer.acked,
+                Math.max(0, last - peer.acked), peer.lastError));
+        }
+        List<ReplicationStatus.Origin> originStatus = new ArrayList<>(origins.size());
+        for (Origin origin : origins.values()) {
+            originStatus.add(new ReplicationStatus.Origin(origin.nodeId, origin.epoch, origin.applied,
+                origin.connections.get() > 0));
+        }
+        return new ReplicationStatus(nodeId, epoch, ackMode.name().toLowerCase(Locale.ROOT), last,
+            replicationLog.getOldestSequence(), stores.getConflicts(), peerStatus, originStatus);
+    }
+
+    // Receiving side: one thread per connection from a peer
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                startThread("replication-in-" + socket.getRemoteSocketAddress(), () -> receive(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Could not accept a replication connection", e);
+                }
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        receiving.add(socket);
+        Origin origin = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 512));
+
+            ReplicationProtocol.Hello hello = ReplicationProtocol.readHello(in);
+            byte[] challenge = nonce();
+            ReplicationProtocol.writeChallenge(out, challenge,
+                ReplicationProtocol.proof(secret, ReplicationProtocol.Role.RECEIVER, hello, challenge));
+            out.flush();
+            byte answer = in.readByte();
+            if (answer != ReplicationProtocol.PROOF) {
+                throw new IOException("Unexpected frame " + answer);
+            }
+            boolean proven = MessageDigest.isEqual(ReplicationProtocol.readProof(in),
+                ReplicationProtocol.proof(secret, ReplicationProtocol.Role.SHIPPER, hello, challenge));
+            String refusal = !proven ? "wrong secret"
+                : hello.nodeId().equals(nodeId) ? "same node id as the receiving node"
+                : !hello.idMode().equals(idGenerators.getMode().name()) ? "id mode " + hello.idMode()
+                    + " differs from " + idGenerators.getMode().name() + " on the receiving node"
+                : idGenerators.isNodeScoped() && hello.idNode() == idGenerators.getNodeId()
+                    ? "same api.ids.node-id " + hello.idNode() + " as the receiving node"
+                : null;
+            if (refusal != null) {
+                log.warn("Refused replication from {} at {}: {}", hello.nodeId(), socket.getRemoteSocketAddress(), refusal);
+                ReplicationProtocol.writeReject(out, refusal);
+                out.flush();
+                return;
+            }
+
+            origin = origins.compute(hello.nodeId(), (id, known) ->
+                known != null && known.epoch == hello.epoch() ? known : new Origin(id, hello.epoch()));
+            origin.connections.incrementAndGet();
+            ReplicationProtocol.writeSequence(out, ReplicationProtocol.RESUME, origin.applied);
+            out.flush();
+            log.info("Receiving from {} after sequence {}", origin.nodeId, origin.applied);
+
+            while (running) {
+                byte type = in.readByte();
+                switch (type) {
+                    case ReplicationProtocol.MUTATION -> origin.apply(ReplicationProtocol.readMutation(in));
+                    case ReplicationProtocol.SNAPSHOT_BEGIN ->
+                        log.info("Receiving a snapshot from {} up to sequence {}", origin.nodeId, in.readLong());
+                    case ReplicationProtocol.SNAPSHOT_END -> origin.snapshotApplied(in.readLong());
+                    case ReplicationProtocol.HEARTBEAT -> in.readLong();
+                    default -> throw new IOException("Unexpected frame " + type);
+                }
+                // Acknowledge once the frames that have arrived are applied, not after every one
+                if (in.available() == 0) {
+                    ReplicationProtocol.writeSequence(out, ReplicationProtocol.ACK, origin.applied);
+                    out.flush();
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            log.debug("Replication connection from {} closed", socket.getRemoteSocketAddress(), e);
+        } catch (IOException e) {
+            log.warn("Replication connection from {} failed", socket.getRemoteSocketAddress(), e);
+        } finally {
+            receiving.remove(socket);
+            if (origin != null) {
+                origin.connections.decrementAndGet();
+            }
+        }
+    }
+
+    /** What has been applied from one node in one epoch. */
+    private final class Origin {
+        final String nodeId;
+        final long epoch;
+        final AtomicInteger connections = new AtomicInteger();
+        volatile long applied;
+
+        Origin(String nodeId, long epoch) {
+            this.nodeId = nodeId;
+            this.epoch = epoch;
+        }
+
+        // A reconnecting sender may repeat mutations already applied; snapshot records have no sequence
+        synchronized void apply(Mutation mutation) {
+            long sequence = mutation.getSequence();
+            if (sequence != 0 && sequence <= applied) {
+                return;
+            }
+            try {
+                stores.apply(mutation);
+            } catch (RuntimeException e) {
+                log.error("Could not apply {} {} from {} at sequence {}",
+                    mutation.getEntity(), mutation.getId(), nodeId, sequence, e);
+            }
+            if (sequence != 0) {
+                applied = sequence;
+            }
+        }
+
+        synchronized void snapshotApplied(long sequence) {
+            applied = Math.max(applied, sequence);
+            log.info("Applied a snapshot from {} up to sequence {}", nodeId, sequence);
+        }
+    }
+
+    // Shipping side: one thread per peer, reconnecting until the node stops
+
+    private final class Peer {
+        final String address;
+        final String host;
+        final int port;
+        volatile Socket socket;
+        volatile boolean connected;
+        volatile long acked;
+        volatile String lastError;
+
+        Peer(String address) {
+            int colon = address.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Replication peer must be host:port, not " + address);
+            }
+            this.address = address;
+            this.host = address.substring(0, colon);
+            this.port = Integer.parseInt(address.substring(colon + 1));
+        }
+
+        void run() {
+            while (running) {
+                try {
+                    ship();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    lastError = e.toString();
+                    if (connected) {
+                        log.warn("Lost replication connection to {}: {}", address, e.toString());
+                    } else {
+                        log.debug("Could not replicate to {}", address, e);
+                    }
+                } finally {
+                    connected = false;
+                    closeQuietly(socket);
+                }
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private void ship() throws IOException, InterruptedException {
+            Socket s = new Socket();
+            socket = s;
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            s.setTcpNoDelay(true);
+            s.setSoTimeout(READ_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 512));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), BUFFER_SIZE));
+
+            ReplicationProtocol.Hello hello = new ReplicationProtocol.Hello(nodeId, epoch,
+                idGenerators.getMode().name(), idGenerators.getNodeId(), nonce());
+            ReplicationProtocol.writeHello(out, hello);
+            out.flush();
+            byte type = in.readByte();
+            if (type != ReplicationProtocol.CHALLENGE) {
+                throw new IOException("Unexpected frame " + type);
+            }
+            byte[] challenge = ReplicationProtocol.readNonce(in);
+            // The receiver proves it knows the secret first, so nothing goes to a node that does not
+            if (!MessageDigest.isEqual(ReplicationProtocol.readProof(in),
+                    ReplicationProtocol.proof(secret, ReplicationProtocol.Role.RECEIVER, hello, challenge))) {
+                IOException refused = new IOException(address + " does not know the replication secret");
+                if (!refused.toString().equals(lastError)) {
+                    log.warn("Not replicating to {}: it does not know the replication secret", address);
+                }
+                throw refused;
+            }
+            ReplicationProtocol.writeProof(out,
+                ReplicationProtocol.proof(secret, ReplicationProtocol.Role.SHIPPER, hello, challenge));
+            out.flush();
+            type = in.readByte();
+            if (type == ReplicationProtocol.REJECT) {
+                throw new IOException("Refused by " + address + ": " + in.readUTF());
+            }
+            if (type != ReplicationProtocol.RESUME) {
+                throw new IOException("Unexpected frame " + type);
+            }
+            long cursor = in.readLong();
+            synchronized (acks) {
+                acked = cursor;
+            }
+            connected = true;
+            lastError = null;
+            log.info("Shipping to {} after sequence {}", address, cursor);
+            startThread("replication-ack-" + address, () -> readAcks(s, in));
+
+            if (cursor == 0 || replicationLog.readAfter(cursor, 1) == null) {
+                cursor = sendSnapshot(out);
+            }
+            while (running) {
+                List<Mutation> batch = replicationLog.readAfter(cursor, BATCH_SIZE);
+                if (batch == null) {
+                    log.info("{} fell behind the replication log; sending a snapshot", address);
+                    cursor = sendSnapshot(out);
+                } else if (batch.isEmpty()) {
+                    out.flush();
+                    if (!replicationLog.awaitAfter(cursor, HEARTBEAT_MILLIS)) {
+                        ReplicationProtocol.writeSequence(out, ReplicationProtocol.HEARTBEAT, cursor);
+                        out.flush();
+                    }
+                } else {
+                    for (Mutation mutation : batch) {
+                        ReplicationProtocol.writeMutation(out, mutation);
+                    }
+                    cursor = batch.get(batch.size() - 1).getSequence();
+                }
+            }
+        }
+
+        // Mutations recorded while the stores are read are streamed after the snapshot as well
+        private long sendSnapshot(DataOutputStream out) throws IOException {
+            long upTo = replicationLog.getLastSequence();
+            ReplicationProtocol.writeSequence(out, ReplicationProtocol.SNAPSHOT_BEGIN, upTo);
+            int[] records = {0};
+            stores.forEachRecord(mutation -> {
+                ReplicationProtocol.writeMutation(out, mutation);
+                records[0]++;
+            });
+            ReplicationProtocol.writeSequence(out, ReplicationProtocol.SNAPSHOT_END, upTo);
+            out.flush();
+            log.info("Sent a snapshot of {} records up to sequence {} to {}", records[0], upTo, address);
+            return upTo;
+        }
+
+        // Receivers answer heartbeats too, so a silent connection is a dead one and is closed
+        private void readAcks(Socket s, DataInputStream in) {
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    if (type != ReplicationProtocol.ACK) {
+                        throw new IOException("Unexpected frame " + type);
+                    }
+                    long sequence = in.readLong();
+                    synchronized (acks) {
+                        if (sequence > acked) {
+                            acked = sequence;
+                            acks.notifyAll();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                closeQuietly(s);
+            }
+        }
+    }
+
+    private static void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // already closed or never opened
+        }
+    }
+}
@@ -0,0 +1,43 @@
+
+package com.example.bookapi.replication;
+
+/**
+ * What became of a record replicated to a store that may hold another
+ * state of it. Every node orders the states of a record the same way, by
+ * version and then by the origin of the node that wrote the version, so
+ * nodes that wrote the same version concurrently all end up keeping the
+ * same one of them.
+ */
+public enum Resolution {
+
+    /** Stored: it was newer than the record held, or there was none. */
+    APPLIED,
+
+    /** Ignored: the record held is this state or a later one. */
+    STALE,
+
+    /** Stored over a different state at the same version. */
+    CONFLICT_WON,
+
+    /** Ignored in favour of the different state at the same version that is held. */
+    CONFLICT_LOST;
+
+    /** Compares an arriving state of a record with the one held. */
+    public static Resolution of(long version, long origin, long heldVersion, long heldOrigin) {
+        if (version != heldVersion) {
+            return version > heldVersion ? APPLIED : STALE;
+        }
+        if (origin == heldOrigin) {
+            return STALE;
+        }
+        return origin > heldOrigin ? CONFLICT_WON : CONFLICT_LOST;
+    }
+
+    public boolean isStored() {
+        return this == APPLIED || this == CONFLICT_WON;
+    }
+
+    public boolean isConflict() {
+        return this == CONFLICT_WON || this == CONFLICT_LOST;
+    }
+}
@@ -0,0 +1,187 @@
+
+package com.example.bookapi.service;
+
+import com.example.bookapi.dto.BookChangeEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams {@link BookChangeLog} entries to SSE subscribers. A subscriber only
+ * holds its cursor into the shared log, never a private queue, and at most one
+ * delivery task per subscriber is pending at any time. Subscribers that fall
+ * behind the retained window get a {@code reset} event and are disconnected.
+ */
+@Service
+public class BookChangeFeed {
+
+    private static final int BATCH_SIZE = 256;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${books.changes.max-subscribers:1000}")
+    private int maxSubscribers;
+
+    @Value("${books.changes.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${books.changes.delivery-threads:4}")
+    private int deliveryThreads;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private Semaphore slots;
+    private ThreadPoolExecutor executor;
+    // Each SSE data line is framed separately, so an indented event would take one per line of JSON
+    private ObjectWriter eventWriter;
+
+    @PostConstruct
+    void start() {
+        slots = new Semaphore(maxSubscribers);
+        executor = new ThreadPoolExecutor(deliveryThreads, deliveryThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxSubscribers), runnable -> {
+                    Thread thread = new Thread(runnable, "book-change-feed");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        eventWriter = objectMapper.writerFor(BookChangeEvent.class).without(SerializationFeature.INDENT_OUTPUT);
+        bookService.getChangeLog().addListener(this::signalAll);
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    /**
+     * Opens a stream starting after {@code lastEventId}, or at the current head
+     * of the log when no id is given. Returns {@code null} when the subscriber
+     * limit has been reached.
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        // A slot is taken before the subscriber exists, so concurrent subscribes cannot overshoot the limit
+        if (!slots.tryAcquire()) {
+            return null;
+        }
+
+        BookChangeLog changeLog = bookService.getChangeLog();
+        long cursor = lastEventId != null ? lastEventId : changeLog.getLastSequence();
+        if (cursor > changeLog.getLastSequence()) {
+            cursor = -1; // id from before a restart, force a reset on first delivery
+        }
+        Subscriber subscriber = new Subscriber(new SseEmitter(emitterTimeoutMs), cursor);
+
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> close(subscriber));
+        subscriber.emitter.onError(error -> close(subscriber));
+        subscribers.add(subscriber);
+
+        signal(subscriber);
+        return subscriber.emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private void signalAll() {
+        for (Subscriber subscriber : subscribers) {
+            signal(subscriber);
+        }
+    }
+
+    private void signal(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> deliver(subscriber));
+            } catch (RejectedExecutionException e) {
+                close(subscriber);
+            }
+        }
+    }
+
+    private void deliver(Subscriber subscriber) {
+        BookChangeLog changeLog = bookService.getChangeLog();
+        try {
+            while (true) {
+                List<BookChangeEvent> events = changeLog.readAfter(subscriber.cursor, BATCH_SIZE);
+                if (events == null) {
+                    reset(subscriber, changeLog.getLastSequence());
+                    return;
+                }
+                if (events.isEmpty()) {
+                    break;
+                }
+                for (BookChangeEvent event : events) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(Long.toString(event.getSequence()))
+                            .name(event.getType().name().toLowerCase())
+                            .data(eventWriter.writeValueAsString(event)));
+                    subscriber.cursor = event.getSequence();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            close(subscriber);
+            return;
+        }
+
+        subscriber.scheduled.set(false);
+        if (changeLog.getLastSequence() > subscriber.cursor && subscribers.contains(subscriber)) {
+            signal(subscriber);
+        }
+    }
+
+    private void reset(Subscriber subscriber, long lastSequence) {
+        try {
+            subscriber.emitter.send(SseEmitter.event()
+                    .id(Long.toString(lastSequence))
+                    .name("reset")
+                    .data("Change log position no longer retained, reload the full list"));
+            subscriber.emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            close(subscriber);
+        }
+        remove(subscriber);
+    }
+
+    private void close(Subscriber subscriber) {
+        remove(subscriber);
+        subscriber.emitter.complete();
+    }
+
+    // Completion, errors and resets can all remove a subscriber; only the first gives its slot back
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            slots.release();
+        }
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile long cursor;
+
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+
+package com.example.bookapi.service;
+
+import com.example.bookapi.dto.BookChangeEvent;
+import com.example.bookapi.model.Book;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, sequence-numbered log of book mutations. Sequences start at 1 and
+ * the oldest entries are overwritten once the ring is full, so readers that
+ * fall too far behind must resynchronise from a full listing.
+ */
+public class BookChangeLog {
+
+    private final AtomicReferenceArray<BookChangeEvent> ring;
+    private final int mask;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile long lastSequence = 0;
+
+    public BookChangeLog(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Appends an event without telling the listeners, so that callers can
+     * append under their own lock and {@link #signalListeners()} after it.
+     */
+    public synchronized BookChangeEvent append(BookChangeEvent.Type type, Long bookId, Book book) {
+        long sequence = lastSequence + 1;
+        BookChangeEvent event = new BookChangeEvent(sequence, type, bookId, book);
+        ring.set((int) (sequence & mask), event);
+        lastSequence = sequence;
+        return event;
+    }
+
+    /** Tells the listeners there may be new events; they read whatever was appended since they last looked. */
+    public void signalListeners() {
+        listeners.forEach(Runnable::run);
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getOldestSequence() {
+        return Math.max(1, lastSequence - mask);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Returns up to {@code max} events with a sequence greater than
+     * {@code afterSequence}, or {@code null} if some of them have already been
+     * overwritten and the caller has to start over.
+     */
+    public List<BookChangeEvent> readAfter(long afterSequence, int max) {
+        long last = lastSequence;
+        if (afterSequence >= last) {
+            return List.of();
+        }
+        if (afterSequence + 1 < getOldestSequence()) {
+            return null;
+        }
+        long end = Math.min(last, afterSequence + max);
+        List<BookChangeEvent> events = new ArrayList<>((int) (end - afterSequence));
+        for (long sequence = afterSequence + 1; sequence <= end; sequence++) {
+            BookChangeEvent event = ring.get((int) (sequence & mask));
+            if (event == null || event.getSequence() != sequence) {
+                return null; // overwritten while we were reading
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+}
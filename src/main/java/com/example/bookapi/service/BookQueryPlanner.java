@@ -0,0 +1,318 @@
+
+package com.example.bookapi.service;
+
+import com.example.bookapi.dto.BookQueryPlan;
+import com.example.bookapi.dto.BookSort;
+import com.example.bookapi.index.FacetIndex;
+import com.example.bookapi.index.FullTextIndex;
+import com.example.bookapi.index.OrderedIndex;
+import com.example.bookapi.index.RoaringBitmap;
+import com.example.bookapi.model.Book;
+import com.example.bookapi.query.BookPredicate;
+import com.example.bookapi.query.BookQuery;
+
+import java.util.*;
+import java.util.function.LongPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Chooses and runs the access path for a {@link BookQuery}. Each filter leaf
+ * gets a cardinality estimate from the index that can answer it (ordered
+ * index range counts, bitmap posting sizes, term document frequencies);
+ * every applicable access path is then costed from those estimates, assuming
+ * independent filters, and the cheapest one drives the scan. Whatever it does
+ * not cover is applied as a residual predicate on the fetched books.
+ *
+ * <p>The driving index is read without the service's writer lock, so every
+ * fetched book is re-checked against the whole filter, not just the residual.
+ */
+class BookQueryPlanner {
+
+    // Relative costs, in units of fetching one book by id and testing it
+    private static final double ROW_COST = 1.0;
+    private static final double BITMAP_POSTING_COST = 0.02;
+    private static final double TEXT_POSTING_COST = 0.25;
+    private static final double SORT_COMPARISON_COST = 0.1;
+
+    private final Map<Long, Book> books;
+    private final OrderedIndex yearIndex;
+    private final OrderedIndex createdAtIndex;
+    private final FacetIndex facetIndex;
+    private final FullTextIndex searchIndex;
+
+    BookQueryPlanner(Map<Long, Book> books, OrderedIndex yearIndex, OrderedIndex createdAtIndex,
+                     FacetIndex facetIndex, FullTextIndex searchIndex) {
+        this.books = books;
+        this.yearIndex = yearIndex;
+        this.createdAtIndex = createdAtIndex;
+        this.facetIndex = facetIndex;
+        this.searchIndex = searchIndex;
+    }
+
+    /** Runs {@code query}; when {@code explain} is given it is filled in with the plan and actual counts. */
+    List<Book> execute(BookQuery query, BookQueryPlan explain) {
+        long started = System.nanoTime();
+        int total = books.size();
+        Map<BookPredicate, Integer> estimates = new LinkedHashMap<>();
+        double selectivity = 1.0;
+        for (BookPredicate filter : query.getPredicate().getChildren()) {
+            int estimate = Math.min(total, estimate(filter));
+            estimates.put(filter, estimate);
+            selectivity *= total == 0 ? 0 : (double) estimate / total;
+        }
+        long estimatedRows = Math.round(total * selectivity);
+
+        List<AccessPath> candidates = candidates(query, estimates, total);
+        AccessPath chosen = null;
+        for (AccessPath candidate : candidates) {
+            candidate.cost(query, estimatedRows);
+            if (chosen == null || candidate.cost < chosen.cost) {
+                chosen = candidate;
+            }
+        }
+
+        BookSort sort = query.getSort();
+        boolean sortInMemory = sort != null && !chosen.ordered;
+        int offset = query.getOffset();
+        int limit = query.getLimit();
+        BookPredicate.And filter = query.getPredicate();
+        List<Book> rows = new ArrayList<>(Math.min(limit, 1024));
+        long[] counts = new long[3]; // driver rows, matching rows, skipped rows
+        boolean[] stopped = {false};
+
+        chosen.scan.scan(id -> {
+            counts[0]++;
+            Book book = books.get(id);
+            if (book == null || !filter.test(book)) {
+                return true;
+            }
+            counts[1]++;
+            if (sortInMemory) {
+                rows.add(book);
+                return true;
+            }
+            if (counts[2] < offset) {
+                counts[2]++;
+                return true;
+            }
+            rows.add(book);
+            stopped[0] = rows.size() >= limit;
+            return !stopped[0];
+        });
+
+        List<Book> page = rows;
+        if (sortInMemory) {
+            rows.sort(comparator(sort));
+            int from = (int) Math.min(rows.size(), offset);
+            page = new ArrayList<>(rows.subList(from, (int) Math.min(rows.size(), (long) from + limit)));
+        }
+
+        if (explain != null) {
+            Map<String, Integer> predicateEstimates = new LinkedHashMap<>();
+            estimates.forEach((predicate, estimate) -> predicateEstimates.put(predicate.describe(), estimate));
+            List<String> residual = new ArrayList<>();
+            for (BookPredicate predicate : filter.getChildren()) {
+                if (!chosen.covered.contains(predicate)) {
+                    residual.add(predicate.describe());
+                }
+            }
+            List<BookQueryPlan.Candidate> costed = new ArrayList<>();
+            for (AccessPath candidate : candidates) {
+                costed.add(new BookQueryPlan.Candidate(candidate.access, candidate.driverRows, round(candidate.cost)));
+            }
+
+            explain.setFilter(filter.describe());
+            explain.setPredicateEstimates(predicateEstimates);
+            explain.setAccess(chosen.access);
+            explain.setResidual(residual);
+            explain.setOrder(sort == null ? "access path order"
+                : (sortInMemory ? "in-memory sort by " : "index order by ") + sort.getParameter());
+            explain.setEstimatedDriverRows(chosen.driverRows);
+            explain.setActualDriverRows(counts[0]);
+            explain.setEstimatedRows(estimatedRows);
+            explain.setActualRows(counts[1]);
+            explain.setEstimatedCost(round(chosen.cost));
+            explain.setStoppedEarly(stopped[0]);
+            explain.setExecutionMicros((System.nanoTime() - started) / 1000);
+            explain.setCandidates(costed);
+        }
+        return page;
+    }
+
+    private int estimate(BookPredicate filter) {
+        if (filter instanceof BookPredicate.AuthorContains author) {
+            return facetIndex.estimateContaining(BookService.AUTHOR, author.getValue());
+        }
+        if (filter instanceof BookPredicate.GenreContains genre) {
+            return facetIndex.estimateContaining(BookService.GENRE, genre.getValue());
+        }
+        if (filter instanceof BookPredicate.DecadeEquals decade) {
+            return facetIndex.countEqualTo(BookService.DECADE, Integer.toString(decade.getDecade()));
+        }
+        if (filter instanceof BookPredicate.YearBetween years) {
+            return yearIndex.count(lowerYearKey(years.getFrom()), years.getTo());
+        }
+        if (filter instanceof BookPredicate.TextMatches text) {
+            return searchIndex.estimateMatches(text.getQuery());
+        }
+        return books.size();
+    }
+
+    private List<AccessPath> candidates(BookQuery query, Map<BookPredicate, Integer> estimates, int total) {
+        List<AccessPath> candidates = new ArrayList<>();
+        BookSort sort = query.getSort();
+        boolean descending = sort != null && sort.isDescending();
+
+        candidates.add(new AccessPath("fullScan", total, 0, List.of(), false, visitor -> {
+            for (Book book : books.values()) {
+                if (!visitor.test(book.getId())) {
+                    return;
+                }
+            }
+        }));
+
+        // Year bounds and decade both narrow the same year index range
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        List<BookPredicate> yearFilters = new ArrayList<>();
+        for (BookPredicate filter : estimates.keySet()) {
+            BookPredicate.YearBetween range = filter instanceof BookPredicate.DecadeEquals decade
+                ? decade.asYearRange()
+                : filter instanceof BookPredicate.YearBetween years ? years : null;
+            if (range != null) {
+                from = Math.max(from, range.getFrom());
+                to = Math.min(to, range.getTo());
+                yearFilters.add(filter);
+            }
+        }
+        boolean sortByYear = sort != null && sort.isByPublicationYear();
+        if (!yearFilters.isEmpty() || sortByYear) {
+            // Books without a year sit at the bottom of the index; only a bare sort visits them
+            long scanFrom = yearFilters.isEmpty() ? Long.MIN_VALUE : lowerYearKey(from);
+            long scanTo = to;
+            candidates.add(new AccessPath(
+                yearFilters.isEmpty() ? "yearIndex" : "yearIndex range " + describeBound(from) + ".." + describeBound(to),
+                yearIndex.count(scanFrom, scanTo), 0, yearFilters, sortByYear,
+                visitor -> yearIndex.scan(scanFrom, scanTo, descending, visitor)));
+        }
+
+        if (sort != null && !sortByYear) {
+            candidates.add(new AccessPath("createdAtIndex", total, 0, List.of(), true,
+                visitor -> createdAtIndex.scan(Long.MIN_VALUE, Long.MAX_VALUE, descending, visitor)));
+        }
+
+        // Bitmap AND over every categorical filter, smallest posting first
+        List<BookPredicate> facetFilters = new ArrayList<>();
+        int facetRows = Integer.MAX_VALUE;
+        int postings = 0;
+        for (Map.Entry<BookPredicate, Integer> entry : estimates.entrySet()) {
+            BookPredicate filter = entry.getKey();
+            if (filter instanceof BookPredicate.AuthorContains || filter instanceof BookPredicate.GenreContains
+                    || filter instanceof BookPredicate.DecadeEquals) {
+                facetFilters.add(filter);
+                facetRows = Math.min(facetRows, entry.getValue());
+                postings += entry.getValue();
+            }
+        }
+        if (!facetFilters.isEmpty()) {
+            facetFilters.sort(Comparator.comparing(estimates::get));
+            List<String> dimensions = new ArrayList<>();
+            facetFilters.forEach(filter -> dimensions.add(dimensionOf(filter)));
+            candidates.add(new AccessPath("facetBitmaps " + dimensions, facetRows, postings * BITMAP_POSTING_COST,
+                facetFilters, false, visitor -> scanBitmaps(facetFilters, visitor)));
+        }
+
+        BookPredicate.TextMatches text = query.find(BookPredicate.TextMatches.class);
+        if (text != null) {
+            int textRows = estimates.get(text);
+            candidates.add(new AccessPath("textIndex", textRows, textRows * TEXT_POSTING_COST, List.of(text), false,
+                visitor -> searchIndex.forEachMatch(text.getQuery(), visitor)));
+        }
+        return candidates;
+    }
+
+    private void scanBitmaps(List<BookPredicate> filters, LongPredicate visitor) {
+        RoaringBitmap selection = null;
+        for (BookPredicate filter : filters) {
+            RoaringBitmap slots;
+            if (filter instanceof BookPredicate.AuthorContains author) {
+                slots = facetIndex.containing(BookService.AUTHOR, author.getValue());
+            } else if (filter instanceof BookPredicate.GenreContains genre) {
+                slots = facetIndex.containing(BookService.GENRE, genre.getValue());
+            } else {
+                slots = facetIndex.equalTo(BookService.DECADE,
+                    Integer.toString(((BookPredicate.DecadeEquals) filter).getDecade()));
+            }
+            selection = selection == null ? slots : selection.and(slots);
+            if (selection.isEmpty()) {
+                return;
+            }
+        }
+        facetIndex.forEachId(selection, visitor);
+    }
+
+    private static String dimensionOf(BookPredicate filter) {
+        if (filter instanceof BookPredicate.AuthorContains) return BookService.AUTHOR;
+        if (filter instanceof BookPredicate.GenreContains) return BookService.GENRE;
+        return BookService.DECADE;
+    }
+
+    private static Comparator<Book> comparator(BookSort sort) {
+        ToLongFunction<Book> key = sort.isByPublicationYear() ? BookService::yearKey : BookService::createdAtKey;
+        Comparator<Book> comparator = Comparator.comparingLong(key).thenComparing(Book::getId);
+        return sort.isDescending() ? comparator.reversed() : comparator;
+    }
+
+    // Books without a year are indexed under Integer.MIN_VALUE; an open lower bound must skip them
+    private static long lowerYearKey(long from) {
+        return Math.max(from, Integer.MIN_VALUE + 1L);
+    }
+
+    private static String describeBound(long bound) {
+        return bound == Long.MIN_VALUE || bound == Long.MAX_VALUE ? "*" : Long.toString(bound);
+    }
+
+    private static double round(double cost) {
+        return Math.round(cost * 10) / 10.0;
+    }
+
+    private interface Scan {
+        void scan(LongPredicate visitor);
+    }
+
+    private static final class AccessPath {
+        final String access;
+        final long driverRows;
+        final double setupCost;
+        final List<BookPredicate> covered;
+        final boolean ordered;
+        final Scan scan;
+        double cost;
+
+        AccessPath(String access, long driverRows, double setupCost, List<BookPredicate> covered,
+                   boolean ordered, Scan scan) {
+            this.access = access;
+            this.driverRows = driverRows;
+            this.setupCost = setupCost;
+            this.covered = covered;
+            this.ordered = ordered;
+            this.scan = scan;
+        }
+
+        // Paths that need no sort stop once the page is full, after reading need / selectivity rows
+        void cost(BookQuery query, long estimatedRows) {
+            BookSort sort = query.getSort();
+            boolean sortInMemory = sort != null && !ordered;
+            double visited = driverRows;
+            if (!sortInMemory && estimatedRows > 0 && driverRows > 0) {
+                double residualSelectivity = Math.min(1.0, (double) estimatedRows / driverRows);
+                double needed = (double) query.getOffset() + query.getLimit();
+                visited = Math.min(driverRows, Math.ceil(needed / residualSelectivity));
+            }
+            cost = setupCost + visited * ROW_COST;
+            if (sortInMemory && estimatedRows > 1) {
+                cost += estimatedRows * (Math.log(estimatedRows) / Math.log(2)) * SORT_COMPARISON_COST;
+            }
+        }
+    }
+}
@@ -1,34 +1,97 @@
 
 package com.example.bookapi.service;
 
+import com.example.bookapi.dto.BookBrowseResult;
+import com.example.bookapi.dto.BookChangeEvent;
+import com.example.bookapi.dto.BookDelta;
+import com.example.bookapi.dto.BookSearchHit;
+import com.example.bookapi.exception.VersionConflictException;
+import com.example.bookapi.id.IdGenerator;
+import com.example.bookapi.id.IdGenerators;
+import com.example.bookapi.dto.BookQueryPlan;
+import com.example.bookapi.index.FacetIndex;
+import com.example.bookapi.index.FullTextIndex;
+import com.example.bookapi.index.OrderedIndex;
+import com.example.bookapi.index.RoaringBitmap;
 import com.example.bookapi.model.Book;
+import com.example.bookapi.query.BookPredicate;
+import com.example.bookapi.query.BookQuery;
+import com.example.bookapi.replication.Mutation;
+import com.example.bookapi.replication.ReplicationLog;
+import com.example.bookapi.replication.Resolution;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 @Service
 public class BookService {
     
-    private final Map<Long, Book> books = new HashMap<>();
-    private final AtomicLong idGenerator = new AtomicLong(1);
+    private final Map<Long, Book> books = new ConcurrentHashMap<>();
+    private final IdGenerator idGenerator;
+    private final BookChangeLog changeLog;
+    private final ReplicationLog replicationLog;
     
-    public BookService() {
+    // Version-ordered secondary index for delta sync; versions are change log sequences
+    private final ConcurrentSkipListMap<Long, Book> booksByVersion = new ConcurrentSkipListMap<>();
+    private final Map<Long, Long> bookVersions = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Long> tombstones = new ConcurrentSkipListMap<>();
+    private final int tombstoneCapacity;
+    private volatile long tombstoneHorizon = 0;
+    private volatile long indexedVersion = 0;
+    
+    // Full-text index over title (boosted) and description
+    private final FullTextIndex searchIndex = new FullTextIndex(2.0f, 1.0f);
+    
+    // Ordered indexes for range queries and server-side sorting
+    private final OrderedIndex yearIndex = new OrderedIndex();
+    private final OrderedIndex createdAtIndex = new OrderedIndex();
+    
+    // Bitmap postings for combined filters and facet counts
+    static final String AUTHOR = "author";
+    static final String GENRE = "genre";
+    static final String DECADE = "decade";
+    private final FacetIndex facetIndex = new FacetIndex(AUTHOR, GENRE, DECADE);
+    
+    // Fields a PATCH may change
+    private static final PatchFields<Book> BOOK_PATCH = new PatchFields<>(Book.class)
+        .text("title", Book::setTitle)
+        .text("author", Book::setAuthor)
+        .text("isbn", Book::setIsbn)
+        .integer("publicationYear", Book::setPublicationYear)
+        .text("genre", Book::setGenre)
+        .text("description", Book::setDescription);
+    private final Validator validator;
+    
+    private final BookQueryPlanner planner =
+        new BookQueryPlanner(books, yearIndex, createdAtIndex, facetIndex, searchIndex);
+    
+    public BookService(@Value("${books.changes.capacity:4096}") int changeLogCapacity,
+                       @Value("${books.tombstones.capacity:100000}") int tombstoneCapacity,
+                       Validator validator,
+                       ReplicationLog replicationLog,
+                       IdGenerators idGenerators) {
+        this.validator = validator;
+        this.idGenerator = idGenerators.create("books");
+        this.changeLog = new BookChangeLog(changeLogCapacity);
+        this.replicationLog = replicationLog;
+        this.tombstoneCapacity = tombstoneCapacity;
         // Initialize with sample data
         initializeSampleData();
     }
     
+    // Sample books have the same ids and origin on every node, whichever way ids are generated
     private void initializeSampleData() {
-        Book book1 = new Book("The Great Gatsby", "F. Scott Fitzgerald", "978-0-7432-7356-5", 1925, "Fiction", "A classic American novel");
-        book1.setId(idGenerator.getAndIncrement());
-        books.put(book1.getId(), book1);
-        
-        Book book2 = new Book("To Kill a Mockingbird", "Harper Lee", "978-0-06-112008-4", 1960, "Fiction", "A gripping tale of racial injustice");
-        book2.setId(idGenerator.getAndIncrement());
-        books.put(book2.getId(), book2);
-        
-        Book book3 = new Book("1984", "George Orwell", "978-0-452-28423-4", 1949, "Dystopian Fiction", "A dystopian social science fiction novel");
-        book3.setId(idGenerator.getAndIncrement());
-        books.put(book3.getId(), book3);
+        insert(new Book("The Great Gatsby", "F. Scott Fitzgerald", "978-0-7432-7356-5", 1925, "Fiction", "A classic American novel"), 1, 0);
+        insert(new Book("To Kill a Mockingbird", "Harper Lee", "978-0-06-112008-4", 1960, "Fiction", "A gripping tale of racial injustice"), 2, 0);
+        insert(new Book("1984", "George Orwell", "978-0-452-28423-4", 1949, "Dystopian Fiction", "A dystopian social science fiction novel"), 3, 0);
+        idGenerator.advancePast(3);
     }
     
     public List<Book> getAllBooks() {
@@ -39,38 +102,432 @@ public class BookService {
         return Optional.ofNullable(books.get(id));
     }
     
+    /** The book for each id, in order, with {@code null} for ids that have none. */
+    public List<Book> getBooksByIds(List<Long> ids) {
+        List<Book> found = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            found.add(books.get(id));
+        }
+        return found;
+    }
+    
     public List<Book> getBooksByAuthor(String author) {
-        return books.values().stream()
-                .filter(book -> book.getAuthor().toLowerCase().contains(author.toLowerCase()))
-                .toList();
+        return getBooksMatching(author, null, null);
     }
     
     public List<Book> getBooksByGenre(String genre) {
-        return books.values().stream()
-                .filter(book -> book.getGenre() != null && 
-                               book.getGenre().toLowerCase().contains(genre.toLowerCase()))
-                .toList();
+        return getBooksMatching(null, genre, null);
+    }
+    
+    /** Books matching every given filter; author and genre match as case-insensitive substrings. */
+    public List<Book> getBooksMatching(String author, String genre, Integer decade) {
+        BookQuery query = BookQuery.parse(author, genre, decade, null, null, null, null, 0, null);
+        RoaringBitmap selection = select(author, genre, decade);
+        return resolve(selection, query.getPredicate(), 0, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Filtered page plus, when requested, the top {@code facetLimit} value
+     * counts of every dimension that was not filtered on. Filters on the
+     * facet dimensions alone are answered from the bitmaps; a year range,
+     * text or sort goes through the query planner, and the counts are taken
+     * over the slots of the books it matched.
+     */
+    public BookBrowseResult browseBooks(BookQuery query, boolean includeFacets, int facetLimit) {
+        BookPredicate.AuthorContains authorFilter = query.find(BookPredicate.AuthorContains.class);
+        BookPredicate.GenreContains genreFilter = query.find(BookPredicate.GenreContains.class);
+        BookPredicate.DecadeEquals decadeFilter = query.find(BookPredicate.DecadeEquals.class);
+        String author = authorFilter != null ? authorFilter.getValue() : null;
+        String genre = genreFilter != null ? genreFilter.getValue() : null;
+        Integer decade = decadeFilter != null ? decadeFilter.getDecade() : null;
+        
+        RoaringBitmap selection;
+        List<Book> page;
+        if (query.getSort() == null && query.find(BookPredicate.YearBetween.class) == null
+                && query.find(BookPredicate.TextMatches.class) == null) {
+            selection = select(author, genre, decade);
+            page = resolve(selection, query.getPredicate(), query.getOffset(), query.getLimit());
+        } else {
+            List<Book> matches = planner.execute(
+                new BookQuery(query.getPredicate(), query.getSort(), 0, Integer.MAX_VALUE), null);
+            selection = new RoaringBitmap();
+            for (Book book : matches) {
+                int slot = facetIndex.slotOf(book.getId());
+                if (slot >= 0) {
+                    selection.add(slot);
+                }
+            }
+            int from = Math.min(matches.size(), query.getOffset());
+            page = new ArrayList<>(matches.subList(from, (int) Math.min(matches.size(), (long) from + query.getLimit())));
+        }
+        
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+        if (includeFacets) {
+            if (author == null) facets.put(AUTHOR, facetIndex.counts(AUTHOR, selection, facetLimit));
+            if (genre == null) facets.put(GENRE, facetIndex.counts(GENRE, selection, facetLimit));
+            if (decade == null) facets.put(DECADE, facetIndex.counts(DECADE, selection, facetLimit));
+        }
+        return new BookBrowseResult(page, selection.cardinality(), facets);
+    }
+    
+    private RoaringBitmap select(String author, String genre, Integer decade) {
+        RoaringBitmap selection = null;
+        if (author != null) {
+            selection = facetIndex.containing(AUTHOR, author);
+        }
+        if (genre != null) {
+            RoaringBitmap genres = facetIndex.containing(GENRE, genre);
+            selection = selection == null ? genres : selection.and(genres);
+        }
+        if (decade != null) {
+            RoaringBitmap decades = facetIndex.equalTo(DECADE, decadeKey(decade));
+            selection = selection == null ? decades : selection.and(decades);
+        }
+        return selection != null ? selection : facetIndex.all();
+    }
+    
+    // Slots are recycled, so each hit is re-checked against the filters it was selected by
+    private List<Book> resolve(RoaringBitmap selection, BookPredicate filters, int offset, int limit) {
+        List<Book> result = new ArrayList<>(Math.min(limit, selection.cardinality()));
+        if (limit == 0) {
+            return result;
+        }
+        int[] skipped = {0};
+        facetIndex.forEachId(selection, id -> {
+            Book book = books.get(id);
+            if (book == null || !filters.test(book)) {
+                return true;
+            }
+            if (skipped[0] < offset) {
+                skipped[0]++;
+                return true;
+            }
+            result.add(book);
+            return result.size() < limit;
+        });
+        return result;
+    }
+    
+    private static String decadeKey(int year) {
+        return Integer.toString(Math.floorDiv(year, 10) * 10);
     }
     
     public Book createBook(Book book) {
-        book.setId(idGenerator.getAndIncrement());
+        Book created = insert(book, idGenerator.nextId(), replicationLog.getOrigin());
+        changeLog.signalListeners();
+        return created;
+    }
+    
+    private synchronized Book insert(Book book, long id, long origin) {
+        book.setId(id);
+        book.setVersion(1);
+        book.setOrigin(origin);
         books.put(book.getId(), book);
+        reindex(null, book);
+        long version = changeLog.append(BookChangeEvent.Type.CREATED, book.getId(), book).getSequence();
+        indexVersion(book, version);
+        replicationLog.recordPut(Mutation.Entity.BOOK, book.getId(), book.getVersion(), book);
         return book;
     }
     
     public Optional<Book> updateBook(Long id, Book updatedBook) {
-        Book existingBook = books.get(id);
-        if (existingBook != null) {
-            updatedBook.setId(id);
-            updatedBook.setCreatedAt(existingBook.getCreatedAt());
-            books.put(id, updatedBook);
-            return Optional.of(updatedBook);
+        return updateBook(id, null, updatedBook);
+    }
+    
+    /**
+     * Replaces the book, but only while it is still at {@code expectedVersion}
+     * when one is given.
+     *
+     * @throws VersionConflictException when the stored version differs
+     */
+    public Optional<Book> updateBook(Long id, Long expectedVersion, Book updatedBook) {
+        return compareAndSet(id, expectedVersion, current -> new Book(updatedBook));
+    }
+    
+    /**
+     * Applies the fields present in {@code changes} on top of the stored book.
+     *
+     * @throws IllegalArgumentException when a field is unknown or invalid
+     * @throws VersionConflictException when the stored version differs
+     */
+    public Optional<Book> patchBook(Long id, Long expectedVersion, Map<String, Object> changes) {
+        Consumer<Book> patch = BOOK_PATCH.parse(changes, validator);
+        return compareAndSet(id, expectedVersion, current -> {
+            Book next = new Book(current);
+            patch.accept(next);
+            return next;
+        });
+    }
+    
+    // Stored books are never mutated: a writer builds the next version and swaps it in, retrying if it lost the race
+    private Optional<Book> compareAndSet(Long id, Long expectedVersion, UnaryOperator<Book> change) {
+        while (true) {
+            Book current = books.get(id);
+            if (current == null) {
+                return Optional.empty();
+            }
+            if (expectedVersion != null && current.getVersion() != expectedVersion) {
+                throw new VersionConflictException(current.getVersion());
+            }
+            Book next = change.apply(current);
+            next.setId(id);
+            next.setCreatedAt(current.getCreatedAt());
+            next.setUpdatedAt(LocalDateTime.now());
+            next.setVersion(current.getVersion() + 1);
+            next.setOrigin(replicationLog.getOrigin());
+            if (books.replace(id, current, next)) {
+                publishUpdate(next);
+                replicationLog.recordPut(Mutation.Entity.BOOK, id, next.getVersion(), next);
+                return Optional.of(next);
+            }
         }
-        return Optional.empty();
     }
     
     public boolean deleteBook(Long id) {
-        return books.remove(id) != null;
+        return deleteBook(id, null);
+    }
+    
+    /** @throws VersionConflictException when {@code expectedVersion} is given and the stored version differs */
+    public boolean deleteBook(Long id, Long expectedVersion) {
+        while (true) {
+            Book current = books.get(id);
+            if (current == null) {
+                return false;
+            }
+            if (expectedVersion != null && current.getVersion() != expectedVersion) {
+                throw new VersionConflictException(current.getVersion());
+            }
+            if (books.remove(id, current)) {
+                publishDelete(id);
+                replicationLog.recordDelete(Mutation.Entity.BOOK, id, current.getVersion());
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Stores a book replicated from another node as it is, unless this node
+     * already holds it at a later version, or at the same version from a
+     * node that wins ties. The indexes and change log follow as for a local
+     * write, but nothing is recorded for replication.
+     */
+    public Resolution applyReplicated(Book book) {
+        Resolution resolution = storeReplicated(book);
+        if (resolution.isStored()) {
+            changeLog.signalListeners();
+        }
+        return resolution;
+    }
+    
+    private synchronized Resolution storeReplicated(Book book) {
+        idGenerator.advancePast(book.getId());
+        while (true) {
+            Book current = books.get(book.getId());
+            if (current == null) {
+                if (books.putIfAbsent(book.getId(), book) == null) {
+                    reindex(null, book);
+                    long version = changeLog.append(BookChangeEvent.Type.CREATED, book.getId(), book).getSequence();
+                    indexVersion(book, version);
+                    return Resolution.APPLIED;
+                }
+                continue;
+            }
+            Resolution resolution = Resolution.of(book.getVersion(), book.getOrigin(),
+                current.getVersion(), current.getOrigin());
+            if (!resolution.isStored()) {
+                return resolution;
+            }
+            if (books.replace(book.getId(), current, book)) {
+                recordUpdate(book);
+                return resolution;
+            }
+        }
+    }
+    
+    /** Deletes a book deleted on another node, unless it has since moved past {@code version} here. */
+    public boolean applyReplicatedDelete(long id, long version) {
+        while (true) {
+            Book current = books.get(id);
+            if (current == null || current.getVersion() > version) {
+                return false;
+            }
+            if (books.remove(id, current)) {
+                publishDelete(id);
+                return true;
+            }
+        }
+    }
+    
+    // The change log is appended to under the monitor, but its listeners fan out to
+    // every subscriber, so they are only signalled once the monitor is released
+    private void publishUpdate(Book book) {
+        if (recordUpdate(book)) {
+            changeLog.signalListeners();
+        }
+    }
+    
+    private void publishDelete(Long id) {
+        if (recordDelete(id)) {
+            changeLog.signalListeners();
+        }
+    }
+    
+    // Writers that won their swap can get here in any order, so the indexes and
+    // change log only ever move a book forward to a state that replaces the one they hold
+    private synchronized boolean recordUpdate(Book book) {
+        Book indexed = indexedBook(book.getId());
+        if (indexed == null || !Resolution.of(book.getVersion(), book.getOrigin(),
+                indexed.getVersion(), indexed.getOrigin()).isStored()) {
+            return false;
+        }
+        reindex(indexed, book);
+        long version = changeLog.append(BookChangeEvent.Type.UPDATED, book.getId(), book).getSequence();
+        indexVersion(book, version);
+        return true;
+    }
+    
+    private synchronized boolean recordDelete(Long id) {
+        Book indexed = indexedBook(id);
+        if (indexed == null) {
+            return false;
+        }
+        reindex(indexed, null);
+        long version = changeLog.append(BookChangeEvent.Type.DELETED, id, null).getSequence();
+        booksByVersion.remove(bookVersions.remove(id));
+        tombstones.put(version, id);
+        while (tombstones.size() > tombstoneCapacity) {
+            tombstoneHorizon = tombstones.pollFirstEntry().getKey();
+        }
+        indexedVersion = version;
+        return true;
+    }
+    
+    private Book indexedBook(Long id) {
+        Long version = bookVersions.get(id);
+        return version != null ? booksByVersion.get(version) : null;
+    }
+    
+    // Keeps the secondary indexes in step with the primary map, touching only those whose fields changed
+    private void reindex(Book previous, Book current) {
+        if (previous != null && current == null) {
+            searchIndex.remove(previous.getId());
+            yearIndex.remove(yearKey(previous), previous.getId());
+            createdAtIndex.remove(createdAtKey(previous), previous.getId());
+            facetIndex.remove(previous.getId());
+            return;
+        }
+        
+        boolean created = previous == null;
+        if (created || !Objects.equals(previous.getTitle(), current.getTitle())
+                || !Objects.equals(previous.getDescription(), current.getDescription())) {
+            searchIndex.index(current.getId(), current.getTitle(), current.getDescription());
+        }
+        if (created || yearKey(previous) != yearKey(current)) {
+            if (!created) {
+                yearIndex.remove(yearKey(previous), previous.getId());
+            }
+            yearIndex.add(yearKey(current), current.getId());
+        }
+        if (created || createdAtKey(previous) != createdAtKey(current)) {
+            if (!created) {
+                createdAtIndex.remove(createdAtKey(previous), previous.getId());
+            }
+            createdAtIndex.add(createdAtKey(current), current.getId());
+        }
+        if (created || !Objects.equals(previous.getAuthor(), current.getAuthor())
+                || !Objects.equals(previous.getGenre(), current.getGenre())
+                || yearKey(previous) != yearKey(current)) {
+            facetIndex.put(current.getId(), current.getAuthor(), current.getGenre(),
+                current.getPublicationYear() != null ? decadeKey(current.getPublicationYear()) : null);
+        }
+    }
+    
+    static long yearKey(Book book) {
+        return book.getPublicationYear() != null ? book.getPublicationYear() : Integer.MIN_VALUE;
+    }
+    
+    static long createdAtKey(Book book) {
+        LocalDateTime createdAt = book.getCreatedAt();
+        return createdAt != null
+            ? createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + createdAt.getNano()
+            : Long.MIN_VALUE;
+    }
+    
+    /**
+     * Runs a filtered, sorted and paged listing through the query planner,
+     * which drives the scan from the most selective index. Without a sort the
+     * order is that of the chosen index.
+     */
+    public List<Book> queryBooks(BookQuery query) {
+        if (query.isUnfiltered() && query.getSort() == null && query.getOffset() == 0
+                && query.getLimit() == Integer.MAX_VALUE) {
+            return getAllBooks();
+        }
+        return planner.execute(query, null);
+    }
+    
+    /** Runs {@code query} and reports the chosen plan with estimated and actual row counts. */
+    public BookQueryPlan explainBooks(BookQuery query) {
+        BookQueryPlan plan = new BookQueryPlan();
+        planner.execute(query, plan);
+        return plan;
+    }
+    
+    private void indexVersion(Book book, long version) {
+        Long previousVersion = bookVersions.put(book.getId(), version);
+        if (previousVersion != null) {
+            booksByVersion.remove(previousVersion);
+        }
+        booksByVersion.put(version, book);
+        indexedVersion = version;
+    }
+    
+    /**
+     * Books created or updated after change-log sequence {@code sinceSequence}
+     * plus tombstones for books deleted after it, in sequence order and capped
+     * at {@code limit} books. When the tombstones needed to answer have already
+     * been evicted the client is told to reload the full list instead.
+     */
+    public BookDelta getChangesSince(long sinceSequence, int limit) {
+        long sequence = indexedVersion;
+        if (sinceSequence < tombstoneHorizon || sinceSequence > sequence) {
+            return BookDelta.resyncRequired(sinceSequence, sequence);
+        }
+        
+        List<Book> changed = new ArrayList<>();
+        boolean hasMore = false;
+        for (Map.Entry<Long, Book> entry : booksByVersion.subMap(sinceSequence, false, sequence, true).entrySet()) {
+            if (changed.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            changed.add(entry.getValue());
+            if (changed.size() == limit) {
+                sequence = entry.getKey();
+            }
+        }
+        
+        List<BookDelta.Tombstone> deleted = new ArrayList<>();
+        tombstones.subMap(sinceSequence, false, sequence, true)
+                .forEach((tombstoneSequence, id) -> deleted.add(new BookDelta.Tombstone(id, tombstoneSequence)));
+        
+        return new BookDelta(sinceSequence, sequence, hasMore, false, changed, deleted);
+    }
+    
+    /** The change-log sequence the indexes and deltas are up to; not a book's {@code version}. */
+    public long getCurrentSequence() {
+        return indexedVersion;
+    }
+    
+    public List<BookSearchHit> searchBooks(String query, int limit) {
+        List<BookSearchHit> results = new ArrayList<>();
+        for (FullTextIndex.Hit hit : searchIndex.search(query, limit).getHits()) {
+            Book book = books.get(hit.getId());
+            if (book != null) {
+                results.add(new BookSearchHit(book, hit.getScore()));
+            }
+        }
+        return results;
     }
     
     public boolean existsByIsbn(String isbn) {
@@ -81,4 +538,8 @@ public class BookService {
     public long getTotalBooks() {
         return books.size();
     }
+    
+    public BookChangeLog getChangeLog() {
+        return changeLog;
+    }
 }
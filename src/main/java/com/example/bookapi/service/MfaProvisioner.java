@@ -0,0 +1,161 @@
+
+package com.example.bookapi.service;
+
+import com.example.bookapi.dto.MfaProvisionResult;
+import com.example.bookapi.dto.MfaSetupResponse;
+import com.example.bookapi.model.MfaDevice;
+import com.example.bookapi.model.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Sets up TOTP devices for many users at once. The ids are cut into
+ * batches that run on a dedicated fork-join pool of bounded parallelism;
+ * each batch looks its users up together, adds its devices to
+ * {@link MfaService} in one step and renders its results as NDJSON lines,
+ * and the caller's thread writes the batches out in order. Only a few
+ * batches per worker are in flight at once, so a large request never holds
+ * more than that in memory, and a client that goes away stops the batches
+ * that have not started. A batch that fails ends the stream with a line
+ * that says so, since by then the status has long been sent.
+ */
+@Service
+public class MfaProvisioner {
+
+    private static final Logger log = LoggerFactory.getLogger(MfaProvisioner.class);
+
+    private static final String ISSUER = "BookAPI";
+
+    @Autowired
+    private MfaService mfaService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** Worker threads; 0 means one per available processor. */
+    @Value("${api.mfa.provision.parallelism:0}")
+    private int parallelism;
+
+    @Value("${api.mfa.provision.batch-size:500}")
+    private int batchSize;
+
+    private ForkJoinPool pool;
+    private ObjectWriter lineWriter;
+
+    @PostConstruct
+    void start() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("mfa-provision-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+        lineWriter = objectMapper.writerFor(MfaProvisionResult.class).without(SerializationFeature.INDENT_OUTPUT);
+    }
+
+    @PreDestroy
+    void stop() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Provisions a device named {@code deviceName} for each of the distinct
+     * {@code userIds}, writing one result line per user to {@code out} in
+     * the order given and flushing after every batch. If a batch fails, a
+     * last line without a {@code userId} reports that the users from there
+     * on were not provisioned.
+     */
+    public void provision(List<Long> userIds, String deviceName, OutputStream out) throws IOException {
+        int maxInFlight = pool.getParallelism() * 2;
+        Deque<ForkJoinTask<byte[]>> inFlight = new ArrayDeque<>(maxInFlight);
+        int next = 0;
+        int reported = 0;
+        try {
+            while (next < userIds.size() || !inFlight.isEmpty()) {
+                while (next < userIds.size() && inFlight.size() < maxInFlight) {
+                    List<Long> batch = userIds.subList(next, Math.min(next + batchSize, userIds.size()));
+                    inFlight.add(pool.submit(() -> provisionBatch(batch, deviceName)));
+                    next += batch.size();
+                }
+                byte[] lines;
+                try {
+                    lines = inFlight.poll().join();
+                } catch (RuntimeException e) {
+                    log.error("Bulk MFA provisioning stopped after {} of {} users", reported, userIds.size(), e);
+                    out.write(lineWriter.writeValueAsBytes(MfaProvisionResult.failed(null,
+                        "Provisioning stopped by an internal error; the users after the last line were not provisioned")));
+                    out.write('\n');
+                    out.flush();
+                    return;
+                }
+                out.write(lines);
+                out.flush();
+                // Batches complete in order and only the last one is short
+                reported += Math.min(batchSize, userIds.size() - reported);
+            }
+        } finally {
+            // Batches already running finish, so every device that exists was also reported or will expire unverified
+            inFlight.forEach(task -> task.cancel(false));
+        }
+    }
+
+    private byte[] provisionBatch(List<Long> userIds, String deviceName) {
+        List<User> users = userService.getUsersByIds(userIds);
+        List<Long> found = new ArrayList<>(userIds.size());
+        for (User user : users) {
+            if (user != null) {
+                found.add(user.getId());
+            }
+        }
+        List<MfaDevice> devices = mfaService.setupTotpDevices(found, deviceName);
+
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(userIds.size() * 400);
+        try {
+            int d = 0;
+            for (int i = 0; i < userIds.size(); i++) {
+                User user = users.get(i);
+                MfaProvisionResult result;
+                if (user == null) {
+                    result = MfaProvisionResult.failed(userIds.get(i), "User not found");
+                } else {
+                    MfaDevice device = devices.get(d++);
+                    result = MfaProvisionResult.provisioned(user.getId(), new MfaSetupResponse(
+                        device.getSecret(),
+                        mfaService.generateQrCodeUrl(device.getSecret(), user.getEmail(), ISSUER),
+                        Arrays.asList(device.getBackupCodes().split(",")),
+                        device.getId().toString()));
+                }
+                lineWriter.writeValue(lines, result);
+                lines.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines.toByteArray();
+    }
+}
@@ -1,14 +1,21 @@
 
 package com.example.bookapi.service;
 
+import com.example.bookapi.id.IdGenerator;
+import com.example.bookapi.id.IdGenerators;
 import com.example.bookapi.model.MfaDevice;
 import com.example.bookapi.model.User;
+import com.example.bookapi.replication.Mutation;
+import com.example.bookapi.replication.ReplicationLog;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,24 +24,39 @@ public class MfaService {
     @Autowired
     private UserService userService;
     
-    private final Map<Long, MfaDevice> mfaDevices = new HashMap<>();
-    private final Map<Long, List<MfaDevice>> devicesByUser = new HashMap<>();
-    private final AtomicLong idGenerator = new AtomicLong(1);
-    private final SecureRandom secureRandom = new SecureRandom();
+    @Autowired
+    private TimingWheel timingWheel;
+    
+    @Autowired
+    private SecretGenerator secretGenerator;
+    
+    @Autowired
+    private ReplicationLog replicationLog;
+    
+    @Autowired
+    private IdGenerators idGenerators;
     
+    @Value("${api.mfa.unverified-device-ttl:15m}")
+    private Duration unverifiedDeviceTtl;
+    
+    // Devices are also removed by the timing wheel thread, hence the concurrent collections
+    private final Map<Long, MfaDevice> mfaDevices = new ConcurrentHashMap<>();
+    private final Map<Long, List<MfaDevice>> devicesByUser = new ConcurrentHashMap<>();
+    private final Map<Long, TimingWheel.Timeout> verificationDeadlines = new ConcurrentHashMap<>();
+    private IdGenerator idGenerator;
+    
+    @PostConstruct
+    void createIdGenerator() {
+        idGenerator = idGenerators.create("mfa-devices");
+    }
+    
+    // Base32, as authenticator apps expect it in the otpauth URI
     public String generateSecret() {
-        byte[] buffer = new byte[20];
-        secureRandom.nextBytes(buffer);
-        return Base64.getEncoder().encodeToString(buffer);
+        return secretGenerator.newTotpSecret();
     }
     
     public List<String> generateBackupCodes(int count) {
-        List<String> codes = new ArrayList<>();
-        for (int i = 0; i < count; i++) {
-            String code = String.format("%08d", secureRandom.nextInt(100000000));
-            codes.add(code);
-        }
-        return codes;
+        return secretGenerator.newBackupCodes(count);
     }
     
     public String generateQrCodeUrl(String secret, String userEmail, String issuer) {
@@ -45,20 +67,72 @@ public class MfaService {
     }
     
     public MfaDevice setupTotpDevice(Long userId, String deviceName) {
-        String secret = generateSecret();
-        List<String> backupCodes = generateBackupCodes(10);
-        
-        MfaDevice device = new MfaDevice(userId, deviceName, "TOTP");
-        device.setId(idGenerator.getAndIncrement());
-        device.setSecret(secret);
-        device.setBackupCodes(String.join(",", backupCodes));
-        
+        MfaDevice device = newTotpDevice(userId, deviceName, idGenerator.nextId());
         mfaDevices.put(device.getId(), device);
-        devicesByUser.computeIfAbsent(userId, k -> new ArrayList<>()).add(device);
-        
+        register(device);
+        replicate(device);
+        return device;
+    }
+    
+    /**
+     * Sets up one TOTP device for each of {@code userIds}, which must be
+     * existing users, adding the devices to the maps together.
+     */
+    public List<MfaDevice> setupTotpDevices(List<Long> userIds, String deviceName) {
+        Map<Long, MfaDevice> created = new LinkedHashMap<>(userIds.size() * 4 / 3 + 1);
+        for (int i = 0; i < userIds.size(); i++) {
+            MfaDevice device = newTotpDevice(userIds.get(i), deviceName, idGenerator.nextId());
+            created.put(device.getId(), device);
+        }
+        mfaDevices.putAll(created);
+        created.values().forEach(this::register);
+        created.values().forEach(this::replicate);
+        return new ArrayList<>(created.values());
+    }
+    
+    private MfaDevice newTotpDevice(Long userId, String deviceName, long id) {
+        MfaDevice device = new MfaDevice(userId, deviceName, "TOTP");
+        device.setId(id);
+        device.setSecret(generateSecret());
+        device.setBackupCodes(String.join(",", secretGenerator.newBackupCodes(10)));
         return device;
     }
     
+    // Adds a device already in mfaDevices to its user's list and starts its verification deadline
+    private void register(MfaDevice device) {
+        devicesByUser.compute(device.getUserId(), (k, devices) -> {
+            List<MfaDevice> updated = devices != null ? devices : new CopyOnWriteArrayList<>();
+            updated.add(device);
+            return updated;
+        });
+        verificationDeadlines.put(device.getId(),
+            timingWheel.schedule(() -> expireUnverified(device), unverifiedDeviceTtl));
+    }
+    
+    // Devices have no version, so the last state replicated wins; the copy is taken while the device is held
+    private void replicate(MfaDevice device) {
+        synchronized (device) {
+            replicationLog.recordPut(Mutation.Entity.MFA_DEVICE, device.getId(), 0, device);
+        }
+    }
+    
+    // Drops a device whose setup was never completed
+    private void expireUnverified(MfaDevice device) {
+        synchronized (device) {
+            if (verificationDeadlines.remove(device.getId()) == null || device.isVerified()) {
+                return;
+            }
+            if (!mfaDevices.remove(device.getId(), device)) {
+                return;
+            }
+            devicesByUser.computeIfPresent(device.getUserId(), (userId, devices) -> {
+                devices.remove(device);
+                return devices.isEmpty() ? null : devices;
+            });
+            replicationLog.recordDelete(Mutation.Entity.MFA_DEVICE, device.getId(), 0);
+        }
+    }
+    
     public boolean verifyTotpCode(Long deviceId, String code) {
         MfaDevice device = mfaDevices.get(deviceId);
         if (device == null || !device.getDeviceType().equals("TOTP")) {
@@ -67,8 +141,18 @@ public class MfaService {
         
         // Simple verification logic (in real implementation, use TOTP algorithm)
         if (code.length() == 6 && code.matches("\\d{6}")) {
-            device.setVerified(true);
-            device.setLastUsedAt(LocalDateTime.now());
+            synchronized (device) {
+                if (!mfaDevices.containsKey(deviceId)) {
+                    return false;
+                }
+                device.setVerified(true);
+                device.setLastUsedAt(LocalDateTime.now());
+                replicationLog.recordPut(Mutation.Entity.MFA_DEVICE, deviceId, 0, device);
+            }
+            TimingWheel.Timeout deadline = verificationDeadlines.remove(deviceId);
+            if (deadline != null) {
+                deadline.cancel();
+            }
             
             // Enable MFA for user if this is their first verified device
             userService.enableMfa(device.getUserId(), device.getSecret());
@@ -91,6 +175,7 @@ public class MfaService {
                     .filter(c -> !c.equals(code))
                     .collect(Collectors.joining(","));
                 device.setBackupCodes(updatedCodes);
+                replicate(device);
                 
                 return true;
             }
@@ -106,10 +191,28 @@ public class MfaService {
         return Optional.ofNullable(mfaDevices.get(deviceId));
     }
     
+    public List<MfaDevice> getAllDevices() {
+        return new ArrayList<>(mfaDevices.values());
+    }
+    
+    /** Replaces the device's backup codes with {@code count} new ones and returns them. */
+    public List<String> regenerateBackupCodes(MfaDevice device, int count) {
+        List<String> codes = generateBackupCodes(count);
+        synchronized (device) {
+            device.setBackupCodes(String.join(",", codes));
+            replicationLog.recordPut(Mutation.Entity.MFA_DEVICE, device.getId(), 0, device);
+        }
+        return codes;
+    }
+    
     public boolean deleteDevice(Long deviceId, Long userId) {
         MfaDevice device = mfaDevices.get(deviceId);
         if (device != null && device.getUserId().equals(userId)) {
             mfaDevices.remove(deviceId);
+            TimingWheel.Timeout deadline = verificationDeadlines.remove(deviceId);
+            if (deadline != null) {
+                deadline.cancel();
+            }
             List<MfaDevice> userDevices = devicesByUser.get(userId);
             if (userDevices != null) {
                 userDevices.remove(device);
@@ -119,6 +222,7 @@ public class MfaService {
                     userService.disableMfa(userId);
                 }
             }
+            replicationLog.recordDelete(Mutation.Entity.MFA_DEVICE, deviceId, 0);
             return true;
         }
         return false;
@@ -128,6 +232,7 @@ public class MfaService {
         MfaDevice device = mfaDevices.get(deviceId);
         if (device != null && device.getUserId().equals(userId)) {
             device.setActive(false);
+            replicate(device);
         }
     }
     
@@ -135,9 +240,52 @@ public class MfaService {
         MfaDevice device = mfaDevices.get(deviceId);
         if (device != null && device.getUserId().equals(userId)) {
             device.setActive(true);
+            replicate(device);
+        }
+    }
+    
+    /**
+     * Stores a device replicated from another node in place of the one held
+     * here. A device verified elsewhere no longer expires here; one that is
+     * not yet verified expires on the node that set it up, which replicates
+     * the deletion.
+     */
+    public void applyReplicated(MfaDevice device) {
+        idGenerator.advancePast(device.getId());
+        MfaDevice previous = mfaDevices.put(device.getId(), device);
+        devicesByUser.compute(device.getUserId(), (k, devices) -> {
+            List<MfaDevice> updated = devices != null ? devices : new CopyOnWriteArrayList<>();
+            if (previous != null) {
+                updated.remove(previous);
+            }
+            updated.add(device);
+            return updated;
+        });
+        if (device.isVerified()) {
+            TimingWheel.Timeout deadline = verificationDeadlines.remove(device.getId());
+            if (deadline != null) {
+                deadline.cancel();
+            }
         }
     }
     
+    /** Removes a device deleted on another node; the user's MFA state is replicated separately. */
+    public boolean applyReplicatedDelete(long deviceId) {
+        MfaDevice device = mfaDevices.remove(deviceId);
+        if (device == null) {
+            return false;
+        }
+        TimingWheel.Timeout deadline = verificationDeadlines.remove(deviceId);
+        if (deadline != null) {
+            deadline.cancel();
+        }
+        devicesByUser.computeIfPresent(device.getUserId(), (userId, devices) -> {
+            devices.remove(device);
+            return devices.isEmpty() ? null : devices;
+        });
+        return true;
+    }
+    
     public boolean authenticateUser(String usernameOrEmail, String password, String mfaCode) {
         Optional<User> userOpt = userService.getUserByUsernameOrEmail(usernameOrEmail);
         if (userOpt.isEmpty()) return false;
@@ -0,0 +1,87 @@
+
+package com.example.bookapi.service;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * The fields of a model that a merge-patch body may change. A patch is
+ * converted and validated field by field against the model's bean
+ * constraints up front, so only the fields actually sent are checked and a
+ * bad patch is rejected before any record is touched.
+ */
+final class PatchFields<T> {
+
+    private final Class<T> type;
+    private final Map<String, Field<T>> fields = new LinkedHashMap<>();
+
+    PatchFields(Class<T> type) {
+        this.type = type;
+    }
+
+    PatchFields<T> text(String name, BiConsumer<T, String> setter) {
+        fields.put(name, new Field<>(String.class, setter));
+        return this;
+    }
+
+    PatchFields<T> integer(String name, BiConsumer<T, Integer> setter) {
+        fields.put(name, new Field<>(Integer.class, setter));
+        return this;
+    }
+
+    /**
+     * Turns a patch body into a change to apply to a copy of the record.
+     *
+     * @throws IllegalArgumentException for unknown fields, wrong value types
+     *         or values that violate the model's constraints
+     */
+    Consumer<T> parse(Map<String, Object> changes, Validator validator) {
+        Consumer<T> patch = record -> {};
+        for (Map.Entry<String, Object> change : changes.entrySet()) {
+            Field<T> field = fields.get(change.getKey());
+            if (field == null) {
+                throw new IllegalArgumentException("Field cannot be patched: " + change.getKey());
+            }
+            patch = patch.andThen(field.bind(change.getKey(), change.getValue(), type, validator));
+        }
+        return patch;
+    }
+
+    private static final class Field<T> {
+        final Class<?> valueType;
+        final BiConsumer<T, ?> setter;
+
+        Field(Class<?> valueType, BiConsumer<T, ?> setter) {
+            this.valueType = valueType;
+            this.setter = setter;
+        }
+
+        @SuppressWarnings("unchecked")
+        Consumer<T> bind(String name, Object raw, Class<T> type, Validator validator) {
+            Object value = convert(name, raw);
+            Set<ConstraintViolation<T>> violations = validator.validateValue(type, name, value);
+            if (!violations.isEmpty()) {
+                throw new IllegalArgumentException(name + ": " + violations.iterator().next().getMessage());
+            }
+            BiConsumer<T, Object> set = (BiConsumer<T, Object>) setter;
+            return record -> set.accept(record, value);
+        }
+
+        private Object convert(String name, Object raw) {
+            if (raw == null || valueType.isInstance(raw)) {
+                return raw;
+            }
+            if (valueType == Integer.class && raw instanceof Number number
+                    && number.doubleValue() == number.intValue()) {
+                return number.intValue();
+            }
+            throw new IllegalArgumentException(name + " must be " + (valueType == Integer.class ? "an integer" : "a string"));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+
+package com.example.bookapi.service;
+
+import com.example.bookapi.qr.QrCode;
+import com.example.bookapi.qr.QrImages;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Provisioning QR codes for MFA devices, rendered in-process. Images are
+ * kept for {@code api.mfa.qr.cache-ttl} under the device id and format, so
+ * the repeated fetches of a setup that is retried are not encoded again.
+ * Every entry lives for the same TTL, so insertion order is expiry order
+ * and entries are swept from the head of a queue; the oldest are also
+ * dropped early while the images take more than {@code api.mfa.qr.cache-size}.
+ */
+@Service
+public class QrCodeService {
+
+    private static final int QUIET_ZONE_MODULES = 4;
+
+    private record Key(long deviceId, QrImages.Format format) {}
+
+    private static final class Entry {
+        final Key key;
+        final byte[] image;
+        final long expiresAtNanos;
+
+        Entry(Key key, byte[] image, long expiresAtNanos) {
+            this.key = key;
+            this.image = image;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> byAge = new ConcurrentLinkedQueue<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final long ttlNanos;
+    private final long maxBytes;
+    private final int scale;
+
+    public QrCodeService(@Value("${api.mfa.qr.cache-ttl:5m}") Duration ttl,
+                         @Value("${api.mfa.qr.cache-size:4MB}") DataSize maxSize,
+                         @Value("${api.mfa.qr.scale:6}") int scale) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxBytes = maxSize.toBytes();
+        this.scale = Math.max(1, scale);
+    }
+
+    /** The QR code of {@code content}, which must not change for the device while it is cached. */
+    public byte[] render(long deviceId, String content, QrImages.Format format) {
+        long now = System.nanoTime();
+        Key key = new Key(deviceId, format);
+        Entry cached = entries.get(key);
+        if (cached != null && cached.expiresAtNanos - now > 0) {
+            return cached.image;
+        }
+
+        byte[] image = QrImages.render(QrCode.encodeText(content, QrCode.Ecc.M), format, scale, QUIET_ZONE_MODULES);
+        Entry fresh = new Entry(key, image, now + ttlNanos);
+        Entry replaced = entries.put(key, fresh);
+        if (replaced != null) {
+            cachedBytes.addAndGet(-replaced.image.length);
+        }
+        cachedBytes.addAndGet(image.length);
+        byAge.add(fresh);
+        sweep(now);
+        return image;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long sizeInBytes() {
+        return cachedBytes.get();
+    }
+
+    private void sweep(long now) {
+        Entry head;
+        while ((head = byAge.peek()) != null) {
+            boolean live = entries.get(head.key) == head;
+            if (live && head.expiresAtNanos - now > 0 && cachedBytes.get() <= maxBytes) {
+                break;
+            }
+            if (byAge.remove(head) && live && entries.remove(head.key, head)) {
+                cachedBytes.addAndGet(-head.image.length);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+
+package com.example.bookapi.service;
+
+/**
+ * Encoders for MFA secrets and backup codes that write into a caller's
+ * {@code char[]}, so producing a secret or a set of codes allocates only the
+ * buffer and the final {@code String}.
+ */
+public final class SecretEncoding {
+
+    private static final char[] BASE32 = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+
+    private SecretEncoding() {
+    }
+
+    /** Characters of unpadded Base32 for {@code bytes} bytes. */
+    public static int base32Length(int bytes) {
+        return (bytes * 8 + 4) / 5;
+    }
+
+    /**
+     * Writes {@code src[off, off + len)} to {@code dst} at {@code dstOff} as
+     * unpadded RFC 4648 Base32, the form authenticator apps expect in an
+     * {@code otpauth} URI, and returns the index after the last character.
+     */
+    public static int encodeBase32(byte[] src, int off, int len, char[] dst, int dstOff) {
+        int bits = 0;
+        int buffer = 0;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            buffer = (buffer << 8) | (src[i] & 0xff);
+            bits += 8;
+            while (bits >= 5) {
+                bits -= 5;
+                dst[dstOff++] = BASE32[(buffer >>> bits) & 31];
+            }
+        }
+        if (bits > 0) {
+            dst[dstOff++] = BASE32[(buffer << (5 - bits)) & 31];
+        }
+        return dstOff;
+    }
+
+    /** Decodes unpadded or padded Base32, ignoring case. */
+    public static byte[] decodeBase32(String encoded) {
+        int length = encoded.length();
+        while (length > 0 && encoded.charAt(length - 1) == '=') {
+            length--;
+        }
+        byte[] out = new byte[length * 5 / 8];
+        int bits = 0;
+        int buffer = 0;
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = Character.toUpperCase(encoded.charAt(i));
+            int value = c >= 'A' && c <= 'Z' ? c - 'A' : c >= '2' && c <= '7' ? c - '2' + 26 : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("Invalid Base32 character: " + encoded.charAt(i));
+            }
+            buffer = (buffer << 5) | value;
+            bits += 5;
+            if (bits >= 8) {
+                bits -= 8;
+                out[pos++] = (byte) (buffer >>> bits);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Writes {@code value} as exactly {@code width} decimal digits, zero
+     * padded on the left, and returns the index after the last digit.
+     */
+    public static int writeDigits(int value, int width, char[] dst, int dstOff) {
+        for (int i = dstOff + width - 1; i >= dstOff; i--) {
+            dst[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return dstOff + width;
+    }
+}
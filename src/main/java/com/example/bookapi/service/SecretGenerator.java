@@ -0,0 +1,141 @@
+
+package com.example.bookapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Random material for MFA enrollment and single-use tokens. Each thread has
+ * its own NIST SP 800-90A DRBG, instantiated from the platform entropy
+ * source and reseeded from it after {@code api.secrets.reseed-bytes} of
+ * output or {@code api.secrets.reseed-interval}, whichever comes first, so
+ * enrolling threads never wait on one shared {@link SecureRandom}. Output is
+ * drawn a block at a time into a per-thread pool and wiped from it as it is
+ * handed out.
+ */
+@Component
+public class SecretGenerator {
+
+    /** Bytes in a TOTP secret: 160 bits, the HMAC-SHA1 block size RFC 4226 recommends. */
+    public static final int TOTP_SECRET_BYTES = 20;
+
+    /** Digits in a backup code. */
+    public static final int BACKUP_CODE_DIGITS = 8;
+
+    private static final int POOL_BYTES = 256;
+    private static final int BACKUP_CODE_BOUND = 100_000_000;
+    // Largest multiple of the bound below 2^32; draws at or above it are rejected so codes stay uniform
+    private static final long BACKUP_CODE_LIMIT = (1L << 32) / BACKUP_CODE_BOUND * BACKUP_CODE_BOUND;
+
+    private final class Source {
+        final SecureRandom drbg = newDrbg();
+        final byte[] pool = new byte[POOL_BYTES];
+        int position = POOL_BYTES;
+        long sinceReseed;
+        long reseededAt = System.nanoTime();
+
+        void take(byte[] dst, int off, int len) {
+            while (len > 0) {
+                if (position == POOL_BYTES) {
+                    refill();
+                }
+                int n = Math.min(len, POOL_BYTES - position);
+                System.arraycopy(pool, position, dst, off, n);
+                Arrays.fill(pool, position, position + n, (byte) 0);
+                position += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        long nextUnsignedInt() {
+            if (POOL_BYTES - position < 4) {
+                refill();
+            }
+            byte[] p = pool;
+            int i = position;
+            long value = ((p[i] & 0xffL) << 24) | ((p[i + 1] & 0xff) << 16) | ((p[i + 2] & 0xff) << 8) | (p[i + 3] & 0xff);
+            p[i] = p[i + 1] = p[i + 2] = p[i + 3] = 0;
+            position = i + 4;
+            return value;
+        }
+
+        private void refill() {
+            if (sinceReseed >= reseedBytes || System.nanoTime() - reseededAt >= reseedIntervalNanos) {
+                drbg.reseed();
+                sinceReseed = 0;
+                reseededAt = System.nanoTime();
+            }
+            drbg.nextBytes(pool);
+            sinceReseed += POOL_BYTES;
+            position = 0;
+        }
+    }
+
+    private final long reseedBytes;
+    private final long reseedIntervalNanos;
+    private final ThreadLocal<Source> sources = ThreadLocal.withInitial(Source::new);
+
+    public SecretGenerator(@Value("${api.secrets.reseed-bytes:1MB}") DataSize reseedBytes,
+                           @Value("${api.secrets.reseed-interval:10m}") Duration reseedInterval) {
+        this.reseedBytes = Math.max(POOL_BYTES, reseedBytes.toBytes());
+        this.reseedIntervalNanos = Math.max(1, reseedInterval.toNanos());
+    }
+
+    /** Fills {@code bytes} with output of the calling thread's DRBG. */
+    public void nextBytes(byte[] bytes) {
+        sources.get().take(bytes, 0, bytes.length);
+    }
+
+    /** A new TOTP secret, Base32 encoded without padding (32 characters). */
+    public String newTotpSecret() {
+        byte[] secret = new byte[TOTP_SECRET_BYTES];
+        char[] encoded = new char[SecretEncoding.base32Length(TOTP_SECRET_BYTES)];
+        sources.get().take(secret, 0, TOTP_SECRET_BYTES);
+        SecretEncoding.encodeBase32(secret, 0, TOTP_SECRET_BYTES, encoded, 0);
+        Arrays.fill(secret, (byte) 0);
+        return new String(encoded);
+    }
+
+    /** {@code count} uniformly random 8-digit backup codes. */
+    public List<String> newBackupCodes(int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        Source source = sources.get();
+        List<String> codes = new ArrayList<>(count);
+        char[] digits = new char[BACKUP_CODE_DIGITS];
+        for (int i = 0; i < count; i++) {
+            long draw;
+            do {
+                draw = source.nextUnsignedInt();
+            } while (draw >= BACKUP_CODE_LIMIT);
+            SecretEncoding.writeDigits((int) (draw % BACKUP_CODE_BOUND), BACKUP_CODE_DIGITS, digits, 0);
+            codes.add(new String(digits));
+        }
+        return codes;
+    }
+
+    private static SecureRandom newDrbg() {
+        Thread thread = Thread.currentThread();
+        // Personalization only separates the instances; their entropy comes from the platform source
+        byte[] personalization = (thread.getName() + '/' + thread.getId() + '/' + System.nanoTime())
+            .getBytes(StandardCharsets.UTF_8);
+        try {
+            return SecureRandom.getInstance("DRBG",
+                DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, personalization));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("DRBG is not available", e);
+        }
+    }
+}
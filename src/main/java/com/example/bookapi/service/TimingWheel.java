@@ -0,0 +1,256 @@
+
+package com.example.bookapi.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hierarchical timing wheel for large numbers of timeouts, most of them
+ * cancelled before they fire. Four levels of 64 slots cover 64, 64², 64³
+ * and 64⁴ ticks; a timeout goes into the coarsest level it needs and moves
+ * down a level each time the level below wraps around, so it is touched at
+ * most four times however long it runs. Slots are intrusive linked lists,
+ * which makes scheduling and cancelling O(1) with no per-timeout timer.
+ *
+ * <p>One thread owns the wheel. Other threads hand it new and cancelled
+ * timeouts through lock-free queues that it drains every tick, and the
+ * expiry tasks run on it too, so they must be short.
+ */
+@Component
+public class TimingWheel {
+
+    private static final Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    /** A scheduled task; {@link #cancel()} keeps it from running. */
+    public static final class Timeout {
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadlineTick;
+        private volatile int state = PENDING;
+
+        // Owned by the wheel thread
+        private Slot slot;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadlineTick) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /** Returns {@code false} when the task already ran or was cancelled before. */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.cancelled.add(this);
+            wheel.pending.decrement();
+            return true;
+        }
+    }
+
+    private static final class Slot {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.slot = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.slot = null;
+            timeout.prev = timeout.next = null;
+        }
+
+        /** Empties the slot, returning its former head. */
+        Timeout clear() {
+            Timeout first = head;
+            head = tail = null;
+            return first;
+        }
+    }
+
+    private final long tickNanos;
+    private final Slot[][] wheel = new Slot[LEVELS][SLOTS];
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final LongAdder pending = new LongAdder();
+    private final long startNanos = System.nanoTime();
+    private long currentTick;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public TimingWheel(@Value("${api.expiry.tick:100ms}") Duration tick) {
+        this.tickNanos = Math.max(1, tick.toNanos());
+        for (Slot[] level : wheel) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = new Slot();
+            }
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = new Thread(this::run, "timing-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    /** Runs {@code task} on the wheel thread once {@code delay} has passed, to within one tick. */
+    public Timeout schedule(Runnable task, Duration delay) {
+        long elapsed = System.nanoTime() - startNanos + Math.max(0, delay.toNanos());
+        return scheduleAt(task, (elapsed + tickNanos - 1) / tickNanos);
+    }
+
+    // Ticks rather than time, so that tests can drive a wheel that was never started
+    Timeout scheduleAt(Runnable task, long deadlineTick) {
+        Timeout timeout = new Timeout(this, task, deadlineTick);
+        pending.increment();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /** Timeouts scheduled and neither run nor cancelled yet. */
+    public long pending() {
+        return pending.sum();
+    }
+
+    private void run() {
+        while (running) {
+            advanceTo((System.nanoTime() - startNanos) / tickNanos);
+            long nextTickAt = startNanos + (currentTick + 1) * tickNanos;
+            LockSupport.parkNanos(nextTickAt - System.nanoTime());
+        }
+    }
+
+    /** Processes every tick up to and including {@code tick}; only the wheel thread may call it. */
+    void advanceTo(long tick) {
+        while (currentTick < tick) {
+            currentTick++;
+            drainQueues();
+            advance();
+        }
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    private void drainQueues() {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.state == PENDING) {
+                insert(timeout);
+            }
+        }
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.slot != null) {
+                timeout.slot.remove(timeout);
+            }
+        }
+    }
+
+    // Cascades the coarser levels whose slot boundary this tick is, top down, then fires level 0
+    private void advance() {
+        for (int level = LEVELS - 1; level >= 1; level--) {
+            int shift = level * SLOT_BITS;
+            if ((currentTick & ((1L << shift) - 1)) == 0) {
+                Timeout timeout = wheel[level][(int) (currentTick >>> shift) & SLOT_MASK].clear();
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    timeout.slot = null;
+                    timeout.prev = timeout.next = null;
+                    if (timeout.state == PENDING) {
+                        insert(timeout);
+                    }
+                    timeout = next;
+                }
+            }
+        }
+
+        Timeout timeout = wheel[0][(int) currentTick & SLOT_MASK].clear();
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.slot = null;
+            timeout.prev = timeout.next = null;
+            if (timeout.deadlineTick > currentTick) {
+                insert(timeout);
+            } else if (Timeout.STATE.compareAndSet(timeout, PENDING, EXPIRED)) {
+                pending.decrement();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Timing wheel task failed", e);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    // Only called before the current tick's level-0 slot has fired, so a deadline of now still makes it
+    private void insert(Timeout timeout) {
+        long deadline = Math.max(timeout.deadlineTick, currentTick);
+        long delta = deadline - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        // Beyond the top level the timeout is parked in it and re-inserted when its slot comes round
+        wheel[level][(int) (deadline >>> (level * SLOT_BITS)) & SLOT_MASK].add(timeout);
+    }
+}
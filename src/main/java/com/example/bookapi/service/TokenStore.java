@@ -0,0 +1,102 @@
+
+package com.example.bookapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-use tokens for email verification and password resets. Issuing,
+ * looking up and consuming a token are single hash map operations; each
+ * token also holds a {@link TimingWheel} timeout that removes it when it
+ * expires, and consuming it cancels that timeout.
+ */
+@Service
+public class TokenStore {
+
+    public enum Purpose {
+        EMAIL_VERIFICATION, PASSWORD_RESET
+    }
+
+    private static final class Token {
+        final Purpose purpose;
+        final long userId;
+        final long expiresAtNanos;
+        // Set just after the token is published; a consume that misses it leaves a timeout that finds nothing
+        volatile TimingWheel.Timeout expiry;
+
+        Token(Purpose purpose, long userId, long expiresAtNanos) {
+            this.purpose = purpose;
+            this.userId = userId;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        // The wheel fires up to a tick late, so expiry is checked against the clock as well
+        boolean isLive(Purpose wanted) {
+            return purpose == wanted && System.nanoTime() - expiresAtNanos < 0;
+        }
+    }
+
+    private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+    private final Map<Purpose, Duration> ttls = new EnumMap<>(Purpose.class);
+    private final TimingWheel timingWheel;
+    private final SecretGenerator secretGenerator;
+
+    public TokenStore(TimingWheel timingWheel, SecretGenerator secretGenerator,
+                      @Value("${api.tokens.email-verification-ttl:24h}") Duration emailVerificationTtl,
+                      @Value("${api.tokens.password-reset-ttl:30m}") Duration passwordResetTtl) {
+        this.timingWheel = timingWheel;
+        this.secretGenerator = secretGenerator;
+        ttls.put(Purpose.EMAIL_VERIFICATION, emailVerificationTtl);
+        ttls.put(Purpose.PASSWORD_RESET, passwordResetTtl);
+    }
+
+    /** Creates a token for {@code userId} that lives for the purpose's TTL. */
+    public String issue(Purpose purpose, long userId) {
+        byte[] random = new byte[24];
+        secretGenerator.nextBytes(random);
+        String value = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+
+        Duration ttl = ttls.get(purpose);
+        Token token = new Token(purpose, userId, System.nanoTime() + ttl.toNanos());
+        tokens.put(value, token);
+        token.expiry = timingWheel.schedule(() -> tokens.remove(value, token), ttl);
+        return value;
+    }
+
+    /** Uses up a live token issued to {@code userId}; a token of another user is left alone. */
+    public boolean consume(String value, Purpose purpose, long userId) {
+        Token token = value != null ? tokens.get(value) : null;
+        return token != null && token.userId == userId && token.isLive(purpose) && remove(value, token);
+    }
+
+    /** Uses up a live token, returning the user it was issued to. */
+    public Optional<Long> consume(String value, Purpose purpose) {
+        Token token = value != null ? tokens.get(value) : null;
+        if (token != null && token.isLive(purpose) && remove(value, token)) {
+            return Optional.of(token.userId);
+        }
+        return Optional.empty();
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    private boolean remove(String value, Token token) {
+        if (!tokens.remove(value, token)) {
+            return false;
+        }
+        TimingWheel.Timeout expiry = token.expiry;
+        if (expiry != null) {
+            expiry.cancel();
+        }
+        return true;
+    }
+}
@@ -1,137 +1,234 @@
 
 package com.example.bookapi.service;
 
+import com.example.bookapi.exception.DuplicateValueException;
+import com.example.bookapi.exception.VersionConflictException;
+import com.example.bookapi.id.IdGenerator;
+import com.example.bookapi.id.IdGenerators;
 import com.example.bookapi.model.User;
+import com.example.bookapi.replication.Mutation;
+import com.example.bookapi.replication.ReplicationLog;
+import com.example.bookapi.replication.Resolution;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 @Service
 public class UserService {
     
-    private final Map<Long, User> users = new HashMap<>();
-    private final Map<String, User> usersByEmail = new HashMap<>();
-    private final Map<String, User> usersByUsername = new HashMap<>();
-    private final AtomicLong idGenerator = new AtomicLong(1);
-    
-    public UserService() {
+    // Users live in flat columns rather than as objects, so millions of them stay cheap to hold and to collect
+    private final UserTable users;
+    private final IdGenerator idGenerator;
+    private final ReplicationLog replicationLog;
+    
+    // Fields a PATCH may change; password, verification and MFA state have their own flows
+    private static final PatchFields<User> USER_PATCH = new PatchFields<>(User.class)
+        .text("username", User::setUsername)
+        .text("email", User::setEmail)
+        .text("firstName", User::setFirstName)
+        .text("lastName", User::setLastName)
+        .text("phoneNumber", User::setPhoneNumber);
+    private final Validator validator;
+    
+    public UserService(Validator validator,
+                       @Value("${api.users.initial-capacity:1024}") int initialCapacity,
+                       @Value("${api.users.slab-chunk-size:1MB}") DataSize slabChunkSize,
+                       @Value("${api.users.off-heap:false}") boolean offHeap,
+                       ReplicationLog replicationLog,
+                       IdGenerators idGenerators) {
+        this.validator = validator;
+        this.idGenerator = idGenerators.create("users");
+        this.replicationLog = replicationLog;
+        this.users = new UserTable(initialCapacity, (int) slabChunkSize.toBytes(), offHeap, replicationLog.getOrigin());
         initializeSampleData();
     }
     
     private void initializeSampleData() {
         User admin = new User("admin", "admin@example.com", "password123");
-        admin.setId(idGenerator.getAndIncrement());
         admin.setFirstName("Admin");
         admin.setLastName("User");
         admin.setEmailVerified(true);
         admin.setActive(true);
-        
-        users.put(admin.getId(), admin);
-        usersByEmail.put(admin.getEmail(), admin);
-        usersByUsername.put(admin.getUsername(), admin);
+        // The same id and origin on every node, whichever way ids are generated
+        insert(admin, 1, 0);
+        idGenerator.advancePast(1);
     }
     
     public List<User> getAllUsers() {
-        return new ArrayList<>(users.values());
+        return users.all();
     }
     
     public Optional<User> getUserById(Long id) {
-        return Optional.ofNullable(users.get(id));
+        return id != null ? Optional.ofNullable(users.get(id)) : Optional.empty();
+    }
+    
+    /** The user for each id, in order, with {@code null} for ids that have none. */
+    public List<User> getUsersByIds(List<Long> ids) {
+        return users.getAll(ids);
     }
     
     public Optional<User> getUserByEmail(String email) {
-        return Optional.ofNullable(usersByEmail.get(email));
+        return Optional.ofNullable(users.findByEmail(email));
     }
     
     public Optional<User> getUserByUsername(String username) {
-        return Optional.ofNullable(usersByUsername.get(username));
+        return Optional.ofNullable(users.findByUsername(username));
     }
     
     public Optional<User> getUserByUsernameOrEmail(String usernameOrEmail) {
-        User user = usersByUsername.get(usernameOrEmail);
+        User user = users.findByUsername(usernameOrEmail);
         if (user == null) {
-            user = usersByEmail.get(usernameOrEmail);
+            user = users.findByEmail(usernameOrEmail);
         }
         return Optional.ofNullable(user);
     }
     
+    /** @throws DuplicateValueException when the username or email is already taken */
     public User createUser(User user) {
-        user.setId(idGenerator.getAndIncrement());
+        return insert(user, idGenerator.nextId(), replicationLog.getOrigin());
+    }
+    
+    private User insert(User user, long id, long origin) {
+        user.setId(id);
+        user.setOrigin(origin);
         user.setCreatedAt(LocalDateTime.now());
         user.setUpdatedAt(LocalDateTime.now());
+        user.setVersion(1);
         
-        users.put(user.getId(), user);
-        usersByEmail.put(user.getEmail(), user);
-        usersByUsername.put(user.getUsername(), user);
-        
+        users.insert(user);
+        replicationLog.recordPut(Mutation.Entity.USER, user.getId(), user.getVersion(), user);
         return user;
     }
     
     public Optional<User> updateUser(Long id, User updatedUser) {
-        User existingUser = users.get(id);
-        if (existingUser != null) {
-            // Remove old mappings
-            usersByEmail.remove(existingUser.getEmail());
-            usersByUsername.remove(existingUser.getUsername());
-            
-            // Update user
-            updatedUser.setId(id);
-            updatedUser.setCreatedAt(existingUser.getCreatedAt());
-            updatedUser.setUpdatedAt(LocalDateTime.now());
-            
-            // Add new mappings
-            users.put(id, updatedUser);
-            usersByEmail.put(updatedUser.getEmail(), updatedUser);
-            usersByUsername.put(updatedUser.getUsername(), updatedUser);
-            
-            return Optional.of(updatedUser);
+        return updateUser(id, null, updatedUser);
+    }
+    
+    /**
+     * Replaces the user, but only while it is still at {@code expectedVersion}
+     * when one is given.
+     *
+     * @throws VersionConflictException when the stored version differs
+     * @throws DuplicateValueException when the new username or email is taken
+     */
+    public Optional<User> updateUser(Long id, Long expectedVersion, User updatedUser) {
+        return compareAndSet(id, expectedVersion, current -> new User(updatedUser));
+    }
+    
+    /**
+     * Applies the fields present in {@code changes} on top of the stored user.
+     *
+     * @throws IllegalArgumentException when a field is unknown or invalid
+     * @throws VersionConflictException when the stored version differs
+     * @throws DuplicateValueException when the new username or email is taken
+     */
+    public Optional<User> patchUser(Long id, Long expectedVersion, Map<String, Object> changes) {
+        Consumer<User> patch = USER_PATCH.parse(changes, validator);
+        return compareAndSet(id, expectedVersion, current -> {
+            User next = new User(current);
+            patch.accept(next);
+            return next;
+        });
+    }
+    
+    // The change gets its own copy of the stored user; the table swaps the result in atomically
+    private Optional<User> compareAndSet(Long id, Long expectedVersion, UnaryOperator<User> change) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        User stored = users.update(id, expectedVersion, change);
+        if (stored != null) {
+            replicationLog.recordPut(Mutation.Entity.USER, id, stored.getVersion(), stored);
         }
-        return Optional.empty();
+        return Optional.ofNullable(stored);
     }
     
     public boolean deleteUser(Long id) {
-        User user = users.remove(id);
-        if (user != null) {
-            usersByEmail.remove(user.getEmail());
-            usersByUsername.remove(user.getUsername());
-            return true;
+        return deleteUser(id, null);
+    }
+    
+    /** @throws VersionConflictException when {@code expectedVersion} is given and the stored version differs */
+    public boolean deleteUser(Long id, Long expectedVersion) {
+        if (id == null) {
+            return false;
+        }
+        long version = users.delete(id, expectedVersion);
+        if (version == 0) {
+            return false;
         }
-        return false;
+        replicationLog.recordDelete(Mutation.Entity.USER, id, version);
+        return true;
+    }
+    
+    /**
+     * Stores a user replicated from another node as it is, unless this node
+     * already holds it at a later version, or at the same version from a
+     * node that wins ties.
+     *
+     * @throws DuplicateValueException when another user here has its username or email
+     */
+    public Resolution applyReplicated(User user) {
+        idGenerator.advancePast(user.getId());
+        return users.putIfNewer(user);
+    }
+    
+    /** Deletes a user deleted on another node, unless it has since moved past {@code version} here. */
+    public boolean applyReplicatedDelete(long id, long version) {
+        return users.deleteIfNotNewer(id, version);
     }
     
     public boolean existsByEmail(String email) {
-        return usersByEmail.containsKey(email);
+        return getUserByEmail(email).isPresent();
     }
     
     public boolean existsByUsername(String username) {
-        return usersByUsername.containsKey(username);
+        return getUserByUsername(username).isPresent();
     }
     
+    // Not a versioned change: a login must not conflict with, or be replicated over, a concurrent edit
     public void updateLastLogin(Long userId) {
-        User user = users.get(userId);
-        if (user != null) {
-            user.setLastLoginAt(LocalDateTime.now());
-            user.setUpdatedAt(LocalDateTime.now());
+        if (userId != null) {
+            users.touchLastLogin(userId, LocalDateTime.now());
         }
     }
     
+    public void verifyEmail(Long userId) {
+        compareAndSet(userId, null, current -> {
+            User next = new User(current);
+            next.setEmailVerified(true);
+            return next;
+        });
+    }
+    
+    public void changePassword(Long userId, String password) {
+        compareAndSet(userId, null, current -> {
+            User next = new User(current);
+            next.setPassword(password);
+            return next;
+        });
+    }
+    
     public void enableMfa(Long userId, String secret) {
-        User user = users.get(userId);
-        if (user != null) {
-            user.setMfaEnabled(true);
-            user.setMfaSecret(secret);
-            user.setUpdatedAt(LocalDateTime.now());
-        }
+        compareAndSet(userId, null, current -> {
+            User next = new User(current);
+            next.setMfaEnabled(true);
+            next.setMfaSecret(secret);
+            return next;
+        });
     }
     
     public void disableMfa(Long userId) {
-        User user = users.get(userId);
-        if (user != null) {
-            user.setMfaEnabled(false);
-            user.setMfaSecret(null);
-            user.setUpdatedAt(LocalDateTime.now());
-        }
+        compareAndSet(userId, null, current -> {
+            User next = new User(current);
+            next.setMfaEnabled(false);
+            next.setMfaSecret(null);
+            return next;
+        });
     }
     
     public long getTotalUsers() {
@@ -0,0 +1,610 @@
+
+package com.example.bookapi.service;
+
+import com.example.bookapi.exception.DuplicateValueException;
+import com.example.bookapi.exception.VersionConflictException;
+import com.example.bookapi.index.LongIntHashIndex;
+import com.example.bookapi.index.Utf8Slab;
+import com.example.bookapi.model.User;
+import com.example.bookapi.replication.Resolution;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Column store for users. A user is a row across a few primitive arrays:
+ * the five booleans packed into one flag byte, timestamps as nanoseconds
+ * since the epoch, and strings as references into a {@link Utf8Slab}. Ids,
+ * usernames and emails are indexed by open-addressing {@link LongIntHashIndex}es,
+ * the strings by a seeded 64-bit hash that is checked against the stored
+ * bytes. A few million users thus take a few dozen arrays instead of tens
+ * of millions of objects for the collector to trace.
+ *
+ * <p>Callers get and hand in {@link User} objects; each read builds a new
+ * one, so nothing outside can change a stored row.
+ *
+ * <p>Rows are guarded by striped locks, so writers to different users do
+ * not wait for each other. Only changes to the table's structure take its
+ * write lock: adding and removing rows, changing a username or email, which
+ * moves the row in an index, and compacting the slab. Everything else holds
+ * the read lock, under which rows, indexes and the slab stay where they are.
+ */
+class UserTable {
+
+    private static final byte LIVE = 1;
+    private static final byte EMAIL_VERIFIED = 1 << 1;
+    private static final byte PHONE_VERIFIED = 1 << 2;
+    private static final byte MFA_ENABLED = 1 << 3;
+    private static final byte ACTIVE = 1 << 4;
+
+    private static final int USERNAME = 0;
+    private static final int EMAIL = 1;
+    private static final int PASSWORD = 2;
+    private static final int FIRST_NAME = 3;
+    private static final int LAST_NAME = 4;
+    private static final int PHONE_NUMBER = 5;
+    private static final int MFA_SECRET = 6;
+    private static final int STRINGS = 7;
+
+    private static final long NO_TIME = Long.MIN_VALUE;
+    private static final long MIN_COMPACTION_BYTES = 1 << 20;
+    private static final int STRIPES = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final int slabChunkSize;
+    private final boolean offHeap;
+    private final long hashSeed = ThreadLocalRandom.current().nextLong();
+    private final long origin;
+
+    private Utf8Slab slab;
+    private byte[] flags;
+    private long[] ids;
+    private long[] versions;
+    private long[] origins;
+    private long[] createdAt;
+    private long[] updatedAt;
+    private long[] lastLoginAt;
+    private long[] strings;
+    private int rows;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+
+    private final LongIntHashIndex byId;
+    private final LongIntHashIndex byUsername;
+    private final LongIntHashIndex byEmail;
+
+    /** @param origin stamped on the versions {@link #update} writes */
+    UserTable(int initialCapacity, int slabChunkSize, boolean offHeap, long origin) {
+        int capacity = Math.max(16, initialCapacity);
+        this.slabChunkSize = slabChunkSize;
+        this.offHeap = offHeap;
+        this.origin = origin;
+        this.slab = new Utf8Slab(slabChunkSize, offHeap);
+        this.flags = new byte[capacity];
+        this.ids = new long[capacity];
+        this.versions = new long[capacity];
+        this.origins = new long[capacity];
+        this.createdAt = new long[capacity];
+        this.updatedAt = new long[capacity];
+        this.lastLoginAt = new long[capacity];
+        this.strings = new long[capacity * STRINGS];
+        this.byId = new LongIntHashIndex(capacity);
+        this.byUsername = new LongIntHashIndex(capacity);
+        this.byEmail = new LongIntHashIndex(capacity);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    User get(long id) {
+        lock.readLock().lock();
+        try {
+            int row = byId.get(id);
+            return row < 0 ? null : readRow(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // All ids under one read lock, so the users come from a single point in time
+    List<User> getAll(List<Long> ids) {
+        List<User> users = new ArrayList<>(ids.size());
+        lock.readLock().lock();
+        try {
+            for (Long id : ids) {
+                int row = byId.get(id);
+                users.add(row < 0 ? null : readRow(row));
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    User findByUsername(String username) {
+        return find(byUsername, USERNAME, username);
+    }
+
+    User findByEmail(String email) {
+        return find(byEmail, EMAIL, email);
+    }
+
+    private User find(LongIntHashIndex index, int field, String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int row = rowOf(index, field, utf8);
+            return row < 0 ? null : readRow(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<User> all() {
+        lock.readLock().lock();
+        try {
+            List<User> users = new ArrayList<>(byId.size());
+            for (int row = 0; row < rows; row++) {
+                User user = readRow(row);
+                if (user != null) {
+                    users.add(user);
+                }
+            }
+            return users;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @throws DuplicateValueException when the username or email is already taken */
+    void insert(User user) {
+        byte[] username = utf8(user.getUsername());
+        byte[] email = utf8(user.getEmail());
+        lock.writeLock().lock();
+        try {
+            checkUnique(-1, username, email);
+            int row = allocateRow();
+            write(row, user, username, email);
+            byId.put(user.getId(), row);
+            index(byUsername, row, username);
+            index(byEmail, row, email);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the user with what {@code change} makes of it, keeping the id
+     * and creation time and moving the version on by one. {@code change} may
+     * be applied more than once, so it must not have side effects.
+     *
+     * @return the stored user, or {@code null} when there is no user with that id
+     * @throws VersionConflictException when {@code expectedVersion} is given and the stored version differs
+     * @throws DuplicateValueException when the new username or email is taken
+     */
+    User update(long id, Long expectedVersion, UnaryOperator<User> change) {
+        User stored = updateInPlace(id, expectedVersion, change);
+        if (stored != null) {
+            compactIfWasteful();
+            return stored;
+        }
+        return updateAndReindex(id, expectedVersion, change);
+    }
+
+    // Under the read lock and the row's stripe; gives up, returning null, when the username or email changes
+    private User updateInPlace(long id, Long expectedVersion, UnaryOperator<User> change) {
+        lock.readLock().lock();
+        try {
+            int row = byId.get(id);
+            if (row < 0) {
+                return null;
+            }
+            ReentrantLock stripe = stripe(row);
+            stripe.lock();
+            try {
+                User next = next(row, expectedVersion, change);
+                int base = row * STRINGS;
+                if (!slab.equals(strings[base + USERNAME], utf8(next.getUsername()))
+                        || !slab.equals(strings[base + EMAIL], utf8(next.getEmail()))) {
+                    return null;
+                }
+                releaseStrings(row, PASSWORD);
+                writeColumns(row, next);
+                return read(row);
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private User updateAndReindex(long id, Long expectedVersion, UnaryOperator<User> change) {
+        lock.writeLock().lock();
+        try {
+            int row = byId.get(id);
+            if (row < 0) {
+                return null;
+            }
+            User next = next(row, expectedVersion, change);
+            byte[] username = utf8(next.getUsername());
+            byte[] email = utf8(next.getEmail());
+            checkUnique(row, username, email);
+            if (!slab.equals(strings[row * STRINGS + USERNAME], username)) {
+                unindex(byUsername, row, USERNAME);
+                index(byUsername, row, username);
+            }
+            if (!slab.equals(strings[row * STRINGS + EMAIL], email)) {
+                unindex(byEmail, row, EMAIL);
+                index(byEmail, row, email);
+            }
+            releaseStrings(row, USERNAME);
+            write(row, next, username, email);
+            compactSlabIfWasteful();
+            return read(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private User next(int row, Long expectedVersion, UnaryOperator<User> change) {
+        if (expectedVersion != null && versions[row] != expectedVersion) {
+            throw new VersionConflictException(versions[row]);
+        }
+        User next = change.apply(read(row));
+        next.setId(ids[row]);
+        next.setCreatedAt(toDateTime(createdAt[row]));
+        next.setUpdatedAt(LocalDateTime.now());
+        next.setVersion(versions[row] + 1);
+        next.setOrigin(origin);
+        return next;
+    }
+
+    /**
+     * Sets when the user last logged in, without moving the version on:
+     * the time is bookkeeping of the node the user logged in to, not a
+     * change other writers need to see.
+     *
+     * @return whether there is a user with that id
+     */
+    boolean touchLastLogin(long id, LocalDateTime time) {
+        lock.readLock().lock();
+        try {
+            int row = byId.get(id);
+            if (row < 0) {
+                return false;
+            }
+            ReentrantLock stripe = stripe(row);
+            stripe.lock();
+            try {
+                lastLoginAt[row] = toNanos(time);
+                return true;
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the version the user had, or 0 when there is no user with that id
+     * @throws VersionConflictException when {@code expectedVersion} is given and the stored version differs
+     */
+    long delete(long id, Long expectedVersion) {
+        lock.writeLock().lock();
+        try {
+            int row = byId.get(id);
+            if (row < 0) {
+                return 0;
+            }
+            if (expectedVersion != null && versions[row] != expectedVersion) {
+                throw new VersionConflictException(versions[row]);
+            }
+            long version = versions[row];
+            remove(id, row);
+            return version;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stores {@code user} as it is, id, timestamps, version and origin
+     * included, unless the stored user with its id is at a later version, or
+     * at the same version from an origin that wins ties. The later of the two
+     * last login times is kept, as logins are not versioned.
+     *
+     * @throws DuplicateValueException when the username or email belongs to another user
+     */
+    Resolution putIfNewer(User user) {
+        byte[] username = utf8(user.getUsername());
+        byte[] email = utf8(user.getEmail());
+        lock.writeLock().lock();
+        try {
+            int row = byId.get(user.getId());
+            if (row < 0) {
+                checkUnique(row, username, email);
+                row = allocateRow();
+                write(row, user, username, email);
+                byId.put(user.getId(), row);
+                index(byUsername, row, username);
+                index(byEmail, row, email);
+                return Resolution.APPLIED;
+            }
+            Resolution resolution = Resolution.of(user.getVersion(), user.getOrigin(), versions[row], origins[row]);
+            if (!resolution.isStored()) {
+                return resolution;
+            }
+            checkUnique(row, username, email);
+            long lastLogin = Math.max(lastLoginAt[row], toNanos(user.getLastLoginAt()));
+            if (!slab.equals(strings[row * STRINGS + USERNAME], username)) {
+                unindex(byUsername, row, USERNAME);
+                index(byUsername, row, username);
+            }
+            if (!slab.equals(strings[row * STRINGS + EMAIL], email)) {
+                unindex(byEmail, row, EMAIL);
+                index(byEmail, row, email);
+            }
+            releaseStrings(row, USERNAME);
+            write(row, user, username, email);
+            lastLoginAt[row] = lastLogin;
+            compactSlabIfWasteful();
+            return resolution;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Deletes the user unless it has moved past {@code version}; returns whether it did. */
+    boolean deleteIfNotNewer(long id, long version) {
+        lock.writeLock().lock();
+        try {
+            int row = byId.get(id);
+            if (row < 0 || versions[row] > version) {
+                return false;
+            }
+            remove(id, row);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Bytes held by the arrays, indexes and string slab, whether on the heap or not. */
+    long sizeInBytes() {
+        lock.readLock().lock();
+        try {
+            long columns = (long) flags.length * (1 + 6 * Long.BYTES + STRINGS * Long.BYTES);
+            return columns + byId.sizeInBytes() + byUsername.sizeInBytes() + byEmail.sizeInBytes()
+                + slab.capacityBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void remove(long id, int row) {
+        byId.remove(id, row);
+        unindex(byUsername, row, USERNAME);
+        unindex(byEmail, row, EMAIL);
+        releaseStrings(row, USERNAME);
+        Arrays.fill(strings, row * STRINGS, (row + 1) * STRINGS, Utf8Slab.NULL);
+        flags[row] = 0;
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+        }
+        freeRows[freeCount++] = row;
+        compactSlabIfWasteful();
+    }
+
+    private void checkUnique(int row, byte[] username, byte[] email) {
+        int owner = rowOf(byUsername, USERNAME, username);
+        if (owner >= 0 && owner != row) {
+            throw new DuplicateValueException("Username already exists");
+        }
+        owner = rowOf(byEmail, EMAIL, email);
+        if (owner >= 0 && owner != row) {
+            throw new DuplicateValueException("Email already exists");
+        }
+    }
+
+    private int rowOf(LongIntHashIndex index, int field, byte[] utf8) {
+        if (utf8 == null) {
+            return -1;
+        }
+        return index.find(hash(utf8), row -> slab.equals(strings[row * STRINGS + field], utf8));
+    }
+
+    private void index(LongIntHashIndex index, int row, byte[] utf8) {
+        if (utf8 != null) {
+            index.put(hash(utf8), row);
+        }
+    }
+
+    private void unindex(LongIntHashIndex index, int row, int field) {
+        byte[] stored = slab.getBytes(strings[row * STRINGS + field]);
+        if (stored != null) {
+            index.remove(hash(stored), row);
+        }
+    }
+
+    private int allocateRow() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (rows == flags.length) {
+            int capacity = flags.length * 2;
+            flags = Arrays.copyOf(flags, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            origins = Arrays.copyOf(origins, capacity);
+            createdAt = Arrays.copyOf(createdAt, capacity);
+            updatedAt = Arrays.copyOf(updatedAt, capacity);
+            lastLoginAt = Arrays.copyOf(lastLoginAt, capacity);
+            strings = Arrays.copyOf(strings, capacity * STRINGS);
+        }
+        return rows++;
+    }
+
+    private void write(int row, User user, byte[] username, byte[] email) {
+        int base = row * STRINGS;
+        strings[base + USERNAME] = username != null ? slab.add(username) : Utf8Slab.NULL;
+        strings[base + EMAIL] = email != null ? slab.add(email) : Utf8Slab.NULL;
+        writeColumns(row, user);
+    }
+
+    // Everything but the username and email, which only change under the write lock as they are indexed
+    private void writeColumns(int row, User user) {
+        flags[row] = (byte) (LIVE
+            | (user.isEmailVerified() ? EMAIL_VERIFIED : 0)
+            | (user.isPhoneVerified() ? PHONE_VERIFIED : 0)
+            | (user.isMfaEnabled() ? MFA_ENABLED : 0)
+            | (user.isActive() ? ACTIVE : 0));
+        ids[row] = user.getId();
+        versions[row] = user.getVersion();
+        origins[row] = user.getOrigin();
+        createdAt[row] = toNanos(user.getCreatedAt());
+        updatedAt[row] = toNanos(user.getUpdatedAt());
+        lastLoginAt[row] = toNanos(user.getLastLoginAt());
+        int base = row * STRINGS;
+        strings[base + PASSWORD] = slab.add(user.getPassword());
+        strings[base + FIRST_NAME] = slab.add(user.getFirstName());
+        strings[base + LAST_NAME] = slab.add(user.getLastName());
+        strings[base + PHONE_NUMBER] = slab.add(user.getPhoneNumber());
+        strings[base + MFA_SECRET] = slab.add(user.getMfaSecret());
+    }
+
+    // Under the read lock: the row as a whole, or null when it is free
+    private User readRow(int row) {
+        ReentrantLock stripe = stripe(row);
+        stripe.lock();
+        try {
+            return (flags[row] & LIVE) != 0 ? read(row) : null;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private ReentrantLock stripe(int row) {
+        return stripes[row & (STRIPES - 1)];
+    }
+
+    private User read(int row) {
+        int base = row * STRINGS;
+        User user = new User();
+        user.setId(ids[row]);
+        user.setUsername(slab.get(strings[base + USERNAME]));
+        user.setEmail(slab.get(strings[base + EMAIL]));
+        user.setPassword(slab.get(strings[base + PASSWORD]));
+        user.setFirstName(slab.get(strings[base + FIRST_NAME]));
+        user.setLastName(slab.get(strings[base + LAST_NAME]));
+        user.setPhoneNumber(slab.get(strings[base + PHONE_NUMBER]));
+        user.setMfaSecret(slab.get(strings[base + MFA_SECRET]));
+        byte f = flags[row];
+        user.setEmailVerified((f & EMAIL_VERIFIED) != 0);
+        user.setPhoneVerified((f & PHONE_VERIFIED) != 0);
+        user.setMfaEnabled((f & MFA_ENABLED) != 0);
+        user.setActive((f & ACTIVE) != 0);
+        user.setCreatedAt(toDateTime(createdAt[row]));
+        user.setUpdatedAt(toDateTime(updatedAt[row]));
+        user.setLastLoginAt(toDateTime(lastLoginAt[row]));
+        user.setVersion(versions[row]);
+        user.setOrigin(origins[row]);
+        return user;
+    }
+
+    // The row's strings from field {@code from} on
+    private void releaseStrings(int row, int from) {
+        for (int i = row * STRINGS + from; i < (row + 1) * STRINGS; i++) {
+            slab.release(strings[i]);
+        }
+    }
+
+    private void compactIfWasteful() {
+        lock.readLock().lock();
+        try {
+            if (!isWasteful()) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            compactSlabIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isWasteful() {
+        long wasted = slab.wastedBytes();
+        return wasted >= MIN_COMPACTION_BYTES && wasted * 2 >= slab.usedBytes();
+    }
+
+    // Once more than half the slab is released strings, the live ones move to a fresh slab; under the write lock
+    private void compactSlabIfWasteful() {
+        if (!isWasteful()) {
+            return;
+        }
+        Utf8Slab compacted = new Utf8Slab(slabChunkSize, offHeap);
+        for (int row = 0; row < rows; row++) {
+            if ((flags[row] & LIVE) != 0) {
+                for (int i = row * STRINGS; i < (row + 1) * STRINGS; i++) {
+                    strings[i] = slab.copyTo(strings[i], compacted);
+                }
+            }
+        }
+        slab = compacted;
+    }
+
+    private long hash(byte[] utf8) {
+        // FNV-1a over the bytes, seeded per table so colliding keys can't be prepared in advance
+        long h = 0xcbf29ce484222325L ^ hashSeed;
+        for (byte b : utf8) {
+            h = (h ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static long toNanos(LocalDateTime time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + time.getNano();
+    }
+
+    private static LocalDateTime toDateTime(long nanos) {
+        if (nanos == NO_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+            (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,329 @@
+
+package com.example.bookapi.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access log pipeline. Request threads copy a record into a preallocated
+ * slot of a lock-free ring buffer and return; a single background thread
+ * formats the records as JSON lines and appends them to a file that is
+ * rolled by size. When the writer falls a full buffer behind, new records
+ * are dropped and counted rather than making requests wait. The values of
+ * query parameters that carry secrets, such as tokens and passwords, are
+ * replaced before anything is written.
+ */
+public class AccessLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AccessLog.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final String REDACTED = "***";
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxHistory;
+    private final Set<String> redactedParameters;
+    private final StringBuilder line = new StringBuilder(512);
+    private final StringBuilder query = new StringBuilder(128);
+    private OutputStream out;
+    private long fileBytes;
+    private long lastFlush;
+    private long reportedDrops;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * @param capacity   ring buffer slots, rounded up to a power of two
+     * @param file       the active log file; rolled files get a {@code .1}, {@code .2}, ... suffix
+     * @param maxHistory rolled files to keep
+     * @param redactedParameters query parameters whose values are never written, matched ignoring case
+     */
+    public AccessLog(int capacity, Path file, long maxFileBytes, int maxHistory, Set<String> redactedParameters) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxHistory = maxHistory;
+        this.redactedParameters = redactedParameters.stream()
+            .map(name -> name.trim().toLowerCase(Locale.ROOT))
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public synchronized void start() throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        openFile();
+        running = true;
+        writer = new Thread(this::drainLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /** Stops the writer after it has written everything already logged. */
+    public synchronized void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+            writer = null;
+        }
+    }
+
+    /**
+     * Copies a request into the ring buffer. Strings are stored by reference
+     * and only formatted on the writer thread.
+     *
+     * @param sampleRate the probability this record was logged with, for scaling counts; 1 when always logged
+     */
+    public void log(long epochMillis, String method, String path, String query, int status, long durationNanos,
+                    long bytes, String client, long serviceNanos, long serializationNanos, double sampleRate) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.epochMillis = epochMillis;
+        slot.method = method;
+        slot.path = path;
+        slot.query = query;
+        slot.status = status;
+        slot.durationNanos = durationNanos;
+        slot.bytes = bytes;
+        slot.client = client;
+        slot.serviceNanos = serviceNanos;
+        slot.serializationNanos = serializationNanos;
+        slot.sampleRate = sampleRate;
+        slot.published = sequence + 1; // volatile write publishes the fields above
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void drainLoop() {
+        while (true) {
+            boolean stopping = !running;
+            int written = drain();
+            try {
+                long now = System.nanoTime();
+                if (written == 0 && out != null && now - lastFlush >= FLUSH_INTERVAL_NANOS) {
+                    out.flush();
+                    lastFlush = now;
+                }
+            } catch (IOException e) {
+                log.warn("Could not flush access log {}", file, e);
+            }
+            if (stopping && consumed.get() == claimed.get()) {
+                break;
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        closeFile();
+    }
+
+    /** Writes every published record; returns how many. */
+    private int drain() {
+        int written = 0;
+        long next = consumed.get();
+        while (true) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.published != next + 1) {
+                break;
+            }
+            format(slot);
+            slot.method = slot.path = slot.query = slot.client = null;
+            consumed.set(++next);
+            write();
+            written++;
+        }
+        long drops = dropped.sum();
+        if (drops != reportedDrops) {
+            log.warn("Access log buffer full: {} records dropped so far", drops);
+            reportedDrops = drops;
+        }
+        return written;
+    }
+
+    private void format(Slot slot) {
+        StringBuilder b = line;
+        b.setLength(0);
+        b.append("{\"time\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(slot.epochMillis), b);
+        b.append("\",\"method\":\"").append(slot.method).append("\",\"path\":");
+        appendString(b, slot.path);
+        if (slot.query != null) {
+            b.append(",\"query\":");
+            appendString(b, redact(slot.query));
+        }
+        b.append(",\"status\":").append(slot.status).append(",\"durationMs\":");
+        RequestTiming.appendMillis(b, slot.durationNanos);
+        b.append(",\"bytes\":").append(slot.bytes);
+        if (slot.serviceNanos > 0) {
+            b.append(",\"serviceMs\":");
+            RequestTiming.appendMillis(b, slot.serviceNanos);
+        }
+        if (slot.serializationNanos > 0) {
+            b.append(",\"serializationMs\":");
+            RequestTiming.appendMillis(b, slot.serializationNanos);
+        }
+        b.append(",\"client\":");
+        appendString(b, slot.client);
+        if (slot.sampleRate < 1) {
+            b.append(",\"sampleRate\":").append(slot.sampleRate);
+        }
+        b.append("}\n");
+    }
+
+    // Keeps every parameter name so the log still shows how an endpoint was called
+    private CharSequence redact(String rawQuery) {
+        if (redactedParameters.isEmpty()) {
+            return rawQuery;
+        }
+        StringBuilder q = query;
+        q.setLength(0);
+        int start = 0;
+        while (start <= rawQuery.length()) {
+            int end = rawQuery.indexOf('&', start);
+            if (end < 0) {
+                end = rawQuery.length();
+            }
+            int equals = rawQuery.indexOf('=', start);
+            if (start > 0) {
+                q.append('&');
+            }
+            if (equals >= 0 && equals < end
+                    && redactedParameters.contains(rawQuery.substring(start, equals).toLowerCase(Locale.ROOT))) {
+                q.append(rawQuery, start, equals + 1).append(REDACTED);
+            } else {
+                q.append(rawQuery, start, end);
+            }
+            start = end + 1;
+        }
+        return q;
+    }
+
+    private static void appendString(StringBuilder b, CharSequence value) {
+        if (value == null) {
+            b.append("null");
+            return;
+        }
+        b.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < 0x20) {
+                b.append(String.format("\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        b.append('"');
+    }
+
+    private void write() {
+        if (out == null) {
+            return;
+        }
+        try {
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            if (fileBytes > 0 && fileBytes + bytes.length > maxFileBytes) {
+                roll();
+            }
+            out.write(bytes);
+            fileBytes += bytes.length;
+        } catch (IOException e) {
+            log.warn("Could not write access log {}", file, e);
+        }
+    }
+
+    private void roll() throws IOException {
+        closeFile();
+        Files.deleteIfExists(rolled(maxHistory));
+        for (int i = maxHistory - 1; i >= 1; i--) {
+            if (Files.exists(rolled(i))) {
+                Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxHistory > 0) {
+            Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        openFile();
+    }
+
+    private Path rolled(int generation) {
+        return file.resolveSibling(file.getFileName() + "." + generation);
+    }
+
+    private void openFile() throws IOException {
+        out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND, StandardOpenOption.WRITE), 64 * 1024);
+        fileBytes = Files.size(file);
+    }
+
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("Could not close access log {}", file, e);
+            }
+            out = null;
+        }
+    }
+
+    private static final class Slot {
+        volatile long published;
+        long epochMillis;
+        String method;
+        String path;
+        String query;
+        int status;
+        long durationNanos;
+        long bytes;
+        String client;
+        long serviceNanos;
+        long serializationNanos;
+        double sampleRate;
+    }
+}
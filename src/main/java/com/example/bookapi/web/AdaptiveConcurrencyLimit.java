@@ -0,0 +1,109 @@
+
+package com.example.bookapi.web;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrency limit that follows observed latency, after the gradient
+ * algorithm of Netflix's concurrency-limits. Latency is sampled in windows;
+ * the shortest latency of a window is compared with a slowly moving
+ * baseline, and while it stays close to the baseline the limit grows by a
+ * small queue allowance. Once requests start to queue somewhere, latency
+ * rises above the baseline and the limit shrinks in proportion, down to
+ * half per window.
+ *
+ * <p>{@link #tryAcquire()} and {@link #release} are lock free; the limit
+ * itself is recomputed under a lock once per window.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BASELINE_WEIGHT = 0.05;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int windowSamples;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile int limit;
+    private double estimatedLimit;
+    private double baselineNanos;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowCount;
+    private int windowMaxInFlight;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, int windowSamples) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowSamples = windowSamples;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /** Takes a slot unless the limit is reached; a successful call must be paired with {@link #release}. */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a slot.
+     *
+     * @param latencyNanos how long the request held it, or a negative value
+     *                     to leave it out of the estimate (for failures that say nothing about load)
+     */
+    public void release(long latencyNanos) {
+        int held = inFlight.getAndDecrement();
+        if (latencyNanos >= 0) {
+            sample(latencyNanos, held);
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void sample(long latencyNanos, int inFlightAtRelease) {
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtRelease);
+        if (++windowCount < windowSamples) {
+            return;
+        }
+
+        double shortNanos = windowMinNanos;
+        if (baselineNanos == 0) {
+            baselineNanos = shortNanos;
+        }
+        // Too few requests to say anything about the limit; don't let it drift up while idle
+        boolean appLimited = windowMaxInFlight < estimatedLimit / 2;
+        if (!appLimited) {
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baselineNanos / shortNanos));
+            double queueAllowance = Math.sqrt(estimatedLimit);
+            double next = estimatedLimit * gradient + queueAllowance;
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1 - SMOOTHING) + next * SMOOTHING));
+            limit = (int) estimatedLimit;
+        }
+        // The baseline follows slowly and recovers from a drifting-up latency once the limit has come down
+        baselineNanos = baselineNanos * (1 - BASELINE_WEIGHT) + Math.min(shortNanos, baselineNanos * 2) * BASELINE_WEIGHT;
+        if (shortNanos < baselineNanos) {
+            baselineNanos = shortNanos;
+        }
+
+        windowMinNanos = Long.MAX_VALUE;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+    }
+}
@@ -0,0 +1,148 @@
+
+package com.example.bookapi.web;
+
+import com.example.bookapi.dto.ApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control in front of the API. Requests are sorted into
+ * {@link Group}s, each with its own {@link AdaptiveConcurrencyLimit}; a
+ * request over its group's limit is answered at once with 503 and
+ * {@code Retry-After} instead of queueing for a worker thread. Groups are
+ * also shed, whatever their own limit, for a while after a group of higher
+ * priority has hit its limit, so that under overload writes give way to
+ * reads and both give way to authentication.
+ *
+ * <p>Long-lived event streams, bulk MFA provisioning and the internal
+ * endpoints are not limited: their run time says nothing about overload.
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    /** Endpoint groups, highest priority first. */
+    public enum Group {
+        AUTH, READ, WRITE
+    }
+
+    private final Map<Group, AdaptiveConcurrencyLimit> limits = new EnumMap<>(Group.class);
+    private final Map<Group, AtomicLong> saturatedAt = new EnumMap<>(Group.class);
+    private final Map<Group, LongAdder> shed = new EnumMap<>(Group.class);
+    private final ObjectMapper objectMapper;
+    private final long shedWindowNanos;
+    private final String retryAfterSeconds;
+
+    public AdmissionControlFilter(int initialLimit, int minLimit, int maxLimit, int windowSamples,
+                                  long shedWindowMillis, int retryAfterSeconds, ObjectMapper objectMapper) {
+        for (Group group : Group.values()) {
+            limits.put(group, new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, windowSamples));
+            saturatedAt.put(group, new AtomicLong(System.nanoTime() - TimeUnit.DAYS.toNanos(1)));
+            shed.put(group, new LongAdder());
+        }
+        this.objectMapper = objectMapper;
+        this.shedWindowNanos = TimeUnit.MILLISECONDS.toNanos(shedWindowMillis);
+        this.retryAfterSeconds = Integer.toString(retryAfterSeconds);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return path.startsWith("/api/internal/") || path.equals("/api/books/changes")
+            || path.equals("/api/mfa/provision")
+            || (accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Group group = classify(request);
+        AdaptiveConcurrencyLimit limit = limits.get(group);
+        long now = System.nanoTime();
+        if (higherPrioritySaturated(group, now) || !limit.tryAcquire()) {
+            if (limit.getInFlight() >= limit.getLimit()) {
+                saturatedAt.get(group).set(now);
+            }
+            reject(group, response);
+            return;
+        }
+
+        long latency = -1;
+        try {
+            chain.doFilter(request, response);
+            latency = System.nanoTime() - now;
+        } finally {
+            limit.release(latency);
+        }
+    }
+
+    static Group classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        if (path.startsWith("/api/auth/") || path.startsWith("/api/mfa/")) {
+            return Group.AUTH;
+        }
+        String method = request.getMethod();
+        boolean read = "GET".equals(method) || "HEAD".equals(method) || path.endsWith("/batch-get");
+        return read ? Group.READ : Group.WRITE;
+    }
+
+    private boolean higherPrioritySaturated(Group group, long now) {
+        for (Group higher : Group.values()) {
+            if (higher == group) {
+                return false;
+            }
+            if (now - saturatedAt.get(higher).get() < shedWindowNanos) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reject(Group group, HttpServletResponse response) throws IOException {
+        LongAdder count = shed.get(group);
+        count.increment();
+        if (count.sum() % 1000 == 1) {
+            log.warn("Shedding {} requests: limits {}", group, describeLimits());
+        }
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(),
+            ApiResponse.error("Server is overloaded, retry later"));
+    }
+
+    public AdaptiveConcurrencyLimit getLimit(Group group) {
+        return limits.get(group);
+    }
+
+    public long getShed(Group group) {
+        return shed.get(group).sum();
+    }
+
+    private String describeLimits() {
+        StringBuilder b = new StringBuilder();
+        for (Group group : Group.values()) {
+            AdaptiveConcurrencyLimit limit = limits.get(group);
+            b.append(b.length() == 0 ? "" : ", ").append(group.name().toLowerCase())
+                .append('=').append(limit.getInFlight()).append('/').append(limit.getLimit());
+        }
+        return b.toString();
+    }
+}
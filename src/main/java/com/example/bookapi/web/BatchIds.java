@@ -0,0 +1,45 @@
+package com.example.bookapi.web;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Id lists of batch reads: parsing the comma-separated form, dropping
+ * repeats while keeping the order asked for, and enforcing the batch limit.
+ */
+public final class BatchIds {
+
+    private BatchIds() {}
+
+    /** @throws IllegalArgumentException when an id is not a number */
+    public static List<Long> parse(String ids, int maxIds) {
+        List<Long> parsed = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            id = id.trim();
+            if (id.isEmpty()) {
+                continue;
+            }
+            try {
+                parsed.add(Long.parseLong(id));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid id: " + id);
+            }
+        }
+        return distinct(parsed, maxIds);
+    }
+
+    /** @throws IllegalArgumentException when there are no ids or more distinct ids than {@code maxIds} */
+    public static List<Long> distinct(Collection<Long> ids, int maxIds) {
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        if (distinct.isEmpty()) {
+            throw new IllegalArgumentException("At least one id is required");
+        }
+        if (distinct.size() > maxIds) {
+            throw new IllegalArgumentException("At most " + maxIds + " ids can be requested at once");
+        }
+        return new ArrayList<>(distinct);
+    }
+}
@@ -0,0 +1,109 @@
+
+package com.example.bookapi.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes everything written to it as {@code gzip} or {@code deflate} using a
+ * deflater borrowed from a {@link DeflaterPool}. {@link #finish()} writes the
+ * trailer and returns the deflater to the pool; the target is not closed.
+ */
+public class CompressingOutputStream extends OutputStream {
+
+    private static final byte[] GZIP_HEADER = {
+        0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+    };
+
+    private final OutputStream target;
+    private final DeflaterPool pool;
+    private final boolean gzip;
+    private final Deflater deflater;
+    private final CRC32 crc;
+    private final byte[] chunk = new byte[8192];
+    private boolean finished;
+
+    public CompressingOutputStream(OutputStream target, DeflaterPool pool, boolean gzip) throws IOException {
+        this.target = target;
+        this.pool = pool;
+        this.gzip = gzip;
+        this.deflater = pool.borrow(gzip);
+        this.crc = gzip ? new CRC32() : null;
+        if (gzip) {
+            target.write(GZIP_HEADER);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (finished) {
+            throw new IOException("Stream already finished");
+        }
+        if (length == 0) {
+            return;
+        }
+        if (crc != null) {
+            crc.update(bytes, offset, length);
+        }
+        deflater.setInput(bytes, offset, length);
+        while (!deflater.needsInput()) {
+            drain(Deflater.NO_FLUSH);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!finished) {
+            drain(Deflater.SYNC_FLUSH);
+        }
+        target.flush();
+    }
+
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain(Deflater.NO_FLUSH);
+            }
+            if (gzip) {
+                writeIntLE(crc.getValue());
+                writeIntLE(deflater.getBytesRead());
+            }
+        } finally {
+            pool.release(deflater, gzip);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    private void drain(int flushMode) throws IOException {
+        int count;
+        do {
+            count = deflater.deflate(chunk, 0, chunk.length, flushMode);
+            if (count > 0) {
+                target.write(chunk, 0, count);
+            }
+        } while (count == chunk.length);
+    }
+
+    private void writeIntLE(long value) throws IOException {
+        target.write((int) value & 0xff);
+        target.write((int) (value >>> 8) & 0xff);
+        target.write((int) (value >>> 16) & 0xff);
+        target.write((int) (value >>> 24) & 0xff);
+    }
+}
@@ -0,0 +1,274 @@
+
+package com.example.bookapi.web;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Buffers the first {@code minSize} bytes of a response. Bodies that stay
+ * below the threshold, are already encoded or have a non-compressible content
+ * type are written as-is; larger bodies are compressed on the fly once the
+ * threshold is crossed. Server-sent event streams are never buffered or
+ * compressed. Other streamed responses, NDJSON or anything written after the
+ * request went asynchronous, are settled by their first flush, which then
+ * reaches the client; the flush a message converter makes after a plain
+ * body is held back so that small bodies still get a Content-Length.
+ */
+class CompressingResponseWrapper extends HttpServletResponseWrapper {
+
+    private enum State { BUFFERING, COMPRESSING, PASSTHROUGH }
+
+    private final HttpServletRequest request;
+    private final DeflaterPool pool;
+    private final String encoding;
+    private final Set<String> mimeTypes;
+    private final byte[] buffer;
+    private int count;
+    private State state = State.BUFFERING;
+    private long contentLength = -1;
+    private CompressingOutputStream compressor;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    CompressingResponseWrapper(HttpServletRequest request, HttpServletResponse response, DeflaterPool pool,
+                               String encoding, Set<String> mimeTypes, int minSize) {
+        super(response);
+        this.request = request;
+        this.pool = pool;
+        this.encoding = encoding;
+        this.mimeTypes = mimeTypes;
+        this.buffer = new byte[minSize];
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        if (outputStream == null) {
+            outputStream = new BufferingOutputStream();
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            String charset = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.ISO_8859_1.name();
+            outputStream = new BufferingOutputStream();
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, Charset.forName(charset)));
+        }
+        return writer;
+    }
+
+    @Override
+    public void setContentType(String type) {
+        super.setContentType(type);
+        if (state == State.BUFFERING && StreamingResponses.isEventStream(type)) {
+            try {
+                passThrough();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    @Override
+    public void setContentLength(int length) {
+        setContentLengthLong(length);
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+        if (state == State.BUFFERING) {
+            contentLength = length;
+        } else if (state == State.PASSTHROUGH) {
+            super.setContentLengthLong(length);
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(Long.parseLong(value));
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(Long.parseLong(value));
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            setContentLengthLong(value);
+        } else {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (state == State.BUFFERING) {
+            if (!isStreamed()) {
+                return;
+            }
+            decide();
+        }
+        if (compressor != null) {
+            compressor.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (state == State.BUFFERING) {
+            count = 0;
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        if (state == State.BUFFERING) {
+            count = 0;
+            contentLength = -1;
+        }
+    }
+
+    /**
+     * Completes the response: writes a still-buffered body uncompressed or
+     * terminates the compressed stream and returns its deflater to the pool.
+     * Called once the request is done, which for an asynchronous request is
+     * when its async context completes.
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (state == State.BUFFERING) {
+            passThrough();
+        } else if (compressor != null) {
+            compressor.finish();
+        }
+    }
+
+    private void decide() throws IOException {
+        if (isCompressible()) {
+            state = State.COMPRESSING;
+            super.setHeader("Content-Encoding", encoding);
+            compressor = new CompressingOutputStream(getResponse().getOutputStream(), pool, "gzip".equals(encoding));
+            compressor.write(buffer, 0, count);
+            count = 0;
+        } else {
+            passThrough();
+        }
+    }
+
+    private void passThrough() throws IOException {
+        state = State.PASSTHROUGH;
+        if (contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+        }
+        if (count > 0) {
+            getResponse().getOutputStream().write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private boolean isCompressible() {
+        if (containsHeader("Content-Encoding")) {
+            return false;
+        }
+        int status = getStatus();
+        if (status == SC_NO_CONTENT || status == SC_NOT_MODIFIED) {
+            return false;
+        }
+        String mimeType = StreamingResponses.mimeType(getContentType());
+        return mimeType != null && mimeTypes.contains(mimeType);
+    }
+
+    private boolean isStreamed() {
+        return request.isAsyncStarted() || StreamingResponses.isStreaming(getContentType());
+    }
+
+    private class BufferingOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            // Events must reach the client one by one, whatever the request asked for
+            if (state == State.BUFFERING && count == 0 && StreamingResponses.isEventStream(getContentType())) {
+                passThrough();
+            }
+            if (state == State.BUFFERING) {
+                if (count + length <= buffer.length) {
+                    System.arraycopy(bytes, offset, buffer, count, length);
+                    count += length;
+                    return;
+                }
+                decide();
+            }
+            if (state == State.COMPRESSING) {
+                compressor.write(bytes, offset, length);
+            } else {
+                getResponse().getOutputStream().write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (state == State.BUFFERING) {
+                // Held back on a plain response, which would otherwise be committed before its size is known
+                if (!isStreamed()) {
+                    return;
+                }
+                decide();
+            }
+            if (compressor != null) {
+                compressor.flush();
+            }
+            getResponse().getOutputStream().flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new UnsupportedOperationException("Non-blocking writes are not supported on compressed responses");
+        }
+    }
+}
@@ -0,0 +1,115 @@
+
+package com.example.bookapi.web;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Negotiates {@code gzip}/{@code deflate} response compression. Responses
+ * smaller than {@code minResponseSize} are sent uncompressed, and server-sent
+ * event streams are never touched since they must not be buffered. A request
+ * that goes asynchronous has its response finished when the async context
+ * completes rather than when this filter returns.
+ */
+public class CompressionFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(CompressionFilter.class);
+
+    private final DeflaterPool pool;
+    private final Set<String> mimeTypes;
+    private final int minResponseSize;
+
+    public CompressionFilter(DeflaterPool pool, Set<String> mimeTypes, int minResponseSize) {
+        this.pool = pool;
+        this.mimeTypes = mimeTypes;
+        this.minResponseSize = minResponseSize;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String encoding = negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (encoding == null || "HEAD".equals(request.getMethod())
+                || (accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE))) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        CompressingResponseWrapper wrapper =
+                new CompressingResponseWrapper(request, response, pool, encoding, mimeTypes, minResponseSize);
+        try {
+            chain.doFilter(request, wrapper);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new FinishOnComplete(wrapper));
+            } else {
+                wrapper.finish();
+            }
+        }
+    }
+
+    /** Writes the end of an asynchronous response and returns its deflater, however the request ended. */
+    private static final class FinishOnComplete implements AsyncListener {
+        private final CompressingResponseWrapper wrapper;
+
+        FinishOnComplete(CompressingResponseWrapper wrapper) {
+            this.wrapper = wrapper;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            try {
+                wrapper.finish();
+            } catch (IOException e) {
+                log.debug("Could not finish a compressed asynchronous response", e);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // A new async cycle keeps its listeners only if they add themselves again
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean deflate = false;
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().toLowerCase(Locale.ROOT).split(";");
+            if (parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?")) {
+                continue;
+            }
+            if ("gzip".equals(parts[0])) {
+                return "gzip";
+            }
+            deflate |= "deflate".equals(parts[0]);
+        }
+        return deflate ? "deflate" : null;
+    }
+}
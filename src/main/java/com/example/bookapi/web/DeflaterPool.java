@@ -0,0 +1,36 @@
+
+package com.example.bookapi.web;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Reuses {@link Deflater} instances (and their native zlib state) across
+ * responses. Raw deflaters ({@code nowrap}) back gzip, zlib-wrapped ones back
+ * the {@code deflate} encoding.
+ */
+public class DeflaterPool {
+
+    private final int level;
+    private final BlockingQueue<Deflater> rawDeflaters;
+    private final BlockingQueue<Deflater> zlibDeflaters;
+
+    public DeflaterPool(int level, int maxPooled) {
+        this.level = level;
+        this.rawDeflaters = new ArrayBlockingQueue<>(maxPooled);
+        this.zlibDeflaters = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    public Deflater borrow(boolean nowrap) {
+        Deflater deflater = (nowrap ? rawDeflaters : zlibDeflaters).poll();
+        return deflater != null ? deflater : new Deflater(level, nowrap);
+    }
+
+    public void release(Deflater deflater, boolean nowrap) {
+        deflater.reset();
+        if (!(nowrap ? rawDeflaters : zlibDeflaters).offer(deflater)) {
+            deflater.end();
+        }
+    }
+}
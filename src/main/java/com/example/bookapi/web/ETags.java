@@ -0,0 +1,37 @@
+
+package com.example.bookapi.web;
+
+/**
+ * Strong entity tags derived from record versions, and parsing of the
+ * {@code If-Match} request header into the version a conditional write expects.
+ */
+public final class ETags {
+
+    private ETags() {}
+
+    public static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * The version named by {@code If-Match}, or null when the header is absent
+     * or {@code *} (write unconditionally). Weak tags never match for writes,
+     * and a header naming no usable version yields -1, which matches nothing.
+     */
+    public static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+                try {
+                    return Long.parseLong(tag.substring(1, tag.length() - 1));
+                } catch (NumberFormatException e) {
+                    // not one of ours; try the next tag
+                }
+            }
+        }
+        return -1L;
+    }
+}
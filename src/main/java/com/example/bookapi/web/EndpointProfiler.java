@@ -0,0 +1,131 @@
+
+package com.example.bookapi.web;
+
+import com.example.bookapi.dto.EndpointProfile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples the bytes allocated and CPU time used by the request thread from
+ * handler selection until the response has been written, i.e. argument
+ * binding, the controller, the services and serialization, and aggregates
+ * them per route. Only handlers of the given controller types are sampled.
+ *
+ * <p>Both counters come from {@link com.sun.management.ThreadMXBean} and
+ * cover the current thread only, so work handed to other threads (change
+ * feed delivery, for one) is not attributed to the request.
+ */
+public class EndpointProfiler implements HandlerInterceptor {
+
+    private static final ThreadLocal<long[]> START = ThreadLocal.withInitial(() -> new long[3]);
+    private static final int SAMPLED = 0;
+    private static final int BYTES = 1;
+    private static final int CPU = 2;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final boolean measureAllocation;
+    private final boolean measureCpu;
+    private final Set<Class<?>> controllers;
+    private final int sampleEvery;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Method, Route> routes = new ConcurrentHashMap<>();
+
+    public EndpointProfiler(Set<Class<?>> controllers, int sampleEvery) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threads = bean instanceof com.sun.management.ThreadMXBean sun ? sun : null;
+        this.measureAllocation = threads != null && threads.isThreadAllocatedMemorySupported()
+            && threads.isThreadAllocatedMemoryEnabled();
+        this.measureCpu = threads != null && threads.isCurrentThreadCpuTimeSupported()
+            && threads.isThreadCpuTimeEnabled();
+        this.controllers = Set.copyOf(controllers);
+        this.sampleEvery = Math.max(1, sampleEvery);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long[] start = START.get();
+        start[SAMPLED] = 0;
+        if ((measureAllocation || measureCpu) && handler instanceof HandlerMethod method
+                && controllers.contains(method.getBeanType())
+                && (sampleEvery == 1 || sequence.incrementAndGet() % sampleEvery == 0)) {
+            start[SAMPLED] = 1;
+            start[BYTES] = measureAllocation ? threads.getCurrentThreadAllocatedBytes() : 0;
+            start[CPU] = measureCpu ? threads.getCurrentThreadCpuTime() : 0;
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        long[] start = START.get();
+        if (start[SAMPLED] == 0) {
+            return;
+        }
+        long bytes = measureAllocation ? threads.getCurrentThreadAllocatedBytes() - start[BYTES] : 0;
+        long cpu = measureCpu ? threads.getCurrentThreadCpuTime() - start[CPU] : 0;
+        start[SAMPLED] = 0;
+
+        HandlerMethod method = (HandlerMethod) handler;
+        Route route = routes.get(method.getMethod());
+        if (route == null) {
+            route = routes.computeIfAbsent(method.getMethod(), key -> new Route(request.getMethod() + " "
+                + request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE)));
+        }
+        route.bytes.record(bytes);
+        route.cpuNanos.record(cpu);
+    }
+
+    public boolean isMeasuringAllocation() {
+        return measureAllocation;
+    }
+
+    public boolean isMeasuringCpu() {
+        return measureCpu;
+    }
+
+    /** Routes with samples, most allocated bytes per request first. */
+    public List<EndpointProfile> snapshot() {
+        List<EndpointProfile> profiles = new ArrayList<>();
+        for (Route route : routes.values()) {
+            ValueHistogram cpu = route.cpuNanos;
+            profiles.add(new EndpointProfile(route.name, route.bytes.count(),
+                distribution(route.bytes, 1),
+                distribution(cpu, 1000)));
+        }
+        profiles.sort(Comparator.comparingDouble((EndpointProfile p) -> p.getAllocatedBytes().getMean()).reversed());
+        return profiles;
+    }
+
+    public void reset() {
+        routes.clear();
+    }
+
+    private static EndpointProfile.Distribution distribution(ValueHistogram histogram, long divisor) {
+        return new EndpointProfile.Distribution(histogram.mean() / divisor, histogram.percentile(50) / divisor,
+            histogram.percentile(90) / divisor, histogram.percentile(99) / divisor, histogram.max() / divisor);
+    }
+
+    private static final class Route {
+        final String name;
+        final ValueHistogram bytes = new ValueHistogram();
+        final ValueHistogram cpuNanos = new ValueHistogram();
+
+        Route(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+
+package com.example.bookapi.web;
+
+import com.example.bookapi.dto.ApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes {@code POST} requests carrying an {@code Idempotency-Key} header
+ * safe to retry. The first request with a key executes and its response is
+ * kept in the {@link IdempotencyStore}; a retry with the same key and body
+ * gets that response back with {@code Idempotent-Replayed: true}, and a
+ * duplicate arriving while the first is still running waits for it instead
+ * of executing again. Reusing a key for a different request, one whose
+ * body, query string, {@code Content-Type} or {@code Accept} differ, is
+ * rejected with 422: the stored response answers only the request that
+ * produced it. Server errors and exceptions are not kept, so the client can
+ * retry them for real.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+    // The CORS headers do not depend on the caller's origin while the controllers allow any origin
+    private static final List<String> REPLAYED_HEADERS =
+        List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.LOCATION, HttpHeaders.ETAG, HttpHeaders.VARY,
+                HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS,
+                HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS);
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final long waitTimeoutNanos;
+
+    public IdempotencyFilter(IdempotencyStore store, ObjectMapper objectMapper, long waitTimeoutMillis) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.waitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMillis);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || request.getHeader(HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            reject(response, HttpStatus.BAD_REQUEST,
+                HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        byte[] body = request.getInputStream().readAllBytes();
+        byte[] fingerprint = fingerprint(request, body);
+        String scopedKey = request.getMethod() + ' ' + request.getRequestURI() + ' ' + key;
+
+        long deadline = System.nanoTime() + waitTimeoutNanos;
+        while (true) {
+            IdempotencyStore.Claim claim = store.claim(scopedKey, fingerprint);
+            IdempotencyStore.Entry entry = claim.entry();
+            if (!entry.matches(fingerprint)) {
+                reject(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used with a different request");
+                return;
+            }
+            if (claim.owner()) {
+                execute(new ReplayingRequest(request, body), response, chain, entry);
+                return;
+            }
+
+            IdempotencyStore.StoredResponse stored;
+            try {
+                stored = entry.getResponse().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                reject(response, HttpStatus.CONFLICT,
+                    "A request with this " + HEADER + " is still being processed");
+                return;
+            } catch (ExecutionException e) {
+                // The first execution failed and was forgotten; claim the key again
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(e);
+            }
+            replay(stored, response);
+            return;
+        }
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                         IdempotencyStore.Entry entry) throws ServletException, IOException {
+        ContentCachingResponseWrapper capturing = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, capturing);
+        } catch (ServletException | IOException | RuntimeException e) {
+            store.abandon(entry, e);
+            throw e;
+        }
+
+        int status = capturing.getStatus();
+        if (status >= 500) {
+            store.abandon(entry, new IllegalStateException("Request failed with status " + status));
+        } else {
+            List<Map.Entry<String, String>> headers = new ArrayList<>(REPLAYED_HEADERS.size());
+            for (String name : REPLAYED_HEADERS) {
+                // Tomcat keeps the content type out of the header map, so it is only reachable through its getter
+                if (HttpHeaders.CONTENT_TYPE.equals(name)) {
+                    if (capturing.getContentType() != null) {
+                        headers.add(Map.entry(name, capturing.getContentType()));
+                    }
+                } else {
+                    // Vary in particular is often added one value at a time
+                    for (String value : capturing.getHeaders(name)) {
+                        headers.add(Map.entry(name, value));
+                    }
+                }
+            }
+            store.complete(entry, new IdempotencyStore.StoredResponse(status, headers, capturing.getContentAsByteArray()));
+        }
+        capturing.copyBodyToResponse();
+    }
+
+    private static void replay(IdempotencyStore.StoredResponse stored, HttpServletResponse response)
+            throws IOException {
+        response.setStatus(stored.status());
+        for (Map.Entry<String, String> header : stored.headers()) {
+            // Outer filters may have added some of the same values already, like the Vary of compression
+            if (HttpHeaders.CONTENT_TYPE.equals(header.getKey())) {
+                response.setContentType(header.getValue());
+            } else if (!response.getHeaders(header.getKey()).contains(header.getValue())) {
+                response.addHeader(header.getKey(), header.getValue());
+            }
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), ApiResponse.error(message));
+    }
+
+    // Everything besides the path that decides what the request does and how its response is represented
+    private static byte[] fingerprint(HttpServletRequest request, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : new String[] {request.getQueryString(), request.getContentType(),
+                                             request.getHeader(HttpHeaders.ACCEPT)}) {
+                if (part != null) {
+                    digest.update(part.getBytes(StandardCharsets.UTF_8));
+                }
+                digest.update((byte) 0);
+            }
+            return digest.digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** Serves a body that has already been read. */
+    private static final class ReplayingRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        ReplayingRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+
+package com.example.bookapi.web;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Responses of requests made with an {@code Idempotency-Key}, in flight or
+ * completed. Every entry lives for the same TTL, so insertion order is
+ * expiry order and expired entries are swept from the head of a queue.
+ * When the store is full the oldest completed entries are evicted early;
+ * in-flight entries are never evicted, so the store can briefly exceed its
+ * bound under a burst of slow requests.
+ */
+public class IdempotencyStore {
+
+    /** A captured response: status, the headers worth replaying, and the body. */
+    public record StoredResponse(int status, List<Map.Entry<String, String>> headers, byte[] body) {}
+
+    public static final class Entry {
+        private final String key;
+        private final byte[] fingerprint;
+        private final long expiresAtNanos;
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+        private Entry(String key, byte[] fingerprint, long expiresAtNanos) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        public boolean matches(byte[] fingerprint) {
+            return Arrays.equals(this.fingerprint, fingerprint);
+        }
+
+        public CompletableFuture<StoredResponse> getResponse() { return response; }
+    }
+
+    /** The entry for a key, and whether the caller created it and must execute the request. */
+    public record Claim(Entry entry, boolean owner) {}
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> byAge = new ConcurrentLinkedQueue<>();
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public IdempotencyStore(long ttlNanos, int maxEntries) {
+        this.ttlNanos = ttlNanos;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the live entry for {@code key}, or registers a new in-flight
+     * entry owned by the caller, who must later {@link #complete} or
+     * {@link #abandon} it.
+     */
+    public Claim claim(String key, byte[] fingerprint) {
+        long now = System.nanoTime();
+        sweep(now);
+        while (true) {
+            Entry existing = entries.get(key);
+            if (existing != null && existing.expiresAtNanos - now > 0) {
+                return new Claim(existing, false);
+            }
+            Entry fresh = new Entry(key, fingerprint, now + ttlNanos);
+            boolean registered = existing == null
+                ? entries.putIfAbsent(key, fresh) == null
+                : entries.replace(key, existing, fresh);
+            if (registered) {
+                byAge.add(fresh);
+                return new Claim(fresh, true);
+            }
+        }
+    }
+
+    public void complete(Entry entry, StoredResponse response) {
+        entry.response.complete(response);
+    }
+
+    /** Forgets an entry whose request failed, so that a retry executes it again. */
+    public void abandon(Entry entry, Throwable failure) {
+        entries.remove(entry.key, entry);
+        entry.response.completeExceptionally(failure);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void sweep(long now) {
+        Entry head;
+        while ((head = byAge.peek()) != null) {
+            boolean expired = head.expiresAtNanos - now <= 0;
+            boolean evictable = expired || (entries.size() >= maxEntries && head.response.isDone());
+            if (!evictable && entries.get(head.key) == head) {
+                break;
+            }
+            if (byAge.remove(head)) {
+                entries.remove(head.key, head);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+
+package com.example.bookapi.web;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+import java.util.List;
+
+/**
+ * Writes record ids, the {@code long} properties named {@code id} or ending
+ * in {@code Id}, as strings. A JavaScript number holds integers exactly only
+ * up to 2^53, which Snowflake ids exceed, so a browser parsing them as
+ * numbers would silently round them to another record's id. Ids sent back
+ * as strings are still read, since Jackson accepts a number in a string.
+ */
+public class IdsAsStringsModule extends SimpleModule {
+
+    public IdsAsStringsModule() {
+        super("IdsAsStringsModule");
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription beanDesc,
+                                                             List<BeanPropertyWriter> properties) {
+                for (BeanPropertyWriter property : properties) {
+                    if (isId(property) && !property.hasSerializer()) {
+                        property.assignSerializer(ToStringSerializer.instance);
+                    }
+                }
+                return properties;
+            }
+        });
+    }
+
+    private static boolean isId(BeanPropertyWriter property) {
+        Class<?> type = property.getType().getRawClass();
+        String name = property.getName();
+        return (type == Long.class || type == long.class) && (name.equals("id") || name.endsWith("Id"));
+    }
+}
@@ -0,0 +1,60 @@
+
+package com.example.bookapi.web;
+
+import com.example.bookapi.replication.ReplicationLog;
+import com.example.bookapi.replication.ReplicationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Holds back the response of a request that wrote until the peers the
+ * replication ack mode asks for have applied its last mutation. When they
+ * do not within the ack timeout the response goes out anyway, marked with
+ * the sequence still in flight.
+ */
+@ControllerAdvice
+@ConditionalOnProperty(name = "api.replication.enabled", havingValue = "true")
+public class ReplicationAckAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String PENDING_HEADER = "Replication-Pending";
+
+    @Autowired
+    private ReplicationLog replicationLog;
+
+    @Autowired
+    private ReplicationService replicationService;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        // Taken on every response, so nothing a request recorded is left for the next one on this thread
+        long sequence = replicationLog.takeRecordedSequence();
+        if (sequence == 0 || replicationService.getAckMode() == ReplicationService.AckMode.ASYNC) {
+            return body;
+        }
+        boolean replicated;
+        try {
+            replicated = replicationService.awaitReplicated(sequence);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            replicated = false;
+        }
+        if (!replicated) {
+            response.getHeaders().set(PENDING_HEADER, Long.toString(sequence));
+        }
+        return body;
+    }
+}
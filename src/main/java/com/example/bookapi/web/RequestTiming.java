@@ -0,0 +1,182 @@
+
+package com.example.bookapi.web;
+
+import java.util.Arrays;
+
+/**
+ * Phase durations of the request being handled on this thread, taken with
+ * {@link System#nanoTime()}. One instance per worker thread is reset and
+ * reused for every request, so timing a request allocates nothing until a
+ * header or log line is rendered.
+ */
+public final class RequestTiming {
+
+    public enum Phase {
+        /** Connector work before the request reaches the engine: reading and parsing the request head. */
+        TOMCAT("tomcat"),
+        /** Servlet filters and handler lookup, up to the controller's argument resolution. */
+        DISPATCH("dispatch"),
+        /** Deserializing the request body. */
+        READ("read"),
+        /** Bean validation of request bodies. */
+        VALIDATION("validation"),
+        /** Time spent inside {@code @Service} beans; nested service calls count once. */
+        SERVICE("service"),
+        /** Writing the response body through the message converters. */
+        SERIALIZATION("ser");
+
+        private final String metric;
+
+        Phase(String metric) {
+            this.metric = metric;
+        }
+
+        public String getMetric() { return metric; }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final ThreadLocal<RequestTiming> THREAD = ThreadLocal.withInitial(RequestTiming::new);
+
+    private final long[] nanos = new long[PHASES.length];
+    private final StringBuilder text = new StringBuilder(160);
+    private boolean active;
+    private long requestStart;
+    private long received;
+    private long started;
+    private long mark;
+    private long serializationStarted;
+    private int serviceDepth;
+
+    private RequestTiming() {
+    }
+
+    /** Starts timing a request on this thread; {@code receivedNanos} is when the connector began reading it. */
+    public static RequestTiming begin(long receivedNanos) {
+        RequestTiming timing = THREAD.get();
+        timing.active = true;
+        timing.requestStart = receivedNanos;
+        timing.started = System.nanoTime();
+        timing.received = receivedNanos > 0 && receivedNanos <= timing.started ? receivedNanos : timing.started;
+        Arrays.fill(timing.nanos, 0);
+        timing.nanos[Phase.TOMCAT.ordinal()] = timing.started - timing.received;
+        timing.mark = timing.started;
+        timing.serializationStarted = 0;
+        timing.serviceDepth = 0;
+        return timing;
+    }
+
+    /** The timing of the request on this thread, or null outside a timed request. */
+    public static RequestTiming current() {
+        RequestTiming timing = THREAD.get();
+        return timing.active ? timing : null;
+    }
+
+    /**
+     * The timing of the request the connector started reading at
+     * {@code receivedNanos}, if this thread timed it, even after {@link #end}.
+     */
+    public static RequestTiming of(long receivedNanos) {
+        RequestTiming timing = THREAD.get();
+        return timing.requestStart == receivedNanos && receivedNanos != 0 ? timing : null;
+    }
+
+    public void end() {
+        active = false;
+    }
+
+    public void add(Phase phase, long elapsedNanos) {
+        nanos[phase.ordinal()] += elapsedNanos;
+    }
+
+    /** Closes the phase that started at the previous mark. */
+    public void markEnd(Phase phase) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - mark;
+        mark = now;
+    }
+
+    /** Starts a phase whose end will be recorded with {@link #markEnd}. */
+    public void mark() {
+        mark = System.nanoTime();
+    }
+
+    public void beginSerialization() {
+        serializationStarted = System.nanoTime();
+    }
+
+    /** Records the body write started by {@link #beginSerialization}, if there was one. */
+    public void endSerialization() {
+        if (serializationStarted != 0) {
+            nanos[Phase.SERIALIZATION.ordinal()] += System.nanoTime() - serializationStarted;
+            serializationStarted = 0;
+        }
+    }
+
+    /** Returns true when this call is the outermost service call and should be timed. */
+    public boolean enterService() {
+        return serviceDepth++ == 0;
+    }
+
+    public void exitService(boolean outermost, long elapsedNanos) {
+        serviceDepth--;
+        if (outermost) {
+            nanos[Phase.SERVICE.ordinal()] += elapsedNanos;
+        }
+    }
+
+    public long get(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /** Time since the connector began reading the request. */
+    public long totalNanos() {
+        return System.nanoTime() - received;
+    }
+
+    /**
+     * Renders the phases recorded so far, plus the running total, as a
+     * {@code Server-Timing} value. A body write still in progress counts up to now.
+     */
+    public String headerValue() {
+        text.setLength(0);
+        long now = System.nanoTime();
+        for (Phase phase : PHASES) {
+            long value = nanos[phase.ordinal()];
+            if (phase == Phase.SERIALIZATION && serializationStarted != 0) {
+                value += now - serializationStarted;
+            }
+            if (value > 0) {
+                text.append(phase.metric).append(";dur=");
+                appendMillis(text, value);
+                text.append(", ");
+            }
+        }
+        text.append("total;dur=");
+        appendMillis(text, now - received);
+        return text.toString();
+    }
+
+    /** Appends {@code name_ms=value} pairs for every phase and the total. */
+    public void appendLogFields(StringBuilder out) {
+        for (Phase phase : PHASES) {
+            out.append(' ').append(phase.metric).append("_ms=");
+            appendMillis(out, nanos[phase.ordinal()]);
+        }
+        out.append(" total_ms=");
+        appendMillis(out, totalNanos());
+    }
+
+    /** Milliseconds with microsecond precision, without going through String.format. */
+    static void appendMillis(StringBuilder out, long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        out.append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) {
+            out.append('0');
+        }
+        if (fraction < 10) {
+            out.append('0');
+        }
+        out.append(fraction);
+    }
+}
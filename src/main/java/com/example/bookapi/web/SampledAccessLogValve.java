@@ -0,0 +1,63 @@
+
+package com.example.bookapi.web;
+
+import jakarta.servlet.ServletException;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds the {@link AccessLog}. Errors (status 400 and up) and requests
+ * slower than the threshold are always logged; other responses only for
+ * the configured share, decided before anything is copied. Phase times
+ * are added when the request was timed by {@link ServerTimingValve}.
+ */
+public class SampledAccessLogValve extends ValveBase {
+
+    private final AccessLog accessLog;
+    private final double successSampleRate;
+    private final long slowThresholdNanos;
+
+    public SampledAccessLogValve(AccessLog accessLog, double successSampleRate, long slowThresholdMillis) {
+        super(true);
+        this.accessLog = accessLog;
+        this.successSampleRate = successSampleRate;
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        try {
+            getNext().invoke(request, response);
+        } finally {
+            if (!request.isAsync()) {
+                record(request, response);
+            }
+        }
+    }
+
+    private void record(Request request, Response response) {
+        long startNanos = request.getCoyoteRequest().getStartTimeNanos();
+        long durationNanos = System.nanoTime() - startNanos;
+        int status = response.getStatus();
+        double sampleRate = 1;
+        if (status < 400 && durationNanos < slowThresholdNanos) {
+            if (successSampleRate <= 0
+                    || (successSampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= successSampleRate)) {
+                return;
+            }
+            sampleRate = Math.min(1, successSampleRate);
+        }
+
+        RequestTiming timing = RequestTiming.of(startNanos);
+        accessLog.log(System.currentTimeMillis(), request.getMethod(), request.getRequestURI(),
+            request.getQueryString(), status, durationNanos, response.getContentWritten(), request.getRemoteAddr(),
+            timing != null ? timing.get(RequestTiming.Phase.SERVICE) : 0,
+            timing != null ? timing.get(RequestTiming.Phase.SERIALIZATION) : 0,
+            sampleRate);
+    }
+}
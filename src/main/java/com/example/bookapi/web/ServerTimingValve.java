@@ -0,0 +1,166 @@
+
+package com.example.bookapi.web;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens and closes the {@link RequestTiming} of every request. Running as an
+ * engine valve puts it ahead of all servlet filters and gives it the time
+ * the connector started reading the request. Requests slower than the
+ * threshold are logged as one {@code key=value} line, for a sampled share.
+ *
+ * <p>The {@code Server-Timing} header is rendered once, as late as possible:
+ * after the application has finished, or just before a write that fills the
+ * connector's buffer and so commits the response, in which case it carries
+ * the serialization time up to that point. The message converters flush
+ * after each body, so flushes are deferred to the end of the request unless
+ * it has gone asynchronous, as server-sent event streams do, or streams its
+ * body on the request thread, as NDJSON responses do. The first flush that
+ * goes through commits the response, so the header is set just before it.
+ */
+public class ServerTimingValve extends ValveBase {
+
+    public static final String HEADER = "Server-Timing";
+
+    private static final Logger log = LoggerFactory.getLogger(ServerTimingValve.class);
+
+    private final long slowThresholdNanos;
+    private final double slowSampleRate;
+
+    public ServerTimingValve(long slowThresholdMillis, double slowSampleRate) {
+        super(true);
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        this.slowSampleRate = slowSampleRate;
+    }
+
+    @Override
+    public void invoke(Request request, Response response) throws IOException, ServletException {
+        RequestTiming timing = RequestTiming.begin(request.getCoyoteRequest().getStartTimeNanos());
+        FlushDeferringResponse timed = new FlushDeferringResponse(response.getResponse(), request.getRequest(), timing);
+        response.setResponse(timed);
+        try {
+            getNext().invoke(request, response);
+            timed.setTimingHeader();
+        } finally {
+            if (slowSampleRate > 0 && timing.totalNanos() >= slowThresholdNanos && !request.isAsync()
+                    && (slowSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < slowSampleRate)) {
+                StringBuilder line = new StringBuilder(256).append("slow_request method=").append(request.getMethod())
+                    .append(" path=").append(request.getRequestURI())
+                    .append(" status=").append(response.getStatus());
+                timing.appendLogFields(line);
+                log.warn(line.toString());
+            }
+            timing.end();
+        }
+    }
+
+    private static final class FlushDeferringResponse extends HttpServletResponseWrapper {
+        private final HttpServletRequest request;
+        private final RequestTiming timing;
+        private ServletOutputStream stream;
+        private boolean headerSet;
+
+        FlushDeferringResponse(HttpServletResponse response, HttpServletRequest request, RequestTiming timing) {
+            super(response);
+            this.request = request;
+            this.timing = timing;
+        }
+
+        /** Sets the header unless the response is already committed or has left this thread. */
+        void setTimingHeader() {
+            if (!headerSet && !isCommitted() && !request.isAsyncStarted()) {
+                headerSet = true;
+                setHeader(HEADER, timing.headerValue());
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                stream = new FlushDeferringOutputStream(super.getOutputStream(), this);
+            }
+            return stream;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (isStreamed()) {
+                setTimingHeader();
+                super.flushBuffer();
+            }
+        }
+
+        boolean isStreamed() {
+            return request.isAsyncStarted() || StreamingResponses.isStreaming(getContentType());
+        }
+    }
+
+    private static final class FlushDeferringOutputStream extends ServletOutputStream {
+        private final ServletOutputStream target;
+        private final FlushDeferringResponse response;
+        private final int bufferSize;
+        private long written;
+
+        FlushDeferringOutputStream(ServletOutputStream target, FlushDeferringResponse response) {
+            this.target = target;
+            this.response = response;
+            this.bufferSize = response.getBufferSize();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            beforeWrite(1);
+            target.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            beforeWrite(length);
+            target.write(bytes, offset, length);
+        }
+
+        private void beforeWrite(int length) {
+            written += length;
+            if (written >= bufferSize) {
+                response.setTimingHeader();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (response.isStreamed()) {
+                response.setTimingHeader();
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return target.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            target.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+
+package com.example.bookapi.web;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Service;
+
+/**
+ * Wraps every {@code @Service} bean in a class-based proxy that adds the
+ * time spent in its methods to the request's {@link RequestTiming}. Calls
+ * outside a timed request pass straight through.
+ */
+public class ServiceTimingPostProcessor implements BeanPostProcessor {
+
+    private static final MethodInterceptor TIMING = invocation -> {
+        RequestTiming timing = RequestTiming.current();
+        if (timing == null) {
+            return invocation.proceed();
+        }
+        boolean outermost = timing.enterService();
+        long started = outermost ? System.nanoTime() : 0;
+        try {
+            return invocation.proceed();
+        } finally {
+            timing.exitService(outermost, outermost ? System.nanoTime() - started : 0);
+        }
+    };
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!AnnotatedElementUtils.hasAnnotation(bean.getClass(), Service.class)) {
+            return bean;
+        }
+        ProxyFactory factory = new ProxyFactory(bean);
+        factory.setProxyTargetClass(true);
+        factory.addAdvice(TIMING);
+        return factory.getProxy(bean.getClass().getClassLoader());
+    }
+}
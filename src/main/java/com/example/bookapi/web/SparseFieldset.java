@@ -0,0 +1,101 @@
+
+package com.example.bookapi.web;
+
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A parsed {@code ?fields=} selection. Instances are cached by their raw
+ * parameter value, and each one caches the property writers it selects per
+ * bean serializer, so repeated requests for the same fields only pay for a
+ * couple of map lookups. Serializers, not types, are the key: each mapper
+ * (JSON, CBOR, Smile) and each contextual variant builds its own writers for
+ * the same type, and only its own writers match its configuration.
+ */
+public final class SparseFieldset {
+
+    public static final String PARAMETER = "fields";
+
+    private static final String REQUEST_ATTRIBUTE = SparseFieldset.class.getName();
+    private static final SparseFieldset ALL = new SparseFieldset(Set.of());
+    private static final int MAX_CACHED = 512;
+    private static final Map<String, SparseFieldset> CACHE = new ConcurrentHashMap<>();
+
+    private final Set<String> names;
+    // Serializers do not override equals, so this is keyed by instance
+    private final Map<JsonSerializer<?>, BeanPropertyWriter[]> compiled = new ConcurrentHashMap<>();
+
+    private SparseFieldset(Set<String> names) {
+        this.names = names;
+    }
+
+    public static SparseFieldset parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        SparseFieldset cached = CACHE.get(fields);
+        if (cached != null) {
+            return cached;
+        }
+
+        Set<String> names = new HashSet<>();
+        names.add("id"); // always returned so clients can correlate rows
+        for (String name : fields.split(",")) {
+            if (!name.isBlank()) {
+                names.add(name.trim());
+            }
+        }
+        SparseFieldset fieldset = new SparseFieldset(Set.copyOf(names));
+        if (CACHE.size() < MAX_CACHED) {
+            CACHE.putIfAbsent(fields, fieldset);
+        }
+        return fieldset;
+    }
+
+    /**
+     * The selection of the request being handled on this thread, or
+     * {@code null} when there is none or no fields were requested.
+     */
+    public static SparseFieldset current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = servletAttributes.getRequest();
+        SparseFieldset fieldset = (SparseFieldset) request.getAttribute(REQUEST_ATTRIBUTE);
+        if (fieldset == null) {
+            fieldset = parse(request.getParameter(PARAMETER));
+            request.setAttribute(REQUEST_ATTRIBUTE, fieldset);
+        }
+        return fieldset == ALL ? null : fieldset;
+    }
+
+    public Set<String> getNames() {
+        return names;
+    }
+
+    BeanPropertyWriter[] writersFor(JsonSerializer<?> beanSerializer) {
+        BeanPropertyWriter[] writers = compiled.get(beanSerializer);
+        if (writers == null) {
+            List<BeanPropertyWriter> selected = new ArrayList<>();
+            Iterator<PropertyWriter> properties = beanSerializer.properties();
+            while (properties.hasNext()) {
+                PropertyWriter property = properties.next();
+                if (property instanceof BeanPropertyWriter writer && names.contains(writer.getName())) {
+                    selected.add(writer);
+                }
+            }
+            writers = selected.toArray(new BeanPropertyWriter[0]);
+            compiled.put(beanSerializer, writers);
+        }
+        return writers;
+    }
+}
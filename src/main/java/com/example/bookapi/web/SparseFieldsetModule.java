@@ -0,0 +1,101 @@
+
+package com.example.bookapi.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Lets entities in the given package honour {@code ?fields=}: their bean
+ * serializers are wrapped so that, when the current request selects fields,
+ * only the precompiled subset of property writers is invoked.
+ */
+public class SparseFieldsetModule extends SimpleModule {
+
+    public SparseFieldsetModule(String modelPackage) {
+        super("SparseFieldsetModule");
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDesc,
+                                                      JsonSerializer<?> serializer) {
+                if (beanDesc.getBeanClass().getPackageName().equals(modelPackage)) {
+                    return new SparseFieldsetSerializer(serializer);
+                }
+                return serializer;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static class SparseFieldsetSerializer extends StdSerializer<Object>
+            implements ResolvableSerializer, ContextualSerializer {
+
+        private final JsonSerializer<Object> delegate;
+
+        SparseFieldsetSerializer(JsonSerializer<?> delegate) {
+            super((Class<Object>) delegate.handledType());
+            this.delegate = (JsonSerializer<Object>) delegate;
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            SparseFieldset fieldset = SparseFieldset.current();
+            if (fieldset == null) {
+                delegate.serialize(value, gen, provider);
+                return;
+            }
+
+            gen.writeStartObject(value);
+            for (BeanPropertyWriter writer : fieldset.writersFor(delegate)) {
+                try {
+                    writer.serializeAsField(value, gen, provider);
+                } catch (Exception e) {
+                    wrapAndThrow(provider, e, value, writer.getName());
+                }
+            }
+            gen.writeEndObject();
+        }
+
+        @Override
+        public void serializeWithType(Object value, JsonGenerator gen, SerializerProvider provider,
+                                      TypeSerializer typeSer) throws IOException {
+            delegate.serializeWithType(value, gen, provider, typeSer);
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer resolvable) {
+                resolvable.resolve(provider);
+            }
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property)
+                throws JsonMappingException {
+            JsonSerializer<?> contextual = delegate instanceof ContextualSerializer contextualizer
+                ? contextualizer.createContextual(provider, property)
+                : delegate;
+            return contextual == delegate ? this : new SparseFieldsetSerializer(contextual);
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Object value) {
+            return delegate.isEmpty(provider, value);
+        }
+
+        @Override
+        public Iterator<PropertyWriter> properties() {
+            return delegate.properties();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.bookapi.web;
+
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+
+/**
+ * Content types whose bodies are written a piece at a time with a flush
+ * after each, such as server-sent events and NDJSON. Whatever buffers a
+ * response has to let those flushes through, or the client sees nothing
+ * until the response ends.
+ */
+final class StreamingResponses {
+
+    private StreamingResponses() {}
+
+    static boolean isStreaming(String contentType) {
+        String mimeType = mimeType(contentType);
+        return MediaType.TEXT_EVENT_STREAM_VALUE.equals(mimeType) || MediaType.APPLICATION_NDJSON_VALUE.equals(mimeType);
+    }
+
+    static boolean isEventStream(String contentType) {
+        return MediaType.TEXT_EVENT_STREAM_VALUE.equals(mimeType(contentType));
+    }
+
+    /** The content type without its parameters, in lower case, or {@code null}. */
+    static String mimeType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int parameters = contentType.indexOf(';');
+        return (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim().toLowerCase(Locale.ROOT);
+    }
+}
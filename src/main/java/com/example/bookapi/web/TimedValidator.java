@@ -0,0 +1,58 @@
+
+package com.example.bookapi.web;
+
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+
+/** Adds the time spent validating request arguments to the request's {@link RequestTiming}. */
+public class TimedValidator implements SmartValidator {
+
+    private final SmartValidator delegate;
+
+    public TimedValidator(SmartValidator delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return delegate.supports(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        long started = System.nanoTime();
+        try {
+            delegate.validate(target, errors);
+        } finally {
+            record(started);
+        }
+    }
+
+    @Override
+    public void validate(Object target, Errors errors, Object... validationHints) {
+        long started = System.nanoTime();
+        try {
+            delegate.validate(target, errors, validationHints);
+        } finally {
+            record(started);
+        }
+    }
+
+    @Override
+    public void validateValue(Class<?> targetType, String fieldName, Object value, Errors errors,
+                              Object... validationHints) {
+        long started = System.nanoTime();
+        try {
+            delegate.validateValue(targetType, fieldName, value, errors, validationHints);
+        } finally {
+            record(started);
+        }
+    }
+
+    private static void record(long started) {
+        RequestTiming timing = RequestTiming.current();
+        if (timing != null) {
+            timing.add(RequestTiming.Phase.VALIDATION, System.nanoTime() - started);
+        }
+    }
+}
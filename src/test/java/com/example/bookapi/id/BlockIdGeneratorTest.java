@@ -0,0 +1,104 @@
+
+package com.example.bookapi.id;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Restarts generators on the same lease file the way a node restarts after a crash, without any shutdown step
+class BlockIdGeneratorTest {
+
+    private static final int NODE_BITS = 4;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void idsAreUniqueAcrossThreadsRiseWithinEachAndCarryTheNode() throws InterruptedException {
+        BlockIdGenerator generator = new BlockIdGenerator(NODE_BITS, 9, 1000, directory.resolve("books.lease"));
+
+        long[][] perThread = SnowflakeIdGeneratorTest.generateConcurrently(generator, 8, 100_000);
+
+        for (long[] ids : perThread) {
+            for (int i = 1; i < ids.length; i++) {
+                assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+            }
+        }
+        long[] all = Arrays.stream(perThread).flatMapToLong(Arrays::stream).sorted().toArray();
+        for (int i = 1; i < all.length; i++) {
+            assertThat(all[i]).isNotEqualTo(all[i - 1]);
+        }
+        assertThat(Arrays.stream(all).allMatch(id -> (id & (1 << NODE_BITS) - 1) == 9)).isTrue();
+        assertThat(all[0]).isGreaterThanOrEqualTo(1 << NODE_BITS);
+    }
+
+    @Test
+    void leaseCoversEveryIssuedIdBeforeItIsHandedOut() throws IOException {
+        Path leaseFile = directory.resolve("books.lease");
+        BlockIdGenerator generator = new BlockIdGenerator(NODE_BITS, 2, 1000, leaseFile);
+
+        for (int i = 0; i < 5000; i++) {
+            long counter = generator.nextId() >>> NODE_BITS;
+            assertThat(readLease(leaseFile)).isGreaterThan(counter);
+        }
+    }
+
+    @Test
+    void restartContinuesAfterTheLeasedBlock() throws IOException {
+        Path leaseFile = directory.resolve("books.lease");
+        long highest = 0;
+        for (int restart = 0; restart < 5; restart++) {
+            BlockIdGenerator generator = new BlockIdGenerator(NODE_BITS, 2, 1000, leaseFile);
+            long first = generator.nextId();
+            assertThat(first).isGreaterThan(highest);
+            highest = first;
+            // Leave some of the block unused, as a crash would
+            for (int i = 0; i < 700 * restart; i++) {
+                highest = generator.nextId();
+            }
+            assertThat(readLease(leaseFile)).isGreaterThan(highest >>> NODE_BITS);
+        }
+    }
+
+    @Test
+    void nodesSharingACounterRangeNeverCollide() {
+        BlockIdGenerator one = new BlockIdGenerator(NODE_BITS, 1, 1000, directory.resolve("one.lease"));
+        BlockIdGenerator two = new BlockIdGenerator(NODE_BITS, 2, 1000, directory.resolve("two.lease"));
+
+        long[] ids = new long[2 * 3000];
+        for (int i = 0; i < 3000; i++) {
+            ids[2 * i] = one.nextId();
+            ids[2 * i + 1] = two.nextId();
+        }
+        assertThat(Arrays.stream(ids).distinct().count()).isEqualTo(ids.length);
+    }
+
+    @Test
+    void withoutALeaseFileEveryStartBeginsAtOne() {
+        assertThat(new BlockIdGenerator(NODE_BITS, 3, 1000, null).nextId()).isEqualTo(1 << NODE_BITS | 3);
+        assertThat(new BlockIdGenerator(NODE_BITS, 3, 1000, null).nextId()).isEqualTo(1 << NODE_BITS | 3);
+    }
+
+    @Test
+    void corruptLeaseIsRefused() throws IOException {
+        Path leaseFile = directory.resolve("books.lease");
+        Files.writeString(leaseFile, "12ab\n");
+
+        assertThatThrownBy(() -> new BlockIdGenerator(NODE_BITS, 0, 1000, leaseFile))
+            .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new BlockIdGenerator(NODE_BITS, 16, 1000, null))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long readLease(Path leaseFile) throws IOException {
+        return Long.parseLong(Files.readString(leaseFile, StandardCharsets.US_ASCII).trim());
+    }
+}
@@ -0,0 +1,169 @@
+
+package com.example.bookapi.id;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Decodes ids back into their fields, for the default split and a narrow one whose 256-id sequence a single lease fills
+class SnowflakeIdGeneratorTest {
+
+    private static final int NARROW_TIMESTAMP_BITS = 40;
+    private static final int NARROW_NODE_BITS = 15;
+    private static final int NARROW_SEQUENCE_BITS = 8;
+
+    @Test
+    void idsAreUniqueAcrossThreadsAndRiseWithinEach() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(40, 8, 7, Duration.ofSeconds(1));
+
+        long[][] perThread = generateConcurrently(generator, 8, 100_000);
+
+        for (long[] ids : perThread) {
+            for (int i = 1; i < ids.length; i++) {
+                assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+            }
+        }
+        long[] all = Arrays.stream(perThread).flatMapToLong(Arrays::stream).sorted().toArray();
+        for (int i = 1; i < all.length; i++) {
+            assertThat(all[i]).isNotEqualTo(all[i - 1]);
+        }
+        assertThat(Arrays.stream(all).allMatch(id -> (id >>> 15 & 0xFF) == 7)).isTrue();
+    }
+
+    @Test
+    void timestampOfRoundTripsTheIssuingMillisecond() {
+        for (int nodeBits : new int[] {8, NARROW_NODE_BITS}) {
+            SnowflakeIdGenerator generator = new SnowflakeIdGenerator(40, nodeBits, 1, Duration.ofSeconds(1));
+
+            long before = System.currentTimeMillis();
+            long id = generator.nextId();
+            long after = System.currentTimeMillis();
+
+            // The generator reads its own clock, anchored to the wall clock, so allow for rounding on either side
+            assertThat(generator.timestampOf(id)).isBetween(before - 2, after + 2);
+        }
+    }
+
+    @Test
+    void nodeFieldNeverBleedsIntoOrOutOfTheSequence() {
+        checkFields(40, 8, 0);
+        checkFields(40, 8, 255);
+        checkFields(NARROW_TIMESTAMP_BITS, NARROW_NODE_BITS, 0);
+        checkFields(NARROW_TIMESTAMP_BITS, NARROW_NODE_BITS, (1 << NARROW_NODE_BITS) - 1);
+    }
+
+    private void checkFields(int timestampBits, int nodeBits, long nodeId) {
+        int sequenceBits = 63 - timestampBits - nodeBits;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(timestampBits, nodeBits, nodeId, Duration.ofSeconds(1));
+
+        long previousCounter = -1;
+        for (int i = 0; i < 50_000; i++) {
+            long id = generator.nextId();
+            assertThat(id).isPositive();
+            assertThat(id >>> sequenceBits & (1L << nodeBits) - 1).isEqualTo(nodeId);
+
+            long timestamp = id >>> (nodeBits + sequenceBits);
+            long counter = timestamp << sequenceBits | id & (1L << sequenceBits) - 1;
+            assertThat(counter).isGreaterThan(previousCounter);
+            assertThat(generator.timestampOf(id)).isEqualTo(timestamp + SnowflakeIdGenerator.EPOCH_MILLIS);
+            previousCounter = counter;
+        }
+    }
+
+    @Test
+    void exhaustedSequenceCarriesIntoTheNextMillisecond() {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(
+            NARROW_TIMESTAMP_BITS, NARROW_NODE_BITS, 3, Duration.ofSeconds(1));
+
+        long[] ids = new long[256 * 40];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = generator.nextId();
+        }
+
+        // A burst this short outruns the clock, so most leases continue right where the last one ended
+        int carries = 0;
+        for (int i = 1; i < ids.length; i++) {
+            long previousSequence = sequence(ids[i - 1]);
+            long sequence = sequence(ids[i]);
+            long previousTime = generator.timestampOf(ids[i - 1]);
+            long time = generator.timestampOf(ids[i]);
+            if (previousSequence == 255) {
+                assertThat(sequence).isZero();
+                assertThat(time).isGreaterThan(previousTime);
+                if (time == previousTime + 1) {
+                    carries++;
+                }
+            } else {
+                assertThat(time).isEqualTo(previousTime);
+                assertThat(sequence).isEqualTo(previousSequence + 1);
+            }
+        }
+        assertThat(carries).isGreaterThan(20);
+    }
+
+    @Test
+    void burstsWaitOnceTheyLeadTheClockByMaxLead() {
+        long maxLead = 20;
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(
+            NARROW_TIMESTAMP_BITS, NARROW_NODE_BITS, 0, Duration.ofMillis(maxLead));
+
+        long started = System.nanoTime();
+        long latest = 0;
+        for (int i = 0; i < 256 * 120; i++) {
+            long id = generator.nextId();
+            latest = generator.timestampOf(id);
+            assertThat(latest).isLessThanOrEqualTo(System.currentTimeMillis() + maxLead + 2);
+        }
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        // 120 milliseconds' worth of ids, of which only maxLead could be issued ahead of the clock
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(120 - maxLead - 2);
+        assertThat(latest).isGreaterThanOrEqualTo(System.currentTimeMillis() - 2);
+    }
+
+    @Test
+    void rejectsSplitsWithoutRoomAndNodesThatDoNotFit() {
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(48, 8, 0, Duration.ofSeconds(1)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(40, 8, 256, Duration.ofSeconds(1)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdGenerator(40, 8, -1, Duration.ofSeconds(1)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long sequence(long id) {
+        return id & (1L << NARROW_SEQUENCE_BITS) - 1;
+    }
+
+    static long[][] generateConcurrently(IdGenerator generator, int threads, int idsPerThread)
+            throws InterruptedException {
+        long[][] ids = new long[threads][idsPerThread];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long[] own = ids[t];
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < own.length; i++) {
+                    own[i] = generator.nextId();
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,93 @@
+
+package com.example.bookapi.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FacetIndexTest {
+
+    private FacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FacetIndex("author", "genre");
+        index.put(1, "Tolkien", "Fantasy");
+        index.put(2, "Le Guin", "Fantasy");
+        index.put(3, "Le Guin", "Science Fiction");
+    }
+
+    @Test
+    void updateMovesARecordBetweenValues() {
+        index.put(1, "Tolkien", "Mythology");
+
+        assertThat(ids(index.equalTo("genre", "fantasy"))).containsExactly(2L);
+        assertThat(ids(index.equalTo("genre", "Mythology"))).containsExactly(1L);
+        assertThat(index.counts("genre", index.all(), 10))
+            .containsExactly(Map.entry("Fantasy", 1), Map.entry("Mythology", 1), Map.entry("Science Fiction", 1));
+        assertThat(index.counts("author", index.equalTo("genre", "fantasy"), 10))
+            .containsExactly(Map.entry("Le Guin", 1));
+    }
+
+    @Test
+    void updateThatClearsAValueDropsTheRecordFromIt() {
+        index.put(3, "Le Guin", null);
+
+        assertThat(ids(index.containing("genre", "fiction"))).isEmpty();
+        assertThat(index.distinctValues("genre")).isEqualTo(1);
+        assertThat(ids(index.containing("author", "guin"))).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void deleteDropsTheRecordAndValuesNobodyHasAnyMore() {
+        index.remove(1);
+
+        assertThat(ids(index.all())).containsExactly(2L, 3L);
+        assertThat(ids(index.containing("author", "tolk"))).isEmpty();
+        assertThat(index.distinctValues("author")).isEqualTo(1);
+        assertThat(index.countEqualTo("genre", "Fantasy")).isEqualTo(1);
+        assertThat(index.slotOf(1)).isEqualTo(-1);
+        // Removing twice changes nothing
+        index.remove(1);
+        assertThat(ids(index.all())).containsExactly(2L, 3L);
+    }
+
+    @Test
+    void aFreedSlotIsReusedWithoutItsOldValues() {
+        int slot = index.slotOf(1);
+        RoaringBitmap stale = index.equalTo("author", "Tolkien");
+        index.remove(1);
+        index.put(4, "Herbert", "Science Fiction");
+
+        assertThat(index.slotOf(4)).isEqualTo(slot);
+        // A bitmap taken before the delete now names the new record, which callers re-check
+        assertThat(ids(stale)).containsExactly(4L);
+        assertThat(ids(index.equalTo("author", "Tolkien"))).isEmpty();
+        // Ids come back in slot order, so the new record comes first
+        assertThat(ids(index.equalTo("genre", "science fiction"))).containsExactly(4L, 3L);
+        assertThat(index.counts("author", index.all(), 10))
+            .containsExactly(Map.entry("Le Guin", 2), Map.entry("Herbert", 1));
+    }
+
+    @Test
+    void forEachIdSkipsFreeSlotsAndStopsWhenAsked() {
+        RoaringBitmap before = index.all();
+        index.remove(2);
+
+        assertThat(ids(before)).containsExactly(1L, 3L);
+        List<Long> first = new ArrayList<>();
+        index.forEachId(before, id -> !first.add(id));
+        assertThat(first).containsExactly(1L);
+    }
+
+    private List<Long> ids(RoaringBitmap slots) {
+        List<Long> ids = new ArrayList<>();
+        index.forEachId(slots, ids::add);
+        return ids;
+    }
+}
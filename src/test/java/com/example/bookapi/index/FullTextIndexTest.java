@@ -0,0 +1,109 @@
+
+package com.example.bookapi.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// Expected scores are BM25 (k1 = 1.2, b = 0.75, idf = ln(1 + (N - n + 0.5) / (n + 0.5))) worked out separately
+class FullTextIndexTest {
+
+    private FullTextIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FullTextIndex(2f, 1f);
+        index.index(1, "The Hobbit", "A hobbit goes on an adventure with dwarves and a hobbit friend");
+        index.index(2, "The Lord of the Rings", "The hobbit Frodo carries the ring to Mordor");
+        index.index(3, "Dune", "A desert planet and its spice");
+        index.index(4, "Ringworld", "An engineered ring around a star");
+        index.index(5, "Rings of the Lord", "A parody");
+    }
+
+    @Test
+    void ranksByBm25AcrossBoostedFields() {
+        FullTextIndex.SearchResult result = index.search("hobbit ring", 10);
+
+        assertThat(result.getTotalHits()).isEqualTo(3);
+        assertThat(result.getHits()).extracting(FullTextIndex.Hit::getId).containsExactly(1L, 2L, 4L);
+        assertThat(result.getHits()).extracting(FullTextIndex.Hit::getScore)
+            .satisfiesExactly(
+                score -> assertThat(score).isCloseTo(4.0523f, within(1e-3f)),
+                score -> assertThat(score).isCloseTo(1.6330f, within(1e-3f)),
+                score -> assertThat(score).isCloseTo(0.9197f, within(1e-3f)));
+    }
+
+    @Test
+    void limitKeepsTheBestHitsAndCountsAll() {
+        FullTextIndex.SearchResult result = index.search("hobbit ring", 1);
+
+        assertThat(result.getHits()).extracting(FullTextIndex.Hit::getId).containsExactly(1L);
+        assertThat(result.getTotalHits()).isEqualTo(3);
+    }
+
+    @Test
+    void phraseNeedsConsecutivePositionsWhereBagOfWordsDoesNot() {
+        FullTextIndex.SearchResult words = index.search("lord rings", 10);
+        assertThat(words.getHits()).extracting(FullTextIndex.Hit::getId).containsExactly(5L, 2L);
+        assertThat(words.getHits().get(0).getScore()).isCloseTo(2.8697f, within(1e-3f));
+        assertThat(words.getHits().get(1).getScore()).isCloseTo(2.5420f, within(1e-3f));
+
+        assertThat(ids("\"lord of the rings\"")).containsExactly(2L);
+        assertThat(ids("\"rings of the lord\"")).containsExactly(5L);
+        // A phrase has to sit within one field
+        assertThat(ids("\"rings the hobbit\"")).isEmpty();
+        assertThat(FullTextIndex.matches("\"lord of the rings\"", "Rings of the Lord", "A parody")).isFalse();
+        assertThat(FullTextIndex.matches("lord rings", "Rings of the Lord", "A parody")).isTrue();
+    }
+
+    @Test
+    void updatedAndRemovedDocumentsStopMatching() {
+        index.index(2, "The Silmarillion", "Elves and jewels");
+        index.remove(1);
+
+        assertThat(ids("hobbit")).isEmpty();
+        assertThat(ids("silmarillion")).containsExactly(2L);
+        assertThat(ids("ring")).containsExactly(4L);
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.search("mordor", 10).getTotalHits()).isZero();
+    }
+
+    @Test
+    void deletedDocumentsNeitherMatchNorSkewScores() {
+        for (long id = 100; id < 3_100; id++) {
+            index.index(id, "Filler " + id, "temporary hobbit");
+        }
+        // Two compactions renumber the documents that are left, and the last 951 removals are still pending
+        for (long id = 100; id < 3_100; id++) {
+            if (id != 2_000) {
+                index.remove(id);
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(6);
+        assertThat(ids("hobbit")).containsExactlyInAnyOrder(1L, 2L, 2_000L);
+        assertThat(ids("\"lord of the rings\"")).containsExactly(2L);
+        // Scores match an index that only ever held the live documents, pending removals or not
+        FullTextIndex fresh = new FullTextIndex(2f, 1f);
+        fresh.index(1, "The Hobbit", "A hobbit goes on an adventure with dwarves and a hobbit friend");
+        fresh.index(2, "The Lord of the Rings", "The hobbit Frodo carries the ring to Mordor");
+        fresh.index(3, "Dune", "A desert planet and its spice");
+        fresh.index(4, "Ringworld", "An engineered ring around a star");
+        fresh.index(5, "Rings of the Lord", "A parody");
+        fresh.index(2_000, "Filler 2000", "temporary hobbit");
+        assertThat(index.search("hobbit ring", 10).getHits())
+            .usingRecursiveFieldByFieldElementComparator()
+            .containsExactlyElementsOf(fresh.search("hobbit ring", 10).getHits());
+    }
+
+    private List<Long> ids(String query) {
+        List<Long> ids = new ArrayList<>();
+        index.forEachMatch(query, ids::add);
+        return ids;
+    }
+}
@@ -0,0 +1,104 @@
+
+package com.example.bookapi.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongIntHashIndexTest {
+
+    @Test
+    void removeKeepsCollidingKeysFindableAcrossTheWrapAround() {
+        LongIntHashIndex index = new LongIntHashIndex(4);
+        int last = 15; // a table for four entries has 16 slots
+        long[] atLast = keysWithHome(index, last, 2);
+        long atFirst = keysWithHome(index, 0, 1)[0];
+        // Probe run: last slot, then slots 0, 1 and 2 after wrapping
+        index.put(atLast[0], 1);
+        index.put(atLast[1], 2);
+        index.put(atFirst, 3);
+        index.put(atLast[0], 4);
+
+        assertThat(index.remove(atLast[0], 1)).isTrue();
+
+        assertThat(index.get(atLast[1])).isEqualTo(2);
+        assertThat(index.get(atFirst)).isEqualTo(3);
+        assertThat(index.get(atLast[0])).isEqualTo(4);
+        assertThat(index.remove(atLast[1], 2)).isTrue();
+        assertThat(index.get(atFirst)).isEqualTo(3);
+        assertThat(index.get(atLast[0])).isEqualTo(4);
+        assertThat(index.remove(atLast[1], 2)).isFalse();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void findTellsValuesUnderOneKeyApart() {
+        LongIntHashIndex index = new LongIntHashIndex(16);
+        index.put(42, 7);
+        index.put(42, 8);
+        index.put(42, 9);
+
+        assertThat(index.find(42, value -> value == 8)).isEqualTo(8);
+        assertThat(index.remove(42, 8)).isTrue();
+        assertThat(index.find(42, value -> value == 8)).isEqualTo(-1);
+        assertThat(index.find(42, value -> value == 9)).isEqualTo(9);
+        assertThat(index.find(43, value -> true)).isEqualTo(-1);
+    }
+
+    @Test
+    void agreesWithAHashMapThroughGrowthAndRemoves() {
+        Random random = new Random(43);
+        LongIntHashIndex index = new LongIntHashIndex(1);
+        Map<Long, List<Integer>> model = new HashMap<>();
+        long initialBytes = index.sizeInBytes();
+
+        for (int step = 0; step < 50_000; step++) {
+            long key = random.nextInt(3_000) - 1_500L;
+            if (random.nextInt(10) < 6) {
+                int value = random.nextInt(1_000);
+                index.put(key, value);
+                model.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+            } else {
+                List<Integer> values = model.getOrDefault(key, new ArrayList<>());
+                int value = values.isEmpty() || random.nextBoolean() ? random.nextInt(1_000) : values.get(0);
+                assertThat(index.remove(key, value)).isEqualTo(values.contains(value));
+                if (values.remove(Integer.valueOf(value)) && values.isEmpty()) {
+                    model.remove(key);
+                }
+            }
+
+            if (step % 499 == 0) {
+                assertThat(index.size()).isEqualTo(model.values().stream().mapToInt(List::size).sum());
+                for (long probe = -1_500; probe < 1_500; probe += 7) {
+                    List<Integer> values = model.getOrDefault(probe, List.of());
+                    if (values.isEmpty()) {
+                        assertThat(index.get(probe)).isEqualTo(-1);
+                    } else {
+                        assertThat(values).contains(index.get(probe));
+                        for (int value : values) {
+                            assertThat(index.find(probe, candidate -> candidate == value)).isEqualTo(value);
+                        }
+                    }
+                }
+            }
+        }
+        assertThat(index.sizeInBytes()).isGreaterThan(initialBytes);
+    }
+
+    private static long[] keysWithHome(LongIntHashIndex index, int slot, int count) {
+        long[] keys = new long[count];
+        int found = 0;
+        for (long key = 0; found < count; key++) {
+            if (index.slot(key) == slot) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+}
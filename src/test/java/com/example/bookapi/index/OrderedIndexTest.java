@@ -0,0 +1,101 @@
+
+package com.example.bookapi.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Checks the index against a TreeSet of the same (key, id) pairs
+class OrderedIndexTest {
+
+    private static final Comparator<long[]> ORDER =
+        Comparator.<long[]>comparingLong(entry -> entry[0]).thenComparingLong(entry -> entry[1]);
+
+    @Test
+    void agreesWithTreeSetUnderRandomAddsRemovesAndScans() {
+        Random random = new Random(31);
+        OrderedIndex index = new OrderedIndex();
+        NavigableSet<long[]> model = new TreeSet<>(ORDER);
+
+        for (int step = 0; step < 40_000; step++) {
+            // Few distinct keys, so ties on the key span blocks; grow first, then shrink so blocks empty out
+            long key = random.nextInt(200) - 100;
+            long id = random.nextInt(5_000);
+            boolean growing = step < 25_000;
+            if (random.nextInt(10) < (growing ? 7 : 2)) {
+                if (model.add(new long[] {key, id})) {
+                    index.add(key, id);
+                }
+            } else {
+                assertThat(index.remove(key, id)).isEqualTo(model.remove(new long[] {key, id}));
+            }
+
+            if (step % 97 == 0) {
+                assertThat(index.size()).isEqualTo(model.size());
+                long from = random.nextInt(240) - 120;
+                long to = from + random.nextInt(60) - 5;
+                assertRangeAgrees(index, model, from, to, random.nextInt(50));
+            }
+        }
+
+        assertRangeAgrees(index, model, Long.MIN_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Test
+    void removingEverythingLeavesAnEmptyIndex() {
+        OrderedIndex index = new OrderedIndex();
+        for (long id = 0; id < 3_000; id++) {
+            index.add(id % 7, id);
+        }
+        for (long id = 0; id < 3_000; id++) {
+            assertThat(index.remove(id % 7, id)).isTrue();
+        }
+
+        assertThat(index.size()).isZero();
+        assertThat(index.count(Long.MIN_VALUE, Long.MAX_VALUE)).isZero();
+        assertThat(index.remove(0, 0)).isFalse();
+        List<Long> visited = new ArrayList<>();
+        index.scan(Long.MIN_VALUE, Long.MAX_VALUE, false, visited::add);
+        assertThat(visited).isEmpty();
+    }
+
+    private static void assertRangeAgrees(OrderedIndex index, NavigableSet<long[]> model,
+                                          long from, long to, int limit) {
+        List<Long> expected = new ArrayList<>();
+        if (from <= to) {
+            for (long[] entry : model.subSet(new long[] {from, Long.MIN_VALUE}, true,
+                                             new long[] {to, Long.MAX_VALUE}, true)) {
+                expected.add(entry[1]);
+            }
+        }
+        assertThat(index.count(from, to)).isEqualTo(expected.size());
+
+        assertThat(scan(index, from, to, false, Integer.MAX_VALUE)).isEqualTo(expected);
+        List<Long> reversed = new ArrayList<>(expected);
+        Collections.reverse(reversed);
+        assertThat(scan(index, from, to, true, Integer.MAX_VALUE)).isEqualTo(reversed);
+
+        // The visitor stops the walk as soon as it returns false
+        assertThat(scan(index, from, to, false, limit)).isEqualTo(expected.subList(0, Math.min(limit, expected.size())));
+        assertThat(scan(index, from, to, true, limit)).isEqualTo(reversed.subList(0, Math.min(limit, reversed.size())));
+    }
+
+    private static List<Long> scan(OrderedIndex index, long from, long to, boolean descending, int limit) {
+        List<Long> visited = new ArrayList<>();
+        if (limit > 0) {
+            index.scan(from, to, descending, id -> {
+                visited.add(id);
+                return visited.size() < limit;
+            });
+        }
+        return visited;
+    }
+}
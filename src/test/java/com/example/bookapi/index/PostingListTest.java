@@ -0,0 +1,70 @@
+
+package com.example.bookapi.index;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PostingListTest {
+
+    // Document deltas and positions on both sides of each variable-length integer byte boundary
+    private static final int[] DOCS = {126, 254, 254 + 16_383, 254 + 16_383 + 16_384, 254 + 16_383 + 16_384 + 1};
+    private static final int[][] POSITIONS = {
+        {127},
+        {128},
+        {16_383, 32_767},
+        {0},
+        {1 << 28},
+    };
+
+    @Test
+    void roundTripsAcrossVarintByteBoundaries() {
+        PostingList list = new PostingList();
+        for (int i = 0; i < DOCS.length; i++) {
+            list.add(DOCS[i], POSITIONS[i], POSITIONS[i].length);
+        }
+
+        // Per document: delta, frequency, position deltas; 1, 2, 3 or 5 bytes each
+        assertThat(list.sizeInBytes()).isEqualTo((1 + 1 + 1) + (2 + 1 + 2) + (2 + 1 + 2 + 3) + (3 + 1 + 1) + (1 + 1 + 5));
+        assertThat(list.docFrequency()).isEqualTo(DOCS.length);
+
+        PostingList.Cursor cursor = list.cursor();
+        for (int i = 0; i < DOCS.length; i++) {
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.doc()).isEqualTo(DOCS[i]);
+            assertThat(cursor.frequency()).isEqualTo(POSITIONS[i].length);
+            assertThat(cursor.positions(new int[POSITIONS[i].length])).containsExactly(POSITIONS[i]);
+            // Reading them again leaves the cursor where it was
+            assertThat(cursor.positions(new int[POSITIONS[i].length])).containsExactly(POSITIONS[i]);
+        }
+        assertThat(cursor.next()).isFalse();
+        assertThat(cursor.doc()).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void skipsPositionsThatWereNotRead() {
+        PostingList list = new PostingList();
+        for (int i = 0; i < DOCS.length; i++) {
+            list.add(DOCS[i], POSITIONS[i], POSITIONS[i].length);
+        }
+
+        PostingList.Cursor cursor = list.cursor();
+        for (int i = 0; i < DOCS.length; i++) {
+            assertThat(cursor.next()).isTrue();
+            assertThat(cursor.doc()).isEqualTo(DOCS[i]);
+            if (i == 3) {
+                assertThat(cursor.positions(new int[1])).containsExactly(0);
+            }
+        }
+        assertThat(cursor.next()).isFalse();
+    }
+
+    @Test
+    void rejectsDocumentsOutOfOrder() {
+        PostingList list = new PostingList();
+        list.add(5, new int[] {0}, 1);
+
+        assertThatThrownBy(() -> list.add(5, new int[] {1}, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,124 @@
+
+package com.example.bookapi.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Checks the bitmap against a BitSet of the same values
+class RoaringBitmapTest {
+
+    // Three 65536-value groups, so containers are added, merged and dropped in the middle
+    private static final int RANGE = 3 << 16;
+
+    @Test
+    void agreesWithBitSetUnderRandomAddsRemovesAndSetOperations() {
+        Random random = new Random(32);
+        RoaringBitmap[] bitmaps = {new RoaringBitmap(), new RoaringBitmap()};
+        BitSet[] models = {new BitSet(), new BitSet()};
+
+        for (int step = 0; step < 60_000; step++) {
+            int which = random.nextInt(2);
+            // A dense run inside one group pushes it past 4,096 values, and the removals bring it back under
+            int value = random.nextInt(4) == 0
+                ? random.nextInt(RANGE)
+                : (1 << 16) + 1000 + random.nextInt(9000);
+            boolean growing = step < 30_000;
+            if (random.nextInt(10) < (growing ? 7 : 1)) {
+                bitmaps[which].add(value);
+                models[which].set(value);
+            } else {
+                bitmaps[which].remove(value);
+                models[which].clear(value);
+            }
+
+            if (step % 997 == 0) {
+                assertAgrees(bitmaps[0], models[0]);
+                assertAgrees(bitmaps[1], models[1]);
+                assertSetOperationsAgree(bitmaps[0], models[0], bitmaps[1], models[1]);
+            }
+        }
+        assertAgrees(bitmaps[0], models[0]);
+        assertSetOperationsAgree(bitmaps[0], models[0], bitmaps[1], models[1]);
+    }
+
+    @Test
+    void visitStopsAsSoonAsTheVisitorReturnsFalse() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        // Sparse group, then a dense one, then another sparse one
+        for (int value = 0; value < 10; value++) {
+            bitmap.add(value * 7);
+        }
+        for (int value = 0; value < 5_000; value++) {
+            bitmap.add((1 << 16) + value);
+        }
+        bitmap.add(5 << 16);
+
+        for (int limit : new int[] {1, 10, 11, 5_010, 5_011}) {
+            List<Integer> visited = new ArrayList<>();
+            bitmap.visit(value -> {
+                visited.add(value);
+                return visited.size() < limit;
+            });
+            assertThat(visited).hasSize(limit);
+        }
+        List<Integer> visited = new ArrayList<>();
+        bitmap.visit(value -> visited.add(value) && value < (1 << 16) + 2);
+        assertThat(visited).endsWith(63, 1 << 16, (1 << 16) + 1, (1 << 16) + 2);
+    }
+
+    @Test
+    void copiesAreIndependent() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value = 0; value < 5_000; value++) {
+            bitmap.add(value * 3);
+        }
+        RoaringBitmap copy = bitmap.copy();
+        copy.remove(3);
+        copy.add(1);
+        bitmap.add(2);
+
+        assertThat(bitmap.contains(3)).isTrue();
+        assertThat(bitmap.contains(1)).isFalse();
+        assertThat(copy.contains(2)).isFalse();
+        assertThat(bitmap.cardinality()).isEqualTo(5_001);
+        assertThat(copy.cardinality()).isEqualTo(5_000);
+    }
+
+    private static void assertAgrees(RoaringBitmap bitmap, BitSet model) {
+        assertThat(bitmap.cardinality()).isEqualTo(model.cardinality());
+        assertThat(bitmap.isEmpty()).isEqualTo(model.isEmpty());
+        assertThat(values(bitmap)).isEqualTo(model.stream().boxed().toList());
+        Random random = new Random(model.cardinality());
+        for (int i = 0; i < 200; i++) {
+            int value = random.nextInt(RANGE);
+            assertThat(bitmap.contains(value)).isEqualTo(model.get(value));
+        }
+    }
+
+    private static void assertSetOperationsAgree(RoaringBitmap a, BitSet aModel, RoaringBitmap b, BitSet bModel) {
+        BitSet and = (BitSet) aModel.clone();
+        and.and(bModel);
+        BitSet or = (BitSet) aModel.clone();
+        or.or(bModel);
+
+        assertAgrees(a.and(b), and);
+        assertAgrees(a.or(b), or);
+        assertThat(a.andCardinality(b)).isEqualTo(and.cardinality());
+        assertThat(b.andCardinality(a)).isEqualTo(and.cardinality());
+        // Neither operand is changed
+        assertThat(a.cardinality()).isEqualTo(aModel.cardinality());
+        assertThat(b.cardinality()).isEqualTo(bModel.cardinality());
+    }
+
+    private static List<Integer> values(RoaringBitmap bitmap) {
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        return values;
+    }
+}
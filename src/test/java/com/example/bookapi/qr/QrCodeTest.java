@@ -0,0 +1,226 @@
+
+package com.example.bookapi.qr;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Expected symbols come from a separate encoder written from ISO/IEC 18004; format and version bits from its tables C.1 and D.1
+class QrCodeTest {
+
+    @Test
+    void version1RaisesTheLevelWhileTheDataStillFits() {
+        QrCode code = QrCode.encodeText("BookAPI", QrCode.Ecc.M);
+
+        assertThat(code.getVersion()).isEqualTo(1);
+        assertThat(code.getEcc()).isEqualTo(QrCode.Ecc.H);
+        assertThat(code.getMask()).isEqualTo(7);
+        assertThat(formatBits(code)).containsOnly(0b000100000111011);
+        assertThat(code.toString()).isEqualTo(V1_H);
+    }
+
+    @Test
+    void version5InterleavesBlocksOfTwoLengths() {
+        QrCode code = QrCode.encodeText("https://example.com/api/books?author=Tolkien&genre=fantasy", QrCode.Ecc.Q);
+
+        assertThat(code.getVersion()).isEqualTo(5);
+        assertThat(code.getEcc()).isEqualTo(QrCode.Ecc.Q);
+        assertThat(code.getMask()).isZero();
+        assertThat(formatBits(code)).containsOnly(0b011010101011111);
+        assertThat(code.toString()).isEqualTo(V5_Q);
+    }
+
+    @Test
+    void version7CarriesVersionInformation() {
+        QrCode code = QrCode.encodeText(
+            "otpauth://totp/BookAPI:alice@example.com?secret=JBSWY3DPEHPK3PXPJBSWY3DPEHPK3PXP&issuer=BookAPI&digits=6&period=30",
+            QrCode.Ecc.M);
+
+        assertThat(code.getVersion()).isEqualTo(7);
+        assertThat(code.getEcc()).isEqualTo(QrCode.Ecc.M);
+        assertThat(code.getMask()).isEqualTo(1);
+        assertThat(formatBits(code)).containsOnly(0b101000100100101);
+        assertThat(versionBits(code)).containsOnly(0x07C94);
+        assertThat(code.toString()).isEqualTo(V7_M);
+    }
+
+    @Test
+    void version10UsesASixteenBitLength() {
+        String text = "otpauth://totp/BookAPI:alice@example.com?secret=" + "JBSWY3DPEHPK3PXP".repeat(7)
+            + "&issuer=BookAPI&algorithm=SHA256&digits=8&period=30";
+        QrCode code = QrCode.encodeText(text, QrCode.Ecc.M);
+
+        assertThat(code.getVersion()).isEqualTo(10);
+        assertThat(code.getEcc()).isEqualTo(QrCode.Ecc.M);
+        assertThat(code.getMask()).isEqualTo(3);
+        assertThat(formatBits(code)).containsOnly(0b101101101001011);
+        assertThat(versionBits(code)).containsOnly(0x0A4D3);
+        // 57 rows are too many to spell out; this is the SHA-256 of the reference symbol's rows
+        assertThat(sha256(code.toString())).isEqualTo("6bd64bb0a87fd71ff4f8f3484a1122b476ff0b4c61095cb6d6a971e33b40246d");
+    }
+
+    @Test
+    void rejectsDataBeyondVersion40() {
+        assertThat(QrCode.encode(new byte[2953], QrCode.Ecc.L).getVersion()).isEqualTo(40);
+        assertThatThrownBy(() -> QrCode.encode(new byte[2954], QrCode.Ecc.L))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Both copies of the 15 format bits, most significant first
+    private static int[] formatBits(QrCode code) {
+        int size = code.getSize();
+        int first = 0;
+        for (int x : new int[] {0, 1, 2, 3, 4, 5, 7, 8}) {
+            first = first << 1 | (code.isDark(x, 8) ? 1 : 0);
+        }
+        for (int y : new int[] {7, 5, 4, 3, 2, 1, 0}) {
+            first = first << 1 | (code.isDark(8, y) ? 1 : 0);
+        }
+        int second = 0;
+        for (int y = size - 1; y >= size - 7; y--) {
+            second = second << 1 | (code.isDark(8, y) ? 1 : 0);
+        }
+        for (int x = size - 8; x < size; x++) {
+            second = second << 1 | (code.isDark(x, 8) ? 1 : 0);
+        }
+        return new int[] {first, second};
+    }
+
+    // Both copies of the 18 version bits, most significant first
+    private static int[] versionBits(QrCode code) {
+        int size = code.getSize();
+        int topRight = 0;
+        int bottomLeft = 0;
+        for (int i = 17; i >= 0; i--) {
+            topRight = topRight << 1 | (code.isDark(size - 11 + i % 3, i / 3) ? 1 : 0);
+            bottomLeft = bottomLeft << 1 | (code.isDark(i / 3, size - 11 + i % 3) ? 1 : 0);
+        }
+        return new int[] {topRight, bottomLeft};
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final String V1_H = """
+        #######.##....#######
+        #.....#.#..##.#.....#
+        #.###.#..###..#.###.#
+        #.###.#.##..#.#.###.#
+        #.###.#.###...#.###.#
+        #.....#.##.#..#.....#
+        #######.#.#.#.#######
+        .........#.##........
+        ...#..#...###..###.##
+        #.#.#..#....#..#..###
+        ##..###..##.###..#..#
+        .###.#.####.#....#.#.
+        .##.#.#...#####.....#
+        ........###.#####.#..
+        #######..#.#.#.##..#.
+        #.....#....##..#....#
+        #.###.#...#.#.#.....#
+        #.###.#.##...##...###
+        #.###.#..#.###.###..#
+        #.....#..#..##..#....
+        #######...#..#..####.
+        """;
+
+    private static final String V5_Q = """
+        #######.##..#.....#..#.#.###..#######
+        #.....#.#.##.#.#..##########..#.....#
+        #.###.#.#.#.###.####...##...#.#.###.#
+        #.###.#.#.##..#######.##.###..#.###.#
+        #.###.#.#.#..###..#.##.#...##.#.###.#
+        #.....#..#....##....#.####.##.#.....#
+        #######.#.#.#.#.#.#.#.#.#.#.#.#######
+        ........#.....##..#..##..##.#........
+        .##.#.##.#..#.#.######.###.##.#.#####
+        #...#..##..##.##....#...#...###....##
+        ##..###.#.....#.#.#...#..#..#.#..#.##
+        #..#....####...###..###.###.##.#....#
+        #.#...####...######..#.###...##....#.
+        .#...#...#.##....#.##...#.....#..####
+        ##....###.##..##..#...#...#.##..#.#.#
+        .##..#..##..#..##.#.####.##..........
+        ###.#.##..#...#..##...#..##...#..#.##
+        .#.###...#....##..#.##..##..###...###
+        ##....##.#.#.###...##.#........#...##
+        .#..#..#.#.##.#..##.##.#.#.#.#..#..##
+        .#.######...#...#.##.#..##..####.....
+        #..#...#..#######.###...#....##..#.##
+        ###...##.#..#.#....#.##.##..###.#####
+        .##.#...####.#####.#.#####.........##
+        #.#########..##.##...#.###.##.##.#.##
+        .#.#.#..####..##.#..###.###.#.#.....#
+        #.##.#####.#.#....#.....#.....#..##.#
+        .##.##.#.#......###..##..####.#.#...#
+        #.###.#.##.....#.###.#..##.######...#
+        ........#....#..####....#.#.#...#..##
+        #######.###..###.#.#.#..##.##.#.#.###
+        #.....#..#####.#..##...#.##.#...#..#.
+        #.###.#.#.#.#....###...###..######.#.
+        #.###.#..##....##..#....#...##..##..#
+        #.###.#.##....#..##..#..##.#.#.###..#
+        #.....#.##.#######.#.#.######.#....#.
+        #######..##......##.###.##.###.##..##
+        """;
+
+    private static final String V7_M = """
+        #######.#####.#.###.#.##..##.#####..#.#######
+        #.....#...##..#.###....#..##..#....#..#.....#
+        #.###.#.##.##.##...##.#.#...####.#.#..#.###.#
+        #.###.#...###..#.#...#...#.#..##.#.##.#.###.#
+        #.###.#..####...##..########..###.###.#.###.#
+        #.....#.#.#.#######.#...###...#..#....#.....#
+        #######.#.#.#.#.#.#.#.#.#.#.#.#.#.#.#.#######
+        ..........#..##...###...#.....#..###.........
+        #.#...##...#.#.#...######.#.#...#..##..#..#.#
+        ###.##...#.#.#.....#.#.#.#.##......#.#.#...##
+        ......##.#.....####.#.###.##...###......#.#.#
+        .##.##..#.##....#....#.#...###.####..#..##.##
+        #.##..##..#######.#.#..##..##.#.#.##..#.##...
+        #.#.##.##.###..#..#..##.##...#.##..#......##.
+        ###...#####....###.#.#..#.#.#..##....#..###.#
+        ..#.##.###..#..#####.###..#.######.##..#.#.#.
+        ####.#####...##..###.##.#.###...####....#.###
+        .#..#...###.###..##..##..#...#...#...#..#..#.
+        ###...##.###..###...###.#..####.#.##..#####.#
+        #.#.##..####....####.#.##....#.##...#.#.##...
+        #..######...#..#..#######...#.#.#...#########
+        .##.#...#.##.##...#.#...#...##..#..##...##..#
+        ..#.#.#.#...#..#.####.#.#..#....#...#.#.###.#
+        ..###...##...#..##.##...#...#..#.##.#...##...
+        ##.##########....##########.#...#...#####..#.
+        #...##...#.#.#.#.#.##.#..#.###...#...#.#.##.#
+        #.#..###.....#.#####.###.##...##......###.#.#
+        ..#.#..####..##..###...#.#..#...####..####..#
+        ##.#..##..####...####.##....##..#..#..#....##
+        #......###.......#..#...##.###.#.#.....#.....
+        ####.###..##....###.#####.#..#..#...#.#.###.#
+        #...##...#..#...#####.###..#...##..##.#..#.##
+        #...####.#.#.##..#..####....##..####...#.###.
+        ...###.#.##.......#.######...#.###.#..##..##.
+        ....#.####..#.####.#.##....#.#...###..##..#.#
+        .####..#.#..###.#.#.##.#.....#..####..##...##
+        #..##.#.####.#......#######.#####.########.##
+        ........#.........#.#...#..#....#...#...#..##
+        #######.#..#..#######.#.###.....#..##.#.###.#
+        #.....#...###....####...#.#.#....#..#...##.#.
+        #.###.#....####..#.######.#.###.###.######..#
+        #.###.#....#.####.##...##..###.#.#..##.....##
+        #.###.#.####....###.#.###.....#.##..#...###.#
+        #.....#...##.#.#....#.###.#.#.#.#..###..##...
+        #######.#.#.#.##.#..#.###.#.#.#.#...#.##.#..#
+        """;
+}
@@ -0,0 +1,176 @@
+
+package com.example.bookapi.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Drives a wheel that was never started tick by tick, so every firing tick is exact
+class TimingWheelTest {
+
+    private static final long LEVEL_1 = 64;
+    private static final long LEVEL_2 = 64 * 64;
+    private static final long LEVEL_3 = 64 * 64 * 64;
+    private static final long TOP = 64L * 64 * 64 * 64;
+
+    private TimingWheel wheel;
+    private List<String> fired;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel(Duration.ofMillis(100));
+        fired = new ArrayList<>();
+    }
+
+    @Test
+    void firesOnItsDeadlineTickAtEveryLevelBoundary() {
+        long[] deadlines = {1, 63, LEVEL_1 - 1, LEVEL_1, LEVEL_1 + 1, LEVEL_2 - 1, LEVEL_2, LEVEL_2 + 1,
+                            LEVEL_3 - 1, LEVEL_3, LEVEL_3 + 1, TOP - 1};
+        Map<Long, Long> firedAt = new HashMap<>();
+        for (long deadline : deadlines) {
+            wheel.scheduleAt(() -> firedAt.put(deadline, wheel.currentTick()), deadline);
+        }
+
+        wheel.advanceTo(TOP);
+
+        for (long deadline : deadlines) {
+            assertThat(firedAt).containsEntry(deadline, deadline);
+        }
+        assertThat(wheel.pending()).isZero();
+    }
+
+    @Test
+    void firesAcrossWrapsWhenScheduledMidRevolution() {
+        wheel.advanceTo(60);
+        Map<Long, Long> firedAt = new HashMap<>();
+        // Deltas that straddle the level-0 and level-1 wrap from a position that is not slot-aligned
+        for (long deadline : new long[] {63, 64, 65, 123, 124, 127, 128, 130, 60 + LEVEL_2, 60 + LEVEL_2 + 70}) {
+            wheel.scheduleAt(() -> firedAt.put(deadline, wheel.currentTick()), deadline);
+        }
+
+        wheel.advanceTo(60 + LEVEL_2 + 70);
+
+        assertThat(firedAt).hasSize(10).allSatisfy((deadline, tick) -> assertThat(tick).isEqualTo(deadline));
+    }
+
+    @Test
+    void firesTimeoutsOfOneTickInSchedulingOrder() {
+        for (int i = 0; i < 5; i++) {
+            String name = "t" + i;
+            wheel.scheduleAt(() -> fired.add(name), 200);
+        }
+        wheel.scheduleAt(() -> fired.add("early"), 199);
+
+        wheel.advanceTo(199);
+        assertThat(fired).containsExactly("early");
+        wheel.advanceTo(200);
+        assertThat(fired).containsExactly("early", "t0", "t1", "t2", "t3", "t4");
+    }
+
+    @Test
+    void firesOverdueTimeoutsOnTheNextTick() {
+        wheel.advanceTo(100);
+        wheel.scheduleAt(() -> fired.add("overdue"), 40);
+
+        wheel.advanceTo(101);
+
+        assertThat(fired).containsExactly("overdue");
+    }
+
+    @Test
+    void cancelBeforeInsertKeepsItFromRunning() {
+        TimingWheel.Timeout timeout = wheel.scheduleAt(() -> fired.add("cancelled"), 5);
+
+        assertThat(timeout.cancel()).isTrue();
+        assertThat(timeout.cancel()).isFalse();
+        wheel.advanceTo(10);
+
+        assertThat(fired).isEmpty();
+        assertThat(wheel.pending()).isZero();
+    }
+
+    @Test
+    void cancelAfterInsertUnlinksItFromItsSlot() {
+        TimingWheel.Timeout first = wheel.scheduleAt(() -> fired.add("first"), LEVEL_1 + 5);
+        TimingWheel.Timeout middle = wheel.scheduleAt(() -> fired.add("middle"), LEVEL_1 + 5);
+        wheel.scheduleAt(() -> fired.add("last"), LEVEL_1 + 5);
+        wheel.advanceTo(1);
+
+        assertThat(middle.cancel()).isTrue();
+        assertThat(first.cancel()).isTrue();
+        wheel.advanceTo(LEVEL_1 + 5);
+
+        assertThat(fired).containsExactly("last");
+        assertThat(wheel.pending()).isZero();
+    }
+
+    @Test
+    void cancelAfterRunningFails() {
+        TimingWheel.Timeout timeout = wheel.scheduleAt(() -> fired.add("ran"), 3);
+        wheel.advanceTo(3);
+
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(fired).containsExactly("ran");
+    }
+
+    @Test
+    void firesDeadlinesBeyondTheTopLevel() {
+        long[] deadlines = {TOP, TOP + 5, TOP + 3 * LEVEL_3, 2 * TOP + LEVEL_2 + 7};
+        Map<Long, Long> firedAt = new HashMap<>();
+        for (long deadline : deadlines) {
+            wheel.scheduleAt(() -> firedAt.put(deadline, wheel.currentTick()), deadline);
+        }
+
+        wheel.advanceTo(TOP - 1);
+        assertThat(firedAt).isEmpty();
+        wheel.advanceTo(2 * TOP + LEVEL_2 + 7);
+
+        for (long deadline : deadlines) {
+            assertThat(firedAt).containsEntry(deadline, deadline);
+        }
+    }
+
+    @Test
+    void randomSchedulesFireExactlyOnTheirDeadlines() {
+        Random random = new Random(42);
+        Map<Integer, Long> deadlines = new HashMap<>();
+        Map<Integer, Long> firedAt = new HashMap<>();
+        List<TimingWheel.Timeout> timeouts = new ArrayList<>();
+        long end = 0;
+        for (int round = 0; round < 20; round++) {
+            long now = wheel.currentTick();
+            for (int i = 0; i < 200; i++) {
+                int id = deadlines.size();
+                long deadline = now + 1 + (long) Math.floor(Math.pow(random.nextDouble(), 4) * 2 * LEVEL_3);
+                deadlines.put(id, deadline);
+                end = Math.max(end, deadline);
+                timeouts.add(wheel.scheduleAt(() -> firedAt.put(id, wheel.currentTick()), deadline));
+            }
+            wheel.advanceTo(now + random.nextInt((int) LEVEL_2));
+        }
+        List<Integer> cancelled = new ArrayList<>();
+        for (int id = 0; id < timeouts.size(); id += 7) {
+            if (timeouts.get(id).cancel()) {
+                cancelled.add(id);
+            }
+        }
+
+        wheel.advanceTo(end);
+
+        for (Map.Entry<Integer, Long> deadline : deadlines.entrySet()) {
+            if (!cancelled.contains(deadline.getKey())) {
+                assertThat(firedAt).containsEntry(deadline.getKey(), deadline.getValue());
+            }
+        }
+        assertThat(firedAt.keySet()).doesNotContainAnyElementsOf(cancelled);
+        assertThat(wheel.pending()).isZero();
+    }
+}
@@ -0,0 +1,219 @@
+
+package com.example.bookapi.service;
+
+import com.example.bookapi.exception.DuplicateValueException;
+import com.example.bookapi.model.User;
+import com.example.bookapi.replication.Resolution;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserTableTest {
+
+    private static final long ORIGIN = 5;
+
+    private final UserTable table = new UserTable(4, 4096, false, ORIGIN);
+
+    @Test
+    void usernameChangeReleasesTheOldName() {
+        table.insert(user(1, "alice", "alice@example.com"));
+
+        User renamed = table.update(1, 1L, user -> withUsername(user, "alicia"));
+
+        assertThat(renamed.getVersion()).isEqualTo(2);
+        assertThat(table.findByUsername("alice")).isNull();
+        assertThat(table.findByUsername("alicia").getId()).isEqualTo(1);
+        assertThat(table.findByEmail("alice@example.com").getUsername()).isEqualTo("alicia");
+        table.insert(user(2, "alice", "other@example.com"));
+        assertThat(table.findByUsername("alice").getId()).isEqualTo(2);
+    }
+
+    @Test
+    void emailChangeReleasesTheOldAddress() {
+        table.insert(user(1, "alice", "alice@example.com"));
+
+        table.update(1, null, user -> {
+            User next = new User(user);
+            next.setEmail("alice@example.org");
+            return next;
+        });
+
+        assertThat(table.findByEmail("alice@example.com")).isNull();
+        assertThat(table.findByEmail("alice@example.org").getId()).isEqualTo(1);
+        table.insert(user(2, "bob", "alice@example.com"));
+        assertThat(table.findByEmail("alice@example.com").getId()).isEqualTo(2);
+    }
+
+    @Test
+    void takenNamesAreRefusedAndLeaveTheRowAsItWas() {
+        table.insert(user(1, "alice", "alice@example.com"));
+        table.insert(user(2, "bob", "bob@example.com"));
+
+        assertThatThrownBy(() -> table.update(2, null, user -> withUsername(user, "alice")))
+            .isInstanceOf(DuplicateValueException.class);
+        assertThatThrownBy(() -> table.insert(user(3, "carol", "bob@example.com")))
+            .isInstanceOf(DuplicateValueException.class);
+
+        assertThat(table.findByUsername("bob").getVersion()).isEqualTo(1);
+        assertThat(table.findByUsername("alice").getId()).isEqualTo(1);
+        assertThat(table.get(3)).isNull();
+        assertThat(table.size()).isEqualTo(2);
+    }
+
+    @Test
+    void deleteFreesTheRowAndItsNames() {
+        table.insert(user(1, "alice", "alice@example.com"));
+        table.insert(user(2, "bob", "bob@example.com"));
+
+        assertThat(table.delete(1, null)).isEqualTo(1);
+        table.insert(user(3, "alice", "alice@example.com"));
+
+        assertThat(table.get(1)).isNull();
+        assertThat(table.findByUsername("alice").getId()).isEqualTo(3);
+        assertThat(table.all()).extracting(User::getId).containsExactlyInAnyOrder(2L, 3L);
+    }
+
+    @Test
+    void compactionKeepsEveryLiveStringReadable() {
+        for (boolean offHeap : new boolean[] {false, true}) {
+            UserTable table = new UserTable(4, 4096, offHeap, ORIGIN);
+            List<User> expected = new ArrayList<>();
+            for (long id = 1; id <= 200; id++) {
+                User user = user(id, "user" + id, "user" + id + "@example.com");
+                user.setFirstName("Ünïcödé " + id);
+                user.setPhoneNumber(id % 3 == 0 ? null : "+1 555 " + id);
+                table.insert(user);
+            }
+            for (long id = 1; id <= 200; id += 4) {
+                table.delete(id, null);
+            }
+            long before = table.sizeInBytes();
+            // Each rewrite releases the previous 5 KB name; a few hundred of them pass the compaction threshold
+            String padding = "x".repeat(5_000);
+            for (int round = 0; round < 3; round++) {
+                for (long id = 2; id <= 200; id++) {
+                    if (id % 4 == 1) {
+                        continue;
+                    }
+                    long userId = id;
+                    int r = round;
+                    table.update(id, null, user -> {
+                        User next = new User(user);
+                        next.setLastName(padding + r + userId);
+                        return round(next, r);
+                    });
+                }
+            }
+            for (long id = 2; id <= 200; id += 50) {
+                long userId = id;
+                table.update(id, null, user -> withUsername(user, "renamed" + userId));
+            }
+
+            for (long id = 1; id <= 200; id++) {
+                User user = table.get(id);
+                if (id % 4 == 1) {
+                    assertThat(user).isNull();
+                    continue;
+                }
+                String username = id % 50 == 2 ? "renamed" + id : "user" + id;
+                assertThat(user.getUsername()).isEqualTo(username);
+                assertThat(user.getEmail()).isEqualTo("user" + id + "@example.com");
+                assertThat(user.getFirstName()).isEqualTo("Ünïcödé " + id);
+                assertThat(user.getLastName()).isEqualTo(padding + 2 + id);
+                assertThat(user.getPhoneNumber()).isEqualTo(id % 3 == 0 ? null : "+1 555 " + id);
+                assertThat(user.getPassword()).isEqualTo("secret2");
+                assertThat(table.findByUsername(username).getId()).isEqualTo(id);
+                assertThat(table.findByEmail("user" + id + "@example.com").getId()).isEqualTo(id);
+            }
+            // Three rounds of 5 KB names for 150 users would take over 2 MB without compaction
+            assertThat(table.sizeInBytes() - before).isLessThan(1_500_000);
+        }
+    }
+
+    @Test
+    void putIfNewerKeepsTheLaterVersionAndBreaksTiesByOrigin() {
+        User first = user(1, "alice", "alice@example.com");
+        first.setVersion(3);
+        first.setOrigin(10);
+        assertThat(table.putIfNewer(first)).isEqualTo(Resolution.APPLIED);
+
+        User older = replica(first, 2, 20, "old");
+        assertThat(table.putIfNewer(older)).isEqualTo(Resolution.STALE);
+        User same = replica(first, 3, 10, "same");
+        assertThat(table.putIfNewer(same)).isEqualTo(Resolution.STALE);
+        User lowerOrigin = replica(first, 3, 5, "lost");
+        assertThat(table.putIfNewer(lowerOrigin)).isEqualTo(Resolution.CONFLICT_LOST);
+        assertThat(table.get(1).getFirstName()).isNull();
+
+        User higherOrigin = replica(first, 3, 11, "won");
+        assertThat(table.putIfNewer(higherOrigin)).isEqualTo(Resolution.CONFLICT_WON);
+        assertThat(table.get(1).getFirstName()).isEqualTo("won");
+        assertThat(table.get(1).getOrigin()).isEqualTo(11);
+
+        User newer = replica(first, 4, 1, "newer");
+        newer.setUsername("alicia");
+        assertThat(table.putIfNewer(newer)).isEqualTo(Resolution.APPLIED);
+        User stored = table.get(1);
+        assertThat(stored.getVersion()).isEqualTo(4);
+        assertThat(stored.getFirstName()).isEqualTo("newer");
+        assertThat(table.findByUsername("alice")).isNull();
+        assertThat(table.findByUsername("alicia").getId()).isEqualTo(1);
+    }
+
+    @Test
+    void putIfNewerKeepsTheLaterLastLogin() {
+        table.insert(user(1, "alice", "alice@example.com"));
+        LocalDateTime local = LocalDateTime.of(2026, 3, 1, 12, 0);
+        table.touchLastLogin(1, local);
+
+        User replicated = replica(table.get(1), 2, 1, "replicated");
+        replicated.setLastLoginAt(local.minusDays(1));
+        table.putIfNewer(replicated);
+
+        assertThat(table.get(1).getLastLoginAt()).isEqualTo(local);
+        assertThat(table.get(1).getVersion()).isEqualTo(2);
+    }
+
+    @Test
+    void deleteIfNotNewerLeavesLaterVersionsAlone() {
+        table.insert(user(1, "alice", "alice@example.com"));
+        table.update(1, null, user -> new User(user));
+
+        assertThat(table.deleteIfNotNewer(1, 1)).isFalse();
+        assertThat(table.get(1)).isNotNull();
+        assertThat(table.deleteIfNotNewer(1, 2)).isTrue();
+        assertThat(table.get(1)).isNull();
+    }
+
+    private static User user(long id, String username, String email) {
+        User user = new User(username, email, "secret");
+        user.setId(id);
+        user.setVersion(1);
+        user.setOrigin(ORIGIN);
+        return user;
+    }
+
+    private static User withUsername(User user, String username) {
+        User next = new User(user);
+        next.setUsername(username);
+        return next;
+    }
+
+    private static User round(User user, int round) {
+        user.setPassword("secret" + round);
+        return user;
+    }
+
+    private static User replica(User user, long version, long origin, String firstName) {
+        User replica = new User(user);
+        replica.setVersion(version);
+        replica.setOrigin(origin);
+        replica.setFirstName(firstName);
+        return replica;
+    }
+}
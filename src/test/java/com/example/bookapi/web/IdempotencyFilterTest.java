@@ -0,0 +1,172 @@
+
+package com.example.bookapi.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the filter over mock requests in front of a handler that counts its executions and numbers its responses
+class IdempotencyFilterTest {
+
+    private static final List<String> COMPARED_HEADERS = List.of(
+        HttpHeaders.CONTENT_TYPE, HttpHeaders.LOCATION, HttpHeaders.ETAG, HttpHeaders.VARY,
+        HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS);
+
+    private final IdempotencyFilter filter = new IdempotencyFilter(
+        new IdempotencyStore(TimeUnit.HOURS.toNanos(1), 100), new ObjectMapper().findAndRegisterModules(), 5000);
+    private final AtomicInteger executions = new AtomicInteger();
+
+    // What a create endpoint behind CORS and content negotiation sends
+    private final FilterChain created = (request, response) -> {
+        int execution = executions.incrementAndGet();
+        String body = new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        HttpServletResponse http = (HttpServletResponse) response;
+        http.setStatus(201);
+        http.setContentType("application/json");
+        http.setHeader(HttpHeaders.LOCATION, "/api/books/" + execution);
+        http.setHeader(HttpHeaders.ETAG, "\"1\"");
+        http.addHeader(HttpHeaders.VARY, HttpHeaders.ORIGIN);
+        http.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        http.setHeader(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
+        http.setHeader(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, "ETag");
+        http.getOutputStream().write(("{\"execution\":" + execution + ",\"echo\":" + body + "}")
+            .getBytes(StandardCharsets.UTF_8));
+    };
+
+    @Test
+    void retryGetsTheFirstStatusBodyAndHeaders() throws Exception {
+        MockHttpServletResponse first = post("key-1", "{\"title\":\"Dune\"}", created);
+        MockHttpServletResponse retry = post("key-1", "{\"title\":\"Dune\"}", created);
+
+        assertThat(executions).hasValue(1);
+        assertThat(first.getStatus()).isEqualTo(201);
+        assertThat(first.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+        assertSameResponse(retry, first);
+        assertThat(retry.getHeaders(HttpHeaders.VARY)).containsExactly(HttpHeaders.ORIGIN, HttpHeaders.ACCEPT);
+    }
+
+    @Test
+    void replayKeepsVaryValuesAnOuterFilterAlreadySet() throws Exception {
+        post("key-1", "{}", created);
+
+        MockHttpServletResponse retry = new MockHttpServletResponse();
+        retry.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        retry.addHeader(HttpHeaders.VARY, HttpHeaders.ORIGIN);
+        filter.doFilter(request("key-1", "{}"), retry, created);
+
+        assertThat(retry.getHeaders(HttpHeaders.VARY))
+            .containsExactly(HttpHeaders.ACCEPT_ENCODING, HttpHeaders.ORIGIN, HttpHeaders.ACCEPT);
+    }
+
+    @Test
+    void duplicateArrivingInFlightWaitsForTheFirstResponse() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slow = (request, response) -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            created.doFilter(request, response);
+        };
+
+        MockHttpServletResponse[] responses = new MockHttpServletResponse[2];
+        Thread first = new Thread(() -> responses[0] = postUnchecked("key-2", "{\"n\":1}", slow));
+        first.start();
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Thread duplicate = new Thread(() -> responses[1] = postUnchecked("key-2", "{\"n\":1}", slow));
+        duplicate.start();
+        // The duplicate parks on the first request's response with a timeout
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (duplicate.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(duplicate.getState()).isEqualTo(Thread.State.TIMED_WAITING);
+
+        release.countDown();
+        first.join();
+        duplicate.join();
+
+        assertThat(executions).hasValue(1);
+        assertThat(responses[0].getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+        assertSameResponse(responses[1], responses[0]);
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsRejected() throws Exception {
+        post("key-3", "{\"title\":\"Dune\"}", created);
+        MockHttpServletResponse other = post("key-3", "{\"title\":\"Emma\"}", created);
+
+        assertThat(other.getStatus()).isEqualTo(422);
+        assertThat(executions).hasValue(1);
+    }
+
+    @Test
+    void serverErrorsAreExecutedAgain() throws Exception {
+        FilterChain failing = (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(503);
+        };
+        post("key-4", "{}", failing);
+        MockHttpServletResponse retry = post("key-4", "{}", created);
+
+        assertThat(executions).hasValue(2);
+        assertThat(retry.getStatus()).isEqualTo(201);
+        assertThat(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isNull();
+    }
+
+    private static void assertSameResponse(MockHttpServletResponse replayed, MockHttpServletResponse original)
+            throws Exception {
+        assertThat(replayed.getStatus()).isEqualTo(original.getStatus());
+        assertThat(replayed.getContentAsString()).isEqualTo(original.getContentAsString());
+        assertThat(headers(replayed)).isEqualTo(headers(original));
+        assertThat(replayed.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    private static Map<String, List<String>> headers(MockHttpServletResponse response) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : COMPARED_HEADERS) {
+            headers.put(name, response.getHeaders(name));
+        }
+        return headers;
+    }
+
+    private MockHttpServletResponse post(String key, String body, FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(key, body), response, chain);
+        return response;
+    }
+
+    private MockHttpServletResponse postUnchecked(String key, String body, FilterChain chain) {
+        try {
+            return post(key, body, chain);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MockHttpServletRequest request(String key, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/books");
+        request.addHeader(IdempotencyFilter.HEADER, key);
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}